@@ -0,0 +1,86 @@
+package com.ooak.callmanager.receivers;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.StrictMode;
+import android.telephony.TelephonyManager;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ooak.callmanager.utils.CallEventLoop;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Phone state broadcasts arrive on the main thread while the call starts.
+ * Everything they set off - the session engine, its listeners, their
+ * database and preference reads - has to run on the {@link CallEventLoop};
+ * any disk or network access left on the main thread fails this test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PhoneStateReceiverStrictModeTest {
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final List<String> violations = new ArrayList<>();
+    private StrictMode.ThreadPolicy previousPolicy;
+
+    @After
+    public void restorePolicy() {
+        if (previousPolicy != null) {
+            instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(previousPolicy));
+        }
+    }
+
+    @Test
+    public void phoneStateIsHandledOffTheMainThread() throws InterruptedException {
+        Context context = instrumentation.getTargetContext();
+        PhoneStateReceiver receiver = new PhoneStateReceiver();
+
+        instrumentation.runOnMainSync(() -> {
+            previousPolicy = StrictMode.getThreadPolicy();
+            StrictMode.ThreadPolicy.Builder policy = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                policy.penaltyListener(Runnable::run, violation -> {
+                    synchronized (violations) {
+                        violations.add(String.valueOf(violation));
+                    }
+                });
+            } else {
+                policy.penaltyDeath(); // no listener before P; a violation kills the test run
+            }
+            StrictMode.setThreadPolicy(policy.build());
+
+            // IDLE with no call up changes nothing, but goes through the whole path
+            Intent idle = new Intent(TelephonyManager.ACTION_PHONE_STATE_CHANGED)
+                .putExtra(TelephonyManager.EXTRA_STATE, TelephonyManager.EXTRA_STATE_IDLE);
+            receiver.onReceive(context, idle);
+            Intent outgoing = new Intent(Intent.ACTION_NEW_OUTGOING_CALL);
+            receiver.onReceive(context, outgoing);
+        });
+
+        // Events keep their order, so this runs once both broadcasts are handled
+        CountDownLatch handled = new CountDownLatch(1);
+        CallEventLoop.post(handled::countDown);
+        assertTrue("Call events not handled", handled.await(10, TimeUnit.SECONDS));
+        instrumentation.waitForIdleSync();
+
+        synchronized (violations) {
+            assertEquals("Disk or network access on the main thread: " + violations, 0, violations.size());
+        }
+    }
+}
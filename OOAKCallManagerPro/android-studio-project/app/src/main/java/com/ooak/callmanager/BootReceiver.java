@@ -4,8 +4,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
-import com.ooak.callmanager.services.CallMonitoringService;
-import com.ooak.callmanager.services.RecordingMonitorService;
+import com.ooak.callmanager.services.CallEngineService;
 import com.ooak.callmanager.utils.EmployeeAuthManager;
 
 public class BootReceiver extends BroadcastReceiver {
@@ -20,25 +19,15 @@ public class BootReceiver extends BroadcastReceiver {
             Log.d(TAG, "📱 Device boot completed - checking authentication");
             
             // Check if employee is authenticated
-            EmployeeAuthManager authManager = new EmployeeAuthManager(context);
+            EmployeeAuthManager authManager = EmployeeAuthManager.getInstance(context);
             if (authManager.isEmployeeAuthenticated()) {
                 Log.d(TAG, "✅ Employee authenticated - starting background services");
                 
                 try {
-                    // Start all background services
-                    Intent callMonitorIntent = new Intent(context, CallMonitoringService.class);
-                    context.startForegroundService(callMonitorIntent);
+                    // The engine also resumes the uploads the shutdown cut off
+                    CallEngineService.start(context);
                     
-                    Intent recordingMonitorIntent = new Intent(context, RecordingMonitorService.class);
-                    context.startForegroundService(recordingMonitorIntent);
-                    
-                    Intent callTriggerIntent = new Intent(context, CallTriggerService.class);
-                    context.startService(callTriggerIntent);
-                    
-                    Intent recordingDetectionIntent = new Intent(context, CallRecordingDetectionService.class);
-                    context.startService(recordingDetectionIntent);
-                    
-                    Log.d(TAG, "🚀 All background services started successfully on boot");
+                    Log.d(TAG, "🚀 Call engine started successfully on boot");
                     
                 } catch (Exception e) {
                     Log.e(TAG, "❌ Failed to start services on boot", e);
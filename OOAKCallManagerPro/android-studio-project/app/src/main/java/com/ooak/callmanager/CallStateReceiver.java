@@ -3,6 +3,7 @@ package com.ooak.callmanager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import com.ooak.callmanager.services.CallEngineService;
 import com.ooak.callmanager.utils.EmployeeAuthManager;
 import android.telephony.TelephonyManager;
 import android.util.Log;
@@ -105,13 +106,12 @@ public class CallStateReceiver extends BroadcastReceiver {
     private void ensureRecordingDetectionServiceRunning(Context context) {
         try {
             // Check if employee is authenticated
-            EmployeeAuthManager authManager = new EmployeeAuthManager(context);
+            EmployeeAuthManager authManager = EmployeeAuthManager.getInstance(context);
             String employeeId = authManager.getEmployeeId();
             
             if (employeeId != null) {
-                Intent serviceIntent = new Intent(context, CallRecordingDetectionService.class);
-                context.startService(serviceIntent);
-                Log.d(TAG, "🎤 Ensured Call Recording Detection Service is running");
+                CallEngineService.start(context);
+                Log.d(TAG, "🎤 Ensured call engine is running");
             } else {
                 Log.w(TAG, "⚠️ No employee authentication - skipping recording detection");
             }
@@ -19,10 +19,20 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.button.MaterialButton;
-import com.ooak.callmanager.services.CallMonitoringService;
-import com.ooak.callmanager.services.RecordingMonitorService;
+import com.ooak.callmanager.api.CallEventOutbox;
+import com.ooak.callmanager.api.CallLogBackfill;
+import com.ooak.callmanager.api.HttpStack;
+import com.ooak.callmanager.api.RecordingPipeline;
+import com.ooak.callmanager.api.ResumableUploader;
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.services.CallEngine;
+import com.ooak.callmanager.services.CallEngineService;
+import com.ooak.callmanager.utils.CallLogReader;
+import com.ooak.callmanager.utils.CallSessionEngine;
 import com.ooak.callmanager.utils.EmployeeAuthManager;
 import com.ooak.callmanager.utils.AutoPermissionManager;
+import com.ooak.callmanager.utils.RecordingLedger;
+import com.ooak.callmanager.utils.RecordingTranscoder;
 import java.io.File;
 import java.util.List;
 
@@ -43,6 +53,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
     private TextView statusText;
     private TextView employeeDetailsText;
     private TextView uploadStatusText;
+    private TextView outboxStatusText;
     
     private EmployeeAuthManager authManager;
     private AutoPermissionManager permissionManager;
@@ -57,7 +68,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
         
         Log.d(TAG, "🚀 OOAK Call Manager Pro - Enterprise Edition Starting");
         
-        authManager = new EmployeeAuthManager(this);
+        authManager = EmployeeAuthManager.getInstance(this);
         permissionManager = new AutoPermissionManager(this);
         
         initializeViews();
@@ -182,6 +193,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
         statusText = findViewById(R.id.status_text);
         employeeDetailsText = findViewById(R.id.employee_details_text);
         uploadStatusText = findViewById(R.id.upload_status_text);
+        outboxStatusText = findViewById(R.id.outbox_status_text);
         
         // Add permission status button if it exists in layout
         try {
@@ -358,10 +370,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
         
         // Stop services if running
         try {
-            stopService(new Intent(this, CallMonitoringService.class));
-            stopService(new Intent(this, RecordingMonitorService.class));
-            stopService(new Intent(this, CallTriggerService.class));
-            stopService(new Intent(this, CallRecordingDetectionService.class));
+            CallEngineService.stop(this);
         } catch (Exception e) {
             // Ignore errors when stopping services
         }
@@ -381,21 +390,8 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
         }
         
         try {
-            // Start Call Monitoring Service
-            Intent callMonitorIntent = new Intent(this, CallMonitoringService.class);
-            startForegroundService(callMonitorIntent);
-            
-            // Start Recording Monitor Service  
-            Intent recordingMonitorIntent = new Intent(this, RecordingMonitorService.class);
-            startForegroundService(recordingMonitorIntent);
-            
-            // Start Call Trigger Service for API-based call triggers
-            Intent callTriggerIntent = new Intent(this, CallTriggerService.class);
-            startService(callTriggerIntent);
-            
-            // Start Call Recording Detection Service (NEW)
-            Intent recordingDetectionIntent = new Intent(this, CallRecordingDetectionService.class);
-            startService(recordingDetectionIntent);
+            // One engine runs call monitoring, call triggers, recordings and uploads
+            CallEngineService.start(this);
             
             servicesRunning = true;
             startServicesButton.setText("✅ Services Running");
@@ -403,10 +399,10 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
             stopServicesButton.setEnabled(true);
             
             updateStatus("🚀 Background services started successfully!\n" +
-                        "✅ Call Monitoring Service: Active\n" +
-                        "✅ Recording Monitor Service: Active\n" +
-                        "✅ Call Trigger Service: Active (API polling)\n" +
-                        "✅ Call Recording Detection: Active (NEW)\n" +
+                        "✅ Call Engine: Active\n" +
+                        "✅ Call Monitoring: Active\n" +
+                        "✅ Call Triggers: Active (push)\n" +
+                        "✅ Recording Detection & Upload: Active\n" +
                         "✅ CRM Server: Connected to " + authManager.getEmployeeInfo() + "\n" +
                         "✅ Employee: " + authManager.getEmployeeInfo() + "\n\n" +
                         "🎯 AUTOMATIC WORKFLOW ACTIVE:\n" +
@@ -431,10 +427,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
     private void stopBackgroundServices() {
         try {
             // Stop services
-            stopService(new Intent(this, CallMonitoringService.class));
-            stopService(new Intent(this, RecordingMonitorService.class));
-            stopService(new Intent(this, CallTriggerService.class));
-            stopService(new Intent(this, CallRecordingDetectionService.class));
+            CallEngineService.stop(this);
             
             servicesRunning = false;
             startServicesButton.setText("🚀 Start Background Services");
@@ -551,6 +544,24 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
                 updateStatus("⚠️ Authentication expired. Please authenticate again.");
             }
         }
+
+        updateOutboxStatus();
+    }
+
+    private void updateOutboxStatus() {
+        if (outboxStatusText != null) {
+            outboxStatusText.setText("Call events: " + CallEventOutbox.getInstance(this).getStats() + "\n" +
+                RecordingPipeline.getInstance(this).getStatusSummary() + "\n" +
+                ResumableUploader.getInstance(this).getStats() + "\n" +
+                RecordingTranscoder.getInstance(this).getStats() + "\n" +
+                RecordingLedger.getInstance(this).getStats() + "\n" +
+                CallSessionEngine.getInstance(this).getStats() + "\n" +
+                CallLogReader.getInstance(this).getStats() + "\n" +
+                CallLogBackfill.getInstance(this).getStats() + "\n" +
+                HttpStack.getInstance(this).getStats() + "\n" +
+                ServerConfig.getInstance(this).getStats() + "\n" +
+                CallEngine.getInstance(this).getStats());
+        }
     }
     
     private void checkUploads() {
@@ -562,29 +573,24 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
         checkUploadsButton.setText("🔄 Checking...");
         checkUploadsButton.setEnabled(false);
         uploadStatusText.setText("Checking recording uploads...");
+        updateOutboxStatus();
         
         new Thread(() -> {
             try {
                 String employeeId = authManager.getEmployeeId();
-                String url = "https://portal.ooak.photography/api/call-monitoring?employee_id=" + employeeId;
-                
-                java.net.HttpURLConnection connection = (java.net.HttpURLConnection) new java.net.URL(url).openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(10000);
-                connection.setReadTimeout(10000);
+                String url = ServerConfig.PUBLIC_URL + "/api/call-monitoring?employee_id=" + employeeId;
                 
-                int responseCode = connection.getResponseCode();
+                okhttp3.Request request = new okhttp3.Request.Builder().url(url).get().build();
+                int responseCode;
+                String responseBody;
+                try (okhttp3.Response response = HttpStack.getInstance(this).getInteractiveClient()
+                        .newCall(request).execute()) {
+                    responseCode = response.code();
+                    responseBody = response.body() != null ? response.body().string() : "";
+                }
                 
                 if (responseCode == 200) {
-                    java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-                    
-                    org.json.JSONObject jsonResponse = new org.json.JSONObject(response.toString());
+                    org.json.JSONObject jsonResponse = new org.json.JSONObject(responseBody);
                     org.json.JSONArray calls = jsonResponse.getJSONArray("calls");
                     
                     int totalCalls = calls.length();
@@ -626,8 +632,6 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
                     });
                 }
                 
-                connection.disconnect();
-                
             } catch (Exception e) {
                 final String errorMsg = "Error checking uploads: " + e.getMessage();
                 new Handler(Looper.getMainLooper()).post(() -> {
@@ -681,7 +685,7 @@ public class MainActivity extends AppCompatActivity implements AutoPermissionMan
                 
                 // Upload using CallRecordingUploader
                 com.ooak.callmanager.api.CallRecordingUploader uploader = 
-                    new com.ooak.callmanager.api.CallRecordingUploader(this, "https://portal.ooak.photography");
+                    new com.ooak.callmanager.api.CallRecordingUploader(this);
                 
                 uploader.uploadRecording(testFile, metadata, new com.ooak.callmanager.api.CallRecordingUploader.UploadCallback() {
                     @Override
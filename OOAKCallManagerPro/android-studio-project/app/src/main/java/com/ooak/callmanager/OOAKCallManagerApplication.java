@@ -4,10 +4,17 @@ import android.app.Application;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.os.Build;
+import android.os.StrictMode;
 import android.util.Log;
 
-public class OOAKCallManagerApplication extends Application {
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+import com.ooak.callmanager.api.UploadScheduler;
+
+public class OOAKCallManagerApplication extends Application implements Configuration.Provider {
     private static final String TAG = "OOAKCallManagerApp";
     
     // Notification channels
@@ -72,10 +79,34 @@ public class OOAKCallManagerApplication extends Application {
     private void initializeGlobalComponents() {
         // Initialize any global components, databases, or services here
         // For example: database initialization, crash reporting, analytics, etc.
+
+        // Debug builds log any disk or network access on the main thread; call
+        // handling belongs on the CallEventLoop and I/O on SharedExecutors
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .penaltyLog()
+                .build());
+        }
         
         Log.d(TAG, "Global components initialized");
     }
     
+    /**
+     * WorkManager is initialised on demand with this configuration (the default
+     * initializer is removed in the manifest) so background uploads share one
+     * small, bounded pool.
+     */
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+            .setExecutor(UploadScheduler.createWorkerExecutor())
+            .build();
+    }
+    
     public static OOAKCallManagerApplication getInstance() {
         return instance;
     }
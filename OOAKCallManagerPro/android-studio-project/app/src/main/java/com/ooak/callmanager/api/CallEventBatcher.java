@@ -0,0 +1,200 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Batch transport for the call event outbox.
+ *
+ * Events are collected for a short window (250 ms - 2 s, configurable), the
+ * superseded snapshots of each call are coalesced away, and what is left goes
+ * out as one gzip-compressed JSON array to /api/call-monitoring/batch. Servers
+ * without the batch endpoint get the events one by one as before.
+ */
+public class CallEventBatcher {
+    private static final String TAG = "CallEventBatcher";
+    private static final String BATCH_ENDPOINT = "/api/call-monitoring/batch";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final String PREFS_NAME = "call_event_batching";
+    private static final String PREF_WINDOW_MS = "batch_window_ms";
+
+    public static final long MIN_WINDOW_MS = 250;
+    public static final long MAX_WINDOW_MS = 2000;
+    public static final long DEFAULT_WINDOW_MS = 1000;
+
+    static final int MAX_BATCH_SIZE = 100;
+    private static final long UNSUPPORTED_RECHECK_MS = 60 * 60 * 1000; // 1 hour
+
+    private final SharedPreferences prefs;
+    private final OkHttpClient client;
+
+    // Set when the server answered 404/405 for the batch endpoint
+    private volatile long batchUnsupportedUntil = 0;
+
+    CallEventBatcher(Context context, OkHttpClient client) {
+        this(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), client);
+    }
+
+    CallEventBatcher(SharedPreferences prefs, OkHttpClient client) {
+        this.prefs = prefs;
+        this.client = client;
+    }
+
+    /**
+     * How long the outbox waits after an event before sending, so that the
+     * RINGING / CONNECTED / ENDED updates of a short call share one request.
+     */
+    public long getWindowMs() {
+        return clampWindow(prefs.getLong(PREF_WINDOW_MS, DEFAULT_WINDOW_MS));
+    }
+
+    public void setWindowMs(long windowMs) {
+        long clamped = clampWindow(windowMs);
+        prefs.edit().putLong(PREF_WINDOW_MS, clamped).apply();
+        Log.d(TAG, "📝 Batch window set to " + clamped + "ms");
+    }
+
+    private static long clampWindow(long windowMs) {
+        return Math.max(MIN_WINDOW_MS, Math.min(MAX_WINDOW_MS, windowMs));
+    }
+
+    public boolean isBatchEndpointAvailable() {
+        return System.currentTimeMillis() >= batchUnsupportedUntil;
+    }
+
+    /**
+     * Reduce the pending events of each call to the newest one. Every status
+     * update carries the full call snapshot, so older ones add nothing once a
+     * newer one exists.
+     *
+     * @param pending events grouped by call id, oldest first
+     * @param superseded receives the events that no longer need to be sent
+     * @return the newest event of every call, in first-seen order
+     */
+    static <T> List<T> coalesce(Map<String, List<T>> pending, List<T> superseded) {
+        List<T> latest = new ArrayList<>(pending.size());
+        for (List<T> events : pending.values()) {
+            int last = events.size() - 1;
+            superseded.addAll(events.subList(0, last));
+            latest.add(events.get(last));
+        }
+        return latest;
+    }
+
+    /**
+     * Post the given event payloads as one compressed batch.
+     *
+     * @return one result per payload, or null when the batch could not be used
+     *         and the caller should fall back to single requests
+     */
+    CallEventOutbox.SendResult[] send(String employeeId, List<String> payloads) {
+        CallEventOutbox.SendResult[] results = new CallEventOutbox.SendResult[payloads.size()];
+
+        byte[] body;
+        try {
+            body = HttpStack.gzip(toJsonArray(payloads));
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Could not compress call event batch", e);
+            return null;
+        }
+
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + BATCH_ENDPOINT)
+            .post(RequestBody.create(body, JSON))
+            .addHeader("Content-Encoding", "gzip")
+            .addHeader("X-Employee-ID", employeeId != null ? employeeId : "")
+            .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            int code = response.code();
+            if (code == 404 || code == 405) {
+                batchUnsupportedUntil = System.currentTimeMillis() + UNSUPPORTED_RECHECK_MS;
+                Log.w(TAG, "⚠️ Batch endpoint not available (HTTP " + code + "), sending events one by one");
+                return null;
+            }
+            if (code == 408 || code == 429 || code >= 500) {
+                Log.w(TAG, "⚠️ Call event batch got HTTP " + code + ", will retry");
+                fill(results, CallEventOutbox.SendResult.RETRY);
+                return results;
+            }
+            if (!response.isSuccessful()) {
+                // Let the single-event path find out which event the server dislikes
+                Log.w(TAG, "🚫 Call event batch rejected with HTTP " + code + ", splitting it up");
+                return null;
+            }
+
+            String responseBody = response.body() != null ? response.body().string() : "";
+            readResults(responseBody, results);
+            Log.d(TAG, "✅ Delivered batch of " + payloads.size() + " call event(s), " +
+                body.length + " bytes compressed");
+            return results;
+        } catch (IOException e) {
+            Log.w(TAG, "📵 Call event batch not sent: " + e.getMessage());
+            fill(results, CallEventOutbox.SendResult.RETRY);
+            return results;
+        }
+    }
+
+    /**
+     * The server answers with one status per event in request order. Events it
+     * does not mention (or an unreadable body) count as delivered, since the
+     * batch as a whole was accepted.
+     */
+    static void readResults(String responseBody, CallEventOutbox.SendResult[] results) {
+        fill(results, CallEventOutbox.SendResult.DELIVERED);
+        try {
+            JSONArray statuses = new JSONObject(responseBody).optJSONArray("results");
+            if (statuses == null) {
+                return;
+            }
+            for (int i = 0; i < statuses.length() && i < results.length; i++) {
+                int status = statuses.getJSONObject(i).optInt("status", 200);
+                if (status == 408 || status == 429 || status >= 500) {
+                    results[i] = CallEventOutbox.SendResult.RETRY;
+                } else if (status >= 400) {
+                    results[i] = CallEventOutbox.SendResult.REJECTED;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read batch results: " + e.getMessage());
+        }
+    }
+
+    // Payloads are already serialized JSON objects, so join them instead of re-parsing
+    private static String toJsonArray(List<String> payloads) {
+        StringBuilder json = new StringBuilder(payloads.size() * 512);
+        json.append('[');
+        for (Iterator<String> it = payloads.iterator(); it.hasNext(); ) {
+            json.append(it.next());
+            if (it.hasNext()) {
+                json.append(',');
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    private static void fill(CallEventOutbox.SendResult[] results, CallEventOutbox.SendResult value) {
+        for (int i = 0; i < results.length; i++) {
+            results[i] = value;
+        }
+    }
+}
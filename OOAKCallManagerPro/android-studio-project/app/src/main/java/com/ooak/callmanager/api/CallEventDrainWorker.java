@@ -0,0 +1,31 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Delivers call status events still waiting in {@link CallEventOutbox} once a
+ * network is available, even if the process was killed while they waited.
+ */
+public class CallEventDrainWorker extends Worker {
+    private static final String TAG = "CallEventDrainWorker";
+
+    public CallEventDrainWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        long pending = CallEventOutbox.getInstance(getApplicationContext()).drainNow();
+        if (pending > 0) {
+            Log.d(TAG, "⏳ " + pending + " call event(s) still pending");
+            return Result.retry();
+        }
+        return Result.success();
+    }
+}
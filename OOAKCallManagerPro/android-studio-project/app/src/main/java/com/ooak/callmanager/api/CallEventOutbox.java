@@ -0,0 +1,472 @@
+package com.ooak.callmanager.api;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.CallManagerDatabase;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Durable, append-only outbox for call status events.
+ *
+ * Every status update is written to SQLite before anything touches the network.
+ * A single serial sender drains the table in insertion order, retrying failed
+ * events with exponential backoff. Events belonging to the same call are never
+ * delivered out of order: once one event of a call is waiting for a retry, the
+ * later events of that call wait behind it while other calls keep flowing.
+ * Sending goes through {@link CallEventBatcher}, which coalesces each call down
+ * to its newest snapshot and posts the rest as one compressed batch.
+ * While events wait for a retry, {@link UploadScheduler} holds a
+ * {@link CallEventDrainWorker} in reserve so they are still delivered if this
+ * process is killed in the meantime.
+ */
+public class CallEventOutbox {
+    private static final String TAG = "CallEventOutbox";
+    private static final String ENDPOINT = "/api/call-monitoring";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final int DRAIN_PAGE_SIZE = 50;
+    private static final long INITIAL_BACKOFF_MS = 2000;          // 2 seconds
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;    // 10 minutes
+    private static final long MAX_EVENT_AGE_MS = 7L * 24 * 60 * 60 * 1000; // 7 days
+
+    private static CallEventOutbox instance;
+
+    private final Context context;
+    private final CallManagerDatabase database;
+    private final OkHttpClient client;
+    private final ScheduledExecutorService sender;
+    private final CallEventBatcher batcher;
+    private final Random jitter = new Random();
+
+    // Counters exposed to the UI
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAt = Long.MAX_VALUE;
+
+    private CallEventOutbox(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.context = appContext;
+        this.database = CallManagerDatabase.getInstance(appContext);
+        this.client = HttpStack.getInstance(appContext).getApiClient();
+        this.batcher = new CallEventBatcher(appContext, client);
+        this.sender = SharedExecutors.newSerialExecutor("CallEventOutbox-sender");
+
+        registerNetworkCallback(appContext);
+
+        // Pick up anything left over from a previous process
+        sender.execute(() -> {
+            queued.set(DatabaseUtils.queryNumEntries(database.getReadableDatabase(),
+                CallManagerDatabase.TABLE_OUTBOX));
+            Log.d(TAG, "📦 Outbox opened with " + queued.get() + " pending event(s)");
+            drain();
+        });
+    }
+
+    public static synchronized CallEventOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallEventOutbox(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Persist a call status event and wake the sender. The event is durable once
+     * this method returns.
+     */
+    public void enqueue(String callId, String employeeId, JSONObject payload) {
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.OUTBOX_CALL_ID, callId != null ? callId : "unknown");
+        values.put(CallManagerDatabase.OUTBOX_EMPLOYEE_ID, employeeId);
+        values.put(CallManagerDatabase.OUTBOX_PAYLOAD, payload.toString());
+        values.put(CallManagerDatabase.OUTBOX_CREATED_AT, System.currentTimeMillis());
+        values.put(CallManagerDatabase.OUTBOX_ATTEMPTS, 0);
+        values.put(CallManagerDatabase.OUTBOX_NEXT_ATTEMPT_AT, 0);
+
+        long rowId = database.getWritableDatabase().insert(CallManagerDatabase.TABLE_OUTBOX, null, values);
+        if (rowId == -1) {
+            Log.e(TAG, "❌ Could not persist call event for " + callId);
+            return;
+        }
+
+        queued.incrementAndGet();
+        Log.d(TAG, "📥 Queued call event #" + rowId + " for " + callId + " (backlog: " + queued.get() + ")");
+        // Give the follow-up states of the same call a moment to join the batch
+        scheduleDrain(batcher.getWindowMs());
+    }
+
+    public CallEventBatcher getBatcher() {
+        return batcher;
+    }
+
+    public Stats getStats() {
+        return new Stats(queued.get(), inFlight.get(), delivered.get(), dropped.get(), coalesced.get());
+    }
+
+    /**
+     * Retry everything now and wait for the pass to finish. Called by
+     * CallEventDrainWorker, which WorkManager only runs with a network.
+     *
+     * @return events still waiting for delivery
+     */
+    public long drainNow() {
+        try {
+            sender.submit(() -> {
+                retryAllNow();
+                drain();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "❌ Outbox drain failed", e.getCause());
+        }
+        return queued.get();
+    }
+
+    private synchronized void scheduleDrain(long delayMs) {
+        long runAt = System.currentTimeMillis() + delayMs;
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrainAt <= runAt) {
+                return; // An earlier drain is already pending
+            }
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainAt = runAt;
+        scheduledDrain = sender.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the sender thread only
+    private void drain() {
+        synchronized (this) {
+            scheduledDrainAt = Long.MAX_VALUE;
+        }
+
+        long now = System.currentTimeMillis();
+        Set<String> blockedCalls = new HashSet<>();
+        Map<String, List<OutboxEvent>> ready = new LinkedHashMap<>();
+        long afterId = 0;
+        long nextWakeAt = Long.MAX_VALUE;
+        List<OutboxEvent> page;
+
+        do {
+            page = loadPage(afterId);
+            for (OutboxEvent event : page) {
+                afterId = event.id;
+                if (blockedCalls.contains(event.callId)) {
+                    continue; // Keep per-call ordering
+                }
+                if (now - event.createdAt > MAX_EVENT_AGE_MS) {
+                    Log.w(TAG, "🗑️ Dropping expired call event #" + event.id + " for " + event.callId);
+                    remove(event, false);
+                    continue;
+                }
+                if (event.nextAttemptAt > now) {
+                    blockedCalls.add(event.callId);
+                    nextWakeAt = Math.min(nextWakeAt, event.nextAttemptAt);
+                    continue;
+                }
+
+                List<OutboxEvent> events = ready.get(event.callId);
+                if (events == null) {
+                    events = new ArrayList<>();
+                    ready.put(event.callId, events);
+                }
+                events.add(event);
+            }
+        } while (page.size() == DRAIN_PAGE_SIZE && ready.size() < CallEventBatcher.MAX_BATCH_SIZE);
+
+        if (page.size() == DRAIN_PAGE_SIZE) {
+            nextWakeAt = now; // More calls waiting than fit in one batch
+        }
+
+        if (!ready.isEmpty()) {
+            List<OutboxEvent> superseded = new ArrayList<>();
+            List<OutboxEvent> latest = CallEventBatcher.coalesce(ready, superseded);
+            for (OutboxEvent event : superseded) {
+                removeCoalesced(event);
+            }
+            nextWakeAt = Math.min(nextWakeAt, deliver(latest));
+        }
+
+        // Only the head event of each call decides when the next pass is due
+        if (nextWakeAt != Long.MAX_VALUE) {
+            long delayMs = Math.max(0, nextWakeAt - System.currentTimeMillis());
+            scheduleDrain(delayMs);
+            if (delayMs > 0) {
+                // Backing off - make sure the retry outlives this process
+                UploadScheduler.getInstance(context).scheduleCallEventDrain(delayMs);
+            }
+        }
+    }
+
+    /**
+     * Send one event per call, batched per employee when the server supports it.
+     *
+     * @return the earliest retry time of the events that failed, or Long.MAX_VALUE
+     */
+    private long deliver(List<OutboxEvent> events) {
+        Map<String, List<OutboxEvent>> byEmployee = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            String employeeId = event.employeeId != null ? event.employeeId : "";
+            List<OutboxEvent> group = byEmployee.get(employeeId);
+            if (group == null) {
+                group = new ArrayList<>();
+                byEmployee.put(employeeId, group);
+            }
+            group.add(event);
+        }
+
+        long nextWakeAt = Long.MAX_VALUE;
+        for (Map.Entry<String, List<OutboxEvent>> entry : byEmployee.entrySet()) {
+            List<OutboxEvent> group = entry.getValue();
+            SendResult[] results = null;
+
+            if (group.size() > 1 && batcher.isBatchEndpointAvailable()) {
+                List<String> payloads = new ArrayList<>(group.size());
+                for (OutboxEvent event : group) {
+                    payloads.add(event.payload);
+                }
+                inFlight.addAndGet(group.size());
+                try {
+                    results = batcher.send(entry.getKey(), payloads);
+                } finally {
+                    inFlight.addAndGet(-group.size());
+                }
+            }
+
+            for (int i = 0; i < group.size(); i++) {
+                OutboxEvent event = group.get(i);
+                SendResult result = results != null ? results[i] : send(event);
+                switch (result) {
+                    case DELIVERED:
+                        remove(event, true);
+                        break;
+                    case REJECTED:
+                        remove(event, false);
+                        break;
+                    case RETRY:
+                        nextWakeAt = Math.min(nextWakeAt, postpone(event));
+                        break;
+                }
+            }
+        }
+        return nextWakeAt;
+    }
+
+    private List<OutboxEvent> loadPage(long afterId) {
+        List<OutboxEvent> events = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(
+                CallManagerDatabase.TABLE_OUTBOX,
+                null,
+                CallManagerDatabase.OUTBOX_ID + " > ?",
+                new String[]{String.valueOf(afterId)},
+                null, null,
+                CallManagerDatabase.OUTBOX_ID + " ASC",
+                String.valueOf(DRAIN_PAGE_SIZE));
+
+            while (cursor.moveToNext()) {
+                events.add(new OutboxEvent(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_CALL_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_EMPLOYEE_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_PAYLOAD)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_CREATED_AT)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_ATTEMPTS)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.OUTBOX_NEXT_ATTEMPT_AT))));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error reading outbox", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return events;
+    }
+
+    private SendResult send(OutboxEvent event) {
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + ENDPOINT)
+            .post(RequestBody.create(event.payload, JSON))
+            .addHeader("X-Employee-ID", event.employeeId != null ? event.employeeId : "")
+            .build();
+
+        inFlight.incrementAndGet();
+        try (Response response = client.newCall(request).execute()) {
+            int code = response.code();
+            if (response.isSuccessful()) {
+                Log.d(TAG, "✅ Delivered call event #" + event.id + " for " + event.callId);
+                return SendResult.DELIVERED;
+            }
+            if (code == 408 || code == 429 || code >= 500) {
+                Log.w(TAG, "⚠️ Call event #" + event.id + " got HTTP " + code + ", will retry");
+                return SendResult.RETRY;
+            }
+            String body = response.body() != null ? response.body().string() : "";
+            Log.e(TAG, "🚫 Call event #" + event.id + " rejected with HTTP " + code + ": " + body);
+            return SendResult.REJECTED;
+        } catch (IOException e) {
+            Log.w(TAG, "📵 Call event #" + event.id + " not sent: " + e.getMessage());
+            return SendResult.RETRY;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void remove(OutboxEvent event, boolean wasDelivered) {
+        database.getWritableDatabase().delete(CallManagerDatabase.TABLE_OUTBOX,
+            CallManagerDatabase.OUTBOX_ID + " = ?", new String[]{String.valueOf(event.id)});
+        queued.decrementAndGet();
+        if (wasDelivered) {
+            delivered.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // An older snapshot of a call made redundant by a newer one
+    private void removeCoalesced(OutboxEvent event) {
+        database.getWritableDatabase().delete(CallManagerDatabase.TABLE_OUTBOX,
+            CallManagerDatabase.OUTBOX_ID + " = ?", new String[]{String.valueOf(event.id)});
+        queued.decrementAndGet();
+        coalesced.incrementAndGet();
+    }
+
+    private long postpone(OutboxEvent event) {
+        int attempts = event.attempts + 1;
+        long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts - 1, 20));
+        backoff += (long) (backoff * 0.2 * jitter.nextDouble());
+
+        long nextAttemptAt = System.currentTimeMillis() + backoff;
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.OUTBOX_ATTEMPTS, attempts);
+        values.put(CallManagerDatabase.OUTBOX_NEXT_ATTEMPT_AT, nextAttemptAt);
+        database.getWritableDatabase().update(CallManagerDatabase.TABLE_OUTBOX, values,
+            CallManagerDatabase.OUTBOX_ID + " = ?", new String[]{String.valueOf(event.id)});
+
+        Log.d(TAG, "⏳ Retry #" + attempts + " for call event #" + event.id + " in " + (backoff / 1000) + "s");
+        return nextAttemptAt;
+    }
+
+    /**
+     * Connectivity came back - retry everything immediately instead of waiting
+     * out the backoff accumulated while the phone was in a dead zone.
+     */
+    private void registerNetworkCallback(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            return;
+        }
+        try {
+            NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+            cm.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    sender.execute(() -> {
+                        int reset = retryAllNow();
+                        if (reset > 0) {
+                            Log.d(TAG, "🌐 Network available - retrying " + reset + " pending event(s)");
+                        }
+                        drain();
+                    });
+                }
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "Could not register network callback", e);
+        }
+    }
+
+    // Runs on the sender thread only
+    private int retryAllNow() {
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.OUTBOX_NEXT_ATTEMPT_AT, 0);
+        return database.getWritableDatabase().update(CallManagerDatabase.TABLE_OUTBOX, values, null, null);
+    }
+
+    enum SendResult { DELIVERED, RETRY, REJECTED }
+
+    private static class OutboxEvent {
+        final long id;
+        final String callId;
+        final String employeeId;
+        final String payload;
+        final long createdAt;
+        final int attempts;
+        final long nextAttemptAt;
+
+        OutboxEvent(long id, String callId, String employeeId, String payload,
+                    long createdAt, int attempts, long nextAttemptAt) {
+            this.id = id;
+            this.callId = callId;
+            this.employeeId = employeeId;
+            this.payload = payload;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+        }
+    }
+
+    public static class Stats {
+        public final long queued;
+        public final long inFlight;
+        public final long delivered;
+        public final long dropped;
+        public final long coalesced;
+
+        Stats(long queued, long inFlight, long delivered, long dropped, long coalesced) {
+            this.queued = queued;
+            this.inFlight = inFlight;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.coalesced = coalesced;
+        }
+
+        @Override
+        public String toString() {
+            return "📥 Queued: " + queued +
+                   " | 📡 In-flight: " + inFlight +
+                   " | ✅ Delivered: " + delivered +
+                   " | 🗑️ Dropped: " + dropped +
+                   " | 🧩 Coalesced: " + coalesced;
+        }
+    }
+}
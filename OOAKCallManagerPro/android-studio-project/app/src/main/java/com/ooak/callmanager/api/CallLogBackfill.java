@@ -0,0 +1,304 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.provider.CallLog;
+import android.util.Log;
+
+import com.ooak.callmanager.models.CallRecord;
+import com.ooak.callmanager.utils.CallLogReader;
+import com.ooak.callmanager.utils.ContactDirectory;
+import com.ooak.callmanager.utils.EmployeeAuthManager;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the calls the live monitor never saw - the history from before the
+ * app was installed, and whatever happened while it was not running - to the
+ * CRM.
+ *
+ * The call log is walked in CallLog.Calls._ID order from a persisted cursor,
+ * one page per request: every row becomes the same CallRecord the live monitor
+ * builds, and the page goes out as one gzip batch through the outbox's
+ * {@link CallEventBatcher}. The cursor only moves past rows the server has
+ * answered for, so a kill or a lost connection resumes where it stopped. The
+ * server skips calls it already has, which covers both the live updates and a
+ * page sent twice.
+ */
+public class CallLogBackfill {
+    private static final String TAG = "CallLogBackfill";
+
+    private static final String PREFS_NAME = "call_log_backfill";
+    static final String PREF_CURSOR = "cursor";
+    private static final String PREF_EMPLOYEE_ID = "employee_id";
+
+    private static final long LOOKBACK_MS = 30L * 24 * 60 * 60 * 1000;  // 30 days of history on first run
+    private static final long SETTLE_MS = 10 * 60 * 1000;               // newer calls are still the live monitor's
+    private static final long START_DELAY_MS = 60 * 1000;               // let the directories load first
+    private static final long RETRY_MIN_MS = 5 * 60 * 1000;             // 5 minutes
+    private static final long RETRY_MAX_MS = 60 * 60 * 1000;            // 1 hour
+
+    /**
+     * Turns a call log row into the JSON the batch endpoint takes.
+     */
+    interface PayloadBuilder {
+        String build(String employeeId, CallLogReader.Entry row) throws Exception;
+    }
+
+    private static CallLogBackfill instance;
+
+    private final SharedPreferences prefs;
+    private final EmployeeAuthManager authManager;
+    private final CallLogReader.Source callLog;
+    private final CallEventBatcher batcher;
+    private final PayloadBuilder payloadBuilder;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> pendingRun;
+    private long retryDelayMs = RETRY_MIN_MS;
+
+    // Counters for logs / the status screen
+    private volatile long callsSent = 0;
+    private volatile long callsRejected = 0;
+    private volatile long batches = 0;
+    private volatile boolean caughtUp = false;
+
+    CallLogBackfill(SharedPreferences prefs, EmployeeAuthManager authManager, CallLogReader.Source callLog,
+                    CallEventBatcher batcher, PayloadBuilder payloadBuilder) {
+        this.prefs = prefs;
+        this.authManager = authManager;
+        this.callLog = callLog;
+        this.batcher = batcher;
+        this.payloadBuilder = payloadBuilder;
+        this.executor = SharedExecutors.newSerialExecutor("CallLogBackfill");
+    }
+
+    public static synchronized CallLogBackfill getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            ContactDirectory contacts = ContactDirectory.getInstance(appContext);
+            CrmDirectory directory = CrmDirectory.getInstance(appContext);
+            instance = new CallLogBackfill(
+                appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                EmployeeAuthManager.getInstance(appContext),
+                CallLogReader.providerSource(appContext),
+                CallEventOutbox.getInstance(appContext).getBatcher(),
+                (employeeId, row) -> {
+                    JSONObject payload = OOAKCRMApiClient.toPayload(
+                        toCallRecord(employeeId, row, contacts, directory));
+                    payload.put("source", "call_log");
+                    return payload.toString();
+                });
+        }
+        return instance;
+    }
+
+    /**
+     * Catch up shortly; called whenever the monitor (re)starts, since that is
+     * when a gap in the live updates can have ended.
+     */
+    public void requestRun() {
+        schedule(START_DELAY_MS);
+    }
+
+    public String getStats() {
+        return "Backfill: " + callsSent + " calls in " + batches + " batches, " + callsRejected +
+               " rejected, cursor _ID " + prefs.getLong(PREF_CURSOR, -1) + (caughtUp ? "" : " (catching up)");
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (pendingRun != null && !pendingRun.isDone()) {
+            pendingRun.cancel(false);
+        }
+        pendingRun = executor.schedule(this::run, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Backfill thread ----
+
+    private void run() {
+        String employeeId = authManager.getEmployeeId();
+        if (employeeId.isEmpty()) {
+            Log.d(TAG, "⏸️ Not logged in, no call log backfill");
+            return;
+        }
+        if (!employeeId.equals(prefs.getString(PREF_EMPLOYEE_ID, null))) {
+            // Another rep on this phone: their history starts over
+            prefs.edit().putString(PREF_EMPLOYEE_ID, employeeId).remove(PREF_CURSOR).apply();
+        }
+
+        try {
+            long cursor = prefs.getLong(PREF_CURSOR, -1);
+            if (cursor < 0) {
+                cursor = lookbackStart();
+                prefs.edit().putLong(PREF_CURSOR, cursor).apply();
+                Log.d(TAG, "📜 Backfilling the call log after _ID " + cursor);
+            }
+
+            caughtUp = false;
+            long settledBefore = System.currentTimeMillis() - SETTLE_MS;
+            while (true) {
+                long next = sendPage(employeeId, cursor, settledBefore);
+                if (next == cursor) {
+                    break;
+                }
+                cursor = next;
+                prefs.edit().putLong(PREF_CURSOR, cursor).apply();
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ No READ_CALL_LOG permission: " + e.getMessage());
+            return;
+        } catch (RetryLater e) {
+            Log.w(TAG, "📵 Call log backfill paused, retrying in " + (retryDelayMs / 1000) + "s");
+            retryLater();
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Call log backfill failed, retrying in " + (retryDelayMs / 1000) + "s", e);
+            retryLater();
+            return;
+        }
+        retryDelayMs = RETRY_MIN_MS;
+        caughtUp = true;
+        Log.d(TAG, "✅ " + getStats());
+    }
+
+    private void retryLater() {
+        schedule(retryDelayMs);
+        retryDelayMs = Math.min(RETRY_MAX_MS, retryDelayMs * 2);
+    }
+
+    /**
+     * Send the next page of settled call log rows after {@code cursor}.
+     *
+     * @return the new cursor; equal to {@code cursor} when there is nothing left
+     */
+    long sendPage(String employeeId, long cursor, long settledBefore) throws RetryLater {
+        List<Long> rowIds = new ArrayList<>(CallEventBatcher.MAX_BATCH_SIZE);
+        List<Integer> payloadRows = new ArrayList<>(CallEventBatcher.MAX_BATCH_SIZE);
+        List<String> payloads = new ArrayList<>(CallEventBatcher.MAX_BATCH_SIZE);
+
+        for (CallLogReader.Entry row : callLog.readAfter(cursor, CallEventBatcher.MAX_BATCH_SIZE)) {
+            if (row.date >= settledBefore) {
+                break; // this and everything after it is recent
+            }
+            rowIds.add(row.id);
+            if (row.number == null || row.number.isEmpty()) {
+                continue; // private number, nothing to attach it to
+            }
+            try {
+                payloads.add(payloadBuilder.build(employeeId, row));
+                payloadRows.add(rowIds.size() - 1);
+            } catch (Exception e) {
+                Log.w(TAG, "⚠️ Skipping call log row " + row.id + ": " + e.getMessage());
+            }
+        }
+        if (rowIds.isEmpty()) {
+            return cursor;
+        }
+        if (payloads.isEmpty()) {
+            return rowIds.get(rowIds.size() - 1);
+        }
+
+        int settled = deliver(employeeId, payloads);
+        if (settled == payloads.size()) {
+            return rowIds.get(rowIds.size() - 1);
+        }
+        // Resume at the first row the server has not answered for
+        int firstOpen = payloadRows.get(settled);
+        if (firstOpen > 0) {
+            prefs.edit().putLong(PREF_CURSOR, rowIds.get(firstOpen - 1)).apply();
+        }
+        throw new RetryLater();
+    }
+
+    /**
+     * Post payloads as batches. A batch the server refuses as a whole is split
+     * until the one call it refuses is found and skipped.
+     *
+     * @return how many leading payloads were delivered or rejected for good
+     */
+    int deliver(String employeeId, List<String> payloads) {
+        CallEventOutbox.SendResult[] results = batcher.send(employeeId, payloads);
+        if (results == null) {
+            if (!batcher.isBatchEndpointAvailable()) {
+                return 0;
+            }
+            if (payloads.size() == 1) {
+                callsRejected++;
+                return 1;
+            }
+            int half = payloads.size() / 2;
+            int settled = deliver(employeeId, payloads.subList(0, half));
+            if (settled < half) {
+                return settled;
+            }
+            return half + deliver(employeeId, payloads.subList(half, payloads.size()));
+        }
+
+        batches++;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == CallEventOutbox.SendResult.RETRY) {
+                return i;
+            }
+            if (results[i] == CallEventOutbox.SendResult.REJECTED) {
+                callsRejected++;
+            } else {
+                callsSent++;
+            }
+        }
+        return results.length;
+    }
+
+    /**
+     * The call as the live monitor would have reported it once it ended.
+     */
+    private static CallRecord toCallRecord(String employeeId, CallLogReader.Entry row,
+                                           ContactDirectory contacts, CrmDirectory directory) {
+        boolean incoming = row.type != CallLog.Calls.OUTGOING_TYPE;
+        CallRecord call = new CallRecord();
+        // Stable, so the server recognises a row it has seen before
+        call.setCallId("calllog_" + employeeId + "_" + row.id + "_" + row.date);
+        call.setPhoneNumber(row.number);
+        call.setEmployeeId(employeeId);
+        call.setDirection(incoming ? "incoming" : "outgoing");
+        call.setStartTime(new Date(row.date));
+        call.setEndTime(new Date(row.getEndTime()));
+        call.setDuration((int) row.durationSec);
+        if (row.durationSec > 0) {
+            call.setStatus("completed");
+        } else {
+            call.setStatus(incoming ? "missed" : "unanswered");
+        }
+
+        String mobileName = contacts.findName(row.number);
+        if (mobileName == null) {
+            mobileName = row.cachedName;
+        }
+        call.setMobileContactName(mobileName);
+        CrmDirectory.Entry crm = directory.find(row.number);
+        if (crm != null) {
+            call.setLeadId(crm.leadId);
+            call.setTaskId(crm.taskId);
+            call.setContactName(crm.name);
+        } else {
+            call.setContactName(mobileName);
+        }
+        return call;
+    }
+
+    /**
+     * The _ID just before the calls of the last {@link #LOOKBACK_MS}.
+     */
+    private long lookbackStart() {
+        return callLog.lastIdBefore(System.currentTimeMillis() - LOOKBACK_MS);
+    }
+
+    // The server or the network is not taking calls right now
+    static class RetryLater extends Exception {}
+}
@@ -4,31 +4,40 @@ import android.content.Context;
 import android.util.Log;
 import android.content.SharedPreferences;
 
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.RecordingTranscoder;
+import com.ooak.callmanager.utils.SharedExecutors;
+
 import org.json.JSONObject;
 import org.json.JSONException;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 public class CallRecordingUploader {
     private static final String TAG = "CallRecordingUploader";
     private static final String API_ENDPOINT = "/api/call-recordings";
-    private static final int TIMEOUT_MS = 30000; // 30 seconds
-    private static final String BOUNDARY = "***" + System.currentTimeMillis() + "***";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     
     private final Context context;
-    private final String baseUrl;
     private final ExecutorService executor;
+    private final OkHttpClient uploadClient;
+    private final OkHttpClient apiClient;
     
-    public CallRecordingUploader(Context context, String baseUrl) {
+    public CallRecordingUploader(Context context) {
         this.context = context;
-        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
-        this.executor = Executors.newSingleThreadExecutor();
+        this.executor = SharedExecutors.newSerialExecutor(TAG);
+        HttpStack http = HttpStack.getInstance(context);
+        this.uploadClient = http.getUploadClient();
+        this.apiClient = http.getApiClient();
     }
     
     public interface UploadCallback {
@@ -71,6 +80,19 @@ public class CallRecordingUploader {
             json.put("employeeId", employeeId);
             return json;
         }
+        
+        public static CallMetadata fromJSON(JSONObject json) {
+            return new CallMetadata(
+                json.optString("phoneNumber", null),
+                json.optString("contactName", null),
+                json.optString("direction", null),
+                json.optLong("callStartTime"),
+                json.optLong("callEndTime"),
+                json.optString("deviceId", null),
+                json.optBoolean("matched"),
+                json.optString("employeeId", null)
+            );
+        }
     }
     
     public void uploadRecording(File audioFile, CallMetadata metadata, UploadCallback callback) {
@@ -95,113 +117,108 @@ public class CallRecordingUploader {
     }
     
     private void performUpload(File audioFile, CallMetadata metadata, UploadCallback callback) 
-            throws IOException, JSONException {
+            throws IOException {
         
-        HttpURLConnection connection = null;
+        String recordingId;
         try {
-            // Create connection
-            URL url = new URL(baseUrl + API_ENDPOINT);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(TIMEOUT_MS);
-            connection.setReadTimeout(TIMEOUT_MS);
-            
-            // Set headers - IMPORTANT: Include employee ID in header
-            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
-            connection.setRequestProperty("X-Employee-ID", metadata.employeeId);
-            connection.setRequestProperty("User-Agent", "OOAK-CallManager-Android/1.0");
-            
-            Log.d(TAG, "🚀 Starting upload to: " + url);
-            Log.d(TAG, "📱 Employee ID: " + metadata.employeeId);
-            Log.d(TAG, "📞 Phone: " + metadata.phoneNumber);
-            Log.d(TAG, "📂 File: " + audioFile.getName() + " (" + audioFile.length() + " bytes)");
-            
-            // Build multipart request
-            try (OutputStream outputStream = connection.getOutputStream();
-                 DataOutputStream request = new DataOutputStream(outputStream)) {
-                
-                // Write metadata
-                writeFormField(request, "metadata", createMetadataJson(metadata));
-                
-                // Write audio file
-                writeFileField(request, "audio", audioFile);
-                
-                // End multipart
-                request.writeBytes("--" + BOUNDARY + "--\r\n");
-                request.flush();
-            }
-            
-            // Get response
-            int responseCode = connection.getResponseCode();
-            String responseMessage = connection.getResponseMessage();
+            recordingId = uploadNow(audioFile, metadata);
+        } catch (UploadException e) {
+            callback.onError(e.getMessage());
+            return;
+        }
+        callback.onSuccess(recordingId, "Upload successful");
+        
+        // Also update call monitoring for better tracking
+        updateCallMonitoring(metadata, recordingId);
+    }
+    
+    /**
+     * Upload on the calling thread.
+     *
+     * @return the server's recording id ("unknown" if the response had none)
+     * @throws UploadException when the server rejected the upload
+     * @throws IOException on network failure
+     */
+    public String uploadNow(File audioFile, CallMetadata metadata) throws IOException {
+        RequestBody body;
+        try {
+            body = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("metadata", createMetadataJson(metadata))
+                .addFormDataPart("audio", audioFile.getName(), RequestBody.create(audioFile,
+                    MediaType.parse(RecordingTranscoder.contentTypeFor(audioFile.getName()))))
+                .build();
+        } catch (JSONException e) {
+            throw new UploadException(0, "Invalid metadata: " + e.getMessage());
+        }
+        
+        // IMPORTANT: Include employee ID in header
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + API_ENDPOINT)
+            .post(body)
+            .header("X-Employee-ID", metadata.employeeId)
+            .header("User-Agent", "OOAK-CallManager-Android/1.0")
+            .build();
+        
+        Log.d(TAG, "🚀 Starting upload to: " + request.url());
+        Log.d(TAG, "📱 Employee ID: " + metadata.employeeId);
+        Log.d(TAG, "📞 Phone: " + metadata.phoneNumber);
+        Log.d(TAG, "📂 File: " + audioFile.getName() + " (" + audioFile.length() + " bytes)");
+        
+        try (Response response = uploadClient.newCall(request).execute()) {
+            int responseCode = response.code();
+            String responseBody = response.body() != null ? response.body().string() : "";
             
-            Log.d(TAG, "📡 Upload response: " + responseCode + " " + responseMessage);
+            Log.d(TAG, "📡 Upload response: " + responseCode + " " + response.message());
             
-            if (responseCode >= 200 && responseCode < 300) {
-                // Read success response
-                String responseBody = readResponse(connection.getInputStream());
+            if (response.isSuccessful()) {
                 Log.d(TAG, "✅ Upload successful: " + responseBody);
                 
                 try {
-                    JSONObject response = new JSONObject(responseBody);
-                    String recordingId = response.optString("recordingId", "unknown");
-                    String message = response.optString("message", "Upload successful");
-                    callback.onSuccess(recordingId, message);
-                    
-                    // Also update call monitoring for better tracking
-                    updateCallMonitoring(metadata, recordingId);
-                    
+                    return new JSONObject(responseBody).optString("recordingId", "unknown");
                 } catch (JSONException e) {
                     Log.w(TAG, "⚠️ Could not parse response JSON, but upload succeeded", e);
-                    callback.onSuccess("unknown", "Upload successful");
+                    return "unknown";
                 }
             } else {
-                // Read error response
-                String errorBody = readResponse(connection.getErrorStream());
-                Log.e(TAG, "❌ Upload failed: " + responseCode + " - " + errorBody);
-                callback.onError("Upload failed (HTTP " + responseCode + "): " + errorBody);
-            }
-            
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+                Log.e(TAG, "❌ Upload failed: " + responseCode + " - " + responseBody);
+                throw new UploadException(responseCode, "Upload failed (HTTP " + responseCode + "): " + responseBody);
             }
         }
     }
     
     private void updateCallMonitoring(CallMetadata metadata, String recordingId) {
         // Enhanced call monitoring update - tries multiple strategies to link recording
-        new Thread(() -> {
-            try {
-                // Strategy 1: Try to update existing call record with recording URL
-                boolean existingCallUpdated = updateExistingCallRecord(metadata, recordingId);
-                
-                if (!existingCallUpdated) {
-                    // Strategy 2: Create new call record if no existing record found
-                    createNewCallRecord(metadata, recordingId);
-                }
-                
-            } catch (Exception e) {
-                Log.e(TAG, "❌ Failed to update call monitoring", e);
+        executor.execute(() -> linkToCall(metadata, recordingId));
+    }
+    
+    /**
+     * Attach an uploaded recording to its call record, creating the record if
+     * the server has none for this number. Runs on the calling thread.
+     *
+     * @return false if neither strategy worked
+     */
+    public boolean linkToCall(CallMetadata metadata, String recordingId) {
+        try {
+            // Strategy 1: Try to update existing call record with recording URL
+            if (updateExistingCallRecord(metadata, recordingId)) {
+                return true;
             }
-        }).start();
+            
+            // Strategy 2: Create new call record if no existing record found
+            return createNewCallRecord(metadata, recordingId);
+            
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Failed to update call monitoring", e);
+            return false;
+        }
     }
     
     private boolean updateExistingCallRecord(CallMetadata metadata, String recordingId) {
         try {
-            // Try to update existing call record using the new update-call API
-            URL updateUrl = new URL(baseUrl + "/api/call-recordings/update-call");
-            HttpURLConnection connection = (HttpURLConnection) updateUrl.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("X-Employee-ID", metadata.employeeId);
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-            
             // PERFECT FIX: Build the EXACT recording URL that was uploaded
-            String recordingUrl = baseUrl + "/api/call-recordings/file/" + recordingId;
+            // Stored with the call, so it must work from anywhere - not the LAN address
+            String recordingUrl = ServerConfig.PUBLIC_URL + "/api/call-recordings/file/" + recordingId;
             
             // Calculate actual call duration in seconds
             long duration = Math.max(1, (metadata.callEndTime - metadata.callStartTime) / 1000);
@@ -217,19 +234,16 @@ public class CallRecordingUploader {
             Log.d(TAG, "⏱️ Duration: " + duration + "s");
             Log.d(TAG, "🆔 Recording ID: " + recordingId);
             
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(updateData.toString().getBytes(StandardCharsets.UTF_8));
-            }
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300) {
-                String response = readResponse(connection.getInputStream());
-                Log.d(TAG, "✅ PERFECT SUCCESS: Updated existing call record: " + response);
-                return true;
-            } else {
-                String errorResponse = readResponse(connection.getErrorStream());
-                Log.d(TAG, "⚠️ No existing call record found to update: " + responseCode + " - " + errorResponse);
-                return false;
+            // Try to update existing call record using the new update-call API
+            try (Response response = postJson("/api/call-recordings/update-call", updateData, metadata.employeeId)) {
+                String responseBody = response.body() != null ? response.body().string() : "";
+                if (response.isSuccessful()) {
+                    Log.d(TAG, "✅ PERFECT SUCCESS: Updated existing call record: " + responseBody);
+                    return true;
+                } else {
+                    Log.d(TAG, "⚠️ No existing call record found to update: " + response.code() + " - " + responseBody);
+                    return false;
+                }
             }
             
         } catch (Exception e) {
@@ -238,19 +252,10 @@ public class CallRecordingUploader {
         }
     }
     
-    private void createNewCallRecord(CallMetadata metadata, String recordingId) {
+    private boolean createNewCallRecord(CallMetadata metadata, String recordingId) {
         try {
-            URL url = new URL(baseUrl + "/api/call-monitoring");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("X-Employee-ID", metadata.employeeId);
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-            
             // Build recording URL
-            String recordingUrl = baseUrl + "/api/call-recordings/file/android_" + 
+            String recordingUrl = ServerConfig.PUBLIC_URL + "/api/call-recordings/file/android_" + 
                                 metadata.employeeId + "_" + System.currentTimeMillis() + 
                                 (recordingId != null ? "_" + recordingId : "") + 
                                 getFileExtension(metadata);
@@ -275,21 +280,20 @@ public class CallRecordingUploader {
             Log.d(TAG, "🎵 Recording URL: " + recordingUrl);
             Log.d(TAG, "⏱️ Duration: " + duration + "s");
             
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(callData.toString().getBytes(StandardCharsets.UTF_8));
-            }
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300) {
-                String response = readResponse(connection.getInputStream());
-                Log.d(TAG, "✅ Successfully created new call record: " + response);
-            } else {
-                String errorResponse = readResponse(connection.getErrorStream());
-                Log.e(TAG, "❌ Failed to create call record: " + responseCode + " - " + errorResponse);
+            try (Response response = postJson("/api/call-monitoring", callData, metadata.employeeId)) {
+                String responseBody = response.body() != null ? response.body().string() : "";
+                if (response.isSuccessful()) {
+                    Log.d(TAG, "✅ Successfully created new call record: " + responseBody);
+                    return true;
+                } else {
+                    Log.e(TAG, "❌ Failed to create call record: " + response.code() + " - " + responseBody);
+                    return false;
+                }
             }
             
         } catch (Exception e) {
             Log.e(TAG, "❌ Failed to create new call record", e);
+            return false;
         }
     }
     
@@ -299,47 +303,33 @@ public class CallRecordingUploader {
         return ".m4a";
     }
     
-    private String readResponse(InputStream inputStream) throws IOException {
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-        }
-        return response.toString();
+    private Response postJson(String endpoint, JSONObject body, String employeeId) throws IOException {
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + endpoint)
+            .post(RequestBody.create(body.toString(), JSON))
+            .header("X-Employee-ID", employeeId)
+            .build();
+        return apiClient.newCall(request).execute();
     }
     
-    private void writeFormField(DataOutputStream request, String fieldName, String fieldValue) throws IOException {
-        request.writeBytes("--" + BOUNDARY + "\r\n");
-        request.writeBytes("Content-Disposition: form-data; name=\"" + fieldName + "\"\r\n");
-        request.writeBytes("Content-Type: text/plain\r\n\r\n");
-        request.writeBytes(fieldValue + "\r\n");
+    private String createMetadataJson(CallMetadata metadata) throws JSONException {
+        return metadata.toJSON().toString();
     }
     
-    private void writeFileField(DataOutputStream request, String fieldName, File file) throws IOException {
-        request.writeBytes("--" + BOUNDARY + "\r\n");
-        request.writeBytes("Content-Disposition: form-data; name=\"" + fieldName + "\"; filename=\"" + file.getName() + "\"\r\n");
-        request.writeBytes("Content-Type: audio/mpeg\r\n\r\n");
+    /**
+     * The server answered the upload with an error status.
+     */
+    public static class UploadException extends IOException {
+        public final int statusCode;
         
-        try (FileInputStream fileInput = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = fileInput.read(buffer)) != -1) {
-                request.write(buffer, 0, bytesRead);
-            }
+        public UploadException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
         }
         
-        request.writeBytes("\r\n");
-    }
-    
-    private String createMetadataJson(CallMetadata metadata) throws JSONException {
-        return metadata.toJSON().toString();
-    }
-    
-    public void shutdown() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        // Worth sending again later: timeouts, throttling and server errors
+        public boolean isRetryable() {
+            return statusCode == 408 || statusCode == 429 || statusCode >= 500;
         }
     }
     
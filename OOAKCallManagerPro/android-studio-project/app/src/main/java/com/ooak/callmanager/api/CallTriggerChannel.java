@@ -0,0 +1,362 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.provider.Settings;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.AdaptivePollScheduler;
+import com.ooak.callmanager.utils.CallEventLoop;
+import com.ooak.callmanager.utils.EmployeeAuthManager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * One long-lived push channel for call triggers, shared by every service that
+ * cares about them.
+ *
+ * Triggers arrive over Server-Sent Events from /api/call-trigger-stream. The
+ * server sends a heartbeat every 25 s; if nothing (not even a heartbeat) shows
+ * up for 75 s the connection is considered dead and re-opened with backoff.
+ * When the stream keeps failing (or the server does not have it) the channel
+ * falls back to polling /api/poll-call-triggers, paced by an
+ * {@link AdaptivePollScheduler}, and tries the stream again every few minutes.
+ *
+ * Listeners are called on the {@link CallEventLoop}, in arrival order. The channel runs only while it has
+ * at least one listener.
+ */
+public class CallTriggerChannel {
+    private static final String TAG = "CallTriggerChannel";
+    private static final String STREAM_ENDPOINT = "/api/call-trigger-stream";
+    private static final String POLL_ENDPOINT = "/api/poll-call-triggers";
+
+    private static final long HEARTBEAT_TIMEOUT_SEC = 75;               // Server heartbeat is 25 s
+    private static final int MAX_STREAM_FAILURES = 3;
+    private static final long INITIAL_RECONNECT_MS = 1000;              // 1 second
+    private static final long MAX_RECONNECT_MS = 60 * 1000;             // 1 minute
+    private static final long STREAM_RETRY_WHILE_POLLING_MS = 5 * 60 * 1000;   // 5 minutes
+    private static final long STREAM_MISSING_RECHECK_MS = 60 * 60 * 1000;     // 1 hour
+    private static final long MIN_POLL_INTERVAL_MS = 5000;              // 5 seconds
+    private static final long MAX_POLL_INTERVAL_MS = 2 * 60 * 1000;     // 2 minutes
+    private static final long ACTIVE_CALL_POLL_INTERVAL_MS = 3000;      // 3 seconds
+    private static final int RECENT_TRIGGER_IDS = 100;
+
+    public interface Listener {
+        void onCallTrigger(JSONObject trigger);
+    }
+
+    // How a stream connection ended
+    private enum StreamResult {
+        CLOSED,     // accepted, then dropped: a normal reconnect
+        FAILED,     // counts towards falling back to polling
+        MISSING     // the server has no stream; poll until the hourly recheck
+    }
+
+    private static CallTriggerChannel instance;
+
+    private final Context context;
+    private final EmployeeAuthManager authManager;
+    private final OkHttpClient client;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Random jitter = new Random();
+    private final Object wakeLock = new Object();
+
+    // The stream can replay a trigger the poll already delivered (and vice versa)
+    private final Map<String, Boolean> recentTriggerIds =
+        new LinkedHashMap<String, Boolean>(RECENT_TRIGGER_IDS, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_TRIGGER_IDS;
+            }
+        };
+
+    private volatile Thread worker;
+    private volatile boolean running = false;
+    private volatile Call activeCall;
+
+    private int streamFailures = 0;
+    private long pollingUntil = 0;
+    private final AdaptivePollScheduler pollScheduler = new AdaptivePollScheduler(
+        MIN_POLL_INTERVAL_MS, MAX_POLL_INTERVAL_MS, ACTIVE_CALL_POLL_INTERVAL_MS,
+        AdaptivePollScheduler.Clock.SYSTEM, new Random());
+
+    private CallTriggerChannel(Context context) {
+        this.context = context.getApplicationContext();
+        this.authManager = EmployeeAuthManager.getInstance(this.context);
+        this.client = HttpStack.getInstance(this.context).getStreamClient(HEARTBEAT_TIMEOUT_SEC);
+    }
+
+    public static synchronized CallTriggerChannel getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallTriggerChannel(context);
+        }
+        return instance;
+    }
+
+    public synchronized void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        if (!running) {
+            start();
+        }
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && running) {
+            stop();
+        }
+    }
+
+    /**
+     * While a call is up the fallback poll runs at its fastest rate, and it
+     * starts over from there once the call ends.
+     */
+    public void setCallActive(boolean active) {
+        pollScheduler.setCallActive(active);
+    }
+
+    public boolean isStreaming() {
+        return running && System.currentTimeMillis() >= pollingUntil;
+    }
+
+    private void start() {
+        running = true;
+        worker = new Thread(this::run, "CallTriggerChannel");
+        worker.setDaemon(true);
+        worker.start();
+        Log.d(TAG, "📡 Call trigger channel started");
+    }
+
+    private void stop() {
+        running = false;
+        Call call = activeCall;
+        if (call != null) {
+            call.cancel();
+        }
+        synchronized (wakeLock) {
+            wakeLock.notifyAll();
+        }
+        worker = null;
+        Log.d(TAG, "📡 Call trigger channel stopped");
+    }
+
+    // A quick stop/start can leave the old worker finishing its last request
+    private boolean isCurrentWorker() {
+        return running && Thread.currentThread() == worker;
+    }
+
+    private void run() {
+        while (isCurrentWorker()) {
+            String employeeId = authManager.getEmployeeId();
+            boolean authenticated = authManager.isEmployeeAuthenticated()
+                && employeeId != null && !employeeId.isEmpty();
+            pollScheduler.setAuthenticated(authenticated);
+            if (!authenticated) {
+                Log.w(TAG, "⚠️ Employee not authenticated, call trigger channel waiting");
+                sleep(pollScheduler.nextDelayMs());
+                continue;
+            }
+
+            if (System.currentTimeMillis() >= pollingUntil) {
+                StreamResult result = runStream(employeeId);
+                if (result == StreamResult.CLOSED) {
+                    streamFailures = 0;
+                } else if (result == StreamResult.MISSING) {
+                    streamFailures = 0;
+                    continue; // pollingUntil is already an hour out
+                } else if (++streamFailures >= MAX_STREAM_FAILURES) {
+                    Log.w(TAG, "⚠️ Trigger stream failed " + streamFailures + " times, falling back to polling");
+                    pollingUntil = System.currentTimeMillis() + STREAM_RETRY_WHILE_POLLING_MS;
+                    streamFailures = 0;
+                }
+                if (isCurrentWorker()) {
+                    sleep(reconnectDelay());
+                }
+            } else {
+                pollOnce(employeeId);
+                sleep(pollScheduler.nextDelayMs());
+            }
+        }
+    }
+
+    /**
+     * Hold the event stream open until it breaks.
+     */
+    private StreamResult runStream(String employeeId) {
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + STREAM_ENDPOINT + "?employeeId=" + employeeId + "&deviceId=" + getDeviceId())
+            .header("Accept", "text/event-stream")
+            .header("Cache-Control", "no-cache")
+            .build();
+
+        Call call = client.newCall(request);
+        activeCall = call;
+        try (Response response = call.execute()) {
+            if (response.code() == 404 || response.code() == 405) {
+                Log.w(TAG, "⚠️ Server has no trigger stream, polling instead");
+                pollingUntil = System.currentTimeMillis() + STREAM_MISSING_RECHECK_MS;
+                return StreamResult.MISSING;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.w(TAG, "⚠️ Trigger stream HTTP error: " + response.code());
+                return StreamResult.FAILED;
+            }
+
+            Log.d(TAG, "✅ Trigger stream connected");
+            pollScheduler.reset();
+            readEvents(response.body().source());
+            Log.d(TAG, "🔌 Trigger stream closed by server");
+            return StreamResult.CLOSED;
+        } catch (IOException e) {
+            if (running) {
+                Log.w(TAG, "📵 Trigger stream dropped: " + e.getMessage());
+            }
+            return StreamResult.FAILED;
+        } finally {
+            activeCall = null;
+        }
+    }
+
+    // Minimal text/event-stream parser: "event:" and "data:" lines, blank line dispatches
+    private void readEvents(BufferedSource source) throws IOException {
+        String eventName = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (isCurrentWorker() && (line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    handleStreamEvent(eventName, data.toString());
+                }
+                eventName = "message";
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                eventName = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.substring(5).trim());
+            }
+            // "id:", "retry:" and ":" comments need no handling here
+        }
+    }
+
+    private void handleStreamEvent(String eventName, String data) {
+        switch (eventName) {
+            case "call_trigger":
+                try {
+                    dispatch(new JSONObject(data));
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Bad call trigger event: " + data, e);
+                }
+                break;
+            case "heartbeat":
+                break;
+            case "connected":
+                Log.d(TAG, "📡 Trigger stream ready: " + data);
+                break;
+            default:
+                Log.d(TAG, "Ignoring stream event: " + eventName);
+                break;
+        }
+    }
+
+    // Fallback poll; every outcome is reported to the scheduler
+    private void pollOnce(String employeeId) {
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + POLL_ENDPOINT + "?employeeId=" + employeeId + "&deviceId=" + getDeviceId())
+            .get()
+            .build();
+
+        Call call = client.newCall(request);
+        activeCall = call;
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.w(TAG, "⚠️ Trigger poll HTTP error: " + response.code());
+                pollScheduler.onError(AdaptivePollScheduler.parseRetryAfter(
+                    response.header("Retry-After"), AdaptivePollScheduler.Clock.SYSTEM));
+                return;
+            }
+            JSONObject json = new JSONObject(response.body().string());
+            pollScheduler.setServerHint(json.optLong("nextPollMs", 0));
+
+            JSONArray triggers = json.optJSONArray("triggers");
+            if (!json.optBoolean("success") || triggers == null || triggers.length() == 0) {
+                pollScheduler.onEmptyResponse();
+                return;
+            }
+            for (int i = 0; i < triggers.length(); i++) {
+                dispatch(triggers.getJSONObject(i));
+            }
+            pollScheduler.onWorkReceived();
+        } catch (Exception e) {
+            if (running) {
+                Log.w(TAG, "📵 Trigger poll failed: " + e.getMessage());
+            }
+            pollScheduler.onError(0);
+        } finally {
+            activeCall = null;
+        }
+    }
+
+    private void dispatch(JSONObject trigger) {
+        String triggerId = trigger.optString("id");
+        if (!triggerId.isEmpty()) {
+            if (recentTriggerIds.containsKey(triggerId)) {
+                return;
+            }
+            recentTriggerIds.put(triggerId, Boolean.TRUE);
+        }
+
+        Log.i(TAG, "🔔 Call trigger #" + triggerId + ": " + trigger.optString("client_name") +
+            " (" + trigger.optString("phone_number") + ")");
+        CallEventLoop.post(() -> {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onCallTrigger(trigger);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Call trigger listener failed", e);
+                }
+            }
+        });
+    }
+
+    private long reconnectDelay() {
+        if (streamFailures == 0) {
+            return INITIAL_RECONNECT_MS;
+        }
+        long delay = Math.min(MAX_RECONNECT_MS, INITIAL_RECONNECT_MS << Math.min(streamFailures, 16));
+        return delay + (long) (delay * 0.2 * jitter.nextDouble());
+    }
+
+    private String getDeviceId() {
+        return Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+    }
+
+    private void sleep(long millis) {
+        synchronized (wakeLock) {
+            try {
+                wakeLock.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
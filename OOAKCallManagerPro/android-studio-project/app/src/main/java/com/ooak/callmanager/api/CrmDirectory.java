@@ -0,0 +1,346 @@
+package com.ooak.callmanager.api;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.CallManagerDatabase;
+import com.ooak.callmanager.utils.EmployeeAuthManager;
+import com.ooak.callmanager.utils.PhoneNumberIndex;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * On-device copy of the CRM leads and open tasks assigned to the employee,
+ * keyed by phone number, so a ringing call is identified with no network.
+ *
+ * Rows are kept in SQLite and synced from /api/call-directory: the first
+ * sync downloads the whole directory, later ones pass back the server's
+ * cursor and receive only rows changed since (closed leads and finished
+ * tasks arrive with active=false and are dropped). A daily full sync picks
+ * up leads that were reassigned to someone else, which a delta cannot see.
+ * Lookups read a {@link PhoneNumberIndex} rebuilt after each sync.
+ */
+public class CrmDirectory {
+    private static final String TAG = "CrmDirectory";
+    private static final String ENDPOINT = "/api/call-directory";
+
+    private static final String PREFS_NAME = "crm_directory";
+    private static final String PREF_EMPLOYEE_ID = "employee_id";
+    private static final String PREF_CURSOR = "cursor";
+    private static final String PREF_FULL_SYNC_AT = "full_sync_at";
+
+    private static final int PAGE_SIZE = 500;
+    private static final long SYNC_INTERVAL_MS = 15 * 60 * 1000;            // 15 minutes
+    private static final long FULL_SYNC_INTERVAL_MS = 24 * 60 * 60 * 1000;  // 1 day
+    private static final long UNSUPPORTED_RECHECK_MS = 60 * 60 * 1000;      // 1 hour
+
+    /**
+     * A lead, or an open task on a lead, that a phone number belongs to.
+     */
+    public static class Entry {
+        public final String kind; // "lead" or "task"
+        public final String id;
+        public final String leadId;
+        public final String taskId;
+        public final String name;
+        public final String phone;
+
+        Entry(String kind, String id, String leadId, String taskId, String name, String phone) {
+            this.kind = kind;
+            this.id = id;
+            this.leadId = leadId;
+            this.taskId = taskId;
+            this.name = name;
+            this.phone = phone;
+        }
+
+        boolean isTask() {
+            return "task".equals(kind);
+        }
+    }
+
+    private static CrmDirectory instance;
+
+    private final CallManagerDatabase database;
+    private final EmployeeAuthManager authManager;
+    private final SharedPreferences prefs;
+    private final OkHttpClient client;
+    private final ScheduledExecutorService executor;
+
+    // kind:id -> entry; only touched on the executor
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private volatile PhoneNumberIndex<Entry> index = new PhoneNumberIndex<>();
+    private volatile long lastSyncAt = 0;
+    private long unsupportedUntil = 0;
+
+    // Counters for logs / the status screen
+    private long fullSyncs = 0;
+    private long deltaSyncs = 0;
+    private long rowsReceived = 0;
+
+    private CrmDirectory(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.database = CallManagerDatabase.getInstance(appContext);
+        this.authManager = EmployeeAuthManager.getInstance(appContext);
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.client = HttpStack.getInstance(appContext).getApiClient();
+        this.executor = SharedExecutors.newSerialExecutor("CrmDirectory");
+
+        executor.execute(this::loadSnapshot);
+        executor.scheduleWithFixedDelay(this::sync, 0, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized CrmDirectory getInstance(Context context) {
+        if (instance == null) {
+            instance = new CrmDirectory(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Never touches the network or the database. An open task wins over the
+     * bare lead it belongs to.
+     *
+     * @return the CRM record for a number in any format, or null
+     */
+    public Entry find(String phoneNumber) {
+        return index.find(phoneNumber);
+    }
+
+    /**
+     * Fetch changes now instead of waiting for the next periodic sync.
+     */
+    public void requestSync() {
+        executor.execute(this::sync);
+    }
+
+    public synchronized String getInfo() {
+        return "CRM directory: " + index.size() + " numbers, " + fullSyncs + " full / " +
+               deltaSyncs + " delta syncs, " + rowsReceived + " rows" +
+               (lastSyncAt > 0 ? ", synced " + (System.currentTimeMillis() - lastSyncAt) / 1000 + "s ago" : "");
+    }
+
+    // ---- Executor thread only ----
+
+    private void loadSnapshot() {
+        long start = System.currentTimeMillis();
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_CRM_DIRECTORY,
+                new String[]{CallManagerDatabase.CRM_KIND, CallManagerDatabase.CRM_RECORD_ID,
+                    CallManagerDatabase.CRM_LEAD_ID, CallManagerDatabase.CRM_TASK_ID,
+                    CallManagerDatabase.CRM_NAME, CallManagerDatabase.CRM_PHONE},
+                null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                Entry entry = new Entry(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                    cursor.getString(3), cursor.getString(4), cursor.getString(5));
+                entries.put(entry.kind + ":" + entry.id, entry);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading CRM directory: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        rebuildIndex();
+        Log.d(TAG, "📇 Loaded " + entries.size() + " CRM records in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void sync() {
+        String employeeId = authManager.getEmployeeId();
+        long now = System.currentTimeMillis();
+        if (employeeId == null || employeeId.isEmpty() || now < unsupportedUntil) {
+            return;
+        }
+
+        // A different employee or a stale copy starts over from an empty cursor
+        String cursor = prefs.getString(PREF_CURSOR, null);
+        if (!employeeId.equals(prefs.getString(PREF_EMPLOYEE_ID, null)) ||
+                now - prefs.getLong(PREF_FULL_SYNC_AT, 0) > FULL_SYNC_INTERVAL_MS) {
+            cursor = null;
+        }
+        boolean full = cursor == null;
+
+        int received = 0;
+        try {
+            boolean hasMore = true;
+            while (hasMore) {
+                JSONObject page = fetchPage(employeeId, cursor);
+                if (page == null) {
+                    return;
+                }
+                received += apply(page, employeeId);
+                cursor = page.optString("cursor", null);
+                hasMore = page.optBoolean("hasMore", false) && cursor != null;
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "⚠️ CRM directory sync failed, keeping what we have: " + e.getMessage());
+            return;
+        } finally {
+            if (received > 0) {
+                rebuildIndex();
+            }
+        }
+
+        synchronized (this) {
+            if (full) {
+                fullSyncs++;
+            } else {
+                deltaSyncs++;
+            }
+            rowsReceived += received;
+            lastSyncAt = System.currentTimeMillis();
+        }
+        Log.d(TAG, "✅ CRM directory " + (full ? "full" : "delta") + " sync: " + received +
+            " row(s), " + entries.size() + " records");
+    }
+
+    /**
+     * @return null if the server does not have the directory endpoint yet
+     */
+    private JSONObject fetchPage(String employeeId, String cursor) throws IOException, JSONException {
+        HttpUrl.Builder url = HttpUrl.get(ServerConfig.PUBLIC_URL + ENDPOINT).newBuilder()
+            .addQueryParameter("employeeId", employeeId)
+            .addQueryParameter("limit", String.valueOf(PAGE_SIZE));
+        if (cursor != null) {
+            url.addQueryParameter("cursor", cursor);
+        }
+        Request request = new Request.Builder()
+            .url(url.build())
+            .get()
+            .addHeader("X-Employee-ID", employeeId)
+            .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 404) {
+                unsupportedUntil = System.currentTimeMillis() + UNSUPPORTED_RECHECK_MS;
+                Log.d(TAG, "📇 Server has no caller directory yet - checking again in an hour");
+                return null;
+            }
+            if (response.code() == 400 && cursor != null) {
+                // Cursor the server no longer understands: start over
+                prefs.edit().remove(PREF_CURSOR).apply();
+                throw new IOException("Cursor rejected");
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("HTTP " + response.code());
+            }
+            return new JSONObject(response.body().string());
+        }
+    }
+
+    /**
+     * Store one page and its cursor in a single transaction, so a crash
+     * mid-sync resumes from the last page that was applied.
+     *
+     * @return the number of rows in the page
+     */
+    private int apply(JSONObject page, String employeeId) throws JSONException {
+        JSONArray rows = page.optJSONArray("entries");
+        int count = rows != null ? rows.length() : 0;
+        List<Entry> upserts = new ArrayList<>(count);
+        List<String> removals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            JSONObject row = rows.getJSONObject(i);
+            String kind = row.getString("kind");
+            String id = row.getString("id");
+            String phone = row.isNull("phone") ? "" : row.optString("phone");
+            if (row.optBoolean("active", true) && !phone.trim().isEmpty()) {
+                upserts.add(new Entry(kind, id, optString(row, "leadId"), optString(row, "taskId"),
+                    optString(row, "name"), phone));
+            } else {
+                removals.add(kind + ":" + id);
+            }
+        }
+        boolean reset = page.optBoolean("reset", false);
+
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (reset) {
+                db.delete(CallManagerDatabase.TABLE_CRM_DIRECTORY, null, null);
+            }
+            for (String key : removals) {
+                int split = key.indexOf(':');
+                db.delete(CallManagerDatabase.TABLE_CRM_DIRECTORY,
+                    CallManagerDatabase.CRM_KIND + " = ? AND " + CallManagerDatabase.CRM_RECORD_ID + " = ?",
+                    new String[]{key.substring(0, split), key.substring(split + 1)});
+            }
+            ContentValues values = new ContentValues();
+            for (Entry entry : upserts) {
+                values.put(CallManagerDatabase.CRM_KIND, entry.kind);
+                values.put(CallManagerDatabase.CRM_RECORD_ID, entry.id);
+                values.put(CallManagerDatabase.CRM_LEAD_ID, entry.leadId);
+                values.put(CallManagerDatabase.CRM_TASK_ID, entry.taskId);
+                values.put(CallManagerDatabase.CRM_NAME, entry.name);
+                values.put(CallManagerDatabase.CRM_PHONE, entry.phone);
+                db.insertWithOnConflict(CallManagerDatabase.TABLE_CRM_DIRECTORY, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        SharedPreferences.Editor editor = prefs.edit()
+            .putString(PREF_EMPLOYEE_ID, employeeId)
+            .putString(PREF_CURSOR, page.optString("cursor", null));
+        if (reset) {
+            editor.putLong(PREF_FULL_SYNC_AT, System.currentTimeMillis());
+        }
+        editor.apply();
+
+        if (reset) {
+            entries.clear();
+        }
+        for (String key : removals) {
+            entries.remove(key);
+        }
+        for (Entry entry : upserts) {
+            entries.put(entry.kind + ":" + entry.id, entry);
+        }
+        return count;
+    }
+
+    private void rebuildIndex() {
+        PhoneNumberIndex<Entry> rebuilt = new PhoneNumberIndex<>(entries.size());
+        // Later puts win: leads first so an open task on the same number overrides its lead
+        for (Entry entry : entries.values()) {
+            if (!entry.isTask()) {
+                rebuilt.put(entry.phone, entry);
+            }
+        }
+        for (Entry entry : entries.values()) {
+            if (entry.isTask()) {
+                rebuilt.put(entry.phone, entry);
+            }
+        }
+        index = rebuilt;
+    }
+
+    private static String optString(JSONObject row, String key) {
+        return row.isNull(key) ? null : row.optString(key, null);
+    }
+}
@@ -0,0 +1,282 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one HTTP client of the app.
+ *
+ * Every request goes through one connection pool, so the CRM portal costs one
+ * TLS handshake that all callers then share - multiplexed over HTTP/2 where the
+ * server offers it - instead of a handshake per component. The per-purpose
+ * clients below differ only in their timeouts; they are derived from the same
+ * base client and share its pool, dispatcher and DNS cache. Async calls run on
+ * the app's {@link SharedExecutors#pool() shared pool}. Requests to the
+ * CRM go to the server {@link ServerConfig} names (the public one unless pinned).
+ *
+ * Responses are gzip-compressed on the wire (OkHttp asks for gzip and inflates
+ * transparently); request bodies are compressed with {@link #gzip} on the
+ * endpoints that accept Content-Encoding: gzip.
+ */
+public class HttpStack {
+    private static final String TAG = "HttpStack";
+    private static final String WARM_UP_ENDPOINT = "/api/health";
+
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MIN = 5;                 // outlives the gap between calls
+    private static final long DNS_TTL_MS = 5 * 60 * 1000;         // 5 minutes
+    private static final long DNS_STALE_MS = 60 * 60 * 1000;      // served while lookups fail
+    private static final long WARM_UP_INTERVAL_MS = 10 * 1000;    // one per call, not per status update
+
+    private static HttpStack instance;
+
+    private final OkHttpClient apiClient;
+    private final OkHttpClient interactiveClient;
+    private final OkHttpClient uploadClient;
+    private final OkHttpClient probeClient;
+    private final CachingDns dns = new CachingDns();
+    private volatile long lastWarmUpAt = 0;
+
+    // Counters for logs / the status screen
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong http2Calls = new AtomicLong();
+    private final AtomicLong warmUps = new AtomicLong();
+
+    private HttpStack(Context context) {
+        OkHttpClient base = newBaseBuilder(dns)
+            .addInterceptor(ServerConfig.getInstance(context).getRoutingInterceptor())
+            .eventListenerFactory(call -> new Counters())
+            .build();
+
+        // Background JSON calls: outbox, directory sync, status updates
+        this.apiClient = base.newBuilder()
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .build();
+        // Someone is looking at a spinner: login, upload check
+        this.interactiveClient = base.newBuilder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .build();
+        // Recordings: large bodies over mobile data
+        this.uploadClient = base.newBuilder()
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .writeTimeout(60, TimeUnit.SECONDS)
+            .build();
+        // Reachability checks: fail fast, never retry
+        this.probeClient = base.newBuilder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(false)
+            .build();
+    }
+
+    /**
+     * The pool, dispatcher, protocols and DNS every client shares.
+     */
+    static OkHttpClient.Builder newBaseBuilder(Dns dns) {
+        return new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MIN, TimeUnit.MINUTES))
+            .dispatcher(new Dispatcher(SharedExecutors.pool()))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .dns(dns);
+    }
+
+    public static synchronized HttpStack getInstance(Context context) {
+        if (instance == null) {
+            instance = new HttpStack(context);
+        }
+        return instance;
+    }
+
+    public OkHttpClient getApiClient() {
+        return apiClient;
+    }
+
+    public OkHttpClient getInteractiveClient() {
+        return interactiveClient;
+    }
+
+    public OkHttpClient getUploadClient() {
+        return uploadClient;
+    }
+
+    public OkHttpClient getProbeClient() {
+        return probeClient;
+    }
+
+    /**
+     * A client for a long-lived response such as an event stream, which is
+     * considered dead after {@code readTimeoutSec} without data.
+     */
+    public OkHttpClient getStreamClient(long readTimeoutSec) {
+        return apiClient.newBuilder()
+            .readTimeout(readTimeoutSec, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Open (or keep open) the connection to the CRM portal, so the status
+     * updates of a call that is starting do not wait for DNS, TCP and TLS.
+     * Cheap to call often: does nothing if a warm-up went out in the last
+     * few seconds.
+     */
+    public void warmUp() {
+        long now = System.currentTimeMillis();
+        if (now - lastWarmUpAt < WARM_UP_INTERVAL_MS) {
+            return;
+        }
+        lastWarmUpAt = now;
+        warmUps.incrementAndGet();
+
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + WARM_UP_ENDPOINT)
+            .head()
+            .build();
+        probeClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.d(TAG, "📵 Warm-up failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    public String getStats() {
+        return "HTTP: " + calls.get() + " calls over " + connects.get() + " connections (" +
+               handshakes.get() + " TLS), " + http2Calls.get() + " on HTTP/2, " + warmUps.get() +
+               " warm-ups, DNS " + dns.hits.get() + " cached / " + dns.lookups.get() + " looked up";
+    }
+
+    /**
+     * Gzip a request body. Send it with a Content-Encoding: gzip header, and
+     * only to endpoints that inflate it.
+     */
+    public static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes("UTF-8"));
+        }
+        return bytes.toByteArray();
+    }
+
+    private class Counters extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connects.incrementAndGet();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            handshakes.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (connection.protocol() == Protocol.HTTP_2) {
+                http2Calls.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remembers lookups for a few minutes, and keeps answering with the last
+     * known addresses while the resolver fails (e.g. right after a network
+     * switch).
+     */
+    static class CachingDns implements Dns {
+        private final Dns resolver;
+        private final Map<String, Lookup> cache = new ConcurrentHashMap<>();
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong lookups = new AtomicLong();
+
+        CachingDns() {
+            this(Dns.SYSTEM);
+        }
+
+        CachingDns(Dns resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            long now = now();
+            Lookup cached = cache.get(hostname);
+            if (cached != null && now - cached.at < DNS_TTL_MS) {
+                hits.incrementAndGet();
+                return cached.addresses;
+            }
+            try {
+                lookups.incrementAndGet();
+                List<InetAddress> addresses = resolver.lookup(hostname);
+                cache.put(hostname, new Lookup(addresses, now));
+                return addresses;
+            } catch (UnknownHostException e) {
+                if (cached != null && now - cached.at < DNS_STALE_MS) {
+                    Log.w(TAG, "⚠️ DNS lookup for " + hostname + " failed, using cached addresses");
+                    hits.incrementAndGet();
+                    return cached.addresses;
+                }
+                throw e;
+            }
+        }
+
+        // Overridden by tests
+        long now() {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private static class Lookup {
+        final List<InetAddress> addresses;
+        final long at;
+
+        Lookup(List<InetAddress> addresses, long at) {
+            this.addresses = addresses;
+            this.at = at;
+        }
+    }
+}
@@ -13,7 +13,6 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -27,20 +26,18 @@ import okhttp3.Response;
 public class OOAKCRMApiClient {
     
     private static final String TAG = "OOAKCRMApiClient";
-    private static final String BASE_URL = "https://portal.ooak.photography"; // OOAK-FUTURE CRM - CORRECTED IP
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     
     private OkHttpClient client;
     private EmployeeAuthManager authManager;
-    private ServerConfig serverConfig;
+    private CallEventOutbox outbox;
+    private CrmDirectory directory;
     
     public OOAKCRMApiClient(Context context) {
-        this.authManager = new EmployeeAuthManager(context);
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .build();
+        this.authManager = EmployeeAuthManager.getInstance(context);
+        this.outbox = CallEventOutbox.getInstance(context);
+        this.directory = CrmDirectory.getInstance(context);
+        this.client = HttpStack.getInstance(context).getUploadClient();
     }
     
     // Upload recording to existing OOAK-FUTURE call-upload endpoint
@@ -66,7 +63,7 @@ public class OOAKCRMApiClient {
             RequestBody requestBody = builder.build();
             
             Request request = new Request.Builder()
-                .url(BASE_URL + "/api/call-upload")
+                .url(ServerConfig.PUBLIC_URL + "/api/call-upload")
                 .post(requestBody)
                 .addHeader("X-Employee-ID", authManager.getEmployeeId())
                 .build();
@@ -113,7 +110,7 @@ public class OOAKCRMApiClient {
     // Check upload history from existing endpoint
     public void getUploadHistory(UploadHistoryCallback callback) {
         Request request = new Request.Builder()
-            .url(BASE_URL + "/api/call-uploads")
+            .url(ServerConfig.PUBLIC_URL + "/api/call-uploads")
             .get()
             .addHeader("X-Employee-ID", authManager.getEmployeeId())
             .build();
@@ -146,79 +143,17 @@ public class OOAKCRMApiClient {
     // Enhanced call status update for existing system
     public void updateCallStatus(CallRecord callRecord) {
         try {
-            JSONObject callData = new JSONObject();
-            callData.put("phoneNumber", callRecord.getPhoneNumber());
-            callData.put("contactName", callRecord.getContactName());
-            callData.put("direction", callRecord.getDirection());
-            callData.put("status", callRecord.getStatus());
-            callData.put("employeeId", callRecord.getEmployeeId());
-            callData.put("taskId", callRecord.getTaskId());
-            callData.put("leadId", callRecord.getLeadId());
-            
-            if (callRecord.getStartTime() != null) {
-                callData.put("startTime", callRecord.getStartTime().toInstant().toString());
-            }
-            if (callRecord.getEndTime() != null) {
-                callData.put("endTime", callRecord.getEndTime().toInstant().toString());
-            }
-            if (callRecord.getDuration() > 0) {
-                callData.put("duration", callRecord.getDuration());
-            }
+            JSONObject callData = toPayload(callRecord);
 
-            // Add mobile contact name if available
-            if (callRecord.getMobileContactName() != null) {
-                callData.put("mobileContactName", callRecord.getMobileContactName());
-            }
-
-            RequestBody body = RequestBody.create(callData.toString(), JSON);
-            Request request = new Request.Builder()
-                .url(BASE_URL + "/api/call-monitoring")
-                .post(body)
-                .addHeader("X-Employee-ID", authManager.getEmployeeId())
-                .addHeader("Content-Type", "application/json")
-                .build();
-
-            Log.d(TAG, "🚀 Sending call status update:");
+            Log.d(TAG, "🚀 Queueing call status update:");
             Log.d(TAG, "   📞 Phone: " + callRecord.getPhoneNumber());
             Log.d(TAG, "   📝 Status: " + callRecord.getStatus());
             Log.d(TAG, "   👤 Employee: " + callRecord.getEmployeeId());
             Log.d(TAG, "   🏢 Contact: " + callRecord.getContactName());
-            Log.d(TAG, "   🌐 URL: " + BASE_URL + "/api/call-monitoring");
             Log.d(TAG, "   📊 JSON: " + callData.toString());
 
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    Log.e(TAG, "❌ FAILED to send call status update!", e);
-                    Log.e(TAG, "   📞 Phone: " + callRecord.getPhoneNumber());
-                    Log.e(TAG, "   📝 Status: " + callRecord.getStatus());
-                    Log.e(TAG, "   🔗 Error: " + e.getMessage());
-                }
-
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    try {
-                        String responseBody = response.body() != null ? response.body().string() : "No body";
-                        
-                        if (response.isSuccessful()) {
-                            Log.d(TAG, "✅ Call status updated successfully!");
-                            Log.d(TAG, "   📞 Phone: " + callRecord.getPhoneNumber());
-                            Log.d(TAG, "   📝 Status: " + callRecord.getStatus());
-                            Log.d(TAG, "   🎯 Response: " + responseBody);
-                        } else {
-                            Log.e(TAG, "❌ Call status update failed:");
-                            Log.e(TAG, "   📞 Phone: " + callRecord.getPhoneNumber());
-                            Log.e(TAG, "   📝 Status: " + callRecord.getStatus());
-                            Log.e(TAG, "   🚫 HTTP Code: " + response.code());
-                            Log.e(TAG, "   📄 Response: " + responseBody);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Error processing call status response", e);
-                    } finally {
-                        response.close();
-                    }
-                }
-            });
+            // Persisted first, delivered by the outbox sender with retries
+            outbox.enqueue(callRecord.getCallId(), authManager.getEmployeeId(), callData);
 
         } catch (JSONException e) {
             Log.e(TAG, "❌ Error creating call status JSON for " + callRecord.getPhoneNumber(), e);
@@ -227,17 +162,55 @@ public class OOAKCRMApiClient {
         }
     }
     
+    /**
+     * The JSON body /api/call-monitoring expects for a call record; the live
+     * updates and the call log backfill both send this shape.
+     */
+    static JSONObject toPayload(CallRecord callRecord) throws JSONException {
+        JSONObject callData = new JSONObject();
+        callData.put("callId", callRecord.getCallId());
+        callData.put("phoneNumber", callRecord.getPhoneNumber());
+        callData.put("contactName", callRecord.getContactName());
+        callData.put("direction", callRecord.getDirection());
+        callData.put("status", callRecord.getStatus());
+        callData.put("employeeId", callRecord.getEmployeeId());
+        callData.put("taskId", callRecord.getTaskId());
+        callData.put("leadId", callRecord.getLeadId());
+
+        if (callRecord.getStartTime() != null) {
+            callData.put("startTime", callRecord.getStartTime().toInstant().toString());
+        }
+        if (callRecord.getEndTime() != null) {
+            callData.put("endTime", callRecord.getEndTime().toInstant().toString());
+        }
+        if (callRecord.getDuration() > 0) {
+            callData.put("duration", callRecord.getDuration());
+        }
+
+        // Add mobile contact name if available
+        if (callRecord.getMobileContactName() != null) {
+            callData.put("mobileContactName", callRecord.getMobileContactName());
+        }
+        return callData;
+    }
+
     // Contact lookup in your existing system
     public interface ContactLookupCallback {
         void onContactFound(String leadId, String taskId, String contactName);
         void onContactNotFound();
     }
     
+    // Answered from the on-device CrmDirectory, so the callback runs before this returns
     public void lookupContact(String phoneNumber, ContactLookupCallback callback) {
-        // This would integrate with your existing leads/tasks system
-        // For now, return not found to avoid breaking existing functionality
-        Log.d(TAG, "Contact lookup for: " + phoneNumber);
-        callback.onContactNotFound();
+        CrmDirectory.Entry entry = directory.find(phoneNumber);
+        if (entry == null) {
+            Log.d(TAG, "Contact lookup for: " + phoneNumber + " - not in CRM directory");
+            callback.onContactNotFound();
+            return;
+        }
+        Log.d(TAG, "Contact lookup for: " + phoneNumber + " -> " + entry.name +
+            " (lead " + entry.leadId + ", task " + entry.taskId + ")");
+        callback.onContactFound(entry.leadId, entry.taskId, entry.name);
     }
     
     // Callback interfaces
@@ -0,0 +1,740 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.ooak.callmanager.utils.AudioDurationParser;
+import com.ooak.callmanager.utils.ContactDirectory;
+import com.ooak.callmanager.utils.EmployeeAuthManager;
+import com.ooak.callmanager.utils.RecordingCatalog;
+import com.ooak.callmanager.utils.RecordingLedger;
+import com.ooak.callmanager.utils.RecordingMatcher;
+import com.ooak.callmanager.utils.RecordingTranscoder;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One path for every call recording: detect → dedupe → match to call → upload → link.
+ *
+ * RecordingMonitorService and CallRecordingDetectionService used to find and
+ * upload the same files on their own, so most recordings went up twice. The
+ * call engine's recording module now feeds this pipeline - the catalog reports
+ * recording files, the call log reports finished calls - and each recording
+ * moves through the stages once with the state shared in one place.
+ *
+ * A recording that no call claims within a couple of minutes is uploaded as
+ * unmatched, the way RecordingMonitorService used to upload everything.
+ *
+ * Uploads are queued as stored sessions with {@link UploadScheduler} and run
+ * by {@link RecordingUploadWorker} through {@link #runUpload}, which first
+ * swaps large recordings for a {@link RecordingTranscoder} copy.
+ */
+public class RecordingPipeline implements RecordingCatalog.Listener {
+    private static final String TAG = "RecordingPipeline";
+
+    private static final long SETTLE_DELAY_MS = 3000;             // recorder still writing
+    private static final long MIN_RECORDING_SIZE = 1024;
+    private static final long MIN_RECORDING_DURATION_MS = 1000;
+    private static final long MATCH_WINDOW_MS = 5 * 60 * 1000;    // recording mtime vs call
+    private static final long UNMATCHED_GRACE_MS = 2 * 60 * 1000; // wait for the call log
+    private static final long CALL_MATCH_TIMEOUT_MS = 10 * 60 * 1000;
+    private static final long MATCH_CHECK_INTERVAL_MS = 30 * 1000;
+    private static final long STARTUP_LOOKBACK_MS = 15 * 60 * 1000;      // first run: no watermark yet
+    private static final long MAX_CATCH_UP_MS = 7L * 24 * 60 * 60 * 1000; // after a long outage
+    private static final long WATERMARK_SLACK_MS = 10 * 60 * 1000;        // files the catalog may not have seen yet
+    private static final long FORGET_AFTER_MS = 24 * 60 * 60 * 1000;
+
+    private static final int FINGERPRINT_SAMPLE_BYTES = 64 * 1024;
+
+    enum Stage { DETECTED, QUEUED, UPLOADING, LINKED, FAILED }
+
+    /**
+     * Upload outcomes, delivered on the main thread.
+     */
+    public interface Listener {
+        void onRecordingUploaded(String fileName, String contactName, boolean matched);
+        void onRecordingFailed(String fileName, String error);
+    }
+
+    private static class Recording extends RecordingMatcher.Candidate {
+        final String path;
+        final long size;
+        final String fingerprint;
+        final long detectedAt;
+        Stage stage = Stage.DETECTED;
+        PendingCall call;
+        boolean scheduled = false;
+
+        Recording(RecordingCatalog.RecordingEntry entry, String fingerprint, long durationMs) {
+            super(entry.name, entry.lastModified, entry.phoneDigits, entry.nameTime, durationMs);
+            this.path = entry.path;
+            this.size = entry.size;
+            this.fingerprint = fingerprint;
+            this.detectedAt = System.currentTimeMillis();
+        }
+
+        // A recording whose upload was finished from a stored session
+        Recording(ResumableUploader.UploadSession session) {
+            super(new File(session.sourcePath).getName(), new File(session.sourcePath).lastModified(), null, 0,
+                RecordingMatcher.UNKNOWN_DURATION);
+            this.path = session.sourcePath;
+            this.size = new File(session.sourcePath).length();
+            this.fingerprint = null;
+            this.detectedAt = System.currentTimeMillis();
+            this.stage = Stage.LINKED;
+        }
+    }
+
+    private static class PendingCall extends RecordingMatcher.Call {
+        final String direction;
+        final long reportedAt;
+        Recording recording;
+
+        PendingCall(String phoneNumber, String contactName, String direction, long callStart, long callEnd) {
+            super(phoneNumber, contactName, callStart, callEnd);
+            this.direction = direction;
+            this.reportedAt = System.currentTimeMillis();
+        }
+    }
+
+    private static RecordingPipeline instance;
+
+    private final Context context;
+    private final RecordingCatalog catalog;
+    private final RecordingLedger ledger;
+    private final CallRecordingUploader uploader;
+    private final ResumableUploader resumableUploader;
+    private final UploadScheduler scheduler;
+    private final RecordingTranscoder transcoder;
+    private final ContactDirectory contacts;
+    private final EmployeeAuthManager authManager;
+    private final ScheduledExecutorService executor;
+    private final Handler mainHandler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Shared pipeline state, guarded by this
+    private final Map<String, Recording> recordings = new LinkedHashMap<>();   // path -> recording
+    private final Map<String, Recording> fingerprints = new HashMap<>();       // content -> recording
+    private final Map<String, PendingCall> calls = new LinkedHashMap<>();      // phone_start -> call
+    private final Set<String> resumingPaths = new HashSet<>(); // stored sessions not yet finished
+    private ScheduledFuture<?> matchCheck;
+
+    private final Map<String, ScheduledFuture<?>> settling = new HashMap<>();
+    private final long sinceMs;
+    private volatile boolean startupScan = false; // holds the watermark until every file was offered
+    private int users = 0;
+
+    private RecordingPipeline(Context context) {
+        this.context = context.getApplicationContext();
+        this.catalog = RecordingCatalog.getInstance(this.context);
+        this.ledger = RecordingLedger.getInstance(this.context);
+        this.uploader = new CallRecordingUploader(this.context);
+        this.resumableUploader = ResumableUploader.getInstance(this.context);
+        this.scheduler = UploadScheduler.getInstance(this.context);
+        this.transcoder = RecordingTranscoder.getInstance(this.context);
+        this.contacts = ContactDirectory.getInstance(this.context);
+        this.authManager = EmployeeAuthManager.getInstance(this.context);
+        this.executor = SharedExecutors.newSerialExecutor("RecordingPipeline");
+        this.mainHandler = new Handler(Looper.getMainLooper());
+
+        // Pick up where the last run stopped: everything older was already offered
+        long now = System.currentTimeMillis();
+        long watermark = ledger.getWatermark();
+        this.sinceMs = watermark > 0 ? Math.max(watermark, now - MAX_CATCH_UP_MS) : now - STARTUP_LOOKBACK_MS;
+    }
+
+    public static synchronized RecordingPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingPipeline(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start feeding the pipeline from the recording catalog. Every start() needs
+     * a matching stop(); all callers share one running pipeline.
+     */
+    public synchronized void start() {
+        users++;
+        if (users > 1) {
+            return;
+        }
+        catalog.addListener(this);
+        catalog.start();
+        resumeInterruptedUploads();
+
+        // Recordings made since the last run's watermark; the ledger filters out
+        // the ones that run already uploaded
+        startupScan = true;
+        executor.execute(() -> {
+            catalog.refresh();
+            long settledBefore = System.currentTimeMillis() - SETTLE_DELAY_MS;
+            int offered = 0;
+            for (RecordingCatalog.RecordingEntry entry : catalog.findInWindow(sinceMs, Long.MAX_VALUE)) {
+                if (entry.lastModified < settledBefore && entry.size > MIN_RECORDING_SIZE) {
+                    detect(entry); // Finished long ago, no need to wait for it to settle
+                } else {
+                    onRecordingChanged(entry);
+                }
+                offered++;
+            }
+            ledger.prune();
+            startupScan = false;
+            advanceWatermark();
+            Log.d(TAG, "🔎 Startup scan offered " + offered + " recording(s) modified since " + new Date(sinceMs));
+        });
+        Log.d(TAG, "🚀 Recording pipeline started");
+    }
+
+    public synchronized void stop() {
+        users = Math.max(0, users - 1);
+        if (users > 0) {
+            return;
+        }
+        catalog.removeListener(this);
+        catalog.stop();
+        Log.d(TAG, "🛑 Recording pipeline stopped");
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Make sure uploads cut off by process death or a reboot are queued again.
+     * They carry their own call metadata, so they do not need to be matched again.
+     * A transcoded upload is queued, ledgered and deduplicated under the
+     * recording it was made from, never under its cache copy.
+     */
+    public void resumeInterruptedUploads() {
+        executor.execute(() -> {
+            for (ResumableUploader.UploadSession session : resumableUploader.getInterruptedUploads()) {
+                String path = session.sourcePath;
+                synchronized (this) {
+                    // Recordings already back in the pipeline are scheduled from there
+                    if (recordings.containsKey(path) || !resumingPaths.add(path)) {
+                        continue;
+                    }
+                }
+                File source = new File(path);
+                if (source.isFile()) {
+                    scheduler.scheduleRecording(path, source.length(), source.lastModified());
+                } else {
+                    scheduler.scheduleRecording(path, session.size, session.lastModified);
+                }
+            }
+        });
+    }
+
+    // ---- Stage 1: detect ----
+
+    @Override
+    public void onRecordingChanged(RecordingCatalog.RecordingEntry entry) {
+        if (entry.lastModified < sinceMs || entry.size <= MIN_RECORDING_SIZE) {
+            return;
+        }
+        // Every write restarts the timer; the file is picked up once it settles
+        synchronized (settling) {
+            ScheduledFuture<?> pending = settling.remove(entry.path);
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            settling.put(entry.path, executor.schedule(() -> detect(entry),
+                SETTLE_DELAY_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void detect(RecordingCatalog.RecordingEntry entry) {
+        synchronized (settling) {
+            settling.remove(entry.path);
+        }
+
+        File file = entry.getFile();
+        if (!file.isFile()) {
+            return;
+        }
+        if (file.length() != entry.size || file.lastModified() != entry.lastModified) {
+            // Still growing - the catalog re-checks it and reports the newer version
+            catalog.refresh();
+            return;
+        }
+
+        // ---- Stage 2: dedupe (path, then content) ----
+        synchronized (this) {
+            if (recordings.containsKey(entry.path) || resumingPaths.contains(entry.path)) {
+                return;
+            }
+        }
+        if (ledger.contains(entry.path, entry.size, entry.lastModified)) {
+            return; // Uploaded by an earlier run
+        }
+        String earlier = ledger.findSameContent(file);
+        if (earlier != null) {
+            Log.d(TAG, "📎 " + entry.name + " has the same content as " + earlier + " - skipping");
+            ledger.record(entry.path, entry.size, entry.lastModified, RecordingLedger.STATE_DUPLICATE, null);
+            return;
+        }
+
+        String fingerprint = fingerprint(file);
+        // Read once here: the matcher compares it with the call's talk time, the upload reports it
+        long durationUs = AudioDurationParser.getDurationUs(file);
+        long durationMs = durationUs > 0 ? durationUs / 1000 : RecordingMatcher.UNKNOWN_DURATION;
+
+        synchronized (this) {
+            if (recordings.containsKey(entry.path) || resumingPaths.contains(entry.path)) {
+                return;
+            }
+            if (fingerprint != null && fingerprints.containsKey(fingerprint)) {
+                Log.d(TAG, "📎 " + entry.name + " is a copy of " + fingerprints.get(fingerprint).name + " - skipping");
+                return;
+            }
+            Recording recording = new Recording(entry, fingerprint, durationMs);
+            recordings.put(entry.path, recording);
+            if (fingerprint != null) {
+                fingerprints.put(fingerprint, recording);
+            }
+            Log.d(TAG, "🎙️ Detected recording: " + entry.name + " (" + entry.size + " bytes)");
+        }
+        matchPending();
+    }
+
+    /**
+     * Identity of a recording's content: size plus SHA-256 of its first and last
+     * 64 KB. Catches the same file copied or moved to a second folder without
+     * reading a multi-megabyte recording an extra time.
+     */
+    private static String fingerprint(File file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long length = input.length();
+            byte[] buffer = new byte[FINGERPRINT_SAMPLE_BYTES];
+
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (read > 0) digest.update(buffer, 0, read);
+            if (length > buffer.length) {
+                input.seek(Math.max(buffer.length, length - buffer.length));
+                read = input.read(buffer);
+                if (read > 0) digest.update(buffer, 0, read);
+            }
+
+            StringBuilder hex = new StringBuilder(Long.toString(length)).append(':');
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Could not fingerprint " + file.getName(), e);
+            return null;
+        }
+    }
+
+    // ---- Stage 3: match to call ----
+
+    /**
+     * A call finished (from the call log). Its recording is claimed as soon as
+     * it is detected, or right away if it already was.
+     */
+    public void onCallEnded(String phoneNumber, String contactName, String direction, long callStart, long callEnd) {
+        if (phoneNumber == null) {
+            return;
+        }
+        String key = phoneNumber + "_" + callStart;
+        synchronized (this) {
+            if (calls.containsKey(key)) {
+                return;
+            }
+            calls.put(key, new PendingCall(phoneNumber, contactName, direction, callStart, callEnd));
+        }
+        Log.d(TAG, "📞 Call ended: " + phoneNumber + " (" + direction + ") - looking for its recording");
+        executor.execute(this::matchPending);
+    }
+
+    private void matchPending() {
+        // Pick up files the directory observers may have missed
+        catalog.refresh();
+
+        long now = System.currentTimeMillis();
+        boolean waiting = false;
+        List<Recording> toSchedule = new ArrayList<>();
+        synchronized (this) {
+            List<PendingCall> unmatched = new ArrayList<>();
+            for (PendingCall call : calls.values()) {
+                if (call.recording == null) {
+                    unmatched.add(call);
+                }
+            }
+
+            // All waiting calls at once, so each recording goes to the call it fits best
+            for (RecordingMatcher.Match<PendingCall, Recording> match :
+                    RecordingMatcher.assign(unmatched, candidatesFor(unmatched))) {
+                Log.d(TAG, "🎯 Matched " + match.recording.name + " to call with " + match.call.phoneNumber +
+                      " (score " + match.score + ")");
+                match.recording.call = match.call;
+                match.call.recording = match.recording;
+                enqueue(match.recording);
+            }
+
+            Iterator<PendingCall> callIterator = calls.values().iterator();
+            while (callIterator.hasNext()) {
+                PendingCall call = callIterator.next();
+                if (now - call.reportedAt > CALL_MATCH_TIMEOUT_MS) {
+                    if (call.recording == null) {
+                        Log.d(TAG, "🔍 No recording found for call to: " + call.phoneNumber);
+                    }
+                    callIterator.remove();
+                } else if (call.recording == null) {
+                    waiting = true;
+                }
+            }
+
+            Iterator<Recording> recordingIterator = recordings.values().iterator();
+            while (recordingIterator.hasNext()) {
+                Recording recording = recordingIterator.next();
+                if (recording.stage == Stage.DETECTED) {
+                    if (now - recording.detectedAt > UNMATCHED_GRACE_MS) {
+                        Log.d(TAG, "❓ No call claimed " + recording.name + " - uploading unmatched");
+                        enqueue(recording);
+                        toSchedule.add(recording);
+                    } else {
+                        waiting = true;
+                    }
+                } else if (recording.stage == Stage.QUEUED && !recording.scheduled) {
+                    toSchedule.add(recording);
+                } else if ((recording.stage == Stage.LINKED || recording.stage == Stage.FAILED) &&
+                           now - recording.detectedAt > FORGET_AFTER_MS) {
+                    recordingIterator.remove();
+                    if (recording.fingerprint != null) {
+                        fingerprints.remove(recording.fingerprint);
+                    }
+                }
+            }
+
+        }
+
+        // Store and queue outside the lock - contact lookups and WorkManager are slow
+        for (Recording recording : toSchedule) {
+            if (!schedule(recording)) {
+                waiting = true;
+            }
+        }
+
+        advanceWatermark();
+
+        synchronized (this) {
+            if (waiting && (matchCheck == null || matchCheck.isDone())) {
+                matchCheck = executor.schedule(this::matchPending, MATCH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private List<Recording> candidatesFor(List<PendingCall> pending) {
+        Set<Recording> candidates = new LinkedHashSet<>();
+        for (PendingCall call : pending) {
+            long windowStart = call.callStart - MATCH_WINDOW_MS;
+            long windowEnd = Math.max(call.callEnd, call.callStart) + MATCH_WINDOW_MS;
+            for (RecordingCatalog.RecordingEntry entry : catalog.findInWindow(windowStart, windowEnd)) {
+                Recording recording = recordings.get(entry.path);
+                if (recording != null && recording.stage == Stage.DETECTED && recording.call == null) {
+                    candidates.add(recording);
+                }
+            }
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    // ---- Stage 4: upload ----
+
+    // Caller holds the lock
+    private void enqueue(Recording recording) {
+        recording.stage = Stage.QUEUED;
+        recording.scheduled = false;
+    }
+
+    /**
+     * Store the upload session with its call metadata and hand it to the
+     * scheduler.
+     *
+     * @return false if it has to wait (not signed in yet)
+     */
+    private boolean schedule(Recording recording) {
+        File file = new File(recording.path);
+        if (!file.isFile()) {
+            fail(recording.path, recording.name, "Recording file was deleted");
+            return true;
+        }
+
+        String employeeId = authManager.getEmployeeId();
+        if (employeeId == null) {
+            return false;
+        }
+
+        CallRecordingUploader.CallMetadata metadata = buildMetadata(recording, employeeId);
+        try {
+            resumableUploader.prepare(file, metadata, recording.call != null);
+        } catch (IOException e) {
+            fail(recording.path, recording.name, e.getMessage());
+            return true;
+        }
+        scheduler.scheduleRecording(recording.path, recording.size, recording.lastModified);
+        synchronized (this) {
+            recording.scheduled = true;
+        }
+        return true;
+    }
+
+    /**
+     * Move the ledger's scan watermark up to the oldest recording that exists
+     * only in memory. Scheduled ones have a stored session and queued work, so
+     * a restart finds them without a scan.
+     */
+    private void advanceWatermark() {
+        if (startupScan) {
+            return;
+        }
+        long watermark = System.currentTimeMillis() - WATERMARK_SLACK_MS;
+        synchronized (this) {
+            for (Recording recording : recordings.values()) {
+                if (recording.stage == Stage.DETECTED || (recording.stage == Stage.QUEUED && !recording.scheduled)) {
+                    watermark = Math.min(watermark, recording.lastModified);
+                }
+            }
+        }
+        ledger.advanceWatermark(watermark);
+    }
+
+    /**
+     * Upload and link one stored session. Runs on a RecordingUploadWorker thread.
+     *
+     * @param lastAttempt give up instead of asking for a retry
+     * @return false if the upload should be retried later
+     */
+    boolean runUpload(String path, boolean lastAttempt) {
+        File original = new File(path);
+        if (ledger.contains(path, original.length(), original.lastModified())) {
+            Log.d(TAG, "📎 " + original.getName() + " was already uploaded - dropping its queued upload");
+            ResumableUploader.UploadSession stale = resumableUploader.getSession(path);
+            resumableUploader.finish(stale != null ? stale.path : path);
+            transcoder.discard(path);
+            return true;
+        }
+
+        // The recording's own session, or the one for its transcoded copy from an earlier attempt
+        ResumableUploader.UploadSession session = resumableUploader.getSession(path);
+        if (session == null) {
+            return true; // Finished or abandoned in the meantime
+        }
+        if (!session.path.equals(path) && session.recordingId == null && !new File(session.path).isFile()) {
+            // The transcoded copy was cleared from the cache; start over from the recording
+            resumableUploader.finish(session.path);
+            try {
+                session = resumableUploader.prepare(original, session.metadata, session.linkToCall);
+            } catch (IOException e) {
+                return retryLater(path, original.getName(), e.getMessage(), lastAttempt);
+            }
+        }
+        if (session.path.equals(path) && session.uploadId == null && session.recordingId == null) {
+            session = transcode(session);
+        }
+        String fileName = new File(path).getName();
+        synchronized (this) {
+            Recording recording = recordings.get(path);
+            if (recording != null) {
+                recording.stage = Stage.UPLOADING;
+            }
+        }
+        Log.d(TAG, "📤 Uploading " + fileName + " (" + session.size + " bytes, " +
+            (session.linkToCall ? "matched" : "unmatched") + ")");
+
+        String recordingId;
+        try {
+            // Resumes from the stored offset if this file was partly sent before
+            recordingId = resumableUploader.resume(session);
+        } catch (CallRecordingUploader.UploadException e) {
+            if (e.isRetryable()) {
+                return retryLater(path, fileName, e.getMessage(), lastAttempt);
+            }
+            ledger.record(path, original.length(), original.lastModified(), RecordingLedger.STATE_REJECTED, null);
+            resumableUploader.finish(session.path);
+            transcoder.discard(path);
+            fail(path, fileName, e.getMessage());
+            return true;
+        } catch (IOException e) {
+            return retryLater(path, fileName, e.getMessage(), lastAttempt);
+        }
+
+        // ---- Stage 5: link to call record ----
+        if (session.linkToCall && !uploader.linkToCall(session.metadata, recordingId)) {
+            Log.w(TAG, "⚠️ " + fileName + " uploaded but not linked to its call");
+        }
+        // In the ledger before the session goes, so a crash in between cannot upload it twice
+        ledger.record(path, original.length(), original.lastModified(), RecordingLedger.STATE_UPLOADED, recordingId);
+        resumableUploader.finish(session.path);
+        transcoder.discard(path);
+
+        synchronized (this) {
+            Recording recording = recordings.get(path);
+            if (recording != null) {
+                recording.stage = Stage.LINKED;
+            } else {
+                recordings.put(path, new Recording(session));
+            }
+            resumingPaths.remove(path);
+        }
+        Log.i(TAG, "✅ Recording uploaded: " + fileName + " -> " + recordingId);
+        String contactName = session.metadata.contactName;
+        boolean matched = session.metadata.matched;
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onRecordingUploaded(fileName, contactName, matched);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Replace a session nothing has been sent for with one for a smaller,
+     * transcoded copy of the recording. Keeps the original on any problem.
+     */
+    private ResumableUploader.UploadSession transcode(ResumableUploader.UploadSession session) {
+        File transcoded = transcoder.transcodeForUpload(new File(session.path));
+        if (transcoded == null) {
+            return session;
+        }
+        try {
+            ResumableUploader.UploadSession replacement =
+                resumableUploader.prepare(transcoded, session.sourcePath, session.metadata, session.linkToCall);
+            resumableUploader.finish(session.path);
+            return replacement;
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Uploading " + session.path + " as recorded: " + e.getMessage());
+            transcoder.discard(session.path);
+            return session;
+        }
+    }
+
+    private boolean retryLater(String path, String fileName, String error, boolean lastAttempt) {
+        if (lastAttempt) {
+            // The stored session stays; the next resumeInterruptedUploads() tries again
+            fail(path, fileName, error);
+            return true;
+        }
+        synchronized (this) {
+            Recording recording = recordings.get(path);
+            if (recording != null) {
+                recording.stage = Stage.QUEUED;
+            }
+        }
+        Log.w(TAG, "🔄 Upload of " + fileName + " failed (" + error + "), will retry");
+        return false;
+    }
+
+    private void fail(String path, String fileName, String error) {
+        synchronized (this) {
+            Recording recording = recordings.get(path);
+            if (recording != null) {
+                recording.stage = Stage.FAILED;
+            }
+            resumingPaths.remove(path);
+        }
+        Log.e(TAG, "❌ Giving up on " + fileName + ": " + error);
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onRecordingFailed(fileName, error);
+            }
+        });
+    }
+
+    private CallRecordingUploader.CallMetadata buildMetadata(Recording recording, String employeeId) {
+        String deviceId = android.provider.Settings.Secure.getString(
+            context.getContentResolver(), android.provider.Settings.Secure.ANDROID_ID);
+
+        PendingCall call = recording.call;
+        if (call == null) {
+            String phoneNumber = recording.phoneDigits;
+            long callStart = recording.nameTime != 0 ? recording.nameTime : recording.lastModified;
+            return new CallRecordingUploader.CallMetadata(
+                phoneNumber,
+                phoneNumber != null ? "Call with " + phoneNumber : "Unknown Contact",
+                "unknown",
+                callStart,
+                Math.max(callStart, recording.lastModified),
+                deviceId,
+                false,
+                employeeId
+            );
+        }
+
+        // Talk time from the recording itself rather than the call log
+        long callEnd = call.callEnd;
+        if (recording.durationMs >= MIN_RECORDING_DURATION_MS) {
+            callEnd = call.callStart + recording.durationMs;
+            Log.d(TAG, "🎯 Using duration from recording: " + recording.durationMs + " ms (not call log duration)");
+        } else {
+            Log.d(TAG, "📊 No duration in " + recording.name + " - keeping the call log duration");
+        }
+
+        String contactName = call.contactName;
+        if (contactName == null || contactName.trim().isEmpty()) {
+            contactName = getContactName(call.phoneNumber);
+        }
+
+        return new CallRecordingUploader.CallMetadata(
+            call.phoneNumber,
+            contactName,
+            call.direction,
+            call.callStart,
+            callEnd,
+            deviceId,
+            true,
+            employeeId
+        );
+    }
+
+    private String getContactName(String phoneNumber) {
+        String contactName = contacts.findName(phoneNumber);
+        return contactName != null ? contactName : "Unknown Contact";
+    }
+
+    /**
+     * Counts per stage, for the status screen and logs.
+     */
+    public synchronized String getStatusSummary() {
+        int detected = 0, queued = 0, done = 0, failed = 0;
+        for (Recording recording : recordings.values()) {
+            switch (recording.stage) {
+                case DETECTED: detected++; break;
+                case QUEUED:
+                case UPLOADING: queued++; break;
+                case LINKED: done++; break;
+                case FAILED: failed++; break;
+            }
+        }
+        return "Recordings: " + detected + " waiting for call, " + queued + " to upload, " +
+               done + " uploaded, " + failed + " failed";
+    }
+}
@@ -0,0 +1,47 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Uploads and links one recording scheduled by {@link UploadScheduler}.
+ *
+ * Never reports failure or asks for a retry: the lanes are WorkManager chains,
+ * and a failed link would cancel every recording queued behind it, a retrying
+ * one would hold them all up. A failed upload is rescheduled outside the lane
+ * with {@link UploadScheduler#scheduleRetry}, and recordings that cannot be
+ * uploaded are reported through {@link RecordingPipeline}.
+ */
+public class RecordingUploadWorker extends Worker {
+    private static final String TAG = "RecordingUploadWorker";
+    private static final int MAX_ATTEMPTS = 8;
+
+    public RecordingUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String path = getInputData().getString(UploadScheduler.KEY_PATH);
+        if (path == null) {
+            return Result.success();
+        }
+        Data input = getInputData();
+        int attempt = input.getInt(UploadScheduler.KEY_ATTEMPT, 0) + 1;
+        boolean lastAttempt = attempt >= MAX_ATTEMPTS;
+        boolean done = RecordingPipeline.getInstance(getApplicationContext()).runUpload(path, lastAttempt);
+        if (!done) {
+            Log.d(TAG, "🔄 Upload of " + path + " will be retried (attempt " + attempt + ")");
+            UploadScheduler.getInstance(getApplicationContext()).scheduleRetry(path,
+                input.getLong(UploadScheduler.KEY_SIZE, 0),
+                input.getLong(UploadScheduler.KEY_LAST_MODIFIED, 0), attempt);
+        }
+        return Result.success();
+    }
+}
@@ -0,0 +1,531 @@
+package com.ooak.callmanager.api;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.utils.CallManagerDatabase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Chunked, resumable recording uploads (tus-style).
+ *
+ * The client opens an upload session with the file length and call metadata,
+ * then PATCHes the file in chunks at the byte offset the server reports. The
+ * session id and acknowledged offset are stored in SQLite after every chunk,
+ * so a dropped connection, a network switch, process death or a reboot costs
+ * at most one chunk instead of the whole recording.
+ *
+ * Servers without /api/call-recordings/uploads get the one-shot multipart
+ * upload from CallRecordingUploader.
+ */
+public class ResumableUploader {
+    private static final String TAG = "ResumableUploader";
+    private static final String UPLOADS_ENDPOINT = "/api/call-recordings/uploads";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final MediaType OFFSET_OCTET_STREAM = MediaType.get("application/offset+octet-stream");
+
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+    private static final long FAST_CHUNK_MS = 2000;  // grow the chunk below this
+    private static final long SLOW_CHUNK_MS = 10000; // shrink it above this
+
+    // Quick reconnects inside one upload call (network switch, brief dropout)
+    private static final long[] RECONNECT_DELAYS_MS = {1000, 2000, 4000};
+    // Back-to-back 409s: another connection still holds the upload, or the
+    // offsets keep disagreeing
+    private static final long[] CONFLICT_DELAYS_MS = {500, 1000, 2000, 4000, 8000};
+    private static final long UNSUPPORTED_RECHECK_MS = 60 * 60 * 1000; // 1 hour
+
+    /**
+     * A stored upload session.
+     */
+    public static class UploadSession {
+        public final String path;        // the file being sent
+        public final String sourcePath;  // the recording it was made from; path itself unless transcoded
+        public final long size;
+        public final long lastModified;
+        public final CallRecordingUploader.CallMetadata metadata;
+        public final boolean linkToCall;
+        String uploadId;
+        long offset;
+        String recordingId;
+
+        UploadSession(String path, String sourcePath, long size, long lastModified,
+                      CallRecordingUploader.CallMetadata metadata, boolean linkToCall) {
+            this.path = path;
+            this.sourcePath = sourcePath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.metadata = metadata;
+            this.linkToCall = linkToCall;
+        }
+    }
+
+    private static ResumableUploader instance;
+
+    private final CallManagerDatabase database;
+    private final CallRecordingUploader oneShotUploader;
+    private final OkHttpClient client;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile long resumableUnsupportedUntil = 0;
+
+    // Counters for logs / the status screen
+    private long bytesSent = 0;
+    private long uploadsCompleted = 0;
+    private long resumes = 0;
+
+    private ResumableUploader(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.database = CallManagerDatabase.getInstance(appContext);
+        this.oneShotUploader = new CallRecordingUploader(appContext);
+        this.client = HttpStack.getInstance(appContext).getUploadClient();
+    }
+
+    public static synchronized ResumableUploader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ResumableUploader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Store a session for a file without sending anything, so the upload can be
+     * queued and run later with {@link #resume}. An existing session for the same,
+     * unchanged file is kept along with its progress. The session is kept until
+     * {@link #finish} so a crash between upload and linking does not upload the
+     * file again.
+     */
+    public UploadSession prepare(File file, CallRecordingUploader.CallMetadata metadata, boolean linkToCall)
+            throws IOException {
+        return prepare(file, file.getAbsolutePath(), metadata, linkToCall);
+    }
+
+    /**
+     * {@link #prepare(File, CallRecordingUploader.CallMetadata, boolean)} for a
+     * copy of a recording (e.g. transcoded): the session is found, ledgered
+     * and deduplicated under {@code sourcePath}, the recording's own path.
+     */
+    public UploadSession prepare(File file, String sourcePath, CallRecordingUploader.CallMetadata metadata,
+                                 boolean linkToCall) throws IOException {
+        UploadSession session = load(file.getAbsolutePath());
+        if (session != null && (session.size != file.length() || session.lastModified != file.lastModified())) {
+            Log.d(TAG, "🔄 " + file.getName() + " changed since its upload started - starting over");
+            finish(session.path);
+            session = null;
+        }
+        if (session == null) {
+            session = new UploadSession(file.getAbsolutePath(), sourcePath, file.length(), file.lastModified(),
+                metadata, linkToCall);
+            save(session);
+        }
+        return session;
+    }
+
+    /**
+     * The stored session for a recording - for the file itself or for a copy
+     * made from it - or null if it has none.
+     */
+    public UploadSession getSession(String path) {
+        UploadSession session = load(path);
+        if (session != null) {
+            return session;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_UPLOAD_SESSIONS,
+                null, CallManagerDatabase.UPLOAD_SOURCE_PATH + " = ?", new String[]{path}, null, null, null);
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading upload session", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Uploads that were started but never finished, oldest first - e.g. from
+     * before a reboot.
+     */
+    public List<UploadSession> getInterruptedUploads() {
+        List<UploadSession> sessions = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_UPLOAD_SESSIONS,
+                null, null, null, null, null, CallManagerDatabase.UPLOAD_CREATED_AT + " ASC");
+            while (cursor.moveToNext()) {
+                sessions.add(fromCursor(cursor));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading upload sessions", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Upload a stored session on the calling thread, from the offset the server
+     * has (see {@link #prepare} and {@link #getInterruptedUploads()}).
+     *
+     * @return the server's recording id
+     */
+    public String resume(UploadSession session) throws IOException {
+        File file = new File(session.path);
+        if (!file.isFile() || file.length() != session.size || file.lastModified() != session.lastModified) {
+            finish(session.path);
+            throw new CallRecordingUploader.UploadException(0, "Recording changed or deleted since upload started");
+        }
+        return upload(file, session);
+    }
+
+    /**
+     * Forget the session for a file once it is uploaded and linked (or abandoned).
+     */
+    public void finish(String path) {
+        database.getWritableDatabase().delete(CallManagerDatabase.TABLE_UPLOAD_SESSIONS,
+            CallManagerDatabase.UPLOAD_PATH + " = ?", new String[]{path});
+    }
+
+    private String upload(File file, UploadSession session) throws IOException {
+        if (session.recordingId != null) {
+            return session.recordingId; // Uploaded before, only the link was outstanding
+        }
+        save(session);
+
+        // A stored session may be ahead of (or behind) what we last saved
+        boolean resumed = session.uploadId != null;
+        if (!resumed && !createSession(file, session)) {
+            // No resumable endpoint on this server
+            String recordingId = oneShotUploader.uploadNow(file, session.metadata);
+            markUploaded(session, recordingId);
+            return recordingId;
+        }
+
+        int reconnects = 0;
+        while (true) {
+            try {
+                if (resumed) {
+                    if (!queryOffset(session)) {
+                        // Session expired on the server - start a new one
+                        session.uploadId = null;
+                        session.offset = 0;
+                        if (!createSession(file, session)) {
+                            String recordingId = oneShotUploader.uploadNow(file, session.metadata);
+                            markUploaded(session, recordingId);
+                            return recordingId;
+                        }
+                    }
+                    if (session.recordingId != null) {
+                        markUploaded(session, session.recordingId);
+                        return session.recordingId;
+                    }
+                    synchronized (this) {
+                        resumes++;
+                    }
+                    Log.d(TAG, "⏯️ Resuming " + file.getName() + " at " + session.offset + "/" + session.size);
+                }
+                return sendChunks(file, session);
+            } catch (CallRecordingUploader.UploadException e) {
+                throw e;
+            } catch (IOException e) {
+                if (reconnects >= RECONNECT_DELAYS_MS.length) {
+                    throw e;
+                }
+                Log.w(TAG, "⚠️ Upload of " + file.getName() + " interrupted at " + session.offset +
+                    " bytes (" + e.getMessage() + "), reconnecting");
+                sleep(RECONNECT_DELAYS_MS[reconnects++]);
+                resumed = true;
+            }
+        }
+    }
+
+    private String sendChunks(File file, UploadSession session) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] buffer = new byte[MAX_CHUNK_SIZE];
+            int conflicts = 0;
+            while (true) {
+                int length = (int) Math.min(currentChunkSize(), session.size - session.offset);
+                input.seek(session.offset);
+                input.readFully(buffer, 0, length);
+
+                long started = System.currentTimeMillis();
+                Request request = new Request.Builder()
+                    .url(ServerConfig.PUBLIC_URL + UPLOADS_ENDPOINT + "/" + session.uploadId)
+                    .patch(RequestBody.create(buffer, OFFSET_OCTET_STREAM, 0, length))
+                    .addHeader("Upload-Offset", String.valueOf(session.offset))
+                    .addHeader("X-Employee-ID", String.valueOf(session.metadata.employeeId))
+                    .build();
+
+                try (Response response = client.newCall(request).execute()) {
+                    long newOffset = headerLong(response, "Upload-Offset", -1);
+                    if (response.code() == 409 && newOffset >= 0) {
+                        if (conflicts >= CONFLICT_DELAYS_MS.length) {
+                            throw new IOException("Upload still conflicting after " + conflicts + " retries");
+                        }
+                        Log.d(TAG, "↩️ Server is at " + newOffset + ", not " + session.offset);
+                        updateOffset(session, newOffset);
+                        sleep(CONFLICT_DELAYS_MS[conflicts++]);
+                        continue;
+                    }
+                    if (!response.isSuccessful()) {
+                        String body = response.body() != null ? response.body().string() : "";
+                        throw new CallRecordingUploader.UploadException(response.code(),
+                            "Chunk upload failed (HTTP " + response.code() + "): " + body);
+                    }
+
+                    conflicts = 0;
+                    synchronized (this) {
+                        bytesSent += Math.max(0, newOffset - session.offset);
+                    }
+                    adaptChunkSize(System.currentTimeMillis() - started);
+
+                    if (response.code() == 200) {
+                        String body = response.body() != null ? response.body().string() : "";
+                        String recordingId = parseRecordingId(body,
+                            response.header("Upload-Recording-Id", "unknown"));
+                        markUploaded(session, recordingId);
+                        Log.d(TAG, "✅ Uploaded " + file.getName() + " (" + session.size + " bytes) -> " + recordingId);
+                        return recordingId;
+                    }
+                    if (newOffset < 0) {
+                        throw new IOException("Server did not report Upload-Offset");
+                    }
+                    updateOffset(session, newOffset);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if this server has no resumable upload endpoint
+     */
+    private boolean createSession(File file, UploadSession session) throws IOException {
+        if (System.currentTimeMillis() < resumableUnsupportedUntil) {
+            return false;
+        }
+
+        JSONObject body = new JSONObject();
+        try {
+            body.put("fileName", file.getName());
+            body.put("length", session.size);
+            body.put("metadata", session.metadata.toJSON());
+        } catch (JSONException e) {
+            throw new CallRecordingUploader.UploadException(0, "Invalid metadata: " + e.getMessage());
+        }
+
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + UPLOADS_ENDPOINT)
+            .post(RequestBody.create(body.toString(), JSON))
+            .addHeader("X-Employee-ID", String.valueOf(session.metadata.employeeId))
+            .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            if (response.code() == 404 || response.code() == 405) {
+                Log.w(TAG, "⚠️ Server has no resumable uploads - using one-shot uploads for now");
+                resumableUnsupportedUntil = System.currentTimeMillis() + UNSUPPORTED_RECHECK_MS;
+                return false;
+            }
+            if (!response.isSuccessful()) {
+                throw new CallRecordingUploader.UploadException(response.code(),
+                    "Could not start upload (HTTP " + response.code() + "): " + responseBody);
+            }
+            JSONObject json = new JSONObject(responseBody);
+            session.uploadId = json.getString("uploadId");
+            session.offset = json.optLong("offset", 0);
+            save(session);
+            Log.d(TAG, "📤 Upload session " + session.uploadId + " for " + file.getName());
+            return true;
+        } catch (JSONException e) {
+            throw new IOException("Invalid upload session response", e);
+        }
+    }
+
+    /**
+     * Ask the server how much of the file it has.
+     *
+     * @return false if the session no longer exists there
+     */
+    private boolean queryOffset(UploadSession session) throws IOException {
+        Request request = new Request.Builder()
+            .url(ServerConfig.PUBLIC_URL + UPLOADS_ENDPOINT + "/" + session.uploadId)
+            .head()
+            .addHeader("X-Employee-ID", String.valueOf(session.metadata.employeeId))
+            .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 404 || response.code() == 410) {
+                return false;
+            }
+            if (!response.isSuccessful()) {
+                throw new CallRecordingUploader.UploadException(response.code(),
+                    "Offset query failed (HTTP " + response.code() + ")");
+            }
+            long offset = headerLong(response, "Upload-Offset", -1);
+            if (offset < 0) {
+                throw new IOException("Server did not report Upload-Offset");
+            }
+            updateOffset(session, offset);
+            String recordingId = response.header("Upload-Recording-Id");
+            if (recordingId != null) {
+                session.recordingId = recordingId;
+            }
+            return true;
+        }
+    }
+
+    private static String parseRecordingId(String body, String fallback) {
+        try {
+            return new JSONObject(body).optString("recordingId", fallback);
+        } catch (JSONException e) {
+            return fallback;
+        }
+    }
+
+    private static long headerLong(Response response, String name, long fallback) {
+        try {
+            String value = response.header(name);
+            return value != null ? Long.parseLong(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // Bigger chunks on a fast link (fewer round trips), smaller on a slow one
+    // (less to resend after a drop)
+    private synchronized void adaptChunkSize(long elapsedMs) {
+        if (elapsedMs < FAST_CHUNK_MS) {
+            chunkSize = Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+        } else if (elapsedMs > SLOW_CHUNK_MS) {
+            chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+        }
+    }
+
+    private synchronized int currentChunkSize() {
+        return chunkSize;
+    }
+
+    private static void sleep(long ms) throws IOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        }
+    }
+
+    // ---- Persistence ----
+
+    private UploadSession load(String path) {
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_UPLOAD_SESSIONS,
+                null, CallManagerDatabase.UPLOAD_PATH + " = ?", new String[]{path}, null, null, null);
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading upload session", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private UploadSession fromCursor(Cursor cursor) throws JSONException {
+        String path = cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_PATH));
+        String sourcePath = cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_SOURCE_PATH));
+        UploadSession session = new UploadSession(
+            path,
+            sourcePath != null ? sourcePath : path,
+            cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_SIZE)),
+            cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_MTIME)),
+            CallRecordingUploader.CallMetadata.fromJSON(new JSONObject(
+                cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_METADATA)))),
+            cursor.getInt(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_LINK)) != 0);
+        session.uploadId = cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_ID));
+        session.offset = cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_OFFSET));
+        session.recordingId = cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.UPLOAD_RECORDING_ID));
+        return session;
+    }
+
+    private void save(UploadSession session) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.UPLOAD_PATH, session.path);
+        values.put(CallManagerDatabase.UPLOAD_SOURCE_PATH, session.sourcePath);
+        values.put(CallManagerDatabase.UPLOAD_ID, session.uploadId);
+        values.put(CallManagerDatabase.UPLOAD_SIZE, session.size);
+        values.put(CallManagerDatabase.UPLOAD_MTIME, session.lastModified);
+        values.put(CallManagerDatabase.UPLOAD_OFFSET, session.offset);
+        values.put(CallManagerDatabase.UPLOAD_LINK, session.linkToCall ? 1 : 0);
+        values.put(CallManagerDatabase.UPLOAD_RECORDING_ID, session.recordingId);
+        values.put(CallManagerDatabase.UPLOAD_CREATED_AT, System.currentTimeMillis());
+        try {
+            values.put(CallManagerDatabase.UPLOAD_METADATA, session.metadata.toJSON().toString());
+        } catch (JSONException e) {
+            throw new CallRecordingUploader.UploadException(0, "Invalid metadata: " + e.getMessage());
+        }
+
+        // Keep the original created_at so interrupted uploads resume in order
+        SQLiteDatabase db = database.getWritableDatabase();
+        if (db.update(CallManagerDatabase.TABLE_UPLOAD_SESSIONS, withoutCreatedAt(values),
+                CallManagerDatabase.UPLOAD_PATH + " = ?", new String[]{session.path}) == 0) {
+            db.insert(CallManagerDatabase.TABLE_UPLOAD_SESSIONS, null, values);
+        }
+    }
+
+    private static ContentValues withoutCreatedAt(ContentValues values) {
+        ContentValues copy = new ContentValues(values);
+        copy.remove(CallManagerDatabase.UPLOAD_CREATED_AT);
+        return copy;
+    }
+
+    private void updateOffset(UploadSession session, long offset) {
+        session.offset = offset;
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.UPLOAD_OFFSET, offset);
+        database.getWritableDatabase().update(CallManagerDatabase.TABLE_UPLOAD_SESSIONS, values,
+            CallManagerDatabase.UPLOAD_PATH + " = ?", new String[]{session.path});
+    }
+
+    private void markUploaded(UploadSession session, String recordingId) {
+        session.recordingId = recordingId;
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.UPLOAD_RECORDING_ID, recordingId);
+        values.put(CallManagerDatabase.UPLOAD_OFFSET, session.size);
+        database.getWritableDatabase().update(CallManagerDatabase.TABLE_UPLOAD_SESSIONS, values,
+            CallManagerDatabase.UPLOAD_PATH + " = ?", new String[]{session.path});
+        synchronized (this) {
+            uploadsCompleted++;
+        }
+    }
+
+    public synchronized String getStats() {
+        return "Uploads: " + uploadsCompleted + " done, " + resumes + " resumed, " +
+               (bytesSent / 1024) + " KB sent, chunk " + (chunkSize / 1024) + " KB";
+    }
+}
@@ -0,0 +1,220 @@
+package com.ooak.callmanager.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.WorkRequest;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place background uploads are scheduled, on WorkManager so queued
+ * work survives process death and reboots and runs under network and battery
+ * constraints.
+ *
+ * Four lanes, highest priority first:
+ *   1. call status events - retried by {@link CallEventDrainWorker} on any network
+ *   2. recent, small recordings - one at a time on any network
+ *   3. backlog (old or large recordings) - one at a time, Wi-Fi only, battery
+ *      not low
+ *   4. very large recordings - as the backlog, but only on the charger. They
+ *      have a lane of their own so the backlog does not wait for a charger
+ *      behind them.
+ *
+ * Each recording lane is a serial WorkManager chain, so at most one upload per
+ * lane runs at once. An upload that fails leaves its lane instead of holding
+ * it with a retry: it comes back later as its own unique work (see
+ * {@link #scheduleRetry}), so the recordings queued behind it go on. The
+ * worker pool (see {@link #createWorkerExecutor()}) has one thread per lane,
+ * so status events never wait behind a recording.
+ */
+public class UploadScheduler {
+    private static final String TAG = "UploadScheduler";
+
+    static final String KEY_PATH = "path";
+    static final String KEY_SIZE = "size";
+    static final String KEY_LAST_MODIFIED = "lastModified";
+    static final String KEY_ATTEMPT = "attempt";
+
+    private static final String WORK_CALL_EVENTS = "call-event-drain";
+    private static final String WORK_RECENT = "recording-recent";
+    private static final String WORK_BACKLOG = "recording-backlog";
+    private static final String WORK_CHARGER = "recording-charger";
+    private static final String TAG_RECORDING = "recording-upload";
+    private static final String TAG_PATH_PREFIX = "recording:";
+    private static final String WORK_RETRY_PREFIX = "recording-retry:";
+
+    private static final int WORKER_THREADS = 4;                        // one per lane
+    private static final long RECENT_MAX_AGE_MS = 24 * 60 * 60 * 1000;  // 1 day
+    private static final long SMALL_RECORDING_BYTES = 10 * 1024 * 1024; // 10 MB
+    private static final long HUGE_RECORDING_BYTES = 50 * 1024 * 1024;  // needs the charger
+    private static final long BACKOFF_MS = 30 * 1000;
+
+    private static UploadScheduler instance;
+
+    private final WorkManager workManager;
+    // Paths whose existing work is being looked up, so a second call does not queue them twice
+    private final Set<String> checking = new HashSet<>();
+
+    private UploadScheduler(Context context) {
+        this.workManager = WorkManager.getInstance(context.getApplicationContext());
+    }
+
+    public static synchronized UploadScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new UploadScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Bounded pool WorkManager runs workers on, instead of its default pool
+     * sized by CPU count.
+     */
+    public static ExecutorService createWorkerExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+            Thread thread = new Thread(r, "UploadWorker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Make sure pending call events get delivered even if this process dies
+     * while they wait for a retry. Does nothing if a drain is already scheduled.
+     */
+    public void scheduleCallEventDrain(long delayMs) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(CallEventDrainWorker.class)
+            .setConstraints(new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build())
+            .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_MS, TimeUnit.MILLISECONDS)
+            .build();
+        workManager.enqueueUniqueWork(WORK_CALL_EVENTS, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Queue the upload of a recording whose session is stored in
+     * {@link ResumableUploader}. Recordings that already have unfinished work
+     * are not queued twice. Returns at once; the lookup of existing work
+     * completes on the shared pool.
+     */
+    public void scheduleRecording(String path, long size, long lastModified) {
+        String pathTag = TAG_PATH_PREFIX + path;
+        synchronized (checking) {
+            if (!checking.add(path)) {
+                return;
+            }
+        }
+        ListenableFuture<List<WorkInfo>> existing = workManager.getWorkInfosByTag(pathTag);
+        existing.addListener(() -> {
+            try {
+                if (!hasPendingWork(existing, pathTag)) {
+                    enqueueInLane(path, size, lastModified);
+                }
+            } finally {
+                synchronized (checking) {
+                    checking.remove(path);
+                }
+            }
+        }, SharedExecutors.pool());
+    }
+
+    /**
+     * Try a failed upload again after a backoff, outside its lane, so it does
+     * not hold up the recordings queued behind it. Called by the failed
+     * upload's worker, which then finishes successfully.
+     *
+     * @param attempt the number of attempts made so far
+     */
+    void scheduleRetry(String path, long size, long lastModified, int attempt) {
+        long delayMs = Math.min(WorkRequest.MAX_BACKOFF_MILLIS, BACKOFF_MS << Math.min(attempt - 1, 16));
+        OneTimeWorkRequest request = newUploadRequest(path, size, lastModified, attempt)
+            .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+            .build();
+        // The worker asking is still running, so this queues behind it instead of replacing it
+        workManager.enqueueUniqueWork(WORK_RETRY_PREFIX + path, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+        Log.d(TAG, "🗓️ Upload of " + path + " retried in " + (delayMs / 1000) + " s (attempt " + (attempt + 1) + ")");
+    }
+
+    private void enqueueInLane(String path, long size, long lastModified) {
+        String lane = laneFor(size, lastModified);
+        OneTimeWorkRequest request = newUploadRequest(path, size, lastModified, 0).build();
+
+        // Append to the lane's chain; start a new chain if the old one was cancelled
+        workManager.enqueueUniqueWork(lane, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+        Log.d(TAG, "🗓️ Scheduled " + lane + " upload: " + path + " (" + (size / 1024) + " KB)");
+    }
+
+    private static String laneFor(long size, long lastModified) {
+        if (needsCharger(size)) {
+            return WORK_CHARGER;
+        }
+        return isBacklog(size, lastModified) ? WORK_BACKLOG : WORK_RECENT;
+    }
+
+    private static boolean isBacklog(long size, long lastModified) {
+        boolean recent = System.currentTimeMillis() - lastModified < RECENT_MAX_AGE_MS;
+        return !recent || size > SMALL_RECORDING_BYTES;
+    }
+
+    private static boolean needsCharger(long size) {
+        return size > HUGE_RECORDING_BYTES;
+    }
+
+    // Retries run under the constraints of the lane the recording belongs to
+    private static OneTimeWorkRequest.Builder newUploadRequest(String path, long size, long lastModified, int attempt) {
+        Constraints.Builder constraints = new Constraints.Builder();
+        if (isBacklog(size, lastModified)) {
+            constraints.setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresCharging(needsCharger(size));
+        } else {
+            constraints.setRequiredNetworkType(NetworkType.CONNECTED);
+        }
+
+        return new OneTimeWorkRequest.Builder(RecordingUploadWorker.class)
+            .setConstraints(constraints.build())
+            .setInputData(new Data.Builder()
+                .putString(KEY_PATH, path)
+                .putLong(KEY_SIZE, size)
+                .putLong(KEY_LAST_MODIFIED, lastModified)
+                .putInt(KEY_ATTEMPT, attempt)
+                .build())
+            .addTag(TAG_RECORDING)
+            .addTag(TAG_PATH_PREFIX + path);
+    }
+
+    // Only called once the future is done, so get() does not block
+    private static boolean hasPendingWork(ListenableFuture<List<WorkInfo>> existing, String tag) {
+        try {
+            for (WorkInfo info : existing.get()) {
+                if (!info.getState().isFinished()) {
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Could not check existing work for " + tag, e);
+        }
+        return false;
+    }
+}
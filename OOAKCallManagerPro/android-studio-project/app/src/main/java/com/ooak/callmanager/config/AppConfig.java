@@ -11,6 +11,7 @@ public class AppConfig {
     private static final String TAG = "AppConfig";
     private static final String PREFS_NAME = "app_config";
     private static final String PREF_SERVER_URL = "server_url";
+    private static final String PREF_TRANSCODE_RECORDINGS = "transcode_recordings";
     
     // Server options in priority order
     public static final String PRIMARY_SERVER = "https://portal.ooak.photography";     // Cloudflare tunnel
@@ -102,6 +103,19 @@ public class AppConfig {
         Log.d(TAG, "📝 Manually set server URL to: " + url);
     }
     
+    /**
+     * Whether recordings are shrunk to low-bitrate mono speech before upload
+     * (see RecordingTranscoder). On by default.
+     */
+    public boolean isTranscodingEnabled() {
+        return prefs.getBoolean(PREF_TRANSCODE_RECORDINGS, true);
+    }
+    
+    public void setTranscodingEnabled(boolean enabled) {
+        prefs.edit().putBoolean(PREF_TRANSCODE_RECORDINGS, enabled).apply();
+        Log.d(TAG, "🎚️ Recording transcoding " + (enabled ? "enabled" : "disabled"));
+    }
+    
     /**
      * Get all available server options
      */
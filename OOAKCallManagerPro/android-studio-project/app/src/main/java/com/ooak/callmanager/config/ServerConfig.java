@@ -7,136 +7,175 @@ import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.util.Log;
 
+import com.ooak.callmanager.api.HttpStack;
+
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 
+/**
+ * The CRM server the app talks to.
+ *
+ * Every client builds its URLs on {@link #PUBLIC_URL}, the Cloudflare
+ * tunnel, which works on any network and always over https. The office LAN
+ * servers are not used: they only serve plain http, and everything the app
+ * sends carries an employee ID or call data, which must not cross a network
+ * in cleartext. Routing office Wi-Fi traffic to the LAN needs TLS on the LAN
+ * server first (with its certificate pinned here).
+ *
+ * The public server's health is checked in the background every few minutes
+ * for the status screen. For testing, {@link #setServerUrl} pins another
+ * server; {@link #getRoutingInterceptor()}, which HttpStack installs for
+ * every client, then sends requests there.
+ */
 public class ServerConfig {
     private static final String TAG = "ServerConfig";
     private static final String PREFS_NAME = "server_config";
-    private static final String PREF_CURRENT_SERVER = "current_server_url";
-    private static final String PREF_LAST_UPDATED = "last_updated";
-    
-    // Server options in priority order
-    private static final List<String> SERVER_URLS = Arrays.asList(
-        "https://portal.ooak.photography",      // Primary: Cloudflare tunnel (works everywhere)
-        "https://portal.ooak.photography",          // Secondary: Local network (WiFi only)
-        "http://192.168.1.116:3000",           // Tertiary: Alternative local IP
-        "http://10.0.0.116:3000"               // Quaternary: Alternative network
-    );
-    
+    private static final String PREF_PINNED_SERVER = "pinned_server_url";
+
+    // The public address; anything stored for later (e.g. recording links) must use it
+    public static final String PUBLIC_URL = "https://portal.ooak.photography";
+
+    private static final List<String> SERVER_URLS = Collections.singletonList(PUBLIC_URL);
+    private static final String HEALTH_ENDPOINT = "/api/health";
+
+    private static final long HEALTH_CHECK_INTERVAL_MS = 5 * 60 * 1000;   // 5 minutes
+    private static final long HEALTH_TIMEOUT_MS = 5000;
+
     private static ServerConfig instance;
     private final Context context;
     private final SharedPreferences prefs;
-    private final ExecutorService executor;
-    private String currentServerUrl;
-    private long lastHealthCheck = 0;
-    private static final long HEALTH_CHECK_INTERVAL = 5 * 60 * 1000; // 5 minutes
-    
+    private final Interceptor routingInterceptor = new PinnedRoute();
+    private OkHttpClient probeClient;
+
+    private volatile long checkedAt = 0;
+    private volatile long rttMs = -1;      // -1: last check failed or none yet
+    private boolean checkRunning = false;
+
+    // Counters for logs / the status screen
+    private long checks = 0;
+    private long failedChecks = 0;
+
     private ServerConfig(Context context) {
         this.context = context.getApplicationContext();
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        this.executor = Executors.newSingleThreadExecutor();
-        this.currentServerUrl = prefs.getString(PREF_CURRENT_SERVER, SERVER_URLS.get(0));
-        
-        Log.d(TAG, "ServerConfig initialized with URL: " + currentServerUrl);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // Not getServerUrl(): its health check needs HttpStack, which is built on this
+        Log.d(TAG, "ServerConfig initialized with URL: " + prefs.getString(PREF_PINNED_SERVER, PUBLIC_URL));
     }
-    
+
     public static synchronized ServerConfig getInstance(Context context) {
         if (instance == null) {
             instance = new ServerConfig(context);
         }
         return instance;
     }
-    
+
+    /**
+     * The server requests go to: {@link #PUBLIC_URL} unless one was pinned.
+     * Starts a background health check when the last one is a few minutes old.
+     */
     public String getServerUrl() {
-        // Perform health check if needed
-        if (System.currentTimeMillis() - lastHealthCheck > HEALTH_CHECK_INTERVAL) {
+        if (System.currentTimeMillis() - checkedAt > HEALTH_CHECK_INTERVAL_MS) {
             checkServerHealth();
         }
-        return currentServerUrl;
+        String pinned = prefs.getString(PREF_PINNED_SERVER, null);
+        return pinned != null ? pinned : PUBLIC_URL;
     }
-    
-    public void checkServerHealth() {
-        executor.execute(() -> {
-            String workingUrl = findWorkingServer();
-            if (workingUrl != null && !workingUrl.equals(currentServerUrl)) {
-                Log.d(TAG, "Server changed from " + currentServerUrl + " to " + workingUrl);
-                updateServerUrl(workingUrl);
-            }
-            lastHealthCheck = System.currentTimeMillis();
-        });
+
+    /**
+     * Sends requests built on {@link #PUBLIC_URL} to the pinned server, if
+     * there is one; leaves them alone otherwise.
+     */
+    public Interceptor getRoutingInterceptor() {
+        return routingInterceptor;
     }
-    
-    private String findWorkingServer() {
-        for (String serverUrl : SERVER_URLS) {
-            if (isServerReachable(serverUrl)) {
-                Log.d(TAG, "✅ Server reachable: " + serverUrl);
-                return serverUrl;
-            } else {
-                Log.d(TAG, "❌ Server unreachable: " + serverUrl);
+
+    /**
+     * Probe the server's health endpoint in the background.
+     */
+    public void checkServerHealth() {
+        synchronized (this) {
+            if (checkRunning) {
+                return;
             }
+            checkRunning = true;
         }
-        
-        Log.w(TAG, "⚠️ No servers reachable, keeping current: " + currentServerUrl);
-        return currentServerUrl; // Keep current if none work
+        checkedAt = System.currentTimeMillis();
+        String url = prefs.getString(PREF_PINNED_SERVER, PUBLIC_URL);
+        long start = System.nanoTime();
+        getProbeClient().newCall(new Request.Builder().url(url + HEALTH_ENDPOINT).get().build())
+            .enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    Log.w(TAG, "📵 " + url + " unreachable: " + e.getMessage());
+                    finishCheck(false, -1);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    // Only a real health answer counts; a 404 is some other web server
+                    boolean ok = response.isSuccessful();
+                    response.close();
+                    if (!ok) {
+                        Log.w(TAG, "⚠️ " + url + " health check answered HTTP " + response.code());
+                    }
+                    finishCheck(ok, (System.nanoTime() - start) / 1_000_000);
+                }
+            });
     }
-    
-    private boolean isServerReachable(String serverUrl) {
-        try {
-            URL url = new URL(serverUrl + "/api/health");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000); // 5 seconds
-            connection.setReadTimeout(5000);
-            
-            int responseCode = connection.getResponseCode();
-            connection.disconnect();
-            
-            return responseCode == 200 || responseCode == 404; // 404 is ok if no health endpoint
-            
-        } catch (Exception e) {
-            Log.d(TAG, "Server check failed for " + serverUrl + ": " + e.getMessage());
-            return false;
+
+    private synchronized void finishCheck(boolean ok, long rtt) {
+        checkRunning = false;
+        checks++;
+        if (!ok) {
+            failedChecks++;
         }
+        rttMs = ok ? rtt : -1;
     }
-    
-    private void updateServerUrl(String newUrl) {
-        currentServerUrl = newUrl;
-        prefs.edit()
-                .putString(PREF_CURRENT_SERVER, newUrl)
-                .putLong(PREF_LAST_UPDATED, System.currentTimeMillis())
-                .apply();
-        
-        Log.i(TAG, "🔄 Updated server URL to: " + newUrl);
+
+    private synchronized OkHttpClient getProbeClient() {
+        if (probeClient == null) {
+            // Probes go to the server they name, not through the routing interceptor
+            OkHttpClient.Builder builder = HttpStack.getInstance(context).getProbeClient().newBuilder()
+                .connectTimeout(HEALTH_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(HEALTH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            builder.interceptors().clear();
+            probeClient = builder.build();
+        }
+        return probeClient;
     }
-    
+
     public boolean isOnWiFi() {
         ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm == null) return false;
-        
+
         Network activeNetwork = cm.getActiveNetwork();
         if (activeNetwork == null) return false;
-        
+
         NetworkCapabilities caps = cm.getNetworkCapabilities(activeNetwork);
         return caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
     }
-    
+
     public boolean isOnMobileData() {
         ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm == null) return false;
-        
+
         Network activeNetwork = cm.getActiveNetwork();
         if (activeNetwork == null) return false;
-        
+
         NetworkCapabilities caps = cm.getNetworkCapabilities(activeNetwork);
         return caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR);
     }
-    
+
     public String getNetworkInfo() {
         if (isOnWiFi()) {
             return "WiFi";
@@ -146,20 +185,49 @@ public class ServerConfig {
             return "Unknown";
         }
     }
-    
-    // Force refresh server selection
+
+    // Force a new health check
     public void forceRefresh() {
-        lastHealthCheck = 0;
         checkServerHealth();
     }
-    
+
     // Get all configured servers for debugging
     public List<String> getAllServers() {
         return SERVER_URLS;
     }
-    
-    // Manual server override (for testing)
+
+    // Manual server override (for testing); null goes back to the public server
     public void setServerUrl(String url) {
-        updateServerUrl(url);
+        prefs.edit().putString(PREF_PINNED_SERVER, url).apply();
+        Log.i(TAG, "📌 Server pinned to: " + url);
+        forceRefresh();
+    }
+
+    public synchronized String getStats() {
+        String rtt = rttMs >= 0 ? rttMs + "ms" : "unreachable";
+        return "Server: " + getServerUrl() + " (" + (checks > 0 ? rtt : "?") + "), " + checks +
+               " health checks, " + failedChecks + " failed";
+    }
+
+    /**
+     * Rewrites requests for {@link #PUBLIC_URL} to the pinned server.
+     */
+    private class PinnedRoute implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            String pinned = prefs.getString(PREF_PINNED_SERVER, null);
+            HttpUrl target = pinned != null ? HttpUrl.parse(pinned) : null;
+            HttpUrl publicUrl = HttpUrl.get(PUBLIC_URL);
+            if (target == null || !request.url().host().equals(publicUrl.host())) {
+                return chain.proceed(request);
+            }
+            HttpUrl url = request.url().newBuilder()
+                .scheme(target.scheme())
+                .host(target.host())
+                .port(target.port())
+                .build();
+            return chain.proceed(request.newBuilder().url(url).build());
+        }
     }
-} 
\ No newline at end of file
+}
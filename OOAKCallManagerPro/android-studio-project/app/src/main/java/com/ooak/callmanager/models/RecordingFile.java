@@ -1,9 +1,9 @@
 package com.ooak.callmanager.models;
 
+import com.ooak.callmanager.utils.RecordingCatalog;
+
 import java.io.File;
 import java.util.Date;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RecordingFile {
     private String filePath;
@@ -52,28 +52,9 @@ public class RecordingFile {
     }
     
     private String extractPhoneNumber(String fileName) {
-        // Common patterns for phone numbers in recording filenames
-        String[] patterns = {
-            "\\+?\\d{10,15}",           // Basic phone number
-            "\\+\\d{1,3}\\d{10}",       // International format
-            "\\d{3}-\\d{3}-\\d{4}",     // US format with dashes
-            "\\(\\d{3}\\)\\d{3}-\\d{4}" // US format with parentheses
-        };
-        
-        for (String pattern : patterns) {
-            Pattern p = Pattern.compile(pattern);
-            Matcher m = p.matcher(fileName);
-            if (m.find()) {
-                String number = m.group();
-                // Clean up the number
-                number = number.replaceAll("[^\\d+]", "");
-                if (number.length() >= 10) {
-                    return number;
-                }
-            }
-        }
-        
-        return "Unknown";
+        // Same parser as the recording catalog, so timestamps are not taken for numbers
+        String digits = RecordingCatalog.parseName(fileName).phoneDigits;
+        return digits != null ? digits : "Unknown";
     }
     
     public boolean isValidRecording() {
@@ -5,8 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.util.Log;
-import com.ooak.callmanager.services.CallMonitoringService;
-import com.ooak.callmanager.services.RecordingMonitorService;
+import com.ooak.callmanager.services.CallEngineService;
 
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
@@ -28,15 +27,9 @@ public class BootReceiver extends BroadcastReceiver {
                 Log.i(TAG, "Employee authenticated, starting background services for: " + employeeId);
                 
                 try {
-                    // Start Call Monitoring Service
-                    Intent callMonitorIntent = new Intent(context, CallMonitoringService.class);
-                    context.startForegroundService(callMonitorIntent);
+                    CallEngineService.start(context);
                     
-                    // Start Recording Monitor Service
-                    Intent recordingMonitorIntent = new Intent(context, RecordingMonitorService.class);
-                    context.startForegroundService(recordingMonitorIntent);
-                    
-                    Log.i(TAG, "Background services started successfully after boot");
+                    Log.i(TAG, "Call engine started successfully after boot");
                     
                 } catch (Exception e) {
                     Log.e(TAG, "Failed to start services after boot", e);
@@ -0,0 +1,224 @@
+package com.ooak.callmanager.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.ooak.callmanager.api.HttpStack;
+import com.ooak.callmanager.utils.CallEventLoop;
+import com.ooak.callmanager.utils.EmployeeAuthManager;
+import com.ooak.callmanager.utils.SharedExecutors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The background side of the app, in one place.
+ *
+ * Telephony, call triggers, recordings and uploads used to be four services,
+ * each with its own auth manager, HTTP client, threads and (for two of them)
+ * foreground notification. They are now modules of this engine: started and
+ * stopped together, in order, by {@link CallEngineService}, and sharing what
+ * the engine owns - one auth session, one {@link HttpStack} and the
+ * {@link SharedExecutors} threads.
+ */
+public class CallEngine {
+    private static final String TAG = "CallEngine";
+
+    /**
+     * One part of the engine. start() and stop() are called once each per
+     * engine run, in order, on the engine's own serial executor - never on
+     * the main thread; one-off jobs belong on {@link CallEngine#getExecutor()}.
+     */
+    public interface Module {
+        String getName();
+
+        void start(CallEngine engine);
+
+        void stop();
+
+        String getStats();
+    }
+
+    /**
+     * Whatever shows the engine to the user; the foreground service while it runs.
+     */
+    public interface Host {
+        void showStatus(String text);
+
+        void showAlert(String title, String text);
+    }
+
+    private static CallEngine instance;
+
+    private final Context context;
+    private final EmployeeAuthManager authManager;
+    private final TelephonyModule telephony = new TelephonyModule();
+    private final List<Module> modules;
+    private final List<Module> started = new ArrayList<>();
+    private final Map<Module, Long> startMs = new HashMap<>();
+    // Start, stop and commands run here, in order, off the main thread
+    private final ExecutorService lane = SharedExecutors.newSerialExecutor(TAG);
+    private volatile Host host;
+    private volatile boolean running = false;
+    private long startupMs = 0;
+    private int starts = 0;
+
+    private CallEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.authManager = EmployeeAuthManager.getInstance(this.context);
+        // Telephony first: a trigger that arrives as the engine starts needs it
+        this.modules = Collections.unmodifiableList(Arrays.asList(
+            telephony, new TriggerModule(), new RecordingModule(), new UploadModule()));
+    }
+
+    public static synchronized CallEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallEngine(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start every module. Nothing runs without a logged-in employee.
+     *
+     * Module start-up opens databases, observers and connections, so it runs
+     * on the engine's executor and the caller (the service's onCreate on the
+     * main thread) returns at once.
+     *
+     * @return false if there is no logged-in employee and nothing will start
+     */
+    public boolean start() {
+        String employeeId = authManager.getEmployeeId();
+        if (!authManager.isEmployeeAuthenticated() || employeeId == null || employeeId.isEmpty()) {
+            Log.e(TAG, "❌ No employee ID found - engine not started");
+            return false;
+        }
+        lane.execute(() -> startModules(employeeId));
+        return true;
+    }
+
+    public void stop() {
+        lane.execute(this::stopModules);
+    }
+
+    private synchronized void startModules(String employeeId) {
+        if (running) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        for (Module module : modules) {
+            long moduleStartedAt = System.nanoTime();
+            try {
+                module.start(this);
+                started.add(module);
+                startMs.put(module, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - moduleStartedAt));
+            } catch (RuntimeException e) {
+                // One broken module must not take call tracking down with it
+                Log.e(TAG, "❌ Module " + module.getName() + " failed to start", e);
+            }
+        }
+        running = true;
+        starts++;
+        startupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        Log.d(TAG, "🚀 Engine started for " + employeeId + " in " + startupMs + " ms (" +
+              started.size() + "/" + modules.size() + " modules)");
+    }
+
+    private synchronized void stopModules() {
+        if (!running) {
+            return;
+        }
+        for (int i = started.size() - 1; i >= 0; i--) {
+            Module module = started.get(i);
+            try {
+                module.stop();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "❌ Module " + module.getName() + " failed to stop", e);
+            }
+        }
+        started.clear();
+        running = false;
+        Log.d(TAG, "🛑 Engine stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * A command sent to the engine service, e.g. "make_call" from the CRM.
+     * Queued behind start(), so a command that starts the service is not lost.
+     */
+    public void handleCommand(Intent intent) {
+        if (intent == null || !intent.hasExtra("action")) {
+            return;
+        }
+        lane.execute(() -> {
+            if (running) {
+                telephony.handleCommand(intent);
+            }
+        });
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public EmployeeAuthManager getAuthManager() {
+        return authManager;
+    }
+
+    /**
+     * Built on first use, by a module on the engine's executor, not by the
+     * service's onCreate.
+     */
+    public HttpStack getHttp() {
+        return HttpStack.getInstance(context);
+    }
+
+    /**
+     * The shared pool, for one-off background jobs such as a status post.
+     */
+    public ExecutorService getExecutor() {
+        return SharedExecutors.pool();
+    }
+
+    public void setHost(Host host) {
+        this.host = host;
+    }
+
+    public void showStatus(String text) {
+        Host current = host;
+        if (current != null) {
+            current.showStatus(text);
+        }
+    }
+
+    public void showAlert(String title, String text) {
+        Host current = host;
+        if (current != null) {
+            current.showAlert(title, text);
+        }
+    }
+
+    public synchronized String getStats() {
+        StringBuilder stats = new StringBuilder("Engine: ")
+            .append(running ? "running" : "stopped")
+            .append(", ").append(started.size()).append("/").append(modules.size()).append(" modules")
+            .append(", started in ").append(startupMs).append(" ms (").append(starts).append(" starts)")
+            .append(", ").append(SharedExecutors.getStats())
+            .append("\n  ").append(CallEventLoop.getStats());
+        for (Module module : started) {
+            stats.append("\n  ").append(module.getName()).append(" (").append(startMs.get(module))
+                .append(" ms): ").append(module.getStats());
+        }
+        return stats.toString();
+    }
+}
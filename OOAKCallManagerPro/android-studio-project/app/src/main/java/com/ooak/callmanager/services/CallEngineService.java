@@ -0,0 +1,149 @@
+package com.ooak.callmanager.services;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.ooak.callmanager.MainActivity;
+import com.ooak.callmanager.R;
+
+/**
+ * Keeps the {@link CallEngine} alive: the one foreground service (and the one
+ * ongoing notification) of the app. Everything the engine does lives in its
+ * modules; this class only starts, stops and shows it.
+ */
+public class CallEngineService extends Service implements CallEngine.Host {
+
+    private static final String TAG = "CallEngineService";
+    private static final String CHANNEL_ID = "call_monitoring_channel";
+    private static final int NOTIFICATION_ID = 1001;
+    private static final int ALERT_NOTIFICATION_ID = 2000;
+
+    private CallEngine engine;
+
+    /**
+     * Start the engine service, from an activity or a receiver.
+     */
+    public static void start(Context context) {
+        Intent intent = new Intent(context, CallEngineService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, CallEngineService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.d(TAG, "🎯 Call engine service created");
+
+        createNotificationChannel();
+        startForeground(NOTIFICATION_ID, createNotification("Call monitoring active"));
+
+        engine = CallEngine.getInstance(this);
+        engine.setHost(this);
+        if (!engine.start()) {
+            stopSelf();
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        Log.d(TAG, "Call engine service started");
+
+        // Handle CRM commands
+        engine.handleCommand(intent);
+
+        return START_STICKY; // Restart if killed
+    }
+
+    @Override
+    public void showStatus(String text) {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) {
+            manager.notify(NOTIFICATION_ID, createNotification(text));
+        }
+    }
+
+    @Override
+    public void showAlert(String title, String text) {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager == null) {
+            return;
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_phone)
+            .setContentTitle(title)
+            .setContentText(text)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .setAutoCancel(true);
+        manager.notify(ALERT_NOTIFICATION_ID, builder.build());
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                "Call Monitoring",
+                NotificationManager.IMPORTANCE_LOW
+            );
+            channel.setDescription("Monitors phone calls and recordings for OOAK CRM integration");
+
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+
+    private Notification createNotification(String text) {
+        Intent notificationIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+            this, 0, notificationIntent,
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0
+        );
+
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setContentTitle("OOAK Call Manager")
+            .setContentText(text)
+            .setSmallIcon(R.drawable.ic_phone)
+            .setContentIntent(pendingIntent)
+            .setOngoing(true)
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .build();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null; // Not a bound service
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        Log.d(TAG, "Call engine service destroyed");
+
+        engine.setHost(null);
+        engine.stop();
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        // Don't stop the engine when the app is swiped away
+        Log.d(TAG, "Task removed, call engine continues running");
+    }
+}
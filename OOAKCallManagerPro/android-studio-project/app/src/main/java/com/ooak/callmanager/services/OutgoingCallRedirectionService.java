@@ -0,0 +1,34 @@
+package com.ooak.callmanager.services;
+
+import android.content.Context;
+import android.net.Uri;
+import android.telecom.CallRedirectionService;
+import android.telecom.PhoneAccountHandle;
+import android.util.Log;
+
+import com.ooak.callmanager.utils.CallEventLoop;
+import com.ooak.callmanager.utils.CallSessionEngine;
+
+/**
+ * Sees every outgoing call before it is placed (Android 10+, once the app
+ * holds the call redirection role) and hands its number to the session
+ * engine on the {@link CallEventLoop}, in order with the phone state
+ * broadcasts. The call itself always goes through unchanged, at once.
+ */
+public class OutgoingCallRedirectionService extends CallRedirectionService {
+    private static final String TAG = "OutgoingCallRedirection";
+
+    @Override
+    public void onPlaceCall(Uri handle, PhoneAccountHandle initialPhoneAccount, boolean allowInteractiveResponse) {
+        String number = handle != null ? handle.getSchemeSpecificPart() : null;
+        Log.d(TAG, "📞 Outgoing call to " + number);
+        Context appContext = getApplicationContext();
+        try {
+            CallEventLoop.post(() -> CallSessionEngine.getInstance(appContext).onOutgoingNumber(number));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Could not note outgoing number", e);
+        } finally {
+            placeCallUnmodified();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ooak.callmanager.services;
+
+import android.util.Log;
+import android.widget.Toast;
+
+import com.ooak.callmanager.api.RecordingPipeline;
+import com.ooak.callmanager.utils.CallLogReader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds the recording pipeline: recordings from the catalog it watches, and
+ * every finished call from the call log, so it can find, upload and link the
+ * recording of each call.
+ */
+class RecordingModule implements CallEngine.Module {
+    private static final String TAG = "RecordingModule";
+
+    private CallEngine engine;
+    private RecordingPipeline recordingPipeline;
+    private CallLogReader callLogReader;
+    private final AtomicLong callsOffered = new AtomicLong();
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // Each call log row arrives once, in order
+    private final CallLogReader.Listener callLogListener = entry -> {
+        if (entry.durationSec > 0) {
+            // The pipeline ignores calls it already knows about
+            callsOffered.incrementAndGet();
+            recordingPipeline.onCallEnded(entry.number, entry.cachedName, entry.getDirection(),
+                                          entry.date, entry.getEndTime());
+        }
+    };
+
+    private final RecordingPipeline.Listener uploadListener = new RecordingPipeline.Listener() {
+        @Override
+        public void onRecordingUploaded(String fileName, String contactName, boolean matched) {
+            Log.d(TAG, "Recording uploaded successfully to OOAK-FUTURE: " + fileName);
+            uploads.incrementAndGet();
+            engine.showStatus("Recording uploaded: " + fileName);
+            if (matched) {
+                Toast.makeText(engine.getContext(),
+                    "📤 Call recording uploaded: " + contactName, Toast.LENGTH_SHORT).show();
+            }
+        }
+
+        @Override
+        public void onRecordingFailed(String fileName, String error) {
+            Log.e(TAG, "Failed to upload recording to OOAK-FUTURE: " + error);
+            failures.incrementAndGet();
+            engine.showStatus("Recording upload failed");
+            Toast.makeText(engine.getContext(),
+                "❌ Upload failed: " + error, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    @Override
+    public String getName() {
+        return "recordings";
+    }
+
+    @Override
+    public void start(CallEngine engine) {
+        this.engine = engine;
+        recordingPipeline = RecordingPipeline.getInstance(engine.getContext());
+        callLogReader = CallLogReader.getInstance(engine.getContext());
+
+        recordingPipeline.addListener(uploadListener);
+        recordingPipeline.start();
+        callLogReader.addListener(callLogListener);
+        callLogReader.start();
+        Log.d(TAG, "🎙️ Recording detection started");
+    }
+
+    @Override
+    public void stop() {
+        callLogReader.removeListener(callLogListener);
+        callLogReader.stop();
+        recordingPipeline.removeListener(uploadListener);
+        recordingPipeline.stop();
+        Log.d(TAG, "🛑 Recording detection stopped");
+    }
+
+    @Override
+    public String getStats() {
+        return callsOffered.get() + " calls offered, " + uploads.get() + " uploaded, " + failures.get() + " failed";
+    }
+}
@@ -0,0 +1,214 @@
+package com.ooak.callmanager.services;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+import com.ooak.callmanager.api.CallTriggerChannel;
+import com.ooak.callmanager.api.OOAKCRMApiClient;
+import com.ooak.callmanager.models.CallRecord;
+import com.ooak.callmanager.utils.CallLogReader;
+import com.ooak.callmanager.utils.CallSessionEngine;
+import com.ooak.callmanager.utils.ContactHelper;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows every call from the session engine to the CRM: who is calling,
+ * ringing, connected, and how it ended. Also carries out the "make_call" and
+ * "update_status" commands the CRM sends to the engine service.
+ */
+class TelephonyModule implements CallEngine.Module {
+    private static final String TAG = "TelephonyModule";
+
+    private CallEngine engine;
+    private OOAKCRMApiClient crmApiClient;
+    private ContactHelper contactHelper;
+    private CallSessionEngine sessions;
+    private CallLogReader callLogReader;
+    private final AtomicLong callChanges = new AtomicLong();
+
+    // Calls come from PhoneStateReceiver through the session engine, one change at a time
+    private final CallSessionEngine.Listener sessionListener = this::handleCallSessionChanged;
+
+    @Override
+    public String getName() {
+        return "telephony";
+    }
+
+    @Override
+    public void start(CallEngine engine) {
+        this.engine = engine;
+        crmApiClient = new OOAKCRMApiClient(engine.getContext());
+        contactHelper = new ContactHelper(engine.getContext());
+        sessions = CallSessionEngine.getInstance(engine.getContext());
+        callLogReader = CallLogReader.getInstance(engine.getContext());
+
+        sessions.addListener(sessionListener);
+        // Numbers no broadcast carried are filled in from the call log
+        callLogReader.start();
+
+        Log.d(TAG, "📞 Call monitoring started - Employee: " + engine.getAuthManager().getEmployeeId());
+        Log.d(TAG, contactHelper.getCacheInfo());
+    }
+
+    @Override
+    public void stop() {
+        sessions.removeListener(sessionListener);
+        callLogReader.stop();
+        Log.d(TAG, "🛑 Call monitoring stopped");
+    }
+
+    @Override
+    public String getStats() {
+        return callChanges.get() + " call changes, " + sessions.getActiveCalls().size() + " active";
+    }
+
+    void handleCommand(Intent intent) {
+        String action = intent.getStringExtra("action");
+        String phoneNumber = intent.getStringExtra("phone_number");
+        String taskId = intent.getStringExtra("task_id");
+        String leadId = intent.getStringExtra("lead_id");
+
+        Log.d(TAG, "Handling CRM command: " + action + " for " + phoneNumber);
+
+        switch (action) {
+            case "make_call":
+                initiateCall(phoneNumber, taskId, leadId);
+                break;
+            case "update_status":
+                updateCallStatus(taskId, intent.getStringExtra("status"));
+                break;
+        }
+    }
+
+    private void initiateCall(String phoneNumber, String taskId, String leadId) {
+        CallRecord call = new CallRecord();
+        try {
+            // Create call record before making call
+            call.setPhoneNumber(phoneNumber);
+            call.setTaskId(taskId);
+            call.setLeadId(leadId);
+            call.setEmployeeId(engine.getAuthManager().getEmployeeId());
+            call.setStartTime(new Date());
+            call.setDirection("outgoing");
+            call.setStatus("initiating");
+
+            // Becomes the call's session once the dialer starts it
+            sessions.expectOutgoingCall(call);
+
+            // Notify CRM that call is being initiated
+            crmApiClient.updateCallStatus(call);
+
+            // Make the actual phone call
+            Intent callIntent = new Intent(Intent.ACTION_CALL);
+            callIntent.setData(Uri.parse("tel:" + phoneNumber));
+            callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            engine.getContext().startActivity(callIntent);
+
+            Log.d(TAG, "Call initiated to: " + phoneNumber);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error initiating call", e);
+            call.setStatus("failed");
+            call.setErrorMessage(e.getMessage());
+            crmApiClient.updateCallStatus(call);
+        }
+    }
+
+    private void updateCallStatus(String taskId, String status) {
+        // Find call by task ID and update status
+        for (CallRecord call : sessions.getActiveCalls()) {
+            if (taskId.equals(call.getTaskId())) {
+                call.setStatus(status);
+                crmApiClient.updateCallStatus(call);
+                break;
+            }
+        }
+    }
+
+    /**
+     * One call changed status; the session engine has already dropped repeats.
+     */
+    private void handleCallSessionChanged(CallRecord call) {
+        String status = call.getStatus();
+        callChanges.incrementAndGet();
+        Log.d(TAG, "📞 Call " + call.getPhoneNumber() + " (" + call.getDirection() + "): " + status);
+
+        if ("ringing".equals(status) || "connected".equals(status)) {
+            // The status updates of this call should not pay for a TLS handshake
+            engine.getHttp().warmUp();
+            if (call.getLeadId() == null && call.getContactName() == null) {
+                identifyCaller(call);
+            }
+            if ("ringing".equals(status)) {
+                engine.showStatus("Incoming call: " + call.getContactName());
+            } else {
+                CallTriggerChannel.getInstance(engine.getContext()).setCallActive(true);
+                engine.showStatus("Call in progress: " + call.getPhoneNumber());
+            }
+        } else {
+            Log.d(TAG, "📊 FINAL CALL SUMMARY:");
+            Log.d(TAG, "   📞 Phone: " + call.getPhoneNumber());
+            Log.d(TAG, "   ⏰ Ringing: " + call.getRingingDuration() + "s");
+            Log.d(TAG, "   💬 Talking: " + call.getTalkingDuration() + "s");
+            Log.d(TAG, "   📊 Total: " + call.getDuration() + "s");
+            Log.d(TAG, "   ✅ Status: " + status);
+
+            boolean stillOnCall = sessions.hasActiveCalls();
+            CallTriggerChannel.getInstance(engine.getContext()).setCallActive(stillOnCall);
+            if (!stillOnCall) {
+                engine.showStatus("Call monitoring active");
+            }
+        }
+
+        try {
+            crmApiClient.updateCallStatus(call);
+            Log.d(TAG, "✅ Sent " + status + " status to CRM: " + call.getPhoneNumber());
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error sending " + status + " status to CRM", e);
+        }
+    }
+
+    /**
+     * Name, lead and task for a call the app did not place itself: mobile
+     * contacts first, then the CRM directory, whose name wins.
+     */
+    private void identifyCaller(CallRecord call) {
+        String phoneNumber = call.getPhoneNumber();
+
+        // Try to get caller name from mobile contacts first
+        String mobileContactName = contactHelper.getContactName(phoneNumber);
+        if (mobileContactName != null) {
+            call.setContactName(mobileContactName);
+            // We have a meaningful name from mobile contacts
+            call.setMobileContactName(mobileContactName);
+            Log.d(TAG, "📱 Found mobile contact: " + mobileContactName + " for " + phoneNumber);
+        } else {
+            call.setContactName(("incoming".equals(call.getDirection()) ? "Incoming Call - " : "Mobile Call - ") + phoneNumber);
+            Log.d(TAG, "📱 No mobile contact found for: " + phoneNumber);
+        }
+
+        // Known lead/task in CRM? Answered from the on-device directory, so the
+        // status sent next already carries it (CRM name overrides mobile contact)
+        crmApiClient.lookupContact(phoneNumber, new OOAKCRMApiClient.ContactLookupCallback() {
+            @Override
+            public void onContactFound(String leadId, String taskId, String contactName) {
+                call.setLeadId(leadId);
+                if (taskId != null) {
+                    call.setTaskId(taskId);
+                }
+                if (contactName != null && !contactName.trim().isEmpty()) {
+                    call.setContactName(contactName);
+                }
+                Log.d(TAG, "📋 CRM contact: " + call.getContactName() + " (lead " + leadId + ", task " + taskId + ")");
+            }
+
+            @Override
+            public void onContactNotFound() {
+                Log.d(TAG, "📋 Contact not found in CRM for: " + phoneNumber + " (using mobile contact: " + call.getContactName() + ")");
+            }
+        });
+    }
+}
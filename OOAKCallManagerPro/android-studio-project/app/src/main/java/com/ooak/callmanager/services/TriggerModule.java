@@ -0,0 +1,143 @@
+package com.ooak.callmanager.services;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+import com.ooak.callmanager.api.CallTriggerChannel;
+import com.ooak.callmanager.config.ServerConfig;
+import com.ooak.callmanager.models.CallRecord;
+import com.ooak.callmanager.utils.CallSessionEngine;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Places the calls the CRM dashboard asks for. Triggers arrive over the shared
+ * push channel; each pending one is marked executed, shown to the user, given
+ * a call record (with its task) ahead of the dialer, and dialled.
+ */
+class TriggerModule implements CallEngine.Module {
+    private static final String TAG = "TriggerModule";
+    private static final String STATUS_ENDPOINT = "/api/poll-call-triggers";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private CallEngine engine;
+    private CallTriggerChannel channel;
+    private final AtomicLong triggers = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final CallTriggerChannel.Listener triggerListener = this::processTrigger;
+
+    @Override
+    public String getName() {
+        return "triggers";
+    }
+
+    @Override
+    public void start(CallEngine engine) {
+        this.engine = engine;
+        channel = CallTriggerChannel.getInstance(engine.getContext());
+        channel.addListener(triggerListener);
+        Log.d(TAG, "📡 Listening for call triggers");
+    }
+
+    @Override
+    public void stop() {
+        channel.removeListener(triggerListener);
+        Log.d(TAG, "🛑 Stopped listening for call triggers");
+    }
+
+    @Override
+    public String getStats() {
+        return triggers.get() + " triggers, " + failures.get() + " failed, " +
+               (channel.isStreaming() ? "streaming" : "polling");
+    }
+
+    private void processTrigger(JSONObject trigger) {
+        try {
+            int triggerId = trigger.getInt("id");
+            String phoneNumber = trigger.getString("phone_number");
+            String clientName = trigger.optString("client_name", "Unknown Client");
+            String taskId = trigger.optString("task_id", "");
+            String status = trigger.getString("status");
+
+            // Stream events carry the trigger row as stored, i.e. still pending
+            if (!"pending".equals(status) || phoneNumber.isEmpty()) {
+                return;
+            }
+            triggers.incrementAndGet();
+            Log.i(TAG, "🔔 Call trigger received: ID=" + triggerId + ", " + clientName + " (" + phoneNumber + ")");
+
+            updateTriggerStatus(triggerId, "executed", null);
+            engine.showAlert("Call Trigger Received", "Calling " + clientName + " (" + phoneNumber + ")");
+
+            CallRecord triggeredCall = new CallRecord();
+            triggeredCall.setPhoneNumber(phoneNumber);
+            triggeredCall.setContactName(clientName);
+            triggeredCall.setTaskId(taskId.isEmpty() ? null : taskId);
+            triggeredCall.setEmployeeId(engine.getAuthManager().getEmployeeId());
+            triggeredCall.setDirection("outgoing");
+            triggeredCall.setStatus("initiating");
+            CallSessionEngine.getInstance(engine.getContext()).expectOutgoingCall(triggeredCall);
+            engine.showStatus("Calling " + clientName + " (" + phoneNumber + ")");
+
+            makeCall(phoneNumber, triggerId);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing trigger", e);
+        }
+    }
+
+    private void makeCall(String phoneNumber, int triggerId) {
+        try {
+            Intent callIntent = new Intent(Intent.ACTION_CALL);
+            callIntent.setData(Uri.parse("tel:" + phoneNumber));
+            callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            engine.getContext().startActivity(callIntent);
+
+            Log.d(TAG, "Call initiated successfully for trigger ID: " + triggerId);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error making call", e);
+            failures.incrementAndGet();
+            updateTriggerStatus(triggerId, "failed", "Error making call: " + e.getMessage());
+        }
+    }
+
+    private void updateTriggerStatus(int triggerId, String status, String responseData) {
+        String employeeId = engine.getAuthManager().getEmployeeId();
+        engine.getExecutor().execute(() -> {
+            try {
+                String url = ServerConfig.PUBLIC_URL + STATUS_ENDPOINT;
+                Log.d(TAG, "Updating trigger status: " + triggerId + " to " + status);
+
+                JSONObject requestBody = new JSONObject();
+                requestBody.put("triggerId", triggerId);
+                requestBody.put("status", status);
+                requestBody.put("employeeId", employeeId);
+                if (responseData != null) {
+                    requestBody.put("responseData", responseData);
+                }
+
+                Request request = new Request.Builder()
+                    .url(url)
+                    .post(RequestBody.create(requestBody.toString(), JSON))
+                    .build();
+
+                try (Response response = engine.getHttp().getApiClient().newCall(request).execute()) {
+                    Log.d(TAG, "Update trigger status response: " + response.code());
+                }
+
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating trigger status", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.ooak.callmanager.services;
+
+import android.util.Log;
+
+import com.ooak.callmanager.api.CallLogBackfill;
+import com.ooak.callmanager.api.RecordingPipeline;
+
+/**
+ * Catches up on what happened while the engine was not running: recording
+ * uploads cut off by process death or a reboot, and calls that only made it
+ * into the call log. The uploads themselves run in WorkManager and outlive
+ * the engine, so there is nothing to stop.
+ */
+class UploadModule implements CallEngine.Module {
+    private static final String TAG = "UploadModule";
+
+    private int catchUps = 0;
+
+    @Override
+    public String getName() {
+        return "uploads";
+    }
+
+    @Override
+    public void start(CallEngine engine) {
+        // Finish recording uploads the last run left behind
+        RecordingPipeline.getInstance(engine.getContext()).resumeInterruptedUploads();
+        // Calls made while the engine was not running only exist in the call log
+        CallLogBackfill.getInstance(engine.getContext()).requestRun();
+        catchUps++;
+        Log.d(TAG, "⬆️ Interrupted uploads and call log backfill requested");
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public String getStats() {
+        return catchUps + " catch-ups";
+    }
+}
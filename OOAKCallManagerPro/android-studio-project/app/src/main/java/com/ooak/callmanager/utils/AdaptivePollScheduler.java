@@ -0,0 +1,214 @@
+package com.ooak.callmanager.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Decides how long to wait before the next poll.
+ *
+ * - empty responses widen the interval step by step up to a ceiling
+ * - a response with work in it, or an active call, snaps back to the fast rate
+ * - errors back off exponentially with jitter so a fleet of devices does not
+ *   retry in lockstep after an outage
+ * - Retry-After / next-poll hints from the server always win over our own guess
+ * - nothing is polled while the employee is not authenticated
+ *
+ * The scheduler only does the arithmetic; callers report what happened and
+ * sleep for {@link #nextDelayMs()}. Time and randomness are injected so the
+ * behaviour can be replayed with a fake clock.
+ */
+public class AdaptivePollScheduler {
+
+    public interface Clock {
+        long now();
+
+        Clock SYSTEM = System::currentTimeMillis;
+    }
+
+    private final Clock clock;
+    private final Random random;
+
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final long activeIntervalMs;
+    private final double widenFactor;
+    private final long maxErrorBackoffMs;
+    private final long pausedRecheckMs;
+    private final double jitterRatio;
+
+    private long intervalMs;
+    private int consecutiveErrors = 0;
+    private long retryAfterUntil = 0;
+    private long hintedIntervalMs = 0;
+    private boolean callActive = false;
+    private boolean authenticated = true;
+
+    // Counters for logging / fleet simulation
+    private long polls = 0;
+    private long emptyPolls = 0;
+    private long errors = 0;
+
+    public AdaptivePollScheduler(long minIntervalMs, long maxIntervalMs) {
+        this(minIntervalMs, maxIntervalMs, minIntervalMs, Clock.SYSTEM, new Random());
+    }
+
+    public AdaptivePollScheduler(long minIntervalMs, long maxIntervalMs, long activeIntervalMs,
+                                 Clock clock, Random random) {
+        this.clock = clock;
+        this.random = random;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.activeIntervalMs = Math.min(activeIntervalMs, minIntervalMs);
+        this.widenFactor = 1.5;
+        this.maxErrorBackoffMs = Math.max(maxIntervalMs, 5 * 60 * 1000);
+        this.pausedRecheckMs = 30 * 1000;
+        this.jitterRatio = 0.2;
+        this.intervalMs = minIntervalMs;
+    }
+
+    /**
+     * The poll came back with nothing to do.
+     */
+    public synchronized void onEmptyResponse() {
+        polls++;
+        emptyPolls++;
+        consecutiveErrors = 0;
+        intervalMs = Math.min(maxIntervalMs, (long) (intervalMs * widenFactor));
+    }
+
+    /**
+     * The poll returned work - more is likely to follow soon.
+     */
+    public synchronized void onWorkReceived() {
+        polls++;
+        consecutiveErrors = 0;
+        intervalMs = minIntervalMs;
+    }
+
+    /**
+     * HTTP error or network failure.
+     *
+     * @param retryAfterMs server-requested wait (from Retry-After), or 0
+     */
+    public synchronized void onError(long retryAfterMs) {
+        polls++;
+        errors++;
+        consecutiveErrors++;
+        if (retryAfterMs > 0) {
+            retryAfterUntil = clock.now() + retryAfterMs;
+        }
+    }
+
+    /**
+     * The server suggested how often to poll (e.g. a "nextPollMs" field).
+     * Stays in effect until the server says otherwise; 0 clears it.
+     */
+    public synchronized void setServerHint(long nextPollMs) {
+        hintedIntervalMs = Math.max(0, nextPollMs);
+    }
+
+    public synchronized void setCallActive(boolean active) {
+        callActive = active;
+        if (!active) {
+            // Right after a call is when the next trigger usually comes
+            intervalMs = minIntervalMs;
+        }
+    }
+
+    public synchronized void setAuthenticated(boolean authenticated) {
+        this.authenticated = authenticated;
+    }
+
+    public synchronized boolean isPaused() {
+        return !authenticated;
+    }
+
+    /**
+     * How long to wait before the next poll, jitter included.
+     */
+    public synchronized long nextDelayMs() {
+        if (!authenticated) {
+            return pausedRecheckMs;
+        }
+
+        long now = clock.now();
+        long delay;
+        if (consecutiveErrors > 0) {
+            long backoff = minIntervalMs << Math.min(consecutiveErrors, 16);
+            delay = Math.min(maxErrorBackoffMs, backoff);
+        } else if (hintedIntervalMs > 0) {
+            delay = hintedIntervalMs;
+        } else if (callActive) {
+            delay = activeIntervalMs;
+        } else {
+            delay = intervalMs;
+        }
+
+        delay += (long) (delay * jitterRatio * random.nextDouble());
+
+        // A Retry-After is a floor, not a suggestion
+        if (retryAfterUntil > now) {
+            delay = Math.max(delay, retryAfterUntil - now);
+        }
+        return delay;
+    }
+
+    public synchronized void reset() {
+        intervalMs = minIntervalMs;
+        consecutiveErrors = 0;
+        retryAfterUntil = 0;
+        hintedIntervalMs = 0;
+    }
+
+    public synchronized long getCurrentIntervalMs() {
+        return intervalMs;
+    }
+
+    public synchronized long getPollCount() {
+        return polls;
+    }
+
+    public synchronized long getEmptyPollCount() {
+        return emptyPolls;
+    }
+
+    public synchronized long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Parse a Retry-After header: either delta-seconds or an HTTP date.
+     *
+     * @return milliseconds to wait, or 0 if absent / unparseable
+     */
+    public static long parseRetryAfter(String header, Clock clock) {
+        if (header == null || header.trim().isEmpty()) {
+            return 0;
+        }
+        String value = header.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+            // Not seconds, try the date form
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            Date date = format.parse(value);
+            return date != null ? Math.max(0, date.getTime() - clock.now()) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Polls: " + polls + " (empty: " + emptyPolls + ", errors: " + errors + ")" +
+               ", interval: " + (intervalMs / 1000) + "s" +
+               (callActive ? ", call active" : "") +
+               (authenticated ? "" : ", paused");
+    }
+}
@@ -0,0 +1,455 @@
+package com.ooak.callmanager.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+
+/**
+ * Exact recording durations from container headers, without decoding.
+ *
+ * Each format is read with a few seeks and small reads:
+ *   MP4 / M4A / 3GP  - mvhd (or mdhd) timescale and duration
+ *   WAV              - data chunk size / byte rate
+ *   AMR-NB / AMR-WB  - frame count x 20 ms; constant-rate files are counted
+ *                      from the file length, others by walking frame headers
+ *   MP3              - Xing/Info or VBRI frame count, else the constant bit
+ *                      rate, else a frame header walk
+ *   Ogg (Opus/Vorbis)- granule position of the last page
+ * Plain Java, so it runs on a desktop JVM too.
+ */
+public final class AudioDurationParser {
+
+    public static final long UNKNOWN = -1;
+
+    private static final long AMR_FRAME_US = 20000;
+    private static final int AMR_SAMPLE_FRAMES = 64;
+    private static final int MP3_SAMPLE_FRAMES = 8;
+    private static final int MP3_SYNC_SEARCH_BYTES = 64 * 1024;
+    private static final int OGG_TAIL_BYTES = 64 * 1024;
+    private static final int SCAN_BLOCK_BYTES = 64 * 1024;
+
+    // Storage-format frame sizes including the 1-byte header, by frame type (RFC 4867)
+    private static final int[] AMR_NB_FRAME_BYTES = {13, 14, 16, 18, 20, 21, 27, 32, 6, 1, 1, 1, 1, 1, 1, 1};
+    private static final int[] AMR_WB_FRAME_BYTES = {18, 24, 33, 37, 41, 47, 51, 59, 61, 6, 1, 1, 1, 1, 1, 1};
+
+    // kbps by bit rate index: MPEG-1 layer I/II/III, MPEG-2/2.5 layer I, MPEG-2/2.5 layer II/III
+    private static final int[][] MP3_BIT_RATES = {
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[][] MP3_SAMPLE_RATES = {
+        {11025, 12000, 8000},  // MPEG-2.5
+        null,
+        {22050, 24000, 16000}, // MPEG-2
+        {44100, 48000, 32000}  // MPEG-1
+    };
+
+    private AudioDurationParser() {}
+
+    /**
+     * @return the duration in microseconds, or {@link #UNKNOWN}
+     */
+    public static long getDurationUs(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] head = new byte[12];
+            int read = readAt(in, 0, head, head.length);
+            if (read < 4) {
+                return UNKNOWN;
+            }
+            if (read >= 12 && ascii(head, 0, "RIFF") && ascii(head, 8, "WAVE")) {
+                return wav(in);
+            }
+            if (ascii(head, 0, "#!AMR")) {
+                return amr(in, head);
+            }
+            if (read >= 8 && ascii(head, 4, "ftyp")) {
+                return mp4(in);
+            }
+            if (ascii(head, 0, "OggS")) {
+                return ogg(in);
+            }
+            return mp3(in, head);
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+
+    // ---- WAV ----
+
+    private static long wav(RandomAccessFile in) throws IOException {
+        in.seek(0);
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(
+            new BufferedInputStream(Channels.newInputStream(in.getChannel()), 4096), in.length());
+        long duration = format != null ? format.getDurationUs() : 0;
+        return duration > 0 ? duration : UNKNOWN;
+    }
+
+    // ---- MP4 / M4A / 3GP ----
+
+    private static long mp4(RandomAccessFile in) throws IOException {
+        long[] moov = findBox(in, 0, in.length(), "moov");
+        if (moov == null) {
+            return UNKNOWN;
+        }
+        long[] mvhd = findBox(in, moov[0], moov[1], "mvhd");
+        long duration = mvhd != null ? headerDuration(in, mvhd[0], true) : UNKNOWN;
+        if (duration > 0) {
+            return duration;
+        }
+
+        // Fragmented or streaming writers leave mvhd at 0 - try the first track
+        long[] trak = findBox(in, moov[0], moov[1], "trak");
+        long[] mdia = trak != null ? findBox(in, trak[0], trak[1], "mdia") : null;
+        long[] mdhd = mdia != null ? findBox(in, mdia[0], mdia[1], "mdhd") : null;
+        return mdhd != null ? headerDuration(in, mdhd[0], false) : UNKNOWN;
+    }
+
+    /**
+     * @return {payload start, box end} of the first box of this type, or null
+     */
+    private static long[] findBox(RandomAccessFile in, long start, long end, String type) throws IOException {
+        byte[] header = new byte[16];
+        long position = start;
+        while (position + 8 <= end) {
+            if (readAt(in, position, header, 16) < 8) {
+                return null;
+            }
+            long size = readUInt32BE(header, 0);
+            int headerSize = 8;
+            if (size == 1) {
+                size = readInt64BE(header, 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position; // Runs to the end of the file
+            }
+            if (size < headerSize) {
+                return null; // Corrupt
+            }
+            if (ascii(header, 4, type)) {
+                return new long[]{position + headerSize, Math.min(end, position + size)};
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    // mvhd and mdhd share the layout up to the duration
+    private static long headerDuration(RandomAccessFile in, long payload, boolean movieHeader) throws IOException {
+        byte[] box = new byte[32];
+        if (readAt(in, payload, box, box.length) < 24) {
+            return UNKNOWN;
+        }
+        long timescale;
+        long duration;
+        if (box[0] == 1) {
+            timescale = readUInt32BE(box, 20);
+            duration = readInt64BE(box, 24);
+        } else {
+            timescale = readUInt32BE(box, 12);
+            duration = readUInt32BE(box, 16);
+            if (duration == 0xFFFFFFFFL) {
+                return UNKNOWN;
+            }
+        }
+        if (timescale <= 0 || duration <= 0) {
+            return UNKNOWN;
+        }
+        return duration * 1000000L / timescale;
+    }
+
+    // ---- AMR ----
+
+    private static long amr(RandomAccessFile in, byte[] head) throws IOException {
+        int[] frameBytes;
+        long position;
+        if (ascii(head, 0, "#!AMR-WB\n")) {
+            frameBytes = AMR_WB_FRAME_BYTES;
+            position = 9;
+        } else if (ascii(head, 0, "#!AMR\n")) {
+            frameBytes = AMR_NB_FRAME_BYTES;
+            position = 6;
+        } else {
+            return UNKNOWN; // Multi-channel variants
+        }
+        long length = in.length();
+
+        // Most recorders use one mode throughout: check a sample and the last frame
+        byte[] sample = new byte[AMR_SAMPLE_FRAMES * 61];
+        int read = readAt(in, position, sample, sample.length);
+        int constant = read > 0 ? frameBytes[(sample[0] >> 3) & 0x0F] : 0;
+        int offset = 0;
+        for (int i = 0; i < AMR_SAMPLE_FRAMES && offset < read && constant > 0; i++) {
+            if (frameBytes[(sample[offset] >> 3) & 0x0F] != constant) {
+                constant = 0;
+            }
+            offset += constant;
+        }
+        if (constant > 1) {
+            long frames = (length - position) / constant;
+            byte[] last = new byte[1];
+            if (frames > 0 && readAt(in, position + (frames - 1) * constant, last, 1) == 1 &&
+                frameBytes[(last[0] >> 3) & 0x0F] == constant) {
+                return frames * AMR_FRAME_US;
+            }
+        }
+
+        // Variable rate or silence frames mixed in: walk the frame headers
+        long frames = 0;
+        byte[] block = new byte[SCAN_BLOCK_BYTES];
+        long blockStart = 0;
+        int blockLength = 0;
+        while (position < length) {
+            if (position >= blockStart + blockLength) {
+                blockStart = position;
+                blockLength = readAt(in, position, block, block.length);
+                if (blockLength <= 0) {
+                    break;
+                }
+            }
+            position += frameBytes[(block[(int) (position - blockStart)] >> 3) & 0x0F];
+            if (position <= length) {
+                frames++; // A cut-off last frame does not count
+            }
+        }
+        return frames > 0 ? frames * AMR_FRAME_US : UNKNOWN;
+    }
+
+    // ---- MP3 ----
+
+    private static class Mp3Frame {
+        final int version;       // 3 = MPEG-1, 2 = MPEG-2, 0 = MPEG-2.5
+        final int layer;         // 1..3
+        final int bitRate;       // bps
+        final int sampleRate;
+        final boolean mono;
+        final int length;
+
+        Mp3Frame(int version, int layer, int bitRate, int sampleRate, boolean mono, int length) {
+            this.version = version;
+            this.layer = layer;
+            this.bitRate = bitRate;
+            this.sampleRate = sampleRate;
+            this.mono = mono;
+            this.length = length;
+        }
+
+        int samplesPerFrame() {
+            if (layer == 1) return 384;
+            if (layer == 2 || version == 3) return 1152;
+            return 576;
+        }
+
+        int sideInfoBytes() {
+            if (version == 3) return mono ? 17 : 32;
+            return mono ? 9 : 17;
+        }
+    }
+
+    private static long mp3(RandomAccessFile in, byte[] head) throws IOException {
+        long length = in.length();
+        long start = 0;
+        if (ascii(head, 0, "ID3") && head.length >= 10) {
+            byte[] id3 = new byte[10];
+            readAt(in, 0, id3, 10);
+            start = 10 + (((id3[6] & 0x7F) << 21) | ((id3[7] & 0x7F) << 14) |
+                          ((id3[8] & 0x7F) << 7) | (id3[9] & 0x7F));
+            if ((id3[5] & 0x10) != 0) {
+                start += 10; // Footer
+            }
+        }
+        long end = length;
+        byte[] tag = new byte[3];
+        if (length > 128 && readAt(in, length - 128, tag, 3) == 3 && ascii(tag, 0, "TAG")) {
+            end -= 128; // ID3v1
+        }
+
+        // First frame: a valid header followed by another valid header
+        byte[] search = new byte[MP3_SYNC_SEARCH_BYTES];
+        int read = readAt(in, start, search, search.length);
+        long first = -1;
+        Mp3Frame frame = null;
+        for (int i = 0; i + 4 <= read; i++) {
+            Mp3Frame candidate = parseMp3Header(search, i);
+            if (candidate != null) {
+                Mp3Frame next = readMp3Header(in, start + i + candidate.length);
+                if (next != null || start + i + candidate.length >= end) {
+                    first = start + i;
+                    frame = candidate;
+                    break;
+                }
+            }
+        }
+        if (frame == null) {
+            return UNKNOWN;
+        }
+
+        // Xing/Info (LAME) or VBRI (Fraunhofer) header with the frame count
+        byte[] info = new byte[18];
+        if (readAt(in, first + 4 + frame.sideInfoBytes(), info, 12) == 12 &&
+            (ascii(info, 0, "Xing") || ascii(info, 0, "Info")) && (info[7] & 0x01) != 0) {
+            long frames = readUInt32BE(info, 8);
+            return frames * frame.samplesPerFrame() * 1000000L / frame.sampleRate;
+        }
+        if (readAt(in, first + 4 + 32, info, 18) == 18 && ascii(info, 0, "VBRI")) {
+            long frames = readUInt32BE(info, 14);
+            return frames * frame.samplesPerFrame() * 1000000L / frame.sampleRate;
+        }
+
+        // Constant bit rate if the first frames agree
+        boolean constant = true;
+        long position = first;
+        for (int i = 0; i < MP3_SAMPLE_FRAMES && position < end; i++) {
+            Mp3Frame sample = readMp3Header(in, position);
+            if (sample == null) {
+                break;
+            }
+            if (sample.bitRate != frame.bitRate) {
+                constant = false;
+                break;
+            }
+            position += sample.length;
+        }
+        if (constant) {
+            return (end - first) * 8 * 1000000L / frame.bitRate;
+        }
+
+        // Variable bit rate without a header: walk the frames
+        long samples = 0;
+        position = first;
+        while (position < end) {
+            Mp3Frame next = readMp3Header(in, position);
+            if (next == null) {
+                break;
+            }
+            samples += next.samplesPerFrame();
+            position += next.length;
+        }
+        return samples > 0 ? samples * 1000000L / frame.sampleRate : UNKNOWN;
+    }
+
+    private static Mp3Frame readMp3Header(RandomAccessFile in, long position) throws IOException {
+        byte[] header = new byte[4];
+        return readAt(in, position, header, 4) == 4 ? parseMp3Header(header, 0) : null;
+    }
+
+    private static Mp3Frame parseMp3Header(byte[] b, int offset) {
+        if ((b[offset] & 0xFF) != 0xFF || (b[offset + 1] & 0xE0) != 0xE0) {
+            return null;
+        }
+        int version = (b[offset + 1] >> 3) & 0x03;
+        int layerBits = (b[offset + 1] >> 1) & 0x03;
+        int bitRateIndex = (b[offset + 2] >> 4) & 0x0F;
+        int sampleRateIndex = (b[offset + 2] >> 2) & 0x03;
+        int padding = (b[offset + 2] >> 1) & 0x01;
+        boolean mono = ((b[offset + 3] >> 6) & 0x03) == 3;
+        if (version == 1 || layerBits == 0 || bitRateIndex == 0 || bitRateIndex == 15 || sampleRateIndex == 3) {
+            return null;
+        }
+
+        int layer = 4 - layerBits;
+        int table = version == 3 ? layer - 1 : (layer == 1 ? 3 : 4);
+        int bitRate = MP3_BIT_RATES[table][bitRateIndex] * 1000;
+        int sampleRate = MP3_SAMPLE_RATES[version][sampleRateIndex];
+
+        int length;
+        if (layer == 1) {
+            length = (12 * bitRate / sampleRate + padding) * 4;
+        } else if (layer == 3 && version != 3) {
+            length = 72 * bitRate / sampleRate + padding;
+        } else {
+            length = 144 * bitRate / sampleRate + padding;
+        }
+        return new Mp3Frame(version, layer, bitRate, sampleRate, mono, length);
+    }
+
+    // ---- Ogg ----
+
+    private static long ogg(RandomAccessFile in) throws IOException {
+        // Codec and sample rate from the first packet
+        byte[] first = new byte[27 + 255 + 20];
+        int read = readAt(in, 0, first, first.length);
+        if (read < 28) {
+            return UNKNOWN;
+        }
+        int packet = 27 + (first[26] & 0xFF);
+        long sampleRate;
+        long preSkip = 0;
+        if (read >= packet + 12 && ascii(first, packet, "OpusHead")) {
+            sampleRate = 48000; // Opus granules are always 48 kHz
+            preSkip = (first[packet + 10] & 0xFF) | ((first[packet + 11] & 0xFF) << 8);
+        } else if (read >= packet + 16 && first[packet] == 1 && ascii(first, packet + 1, "vorbis")) {
+            sampleRate = readUInt32LE(first, packet + 12);
+        } else {
+            return UNKNOWN;
+        }
+        if (sampleRate <= 0) {
+            return UNKNOWN;
+        }
+
+        // Granule position of the last complete page
+        long length = in.length();
+        int tailLength = (int) Math.min(length, OGG_TAIL_BYTES);
+        byte[] tail = new byte[tailLength];
+        read = readAt(in, length - tailLength, tail, tailLength);
+        for (int i = read - 14; i >= 0; i--) {
+            if (ascii(tail, i, "OggS")) {
+                long granule = readInt64LE(tail, i + 6);
+                if (granule > 0) {
+                    long samples = Math.max(0, granule - preSkip);
+                    return samples * 1000000L / sampleRate;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // ---- Bytes ----
+
+    private static int readAt(RandomAccessFile in, long position, byte[] buffer, int length) throws IOException {
+        in.seek(position);
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static boolean ascii(byte[] buffer, int offset, String value) {
+        if (offset < 0 || offset + value.length() > buffer.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer[offset + i] != (byte) value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readUInt32BE(byte[] b, int offset) {
+        return ((b[offset] & 0xFFL) << 24) | ((b[offset + 1] & 0xFFL) << 16) |
+               ((b[offset + 2] & 0xFFL) << 8) | (b[offset + 3] & 0xFFL);
+    }
+
+    private static long readInt64BE(byte[] b, int offset) {
+        return (readUInt32BE(b, offset) << 32) | readUInt32BE(b, offset + 4);
+    }
+
+    private static long readUInt32LE(byte[] b, int offset) {
+        return (b[offset] & 0xFFL) | ((b[offset + 1] & 0xFFL) << 8) |
+               ((b[offset + 2] & 0xFFL) << 16) | ((b[offset + 3] & 0xFFL) << 24);
+    }
+
+    private static long readInt64LE(byte[] b, int offset) {
+        return readUInt32LE(b, offset) | (readUInt32LE(b, offset + 4) << 32);
+    }
+}
@@ -3,8 +3,10 @@ package com.ooak.callmanager.utils;
 import android.Manifest;
 import android.app.Activity;
 import android.app.AppOpsManager;
+import android.app.role.RoleManager;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
@@ -25,6 +27,8 @@ import java.util.List;
  */
 public class AutoPermissionManager {
     private static final String TAG = "AutoPermissionManager";
+    private static final String PREFS_NAME = "auto_permissions";
+    private static final String PREF_REDIRECTION_ROLE_ASKED = "call_redirection_role_asked";
     
     // All required permissions for the app to function
     private static final String[] REQUIRED_PERMISSIONS = {
@@ -105,7 +109,8 @@ public class AutoPermissionManager {
             return; // Exit here, will continue after delay
         }
         
-        // Step 3: All permissions granted!
+        // Step 3: All permissions granted! Optional extras are asked for once
+        requestCallRedirectionRoleOnce();
         isProcessingPermissions = false;
         Log.d(TAG, "✅ All permissions granted! App ready for production use");
         if (callback != null) {
@@ -235,6 +240,27 @@ public class AutoPermissionManager {
         }, 2000); // Give time for settings to be applied
     }
     
+    /**
+     * Ask once for the call redirection role (Android 10+). Optional: with it
+     * the app sees an outgoing number before the call is placed, without it
+     * the number comes from NEW_OUTGOING_CALL or the call log.
+     */
+    private void requestCallRedirectionRoleOnce() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        RoleManager roleManager = context.getSystemService(RoleManager.class);
+        if (prefs.getBoolean(PREF_REDIRECTION_ROLE_ASKED, false) || roleManager == null ||
+                !roleManager.isRoleAvailable(RoleManager.ROLE_CALL_REDIRECTION) ||
+                roleManager.isRoleHeld(RoleManager.ROLE_CALL_REDIRECTION)) {
+            return;
+        }
+        prefs.edit().putBoolean(PREF_REDIRECTION_ROLE_ASKED, true).apply();
+        Log.d(TAG, "🔄 Requesting call redirection role for outgoing numbers");
+        activity.startActivityForResult(roleManager.createRequestRoleIntent(RoleManager.ROLE_CALL_REDIRECTION), 1002);
+    }
+    
     /**
      * System Alert Window permission check
      */
@@ -0,0 +1,83 @@
+package com.ooak.callmanager.utils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread call events are handled on.
+ *
+ * Phone state broadcasts, call log and contact change notifications and CRM
+ * call triggers all used to arrive on the main looper, and what they set off -
+ * the session engine, the status sent to the CRM (a database write), the
+ * dialer intent - ran there too, while the phone app was busy starting the
+ * call. They now go to this one high-priority looper instead: events keep
+ * their order, never wait behind the UI, and the main thread is left with the
+ * UI and notifications. Anything that blocks for long (HTTP, uploads, big
+ * reads) still belongs on {@link SharedExecutors}, not here.
+ */
+public final class CallEventLoop {
+    private static final String TAG = "CallEventLoop";
+    private static final String THREAD_NAME = "CallEvents";
+
+    private static final AtomicLong events = new AtomicLong();
+    private static final AtomicLong totalDelayMs = new AtomicLong();
+    private static final AtomicLong maxDelayMs = new AtomicLong();
+
+    private static Handler handler;
+
+    private CallEventLoop() {
+    }
+
+    /**
+     * The handler of the event thread, started on first use. Also what
+     * ContentObservers for call data are registered with.
+     */
+    public static synchronized Handler handler() {
+        if (handler == null) {
+            // Above normal background work: a call event should be handled while the call starts
+            HandlerThread thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_FOREGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /**
+     * Run an event on the event thread, after the ones already posted.
+     */
+    public static void post(Runnable event) {
+        long postedAt = SystemClock.uptimeMillis();
+        handler().post(() -> {
+            long delayMs = SystemClock.uptimeMillis() - postedAt;
+            events.incrementAndGet();
+            totalDelayMs.addAndGet(delayMs);
+            // accumulateAndGet needs API 24
+            long max = maxDelayMs.get();
+            while (delayMs > max && !maxDelayMs.compareAndSet(max, delayMs)) {
+                max = maxDelayMs.get();
+            }
+            // An exception would end the looper, and every later call event with it
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "❌ Call event failed", e);
+            }
+        });
+    }
+
+    public static boolean isCurrentThread() {
+        return Looper.myLooper() == handler().getLooper();
+    }
+
+    public static String getStats() {
+        long count = events.get();
+        return "Call events: " + count + " handled, waited " +
+               (count == 0 ? 0 : totalDelayMs.get() / count) + " ms avg / " + maxDelayMs.get() + " ms max";
+    }
+}
@@ -0,0 +1,385 @@
+package com.ooak.callmanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CallLog;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads each call log row exactly once.
+ *
+ * The highest CallLog.Calls._ID handed to the listeners is persisted, and a
+ * read asks the provider only for rows above it, in _ID order and in pages,
+ * with just the columns the listeners use. Change notifications come in
+ * bursts while a call is being written, so reads are debounced. Rows go
+ * through a bounded queue to a single dispatch thread: when the listeners
+ * fall behind, reading waits instead of dropping rows, and the watermark only
+ * moves once a row has been delivered.
+ *
+ * Page sizes go to the provider as its "limit" query parameter, never as
+ * SQL in the sort order: from Android 11 the call log rejects LIMIT there
+ * for apps without voicemail access.
+ */
+public class CallLogReader {
+    private static final String TAG = "CallLogReader";
+
+    private static final String PREFS_NAME = "call_log_reader";
+    private static final String PREF_LAST_ID = "last_id";
+
+    private static final long CHANGE_DEBOUNCE_MS = 1500;
+    private static final int PAGE_SIZE = 100;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long FIRST_RUN_LOOKBACK_MS = 5 * 60 * 1000; // what the old 5-minute filter saw
+
+    /**
+     * One call log row.
+     */
+    public static class Entry {
+        public final long id;
+        public final String number;
+        public final long date;        // call start, ms
+        public final long durationSec; // 0 for missed and rejected calls
+        public final int type;         // CallLog.Calls.*_TYPE
+        public final String cachedName;
+
+        public Entry(long id, String number, long date, long durationSec, int type, String cachedName) {
+            this.id = id;
+            this.number = number;
+            this.date = date;
+            this.durationSec = durationSec;
+            this.type = type;
+            this.cachedName = cachedName;
+        }
+
+        public long getEndTime() {
+            return date + durationSec * 1000;
+        }
+
+        public String getDirection() {
+            switch (type) {
+                case CallLog.Calls.INCOMING_TYPE:
+                    return "incoming";
+                case CallLog.Calls.OUTGOING_TYPE:
+                    return "outgoing";
+                case CallLog.Calls.MISSED_TYPE:
+                    return "missed";
+                default:
+                    return "unknown";
+            }
+        }
+    }
+
+    /**
+     * Told about every new call log row, in _ID order, on the dispatch thread.
+     */
+    public interface Listener {
+        void onCallLogEntry(Entry entry);
+    }
+
+    /**
+     * Where the rows come from; the call log provider outside of tests.
+     */
+    public interface Source {
+        /** Up to {@code limit} rows with an _ID above {@code id}, in _ID order */
+        List<Entry> readAfter(long id, int limit);
+
+        /** The highest _ID of a call that started before {@code date}, or 0 */
+        long lastIdBefore(long date);
+
+        void watch(Runnable onChange);
+
+        void unwatch();
+    }
+
+    /**
+     * Where the highest delivered _ID is kept; SharedPreferences outside of tests.
+     */
+    interface Watermark {
+        long get();
+
+        void set(long id);
+    }
+
+    private static CallLogReader instance;
+
+    private final Source source;
+    private final Watermark watermark;
+    private final ScheduledExecutorService readExecutor;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> pendingRead;
+    private Thread dispatchThread;
+    private long readId = -1; // highest _ID queued; only touched on the read thread
+    private int users = 0;
+    private volatile boolean running = false;
+
+    // Counters for logs / the status screen
+    private volatile long rowsRead = 0;
+    private volatile long reads = 0;
+    private volatile long notifications = 0;
+
+    CallLogReader(Source source, Watermark watermark) {
+        this.source = source;
+        this.watermark = watermark;
+        this.readExecutor = SharedExecutors.newSerialExecutor("CallLogReader");
+    }
+
+    public static synchronized CallLogReader getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            instance = new CallLogReader(providerSource(appContext), new Watermark() {
+                @Override
+                public long get() {
+                    return prefs.getLong(PREF_LAST_ID, -1);
+                }
+
+                @Override
+                public void set(long id) {
+                    prefs.edit().putLong(PREF_LAST_ID, id).apply();
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * The call log itself, for other readers of it.
+     */
+    public static Source providerSource(Context context) {
+        return new ProviderSource(context.getApplicationContext());
+    }
+
+    /**
+     * The call log URI, asking the provider for at most {@code limit} rows.
+     */
+    public static Uri limitedUri(int limit) {
+        return CallLog.Calls.CONTENT_URI.buildUpon()
+            .appendQueryParameter(CallLog.Calls.LIMIT_PARAM_KEY, String.valueOf(limit))
+            .build();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start watching the call log. Every start() needs a matching stop().
+     * Rows added while nothing was watching are read straight away.
+     */
+    public synchronized void start() {
+        users++;
+        if (users > 1) {
+            return;
+        }
+        try {
+            source.watch(() -> {
+                notifications++;
+                scheduleRead(CHANGE_DEBOUNCE_MS);
+            });
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ Cannot observe the call log: " + e.getMessage());
+        }
+        running = true;
+        dispatchThread = new Thread(this::dispatchLoop, "CallLogDispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+        scheduleRead(0);
+        Log.d(TAG, "📞 Watching the call log from _ID " + watermark.get());
+    }
+
+    public synchronized void stop() {
+        users = Math.max(0, users - 1);
+        if (users > 0) {
+            return;
+        }
+        running = false;
+        source.unwatch();
+        if (pendingRead != null) {
+            pendingRead.cancel(false);
+        }
+        if (dispatchThread != null) {
+            dispatchThread.interrupt();
+            dispatchThread = null;
+        }
+        // Rows queued but not delivered are read again on the next start()
+        readExecutor.execute(() -> {
+            queue.clear();
+            readId = -1;
+        });
+        Log.d(TAG, "🛑 Stopped watching the call log");
+    }
+
+    /**
+     * The highest _ID delivered to the listeners, or -1 before the first read.
+     */
+    public long getLastId() {
+        return watermark.get();
+    }
+
+    public String getStats() {
+        return "Call log: " + rowsRead + " rows in " + reads + " reads for " + notifications +
+               " change notifications, last _ID " + getLastId();
+    }
+
+    private synchronized void scheduleRead(long delayMs) {
+        if (users == 0) {
+            return;
+        }
+        // A burst of notifications ends in one read
+        if (pendingRead != null && !pendingRead.isDone()) {
+            pendingRead.cancel(false);
+        }
+        pendingRead = readExecutor.schedule(this::readNewRows, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Read thread ----
+
+    private void readNewRows() {
+        if (!running) {
+            return;
+        }
+        try {
+            if (readId < 0) {
+                readId = watermark.get();
+                if (readId < 0) {
+                    readId = firstRunStart();
+                }
+            }
+            reads++;
+
+            List<Entry> page;
+            do {
+                page = source.readAfter(readId, PAGE_SIZE);
+                for (Entry entry : page) {
+                    // Waits while the listeners catch up
+                    while (!queue.offer(entry, 500, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            return;
+                        }
+                    }
+                    readId = entry.id;
+                    rowsRead++;
+                }
+            } while (page.size() == PAGE_SIZE && running);
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ No READ_CALL_LOG permission: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error reading the call log", e);
+        }
+    }
+
+    /**
+     * Nothing delivered yet (fresh install): start just before the calls of the
+     * last few minutes, rather than replaying the whole history.
+     *
+     * @return the _ID to read after
+     */
+    private long firstRunStart() {
+        long start = source.lastIdBefore(System.currentTimeMillis() - FIRST_RUN_LOOKBACK_MS);
+        watermark.set(start);
+        return start;
+    }
+
+    // ---- Dispatch thread ----
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Listener listener : listeners) {
+                try {
+                    listener.onCallLogEntry(entry);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Listener failed on call log row " + entry.id, e);
+                }
+            }
+            watermark.set(entry.id);
+        }
+    }
+
+    /**
+     * Reads CallLog.Calls through the content resolver.
+     */
+    private static class ProviderSource implements Source {
+        private static final String[] PROJECTION = {
+            CallLog.Calls._ID,
+            CallLog.Calls.NUMBER,
+            CallLog.Calls.DATE,
+            CallLog.Calls.DURATION,
+            CallLog.Calls.TYPE,
+            CallLog.Calls.CACHED_NAME
+        };
+
+        private final Context context;
+        private ContentObserver observer;
+
+        ProviderSource(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public List<Entry> readAfter(long id, int limit) {
+            List<Entry> rows = new ArrayList<>(limit);
+            try (Cursor cursor = context.getContentResolver().query(limitedUri(limit), PROJECTION,
+                    CallLog.Calls._ID + " > ?", new String[]{String.valueOf(id)},
+                    CallLog.Calls._ID + " ASC")) {
+                while (cursor != null && cursor.moveToNext()) {
+                    rows.add(new Entry(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                        cursor.getLong(3), cursor.getInt(4), cursor.getString(5)));
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public long lastIdBefore(long date) {
+            try (Cursor cursor = context.getContentResolver().query(limitedUri(1),
+                    new String[]{CallLog.Calls._ID}, CallLog.Calls.DATE + " < ?",
+                    new String[]{String.valueOf(date)}, CallLog.Calls._ID + " DESC")) {
+                return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : 0;
+            }
+        }
+
+        @Override
+        public void watch(Runnable onChange) {
+            observer = new ContentObserver(CallEventLoop.handler()) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    onChange.run();
+                }
+            };
+            context.getContentResolver().registerContentObserver(CallLog.Calls.CONTENT_URI, true, observer);
+        }
+
+        @Override
+        public void unwatch() {
+            if (observer != null) {
+                context.getContentResolver().unregisterContentObserver(observer);
+                observer = null;
+            }
+        }
+    }
+}
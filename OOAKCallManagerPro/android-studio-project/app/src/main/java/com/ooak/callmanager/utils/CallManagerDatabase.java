@@ -0,0 +1,215 @@
+package com.ooak.callmanager.utils;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * Single on-device SQLite database shared by the call manager components.
+ * Each component owns its own table(s); schema changes bump DATABASE_VERSION
+ * and are applied incrementally in onUpgrade.
+ */
+public class CallManagerDatabase extends SQLiteOpenHelper {
+    private static final String TAG = "CallManagerDatabase";
+    private static final String DATABASE_NAME = "ooak_callmanager.db";
+    private static final int DATABASE_VERSION = 7;
+
+    // Call status events waiting to be delivered to the CRM
+    public static final String TABLE_OUTBOX = "call_event_outbox";
+    public static final String OUTBOX_ID = "_id";
+    public static final String OUTBOX_CALL_ID = "call_id";
+    public static final String OUTBOX_EMPLOYEE_ID = "employee_id";
+    public static final String OUTBOX_PAYLOAD = "payload";
+    public static final String OUTBOX_CREATED_AT = "created_at";
+    public static final String OUTBOX_ATTEMPTS = "attempts";
+    public static final String OUTBOX_NEXT_ATTEMPT_AT = "next_attempt_at";
+
+    // Audio files found in the recording directories (RecordingCatalog)
+    public static final String TABLE_RECORDINGS = "recording_catalog";
+    public static final String RECORDING_PATH = "path";
+    public static final String RECORDING_DIR = "dir";
+    public static final String RECORDING_NAME = "name";
+    public static final String RECORDING_SIZE = "size";
+    public static final String RECORDING_MTIME = "mtime";
+    public static final String RECORDING_PHONE_DIGITS = "phone_digits";
+    public static final String RECORDING_PHONE_SUFFIX = "phone_suffix";
+    public static final String RECORDING_NAME_TIME = "name_time";
+
+    // Last seen modification time of each recording directory
+    public static final String TABLE_RECORDING_DIRS = "recording_dirs";
+    public static final String RECORDING_DIR_PATH = "path";
+    public static final String RECORDING_DIR_MTIME = "mtime";
+
+    // Resumable recording uploads in progress (ResumableUploader)
+    public static final String TABLE_UPLOAD_SESSIONS = "upload_sessions";
+    public static final String UPLOAD_PATH = "path";
+    public static final String UPLOAD_ID = "upload_id";
+    public static final String UPLOAD_SIZE = "size";
+    public static final String UPLOAD_MTIME = "mtime";
+    public static final String UPLOAD_OFFSET = "offset";
+    public static final String UPLOAD_METADATA = "metadata";
+    public static final String UPLOAD_LINK = "link_to_call";
+    public static final String UPLOAD_RECORDING_ID = "recording_id";
+    public static final String UPLOAD_CREATED_AT = "created_at";
+    public static final String UPLOAD_SOURCE_PATH = "source_path"; // the recording a transcoded upload was made from
+
+    // Snapshot of the phone numbers in the address book (ContactDirectory)
+    public static final String TABLE_CONTACTS = "contact_directory";
+    public static final String CONTACT_ID = "contact_id";
+    public static final String CONTACT_NUMBER = "number";
+    public static final String CONTACT_NAME = "name";
+
+    // Leads and open tasks assigned to the employee, by phone (CrmDirectory)
+    public static final String TABLE_CRM_DIRECTORY = "crm_directory";
+    public static final String CRM_KIND = "kind";
+    public static final String CRM_RECORD_ID = "record_id";
+    public static final String CRM_LEAD_ID = "lead_id";
+    public static final String CRM_TASK_ID = "task_id";
+    public static final String CRM_NAME = "name";
+    public static final String CRM_PHONE = "phone";
+
+    // Recordings already dealt with, so restarts never upload them again (RecordingLedger)
+    public static final String TABLE_LEDGER = "recording_ledger";
+    public static final String LEDGER_PATH = "path";
+    public static final String LEDGER_SIZE = "size";
+    public static final String LEDGER_MTIME = "mtime";
+    public static final String LEDGER_HASH = "content_hash";
+    public static final String LEDGER_STATE = "state";
+    public static final String LEDGER_RECORDING_ID = "recording_id";
+    public static final String LEDGER_RECORDED_AT = "recorded_at";
+
+    private static CallManagerDatabase instance;
+
+    private CallManagerDatabase(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized CallManagerDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallManagerDatabase(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // WAL keeps appends cheap and lets readers (UI stats) run alongside the sender
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        Log.d(TAG, "Creating database schema v" + DATABASE_VERSION);
+        createOutboxTable(db);
+        createRecordingCatalogTables(db);
+        createUploadSessionsTable(db);
+        createContactsTable(db);
+        createCrmDirectoryTable(db);
+        createLedgerTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.d(TAG, "Upgrading database from v" + oldVersion + " to v" + newVersion);
+        if (oldVersion < 2) {
+            createRecordingCatalogTables(db);
+        }
+        if (oldVersion < 3) {
+            createUploadSessionsTable(db);
+        }
+        if (oldVersion < 4) {
+            createContactsTable(db);
+        }
+        if (oldVersion < 5) {
+            createCrmDirectoryTable(db);
+        }
+        if (oldVersion < 6) {
+            createLedgerTable(db);
+        }
+        if (oldVersion < 7 && oldVersion >= 3) {
+            db.execSQL("ALTER TABLE " + TABLE_UPLOAD_SESSIONS + " ADD COLUMN " + UPLOAD_SOURCE_PATH + " TEXT");
+        }
+    }
+
+    private void createOutboxTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " (" +
+            OUTBOX_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            OUTBOX_CALL_ID + " TEXT NOT NULL, " +
+            OUTBOX_EMPLOYEE_ID + " TEXT, " +
+            OUTBOX_PAYLOAD + " TEXT NOT NULL, " +
+            OUTBOX_CREATED_AT + " INTEGER NOT NULL, " +
+            OUTBOX_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+            OUTBOX_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_next_attempt ON " +
+            TABLE_OUTBOX + " (" + OUTBOX_NEXT_ATTEMPT_AT + ")");
+    }
+
+    private void createRecordingCatalogTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_RECORDINGS + " (" +
+            RECORDING_PATH + " TEXT PRIMARY KEY, " +
+            RECORDING_DIR + " TEXT NOT NULL, " +
+            RECORDING_NAME + " TEXT NOT NULL, " +
+            RECORDING_SIZE + " INTEGER NOT NULL, " +
+            RECORDING_MTIME + " INTEGER NOT NULL, " +
+            RECORDING_PHONE_DIGITS + " TEXT, " +
+            RECORDING_PHONE_SUFFIX + " TEXT, " +
+            RECORDING_NAME_TIME + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_recording_mtime ON " +
+            TABLE_RECORDINGS + " (" + RECORDING_MTIME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_recording_phone_suffix ON " +
+            TABLE_RECORDINGS + " (" + RECORDING_PHONE_SUFFIX + ", " + RECORDING_MTIME + ")");
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_RECORDING_DIRS + " (" +
+            RECORDING_DIR_PATH + " TEXT PRIMARY KEY, " +
+            RECORDING_DIR_MTIME + " INTEGER NOT NULL)");
+    }
+
+    private void createUploadSessionsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_UPLOAD_SESSIONS + " (" +
+            UPLOAD_PATH + " TEXT PRIMARY KEY, " +
+            UPLOAD_ID + " TEXT, " +
+            UPLOAD_SIZE + " INTEGER NOT NULL, " +
+            UPLOAD_MTIME + " INTEGER NOT NULL, " +
+            UPLOAD_OFFSET + " INTEGER NOT NULL DEFAULT 0, " +
+            UPLOAD_METADATA + " TEXT NOT NULL, " +
+            UPLOAD_LINK + " INTEGER NOT NULL DEFAULT 0, " +
+            UPLOAD_RECORDING_ID + " TEXT, " +
+            UPLOAD_CREATED_AT + " INTEGER NOT NULL, " +
+            UPLOAD_SOURCE_PATH + " TEXT)");
+    }
+
+    private void createContactsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CONTACTS + " (" +
+            CONTACT_ID + " INTEGER NOT NULL, " +
+            CONTACT_NUMBER + " TEXT NOT NULL, " +
+            CONTACT_NAME + " TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_contact_id ON " +
+            TABLE_CONTACTS + " (" + CONTACT_ID + ")");
+    }
+
+    private void createCrmDirectoryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CRM_DIRECTORY + " (" +
+            CRM_KIND + " TEXT NOT NULL, " +
+            CRM_RECORD_ID + " TEXT NOT NULL, " +
+            CRM_LEAD_ID + " TEXT, " +
+            CRM_TASK_ID + " TEXT, " +
+            CRM_NAME + " TEXT, " +
+            CRM_PHONE + " TEXT NOT NULL, " +
+            "PRIMARY KEY (" + CRM_KIND + ", " + CRM_RECORD_ID + "))");
+    }
+
+    private void createLedgerTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_LEDGER + " (" +
+            LEDGER_PATH + " TEXT PRIMARY KEY, " +
+            LEDGER_SIZE + " INTEGER NOT NULL, " +
+            LEDGER_MTIME + " INTEGER NOT NULL, " +
+            LEDGER_HASH + " TEXT, " +
+            LEDGER_STATE + " TEXT NOT NULL, " +
+            LEDGER_RECORDING_ID + " TEXT, " +
+            LEDGER_RECORDED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_ledger_size ON " +
+            TABLE_LEDGER + " (" + LEDGER_SIZE + ")");
+    }
+}
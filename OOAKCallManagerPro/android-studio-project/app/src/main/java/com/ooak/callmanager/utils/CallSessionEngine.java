@@ -0,0 +1,586 @@
+package com.ooak.callmanager.utils;
+
+import android.content.Context;
+import android.provider.CallLog;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import com.ooak.callmanager.models.CallRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The one place that knows which calls are going on.
+ *
+ * Telephony transitions come in as events - PHONE_STATE per line, the number
+ * of an outgoing call, a call the app is about to place - and every call gets
+ * one CallRecord for its whole life, created on its first event. Listeners
+ * hear about a call only when its status actually changes, so the same
+ * transition reported twice (Android sends PHONE_STATE once without and once
+ * with the number) or by two sources posts nothing new.
+ *
+ * Several calls can be live at once: a waiting call rings while another is
+ * off the hook, and each SIM is its own line with its own state. The phone
+ * state of a line is the state of its "loudest" call, so a line going IDLE
+ * ends every call on it, and RINGING -> OFFHOOK answers the call that was
+ * ringing - unless another call on the line was already off the hook. A
+ * waiting call that was answered and one that was rejected both leave the
+ * line OFFHOOK, so the outcome of a waiting call is taken from its call log
+ * row instead. A call whose SIM is not known ends when its line is the only
+ * one left busy.
+ *
+ * Nothing here waits on I/O. The number of an outgoing call comes from
+ * NEW_OUTGOING_CALL, the call the app placed itself, or the call redirection
+ * hook; if none of them had it, the call is matched to its row when the
+ * {@link CallLogReader} delivers it after the call, and reported then.
+ */
+public class CallSessionEngine {
+    private static final String TAG = "CallSessionEngine";
+
+    public static final int UNKNOWN_LINE = -1;
+
+    private static final long EXPECTED_CALL_MS = 2 * 60 * 1000;  // how long a prepared call waits for the dialer
+    private static final long CALL_LOG_WAIT_MS = 2 * 60 * 1000;  // how long an ended call waits for its call log row
+    private static final long CALL_LOG_SLACK_MS = 60 * 1000;     // call log DATE vs. when we saw the call start
+
+    /**
+     * Told about a call whenever its status changes, on the thread that
+     * reported the event: the {@link CallEventLoop} for telephony events and
+     * triggers, the call log's dispatch thread for call log rows. Never the
+     * main thread.
+     */
+    public interface Listener {
+        void onCallSessionChanged(CallRecord call);
+    }
+
+    // Who is signed in; the auth manager in the app
+    interface Employee {
+        boolean isAuthenticated();
+
+        String getId();
+    }
+
+    private static class Session {
+        final CallRecord call;
+        int line;
+        long key;              // PhoneNumbers.key of the number, NO_KEY until it is known
+        String reportedStatus; // last status the listeners saw
+        boolean waiting;       // rang behind a call that was off the hook; outcome from the call log
+
+        Session(CallRecord call, int line) {
+            this.call = call;
+            this.line = line;
+            this.key = PhoneNumbers.key(call.getPhoneNumber());
+        }
+
+        boolean isIncoming() {
+            return "incoming".equals(call.getDirection());
+        }
+    }
+
+    private static CallSessionEngine instance;
+
+    private final Employee employee;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private final List<Session> sessions = new ArrayList<>(2);
+    private final Map<Integer, String> lineStates = new HashMap<>();
+    private final Map<Long, CallRecord> expectedCalls = new HashMap<>();
+    private final List<Session> ended = new ArrayList<>(2); // reported once, then forgotten
+    private final List<Session> awaitingCallLog = new ArrayList<>(1); // ended, number or outcome still unknown
+    private String dialedNumber;
+    private long dialedAt;
+
+    // Counters for logs / the status screen
+    private long events = 0;
+    private long duplicateEvents = 0;
+    private long changes = 0;
+    private long numbersFromCallLog = 0;
+
+    private CallSessionEngine(Context context) {
+        this(signedIn(EmployeeAuthManager.getInstance(context.getApplicationContext())));
+        CallLogReader.getInstance(context).addListener(this::onCallLogEntry);
+    }
+
+    CallSessionEngine(Employee employee) {
+        this.employee = employee;
+    }
+
+    private static Employee signedIn(final EmployeeAuthManager authManager) {
+        return new Employee() {
+            @Override
+            public boolean isAuthenticated() {
+                return authManager.isEmployeeAuthenticated();
+            }
+
+            @Override
+            public String getId() {
+                return authManager.getEmployeeId();
+            }
+        };
+    }
+
+    public static synchronized CallSessionEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallSessionEngine(context);
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The app is about to place this call (a CRM trigger or make_call). When
+     * the dialer starts it, the given record - with its task, lead and name -
+     * becomes the call's session instead of a fresh one.
+     */
+    public synchronized void expectOutgoingCall(CallRecord call) {
+        long key = PhoneNumbers.key(call.getPhoneNumber());
+        if (key == PhoneNumbers.NO_KEY) {
+            return;
+        }
+        call.setDirection("outgoing");
+        expectedCalls.put(key, call);
+    }
+
+    /**
+     * ACTION_NEW_OUTGOING_CALL: the number being dialed, shortly before the
+     * line goes OFFHOOK.
+     */
+    public void onOutgoingNumber(String number) {
+        List<Session> changed;
+        synchronized (this) {
+            events++;
+            if (PhoneNumbers.key(number) == PhoneNumbers.NO_KEY) {
+                return;
+            }
+            // OFFHOOK may have come first, before the number was known
+            Session session = findUnnumbered(UNKNOWN_LINE, false);
+            if (session != null) {
+                attachNumber(session, number);
+            } else {
+                dialedNumber = number;
+                dialedAt = System.currentTimeMillis();
+            }
+            changed = collectChanges();
+        }
+        dispatch(changed);
+    }
+
+    /**
+     * ACTION_PHONE_STATE_CHANGED for one line.
+     *
+     * @param line   subscription id of the SIM, or {@link #UNKNOWN_LINE}
+     * @param state  one of TelephonyManager.EXTRA_STATE_*
+     * @param number the caller for RINGING, if the broadcast carries it; the
+     *               dialed number for OFFHOOK, if the caller knows it
+     */
+    public void onPhoneState(int line, String state, String number) {
+        if (state == null) {
+            return;
+        }
+        List<Session> changed;
+        synchronized (this) {
+            events++;
+            if (!employee.isAuthenticated()) {
+                lineStates.put(line, state);
+                return;
+            }
+            String previous = lineStates.put(line, state);
+            if (previous == null) {
+                previous = TelephonyManager.EXTRA_STATE_IDLE;
+            }
+
+            if (TelephonyManager.EXTRA_STATE_RINGING.equals(state)) {
+                onRinging(line, number);
+            } else if (TelephonyManager.EXTRA_STATE_OFFHOOK.equals(state)) {
+                onOffHook(line, previous, number);
+            } else if (TelephonyManager.EXTRA_STATE_IDLE.equals(state)) {
+                onIdle(line);
+            }
+
+            changed = collectChanges();
+            if (changed.isEmpty()) {
+                duplicateEvents++;
+            }
+        }
+        dispatch(changed);
+    }
+
+    /**
+     * A new call log row, written as its call ended. Fills in the number of
+     * a call whose events did not carry one, and the outcome of a waiting call.
+     */
+    public void onCallLogEntry(CallLogReader.Entry entry) {
+        List<Session> changed;
+        synchronized (this) {
+            pruneAwaitingCallLog();
+            long key = PhoneNumbers.key(entry.number);
+            Session best = key != PhoneNumbers.NO_KEY ? findCallLogMatch(entry, key) : null;
+            if (best != null) {
+                if (best.key == PhoneNumbers.NO_KEY) {
+                    attachNumber(best, entry.number);
+                    numbersFromCallLog++;
+                    Log.d(TAG, "📒 Call log row " + entry.id + " gave the number of call " + best.call.getCallId());
+                }
+                if (best.waiting) {
+                    resolveWaiting(best, entry);
+                }
+                if (awaitingCallLog.remove(best)) {
+                    ended.add(best);
+                }
+            }
+            changed = collectChanges();
+        }
+        dispatch(changed);
+    }
+
+    /**
+     * Calls that have started and not ended yet.
+     */
+    public synchronized List<CallRecord> getActiveCalls() {
+        List<CallRecord> calls = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            calls.add(session.call);
+        }
+        return calls;
+    }
+
+    public synchronized boolean hasActiveCalls() {
+        return !sessions.isEmpty();
+    }
+
+    public synchronized String getStats() {
+        return "Call sessions: " + sessions.size() + " active, " + changes + " changes from " + events +
+               " events (" + duplicateEvents + " repeats), " + numbersFromCallLog + " numbers from the call log";
+    }
+
+    // ---- Transitions, all under the lock ----
+
+    private void onRinging(int line, String number) {
+        Session session = findByNumber(number);
+        if (session == null) {
+            session = findUnnumbered(line, true);
+        }
+        if (session == null) {
+            // A new call, possibly waiting behind one that is off the hook
+            CallRecord call = new CallRecord();
+            call.setEmployeeId(employee.getId());
+            call.setStartTime(new Date());
+            call.setDirection("incoming");
+            call.startRinging();
+            session = new Session(call, line);
+            sessions.add(session);
+            Log.d(TAG, "📞 Incoming call on line " + line + ": " + (number != null ? number : "(number not yet known)"));
+        }
+        if (session.key == PhoneNumbers.NO_KEY && number != null) {
+            attachNumber(session, number);
+        }
+        adoptLine(session, line);
+    }
+
+    private void onOffHook(int line, String previous, String number) {
+        Session ringing = null;
+        for (Session session : sessions) {
+            if (session.isIncoming() && !session.waiting && onLine(session, line) &&
+                    "ringing".equals(session.call.getStatus())) {
+                ringing = session;
+                break;
+            }
+        }
+        if (ringing != null) {
+            adoptLine(ringing, line);
+            if (TelephonyManager.EXTRA_STATE_RINGING.equals(previous) && !hasOffHookCall(line, ringing)) {
+                ringing.call.callAnswered(); // the only call on the line has been picked up
+            } else {
+                // Back to the call that was already up: the waiting one was
+                // answered (the other is on hold) or rejected; the call log says which
+                ringing.waiting = true;
+                Log.d(TAG, "⏸️ Waiting call " + ringing.call.getCallId() + " settled, outcome from the call log");
+            }
+            return;
+        }
+
+        if (!TelephonyManager.EXTRA_STATE_IDLE.equals(previous)) {
+            // Still off the hook, the same transition again; only a number
+            // for a call placed without one is news
+            Session unnumbered = findUnnumbered(line, false);
+            if (unnumbered != null && number != null) {
+                attachNumber(unnumbered, number);
+            }
+            return;
+        }
+
+        // IDLE -> OFFHOOK: an outgoing call. The dialer is connected from here
+        // on; whether the other side picks up shows in the duration at the end.
+        String dialed = number;
+        if (dialed == null && dialedNumber != null && System.currentTimeMillis() - dialedAt < EXPECTED_CALL_MS) {
+            dialed = dialedNumber;
+        }
+        dialedNumber = null;
+        pruneExpectedCalls();
+
+        CallRecord call = null;
+        long key = PhoneNumbers.key(dialed);
+        if (key != PhoneNumbers.NO_KEY) {
+            call = expectedCalls.remove(key);
+        } else if (expectedCalls.size() == 1) {
+            // The app has just handed this number to the dialer itself
+            Iterator<CallRecord> it = expectedCalls.values().iterator();
+            call = it.next();
+            it.remove();
+            dialed = call.getPhoneNumber();
+        }
+        if (call == null) {
+            call = new CallRecord();
+            call.setEmployeeId(employee.getId());
+            call.setDirection("outgoing");
+        }
+        call.setPhoneNumber(dialed);
+        call.setStartTime(new Date());
+        call.startRinging();
+        call.callAnswered();
+
+        Session session = new Session(call, line);
+        sessions.add(session);
+        Log.d(TAG, "📞 Outgoing call on line " + line + ": " + (dialed != null ? dialed : "(number not yet known)"));
+    }
+
+    private void onIdle(int line) {
+        for (Iterator<Session> it = sessions.iterator(); it.hasNext(); ) {
+            Session session = it.next();
+            if (!endsOnIdle(session, line)) {
+                continue;
+            }
+            session.call.callEnded();
+            session.call.setStatus(determineOutcome(session.call));
+            it.remove();
+            if (session.waiting) {
+                awaitingCallLog.add(session);
+            } else {
+                ended.add(session);
+            }
+        }
+    }
+
+    /**
+     * The open or ended call a call log row belongs to: one still missing
+     * its number or its outcome, in the same direction, with the same number
+     * if it has one, and the closest start time.
+     */
+    private Session findCallLogMatch(CallLogReader.Entry entry, long key) {
+        boolean incoming = entry.type != CallLog.Calls.OUTGOING_TYPE;
+        Session best = null;
+        long bestGap = CALL_LOG_SLACK_MS + 1;
+        for (List<Session> list : Arrays.asList(sessions, awaitingCallLog)) {
+            for (Session session : list) {
+                boolean unresolved = session.key == PhoneNumbers.NO_KEY || session.waiting;
+                if (!unresolved || session.isIncoming() != incoming ||
+                        (session.key != PhoneNumbers.NO_KEY && session.key != key)) {
+                    continue;
+                }
+                long gap = Math.abs(session.call.getStartTime().getTime() - entry.date);
+                if (gap < bestGap) {
+                    best = session;
+                    bestGap = gap;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A waiting call's row is written when it ends - at once if it was
+     * rejected - whether or not the line is still off the hook.
+     */
+    private void resolveWaiting(Session session, CallLogReader.Entry entry) {
+        CallRecord call = session.call;
+        boolean answered = entry.type == CallLog.Calls.INCOMING_TYPE;
+        call.setEndTime(new Date(entry.getEndTime()));
+        call.setRingingEndTime(new Date(answered ? entry.getEndTime() - entry.durationSec * 1000 : entry.getEndTime()));
+        if (answered) {
+            call.setConnectedTime(call.getRingingEndTime());
+            call.setWasAnswered(true);
+            call.setTalkingDuration((int) entry.durationSec);
+        }
+        call.calculateRingingDuration();
+        call.calculateDuration();
+        call.setStatus(answered ? "answered" : "missed");
+        session.waiting = false;
+        if (sessions.remove(session)) {
+            ended.add(session);
+        }
+        Log.d(TAG, "📒 Call log row " + entry.id + ": waiting call " + call.getCallId() + " was " + call.getStatus());
+    }
+
+    /**
+     * Sessions whose status changed since the listeners last heard of them.
+     * Calls whose number is still unknown wait until it is; ended ones wait
+     * for their call log row.
+     */
+    private List<Session> collectChanges() {
+        List<Session> changed = new ArrayList<>(2);
+        for (Session session : sessions) {
+            if (session.key != PhoneNumbers.NO_KEY && !session.call.getStatus().equals(session.reportedStatus)) {
+                session.reportedStatus = session.call.getStatus();
+                changed.add(session);
+            }
+        }
+        for (Session session : ended) {
+            if (session.key == PhoneNumbers.NO_KEY) {
+                Log.d(TAG, "⏳ Call ended before its number was known, waiting for the call log");
+                awaitingCallLog.add(session);
+                continue;
+            }
+            session.reportedStatus = session.call.getStatus();
+            changed.add(session);
+        }
+        ended.clear();
+        changes += changed.size();
+        return changed;
+    }
+
+    private void dispatch(List<Session> changed) {
+        for (Session session : changed) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onCallSessionChanged(session.call);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Listener failed on call " + session.call.getCallId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * An incoming call was answered if it went off the hook for more than a
+     * moment. An outgoing call is off the hook while it rings, so the answer
+     * cannot be seen; short ones (ring-out, voicemail) count as unanswered.
+     */
+    private static String determineOutcome(CallRecord call) {
+        if ("incoming".equals(call.getDirection())) {
+            return call.getConnectedTime() != null && call.getDuration() >= 3 ? "answered" : "missed";
+        }
+        return call.getDuration() >= 16 ? "answered" : "unanswered";
+    }
+
+    private Session findByNumber(String number) {
+        long key = PhoneNumbers.key(number);
+        if (key == PhoneNumbers.NO_KEY) {
+            return null;
+        }
+        for (Session session : sessions) {
+            if (session.key == key) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    private Session findUnnumbered(int line, boolean incoming) {
+        for (Session session : sessions) {
+            if (session.key == PhoneNumbers.NO_KEY && session.isIncoming() == incoming && onLine(session, line)) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    private void attachNumber(Session session, String number) {
+        session.key = PhoneNumbers.key(number);
+        if (session.key == PhoneNumbers.NO_KEY) {
+            return;
+        }
+        session.call.setPhoneNumber(number);
+        // A prepared call for this number carries the task and lead
+        CallRecord expected = expectedCalls.remove(session.key);
+        if (expected != null && !session.isIncoming()) {
+            session.call.setTaskId(expected.getTaskId());
+            session.call.setLeadId(expected.getLeadId());
+            session.call.setContactName(expected.getContactName());
+        }
+    }
+
+    // Either side not knowing its SIM matches any line
+    private static boolean onLine(Session session, int line) {
+        return line == UNKNOWN_LINE || session.line == UNKNOWN_LINE || session.line == line;
+    }
+
+    // Another call on the line that is already off the hook (connected or dialing)
+    private boolean hasOffHookCall(int line, Session except) {
+        for (Session session : sessions) {
+            if (session != except && onLine(session, line) && "connected".equals(session.call.getStatus())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether IDLE on this line ends the call. A call whose SIM is not known
+     * may be on another SIM, so it only ends once no other known line is busy.
+     */
+    private boolean endsOnIdle(Session session, int line) {
+        if (line == UNKNOWN_LINE || session.line == line) {
+            return true;
+        }
+        if (session.line != UNKNOWN_LINE) {
+            return false;
+        }
+        for (Map.Entry<Integer, String> other : lineStates.entrySet()) {
+            if (other.getKey() != line && other.getKey() != UNKNOWN_LINE &&
+                    !TelephonyManager.EXTRA_STATE_IDLE.equals(other.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void adoptLine(Session session, int line) {
+        if (session.line == UNKNOWN_LINE) {
+            session.line = line;
+        }
+    }
+
+    private void pruneAwaitingCallLog() {
+        long cutoff = System.currentTimeMillis() - CALL_LOG_WAIT_MS;
+        for (Iterator<Session> it = awaitingCallLog.iterator(); it.hasNext(); ) {
+            Session session = it.next();
+            if (session.call.getEndTime() == null || session.call.getEndTime().getTime() < cutoff) {
+                it.remove();
+                if (session.waiting) {
+                    // Report what the phone states told us rather than nothing
+                    session.waiting = false;
+                    ended.add(session);
+                    Log.w(TAG, "⚠️ No call log row for waiting call " + session.call.getCallId() + ", outcome guessed");
+                } else {
+                    Log.w(TAG, "⚠️ No call log row for call " + session.call.getCallId() + ", not reported");
+                }
+            }
+        }
+    }
+
+    private void pruneExpectedCalls() {
+        long cutoff = System.currentTimeMillis() - EXPECTED_CALL_MS;
+        for (Iterator<CallRecord> it = expectedCalls.values().iterator(); it.hasNext(); ) {
+            CallRecord call = it.next();
+            if (call.getCallTime() != null && call.getCallTime().getTime() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+}
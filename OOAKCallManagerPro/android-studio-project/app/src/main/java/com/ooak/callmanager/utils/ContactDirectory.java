@@ -0,0 +1,383 @@
+package com.ooak.callmanager.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Address book shared by everything that needs a caller's name.
+ *
+ * The phone numbers are loaded once in the background and kept as a snapshot
+ * in {@link CallManagerDatabase}, so after a cold start the previous snapshot
+ * answers lookups straight away. From then on only changes are read: contacts
+ * whose CONTACT_LAST_UPDATED_TIMESTAMP is newer than the last one seen have
+ * their numbers replaced, and DeletedContacts removes the rest. Deltas run on
+ * start and, debounced, whenever ContactsContract reports a change. Lookups
+ * never touch the contacts provider; they read the current
+ * {@link PhoneNumberIndex}, which is rebuilt on the side and swapped in.
+ */
+public class ContactDirectory {
+    private static final String TAG = "ContactDirectory";
+
+    private static final String PREFS_NAME = "contact_directory";
+    private static final String PREF_UPDATED_WATERMARK = "updated_watermark";
+    private static final String PREF_DELETED_WATERMARK = "deleted_watermark";
+    private static final String PREF_FULL_SCAN_AT = "full_scan_at";
+
+    private static final long CHANGE_DEBOUNCE_MS = 2000;
+    // DeletedContacts only keeps about 30 days of history; rescan well before that
+    private static final long FULL_SCAN_INTERVAL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String[] PHONE_PROJECTION = {
+        ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+        ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME,
+        ContactsContract.CommonDataKinds.Phone.NUMBER,
+        ContactsContract.CommonDataKinds.Phone.CONTACT_LAST_UPDATED_TIMESTAMP
+    };
+
+    private static ContactDirectory instance;
+
+    private final Context context;
+    private final CallManagerDatabase database;
+    private final SharedPreferences prefs;
+    private final ScheduledExecutorService executor;
+
+    // contactId -> {number, name} pairs; only touched on the executor
+    private final Map<Long, List<String[]>> contacts = new HashMap<>();
+    private volatile PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+    private volatile boolean loaded = false;
+    private volatile long lastSyncAt = 0;
+    private ScheduledFuture<?> pendingSync;
+
+    private ContactDirectory(Context context) {
+        this.context = context.getApplicationContext();
+        this.database = CallManagerDatabase.getInstance(context);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.executor = SharedExecutors.newSerialExecutor("ContactDirectory");
+
+        executor.execute(() -> {
+            loadSnapshot();
+            sync();
+        });
+        registerObserver();
+    }
+
+    public static synchronized ContactDirectory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactDirectory(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Never blocks on the contacts provider.
+     *
+     * @return the contact name for a number in any format, or null if unknown
+     *         or the directory has not loaded yet
+     */
+    public String findName(String phoneNumber) {
+        if (TextUtils.isEmpty(phoneNumber)) {
+            return null;
+        }
+        return index.find(phoneNumber);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Re-read every contact in the background, e.g. after READ_CONTACTS is granted.
+     */
+    public void refreshAll() {
+        executor.execute(this::fullScan);
+    }
+
+    public String getInfo() {
+        if (!loaded) {
+            return "Contacts: loading";
+        }
+        return "Contacts cached: " + index.size() +
+               ", Last synced: " + (System.currentTimeMillis() - lastSyncAt) / 1000 + "s ago";
+    }
+
+    private void registerObserver() {
+        ContentObserver observer = new ContentObserver(CallEventLoop.handler()) {
+            @Override
+            public void onChange(boolean selfChange) {
+                scheduleSync();
+            }
+        };
+        try {
+            context.getContentResolver().registerContentObserver(
+                ContactsContract.Contacts.CONTENT_URI, true, observer);
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ Cannot observe contacts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Edits arrive in bursts (a sync adapter touches many rows), so wait for
+     * them to settle before reading the delta.
+     */
+    private synchronized void scheduleSync() {
+        if (pendingSync != null && !pendingSync.isDone()) {
+            pendingSync.cancel(false);
+        }
+        pendingSync = executor.schedule(this::sync, CHANGE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Executor thread only ----
+
+    private void sync() {
+        long fullScanAt = prefs.getLong(PREF_FULL_SCAN_AT, 0);
+        if (fullScanAt == 0 || System.currentTimeMillis() - fullScanAt > FULL_SCAN_INTERVAL_MS) {
+            fullScan();
+        } else {
+            applyDelta();
+        }
+    }
+
+    private void loadSnapshot() {
+        long start = System.currentTimeMillis();
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_CONTACTS,
+                new String[]{CallManagerDatabase.CONTACT_ID, CallManagerDatabase.CONTACT_NUMBER,
+                    CallManagerDatabase.CONTACT_NAME},
+                null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                add(contacts, cursor.getLong(0), cursor.getString(1), cursor.getString(2));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading contact snapshot: " + e.getMessage());
+            contacts.clear();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (!contacts.isEmpty()) {
+            rebuildIndex();
+            loaded = true;
+            lastSyncAt = prefs.getLong(PREF_FULL_SCAN_AT, 0);
+            Log.d(TAG, "📇 Loaded " + index.size() + " numbers from snapshot in " +
+                (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    private void fullScan() {
+        Log.d(TAG, "🔄 Full contacts scan...");
+        long start = System.currentTimeMillis();
+        Map<Long, List<String[]>> scanned = new HashMap<>();
+        long watermark;
+        try {
+            watermark = queryPhones(null, null, scanned);
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ No READ_CONTACTS permission: " + e.getMessage());
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error reading contacts: " + e.getMessage());
+            return;
+        }
+
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(CallManagerDatabase.TABLE_CONTACTS, null, null);
+            for (Map.Entry<Long, List<String[]>> contact : scanned.entrySet()) {
+                insert(db, contact.getKey(), contact.getValue());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        contacts.clear();
+        contacts.putAll(scanned);
+        rebuildIndex();
+        loaded = true;
+        lastSyncAt = System.currentTimeMillis();
+        prefs.edit()
+            .putLong(PREF_UPDATED_WATERMARK, watermark)
+            .putLong(PREF_DELETED_WATERMARK, lastSyncAt)
+            .putLong(PREF_FULL_SCAN_AT, lastSyncAt)
+            .apply();
+        Log.d(TAG, "✅ Loaded " + index.size() + " numbers for " + contacts.size() +
+            " contacts in " + (lastSyncAt - start) + "ms");
+    }
+
+    private void applyDelta() {
+        long updatedSince = prefs.getLong(PREF_UPDATED_WATERMARK, 0);
+        long deletedSince = prefs.getLong(PREF_DELETED_WATERMARK, 0);
+        long updatedWatermark = updatedSince;
+        long deletedWatermark = deletedSince;
+
+        Set<Long> changed = new HashSet<>();
+        Map<Long, List<String[]>> updated = new HashMap<>();
+        try {
+            // Contacts first: one that lost its last number has no phone rows left to report it
+            updatedWatermark = Math.max(updatedWatermark, queryIds(ContactsContract.Contacts.CONTENT_URI,
+                ContactsContract.Contacts._ID, ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP,
+                updatedSince, changed));
+            updatedWatermark = Math.max(updatedWatermark, queryPhones(
+                ContactsContract.CommonDataKinds.Phone.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?",
+                new String[]{String.valueOf(updatedSince)}, updated));
+            changed.addAll(updated.keySet());
+            deletedWatermark = Math.max(deletedWatermark, queryIds(ContactsContract.DeletedContacts.CONTENT_URI,
+                ContactsContract.DeletedContacts.CONTACT_ID, ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP,
+                deletedSince, changed));
+        } catch (SecurityException e) {
+            Log.w(TAG, "❌ No READ_CONTACTS permission: " + e.getMessage());
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error reading contact changes: " + e.getMessage());
+            return;
+        }
+
+        if (!changed.isEmpty()) {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Long contactId : changed) {
+                    db.delete(CallManagerDatabase.TABLE_CONTACTS, CallManagerDatabase.CONTACT_ID + " = ?",
+                        new String[]{String.valueOf(contactId)});
+                    List<String[]> numbers = updated.get(contactId);
+                    if (numbers != null) {
+                        insert(db, contactId, numbers);
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            for (Long contactId : changed) {
+                List<String[]> numbers = updated.get(contactId);
+                if (numbers != null) {
+                    contacts.put(contactId, numbers);
+                } else {
+                    contacts.remove(contactId);
+                }
+            }
+            rebuildIndex();
+            Log.d(TAG, "📇 Applied changes to " + changed.size() + " contacts");
+        }
+
+        loaded = true;
+        lastSyncAt = System.currentTimeMillis();
+        prefs.edit()
+            .putLong(PREF_UPDATED_WATERMARK, updatedWatermark)
+            .putLong(PREF_DELETED_WATERMARK, deletedWatermark)
+            .apply();
+    }
+
+    /**
+     * Collect phone rows into {@code into} grouped by contact.
+     *
+     * @return the newest CONTACT_LAST_UPDATED_TIMESTAMP seen, or 0
+     */
+    private long queryPhones(String selection, String[] selectionArgs, Map<Long, List<String[]>> into) {
+        long watermark = 0;
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(
+                ContactsContract.CommonDataKinds.Phone.CONTENT_URI, PHONE_PROJECTION,
+                selection, selectionArgs, null);
+            if (cursor == null) {
+                return 0;
+            }
+            while (cursor.moveToNext()) {
+                add(into, cursor.getLong(0), cursor.getString(2), cursor.getString(1));
+                watermark = Math.max(watermark, cursor.getLong(3));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * Collect the ids of rows whose timestamp column is newer than {@code since}.
+     *
+     * @return the newest timestamp seen, or 0
+     */
+    private long queryIds(Uri uri, String idColumn, String timestampColumn,
+                          long since, Set<Long> into) {
+        long watermark = 0;
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri, new String[]{idColumn, timestampColumn},
+                timestampColumn + " > ?", new String[]{String.valueOf(since)}, null);
+            if (cursor == null) {
+                return 0;
+            }
+            while (cursor.moveToNext()) {
+                into.add(cursor.getLong(0));
+                watermark = Math.max(watermark, cursor.getLong(1));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return watermark;
+    }
+
+    private static void add(Map<Long, List<String[]>> into, long contactId, String number, String name) {
+        if (TextUtils.isEmpty(number) || TextUtils.isEmpty(name)) {
+            return;
+        }
+        List<String[]> numbers = into.get(contactId);
+        if (numbers == null) {
+            numbers = new ArrayList<>(2);
+            into.put(contactId, numbers);
+        }
+        numbers.add(new String[]{number, name});
+    }
+
+    private static void insert(SQLiteDatabase db, long contactId, List<String[]> numbers) {
+        ContentValues values = new ContentValues();
+        for (String[] entry : numbers) {
+            values.put(CallManagerDatabase.CONTACT_ID, contactId);
+            values.put(CallManagerDatabase.CONTACT_NUMBER, entry[0]);
+            values.put(CallManagerDatabase.CONTACT_NAME, entry[1]);
+            db.insert(CallManagerDatabase.TABLE_CONTACTS, null, values);
+        }
+    }
+
+    private void rebuildIndex() {
+        int count = 0;
+        for (List<String[]> numbers : contacts.values()) {
+            count += numbers.size();
+        }
+        // Built on the side so lookups keep using the old index meanwhile
+        PhoneNumberIndex<String> rebuilt = new PhoneNumberIndex<>(count);
+        for (List<String[]> numbers : contacts.values()) {
+            for (String[] entry : numbers) {
+                rebuilt.put(entry[0], entry[1]);
+            }
+        }
+        index = rebuilt;
+    }
+}
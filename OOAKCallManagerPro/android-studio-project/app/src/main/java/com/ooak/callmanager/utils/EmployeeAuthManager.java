@@ -6,13 +6,15 @@ import android.util.Log;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.ooak.callmanager.api.HttpStack;
+import com.ooak.callmanager.config.ServerConfig;
+
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 public class EmployeeAuthManager {
     private static final String TAG = "EmployeeAuthManager";
@@ -24,7 +26,8 @@ public class EmployeeAuthManager {
     private static final String KEY_IS_AUTHENTICATED = "is_authenticated";
     private static final String KEY_DEVICE_ID = "device_id";
     private static final String KEY_AUTH_TOKEN = "auth_token";
-    private static final String API_BASE_URL = "https://portal.ooak.photography";
+    
+    private static EmployeeAuthManager instance;
     
     private Context context;
     private SharedPreferences prefs;
@@ -49,14 +52,25 @@ public class EmployeeAuthManager {
         }
     }
     
-    public EmployeeAuthManager(Context context) {
-        this.context = context;
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    private EmployeeAuthManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+    
+    /**
+     * The one auth session of the app; every component sees the same login
+     * (and the same logout) the moment it happens.
+     */
+    public static synchronized EmployeeAuthManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new EmployeeAuthManager(context);
+        }
+        return instance;
     }
     
     // Real CRM authentication method
     public void authenticateWithCRMCredentials(String username, String password, AuthCallback callback) {
-        new Thread(() -> {
+        SharedExecutors.pool().execute(() -> {
             try {
                 // Generate device ID
                 String deviceId = android.provider.Settings.Secure.getString(
@@ -73,34 +87,22 @@ public class EmployeeAuthManager {
                 payload.put("deviceId", deviceId);
                 
                 // Make HTTP request to mobile-auth API
-                URL url = new URL(API_BASE_URL + "/api/mobile-auth");
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
-                connection.setConnectTimeout(10000);
-                connection.setReadTimeout(10000);
-                
-                // Send request
-                OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-                writer.write(payload.toString());
-                writer.flush();
-                writer.close();
+                Request request = new Request.Builder()
+                    .url(ServerConfig.PUBLIC_URL + "/api/mobile-auth")
+                    .post(RequestBody.create(payload.toString(), MediaType.get("application/json; charset=utf-8")))
+                    .build();
                 
-                int responseCode = connection.getResponseCode();
+                int responseCode;
+                String responseBody;
+                try (Response response = HttpStack.getInstance(context).getInteractiveClient()
+                        .newCall(request).execute()) {
+                    responseCode = response.code();
+                    responseBody = response.body() != null ? response.body().string() : "";
+                }
                 Log.d(TAG, "CRM Auth response code: " + responseCode);
                 
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    // Read response
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-                    
-                    JSONObject jsonResponse = new JSONObject(response.toString());
+                if (responseCode == 200) {
+                    JSONObject jsonResponse = new JSONObject(responseBody);
                     Log.d(TAG, "CRM Auth response: " + jsonResponse.toString());
                     
                     if (jsonResponse.getBoolean("success")) {
@@ -142,18 +144,9 @@ public class EmployeeAuthManager {
                         });
                     }
                 } else {
-                    // Read error response
-                    BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String line;
-                    while ((line = errorReader.readLine()) != null) {
-                        errorResponse.append(line);
-                    }
-                    errorReader.close();
-                    
                     String errorMessage = "Authentication failed";
                     try {
-                        JSONObject errorJson = new JSONObject(errorResponse.toString());
+                        JSONObject errorJson = new JSONObject(responseBody);
                         errorMessage = errorJson.optString("error", errorMessage);
                     } catch (Exception e) {
                         // Ignore JSON parsing error
@@ -167,15 +160,13 @@ public class EmployeeAuthManager {
                     });
                 }
                 
-                connection.disconnect();
-                
             } catch (Exception e) {
                 Log.e(TAG, "CRM Authentication error", e);
                 new Handler(Looper.getMainLooper()).post(() -> {
                     callback.onAuthenticationResult(false, "Network error: " + e.getMessage(), null);
                 });
             }
-        }).start();
+        });
     }
     
     // Simple local authentication for fallback
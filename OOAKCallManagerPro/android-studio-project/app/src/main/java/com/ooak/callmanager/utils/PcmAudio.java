@@ -0,0 +1,335 @@
+package com.ooak.callmanager.utils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Plain-Java PCM helpers for {@link RecordingTranscoder}: WAV header parsing,
+ * mono downmix with downsampling, and a WAV writer. No Android APIs, so the
+ * WAV path runs (and can be checked) on a desktop JVM as well.
+ */
+public final class PcmAudio {
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final int OUTPUT_BLOCK_SAMPLES = 4096;
+
+    private PcmAudio() {}
+
+    /**
+     * Receives 16-bit mono samples.
+     */
+    public interface Sink {
+        void write(short[] samples, int count) throws IOException;
+    }
+
+    public static class WavFormat {
+        public final int audioFormat;
+        public final int channels;
+        public final int sampleRate;
+        public final int byteRate;
+        public final int bitsPerSample;
+        public final long dataOffset;
+        public final long dataLength;
+
+        WavFormat(int audioFormat, int channels, int sampleRate, int byteRate, int bitsPerSample,
+                  long dataOffset, long dataLength) {
+            this.audioFormat = audioFormat;
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.byteRate = byteRate;
+            this.bitsPerSample = bitsPerSample;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * Only 16-bit integer PCM is converted; anything else is uploaded as is.
+         */
+        public boolean isPcm16() {
+            return (audioFormat == WAVE_FORMAT_PCM || audioFormat == WAVE_FORMAT_EXTENSIBLE) &&
+                   bitsPerSample == 16 && channels > 0 && sampleRate > 0;
+        }
+
+        /**
+         * From the header's byte rate, so compressed WAV (GSM, ADPCM) works too.
+         */
+        public long getDurationUs() {
+            return byteRate > 0 ? dataLength * 1000000L / byteRate : 0;
+        }
+    }
+
+    /**
+     * Read a RIFF/WAVE header and leave the stream at the start of the samples.
+     *
+     * @param fileLength used when the recorder never filled in the data size
+     * @return null if this is not a WAV file
+     */
+    public static WavFormat readWavHeader(InputStream in, long fileLength) throws IOException {
+        byte[] id = new byte[4];
+        readFully(in, id);
+        if (!"RIFF".equals(new String(id, "US-ASCII"))) {
+            return null;
+        }
+        readInt(in); // RIFF size
+        readFully(in, id);
+        if (!"WAVE".equals(new String(id, "US-ASCII"))) {
+            return null;
+        }
+
+        long position = 12;
+        int audioFormat = 0, channels = 0, sampleRate = 0, byteRate = 0, bitsPerSample = 0;
+        while (true) {
+            readFully(in, id);
+            long size = readInt(in) & 0xFFFFFFFFL;
+            position += 8;
+            String chunk = new String(id, "US-ASCII");
+
+            if ("fmt ".equals(chunk)) {
+                audioFormat = readShort(in);
+                channels = readShort(in);
+                sampleRate = readInt(in);
+                byteRate = readInt(in);
+                readShort(in); // block align
+                bitsPerSample = readShort(in);
+                skipFully(in, size - 16);
+            } else if ("data".equals(chunk)) {
+                // Streaming recorders leave 0 or 0xFFFFFFFF until they finish
+                long available = fileLength - position;
+                long dataLength = size == 0 || size > available ? available : size;
+                return new WavFormat(audioFormat, channels, sampleRate, byteRate, bitsPerSample,
+                    position, dataLength);
+            } else {
+                skipFully(in, size);
+            }
+            position += size;
+            if ((size & 1) != 0) { // chunks are word aligned
+                skipFully(in, 1);
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Stream the samples of a 16-bit PCM WAV file into {@code sink} as mono at
+     * {@code outRate}. The stream must be positioned by {@link #readWavHeader}.
+     */
+    public static void convertWav(InputStream in, WavFormat format, int outRate, Sink sink) throws IOException {
+        Resampler resampler = new Resampler(format.sampleRate, format.channels, outRate);
+        byte[] buffer = new byte[16 * 1024];
+        long remaining = format.dataLength;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break; // Truncated recording - keep what is there
+            }
+            resampler.write(buffer, 0, read, sink);
+            remaining -= read;
+        }
+        resampler.flush(sink);
+    }
+
+    /**
+     * Downmixes interleaved 16-bit little-endian PCM to mono and lowers the sample
+     * rate by averaging the input frames that fall into each output sample. That
+     * box filter is crude but keeps most aliasing out of speech, and it streams:
+     * input may be split anywhere, even mid-sample.
+     */
+    public static class Resampler {
+        private final int channels;
+        private final double step;
+        private final short[] out = new short[OUTPUT_BLOCK_SAMPLES];
+        private int outCount = 0;
+
+        private int lowByte = -1;
+        private int channel = 0;
+        private int frameSum = 0;
+
+        private long frames = 0;
+        private double boundary;
+        private long sum = 0;
+        private int count = 0;
+
+        /**
+         * @param outRate must not be above inRate; this only downsamples
+         */
+        public Resampler(int inRate, int channels, int outRate) {
+            if (outRate > inRate) {
+                throw new IllegalArgumentException("Cannot upsample " + inRate + " Hz to " + outRate + " Hz");
+            }
+            this.channels = Math.max(1, channels);
+            this.step = (double) inRate / outRate;
+            this.boundary = step;
+        }
+
+        public void write(byte[] data, int offset, int length, Sink sink) throws IOException {
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                int b = data[i] & 0xFF;
+                if (lowByte < 0) {
+                    lowByte = b;
+                    continue;
+                }
+                frameSum += (short) (lowByte | (b << 8));
+                lowByte = -1;
+                if (++channel < channels) {
+                    continue;
+                }
+                addFrame(frameSum / channels, sink);
+                channel = 0;
+                frameSum = 0;
+            }
+        }
+
+        /**
+         * Emit the last partial output sample and everything still buffered.
+         */
+        public void flush(Sink sink) throws IOException {
+            if (count > 0) {
+                emit((short) (sum / count), sink);
+                sum = 0;
+                count = 0;
+            }
+            if (outCount > 0) {
+                sink.write(out, outCount);
+                outCount = 0;
+            }
+        }
+
+        private void addFrame(int sample, Sink sink) throws IOException {
+            sum += sample;
+            count++;
+            frames++;
+            if (frames >= boundary) {
+                emit((short) (sum / count), sink);
+                sum = 0;
+                count = 0;
+                boundary += step;
+            }
+        }
+
+        private void emit(short sample, Sink sink) throws IOException {
+            out[outCount++] = sample;
+            if (outCount == out.length) {
+                sink.write(out, outCount);
+                outCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes 16-bit mono samples to a WAV file; sizes are filled in on close().
+     */
+    public static class WavWriter implements Sink {
+        private final RandomAccessFile file;
+        private final int sampleRate;
+        private final byte[] buffer = new byte[OUTPUT_BLOCK_SAMPLES * 2];
+        private long dataLength = 0;
+
+        public WavWriter(File output, int sampleRate) throws IOException {
+            this.file = new RandomAccessFile(output, "rw");
+            this.sampleRate = sampleRate;
+            file.setLength(0);
+            file.write(new byte[WAV_HEADER_BYTES]);
+        }
+
+        @Override
+        public void write(short[] samples, int count) throws IOException {
+            int offset = 0;
+            while (offset < count) {
+                int n = Math.min(count - offset, buffer.length / 2);
+                for (int i = 0; i < n; i++) {
+                    short sample = samples[offset + i];
+                    buffer[i * 2] = (byte) sample;
+                    buffer[i * 2 + 1] = (byte) (sample >> 8);
+                }
+                file.write(buffer, 0, n * 2);
+                dataLength += n * 2;
+                offset += n;
+            }
+        }
+
+        public void close() throws IOException {
+            try {
+                byte[] header = new byte[WAV_HEADER_BYTES];
+                putAscii(header, 0, "RIFF");
+                putInt(header, 4, (int) (36 + dataLength));
+                putAscii(header, 8, "WAVE");
+                putAscii(header, 12, "fmt ");
+                putInt(header, 16, 16);
+                putShort(header, 20, WAVE_FORMAT_PCM);
+                putShort(header, 22, 1);
+                putInt(header, 24, sampleRate);
+                putInt(header, 28, sampleRate * 2);
+                putShort(header, 32, 2);
+                putShort(header, 34, 16);
+                putAscii(header, 36, "data");
+                putInt(header, 40, (int) dataLength);
+                file.seek(0);
+                file.write(header);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    // ---- Little-endian helpers ----
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of WAV header");
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Unexpected end of WAV header");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static int readShort(InputStream in) throws IOException {
+        byte[] b = new byte[2];
+        readFully(in, b);
+        return (b[0] & 0xFF) | ((b[1] & 0xFF) << 8);
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        byte[] b = new byte[4];
+        readFully(in, b);
+        return (b[0] & 0xFF) | ((b[1] & 0xFF) << 8) | ((b[2] & 0xFF) << 16) | ((b[3] & 0xFF) << 24);
+    }
+
+    private static void putAscii(byte[] buffer, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
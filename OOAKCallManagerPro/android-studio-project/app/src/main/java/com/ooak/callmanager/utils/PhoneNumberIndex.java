@@ -0,0 +1,207 @@
+package com.ooak.callmanager.utils;
+
+import java.util.Arrays;
+
+/**
+ * Phone number → value (a contact name, a CRM record) lookup that tolerates
+ * different prefixes.
+ *
+ * Two numbers match when the shorter national number (see {@link PhoneNumbers},
+ * at least {@value PhoneNumbers#MIN_DIGITS} digits) is a suffix of the longer -
+ * the rule ContactHelper used to apply by scanning every contact. Here every stored number is also filed under each of its
+ * suffixes in one open-addressing table keyed by (suffix length, suffix
+ * value), so a lookup is a handful of probes while walking the digits once:
+ * no scan, no substrings, no allocation.
+ *
+ * Preference when several numbers match: the exact number, then the longest
+ * stored number that is a suffix of the query, then a stored number the query
+ * is a suffix of. Plain Java, so it runs on a desktop JVM too. Not thread-safe
+ * while being filled; build a new index and swap it in.
+ */
+public class PhoneNumberIndex<V> {
+
+    private static final int MIN_DIGITS = PhoneNumbers.MIN_DIGITS;
+    private static final long EMPTY = PhoneNumbers.NO_KEY;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] exact;    // value index of the number with exactly this suffix, or -1
+    private int[] longer;   // value index of a longer number ending in this suffix, or -1
+    private int mask;
+    private int used = 0;
+
+    private Object[] values = new Object[16];
+    private int numbers = 0;
+
+    public PhoneNumberIndex() {
+        this(64);
+    }
+
+    public PhoneNumberIndex(int expectedNumbers) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedNumbers * 4 / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Add a number in any format. Numbers with fewer than {@value PhoneNumbers#MIN_DIGITS}
+     * digits are ignored. A later value for the same number replaces the earlier.
+     *
+     * @return whether the number was added
+     */
+    public boolean put(CharSequence phoneNumber, V value) {
+        int digits = PhoneNumbers.nationalLength(phoneNumber);
+        if (digits < MIN_DIGITS || value == null) {
+            return false;
+        }
+        if (numbers == values.length) {
+            Object[] grown = new Object[values.length * 2];
+            System.arraycopy(values, 0, grown, 0, numbers);
+            values = grown;
+        }
+        int valueIndex = numbers;
+        values[numbers++] = value;
+
+        long suffix = 0;
+        long scale = 1;
+        int length = 0;
+        for (int i = phoneNumber.length() - 1; i >= 0 && length < digits; i--) {
+            char c = phoneNumber.charAt(i);
+            if (!PhoneNumbers.isDigit(c)) {
+                continue;
+            }
+            int digit = c - '0';
+            suffix += digit * scale;
+            scale *= 10;
+            length++;
+            if (length < MIN_DIGITS) {
+                continue;
+            }
+            int slot = slotFor(PhoneNumbers.suffixKey(suffix, length));
+            if (length == digits) {
+                exact[slot] = valueIndex;
+            } else if (longer[slot] < 0) {
+                longer[slot] = valueIndex;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the value for a number in any format, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V find(CharSequence phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        int digits = PhoneNumbers.nationalLength(phoneNumber);
+        if (digits < MIN_DIGITS) {
+            return null;
+        }
+
+        int best = -1;
+        long value = 0;
+        long scale = 1;
+        int length = 0;
+        for (int i = phoneNumber.length() - 1; i >= 0 && length < digits; i--) {
+            char c = phoneNumber.charAt(i);
+            if (!PhoneNumbers.isDigit(c)) {
+                continue;
+            }
+            int digit = c - '0';
+            value += digit * scale;
+            scale *= 10;
+            length++;
+            if (length < MIN_DIGITS) {
+                continue;
+            }
+            int slot = findSlot(PhoneNumbers.suffixKey(value, length));
+            if (slot < 0) {
+                break; // No stored number ends in this suffix, so none ends in a longer one
+            }
+            if (exact[slot] >= 0) {
+                best = exact[slot]; // Longer suffixes win; the last one is the full number
+            }
+            if (length == digits && best < 0) {
+                best = longer[slot];
+            }
+        }
+        return best >= 0 ? (V) values[best] : null;
+    }
+
+    /**
+     * Numbers added, including duplicates.
+     */
+    public int size() {
+        return numbers;
+    }
+
+    // ---- Open addressing (linear probing) ----
+
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slotFor(long key) {
+        if (used + 1 > keys.length * MAX_LOAD) {
+            rehash(keys.length * 2);
+        }
+        int slot = hash(key) & mask;
+        while (true) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == EMPTY) {
+                keys[slot] = key;
+                used++;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        exact = new int[capacity];
+        longer = new int[capacity];
+        Arrays.fill(exact, -1);
+        Arrays.fill(longer, -1);
+        mask = capacity - 1;
+        used = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldExact = exact;
+        int[] oldLonger = longer;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                exact[slot] = oldExact[i];
+                longer[slot] = oldLonger[i];
+                used++;
+            }
+        }
+    }
+}
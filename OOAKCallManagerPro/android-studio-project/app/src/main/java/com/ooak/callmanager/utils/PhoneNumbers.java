@@ -0,0 +1,195 @@
+package com.ooak.callmanager.utils;
+
+/**
+ * The one phone number normalizer for the call manager.
+ *
+ * Numbers arrive as "+91 98765 43210", "098765-43210", "0091 9876543210",
+ * "(415) 555-0134", "+1-415-555-0134" or just digits. All of them reduce to
+ * the national significant number: digits only, without an international
+ * "00" prefix, a domestic trunk "0", or a 91 (India) / 1 (US/Canada) country
+ * code. Every method works on the CharSequence in place - no regex, no
+ * intermediate strings - and {@link #key} packs the result into a long for
+ * hashing and equality. Plain Java, so it runs on a desktop JVM too.
+ */
+public final class PhoneNumbers {
+
+    public static final int MIN_DIGITS = 7;  // shorter runs are extensions or codes, not numbers
+    public static final int MAX_DIGITS = 15; // E.164; longer input is compared on its last 15
+    public static final long NO_KEY = 0;     // real keys are never 0: the length is at least MIN_DIGITS
+
+    private PhoneNumbers() {}
+
+    /**
+     * Digits of the national significant number, at most {@value #MAX_DIGITS}.
+     * Those are the last digits of the input.
+     */
+    public static int nationalLength(CharSequence number) {
+        if (number == null) {
+            return 0;
+        }
+        int count = 0;
+        char d0 = 0, d1 = 0, d2 = 0, d3 = 0; // the leading digits decide which prefix to drop
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (isDigit(c)) {
+                switch (count) {
+                    case 0: d0 = c; break;
+                    case 1: d1 = c; break;
+                    case 2: d2 = c; break;
+                    case 3: d3 = c; break;
+                    default: break;
+                }
+                count++;
+            }
+        }
+
+        if (count > 11 && d0 == '0' && d1 == '0') {
+            count -= 2; // international access prefix: 0091 98765 43210
+            d0 = d2;
+            d1 = d3;
+        }
+        if (count == 12 && d0 == '9' && d1 == '1') {
+            count = 10; // India
+        } else if (count == 11 && (d0 == '1' || d0 == '0')) {
+            count = 10; // US/Canada, or an Indian trunk 0
+        }
+        return Math.min(count, MAX_DIGITS);
+    }
+
+    /**
+     * The national number packed as (value &lt;&lt; 4) | length. Equal keys mean
+     * the same number, whatever the formatting.
+     *
+     * @return {@link #NO_KEY} for fewer than {@value #MIN_DIGITS} digits
+     */
+    public static long key(CharSequence number) {
+        int length = nationalLength(number);
+        if (length < MIN_DIGITS) {
+            return NO_KEY;
+        }
+        return (lastDigits(number, length) << 4) | length;
+    }
+
+    /**
+     * Packed key of the last {@code length} digits; what {@link #key} returns
+     * for a number of exactly that many national digits.
+     */
+    public static long suffixKey(long suffixValue, int length) {
+        return (suffixValue << 4) | length;
+    }
+
+    /**
+     * Whether both numbers have at least {@code digits} digits and the last
+     * {@code digits} of them agree.
+     */
+    public static boolean suffixMatches(CharSequence a, CharSequence b, int digits) {
+        if (a == null || b == null) {
+            return false;
+        }
+        int i = a.length() - 1;
+        int j = b.length() - 1;
+        for (int n = 0; n < digits; n++) {
+            while (i >= 0 && !isDigit(a.charAt(i))) i--;
+            while (j >= 0 && !isDigit(b.charAt(j))) j--;
+            if (i < 0 || j < 0 || a.charAt(i) != b.charAt(j)) {
+                return false;
+            }
+            i--;
+            j--;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the last {@code digits} digits of {@code number} appear as one
+     * unbroken run anywhere in {@code text} (e.g. a file name).
+     */
+    public static boolean containsSuffix(CharSequence text, CharSequence number, int digits) {
+        if (text == null || number == null || countDigits(number) < digits) {
+            return false;
+        }
+        // Where the suffix starts in number
+        int start = number.length();
+        for (int n = 0; n < digits; start--) {
+            if (isDigit(number.charAt(start - 1))) {
+                n++;
+            }
+        }
+        for (int t = 0; t + digits <= text.length(); t++) {
+            int k = 0;
+            int s = start;
+            while (k < digits) {
+                while (!isDigit(number.charAt(s))) s++;
+                if (text.charAt(t + k) != number.charAt(s)) {
+                    break;
+                }
+                k++;
+                s++;
+            }
+            if (k == digits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The last {@code digits} digits as a string, or null if there are fewer.
+     */
+    public static String suffix(CharSequence number, int digits) {
+        if (number == null || countDigits(number) < digits) {
+            return null;
+        }
+        char[] out = new char[digits];
+        int n = digits;
+        for (int i = number.length() - 1; i >= 0 && n > 0; i--) {
+            char c = number.charAt(i);
+            if (isDigit(c)) {
+                out[--n] = c;
+            }
+        }
+        return new String(out);
+    }
+
+    /**
+     * The national number as digits ("+91 98765-43210" -> "9876543210"), or
+     * null if it has fewer than {@value #MIN_DIGITS} digits.
+     */
+    public static String national(CharSequence number) {
+        int length = nationalLength(number);
+        return length < MIN_DIGITS ? null : suffix(number, length);
+    }
+
+    public static int countDigits(CharSequence number) {
+        if (number == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < number.length(); i++) {
+            if (isDigit(number.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Value of the last `length` digits (length <= 15 fits a long)
+    private static long lastDigits(CharSequence number, int length) {
+        long value = 0;
+        long scale = 1;
+        int n = 0;
+        for (int i = number.length() - 1; i >= 0 && n < length; i--) {
+            char c = number.charAt(i);
+            if (isDigit(c)) {
+                value += (c - '0') * scale;
+                scale *= 10;
+                n++;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,627 @@
+package com.ooak.callmanager.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.FileObserver;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Persistent index of the audio files in the known call-recording directories.
+ *
+ * Each file is stored once with its size, mtime and the phone number / date
+ * tokens parsed from its name. The index is kept current from FileObserver
+ * events, and {@link #refresh()} catches whatever the observers missed by
+ * re-listing only directories whose mtime changed and re-checking files
+ * modified in the last few minutes (a recording still being written does not
+ * touch its directory). Matching a call to a recording is then an indexed
+ * query by time window and phone suffix instead of listing every directory.
+ * Names are read with the device's learned {@link RecordingNameTemplate}s
+ * when one fits, and with the generic {@link #parseName} otherwise.
+ */
+public class RecordingCatalog {
+    private static final String TAG = "RecordingCatalog";
+
+    // Recording locations across OEM dialers and recorder apps
+    public static final String[] RECORDING_PATHS = {
+        "/storage/emulated/0/Recordings/Call/",
+        "/storage/emulated/0/Call recordings/",
+        "/storage/emulated/0/MIUI/sound_recorder/call_rec/", // Xiaomi/MIUI
+        "/storage/emulated/0/Recordings/",
+        "/storage/emulated/0/CallRecordings/",
+        "/storage/emulated/0/Call Recording/",
+        "/storage/emulated/0/PhoneRecord/",
+        "/storage/emulated/0/Android/data/com.android.dialer/files/",
+        "/storage/emulated/0/Android/data/com.android.dialer/files/Call Recordings/",
+        "/storage/emulated/0/Sound Recorder/",
+        "/storage/emulated/0/Sounds/Call recordings/",
+        "/storage/emulated/0/recorder/call/",
+        "/storage/emulated/0/DCIM/Call Recordings/",
+        "/sdcard/Call recordings/",
+        "/sdcard/Recordings/Call/",
+        "/sdcard/MIUI/sound_recorder/call_rec/",
+        "/storage/emulated/0/Internal storage/Recordings/Call/",
+        "/storage/emulated/0/SamsungCallRecording/", // Samsung
+        "/storage/emulated/0/CallRecord/",
+        "/storage/emulated/0/OnePlus/CallRecord/", // OnePlus
+        "/storage/emulated/0/Audio/Call/",
+        "/storage/emulated/0/Music/Call Recordings/"
+    };
+
+    private static final String[] AUDIO_EXTENSIONS = {".mp3", ".wav", ".m4a", ".3gp", ".amr", ".aac"};
+
+    private static final long RECENT_FILE_WINDOW_MS = 10 * 60 * 1000; // 10 minutes
+    private static final int PHONE_SUFFIX_LENGTH = 6;
+
+    private static final String PREFS_NAME = "recording_catalog";
+    private static final String PREF_NAME_TEMPLATES = "name_templates";
+    private static final int TEMPLATE_SAMPLES = 3; // names of one shape a template is learned from
+    private static final int MAX_TEMPLATES = 4;    // a dialer plus a recorder app or two
+
+    private static final int OBSERVER_EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE |
+        FileObserver.MOVED_TO | FileObserver.DELETE | FileObserver.MOVED_FROM;
+
+    /**
+     * Told about every recording file that was added or changed. Called on the
+     * catalog's thread with its lock held - hand the work off, don't do it here.
+     */
+    public interface Listener {
+        void onRecordingChanged(RecordingEntry entry);
+    }
+
+    private static RecordingCatalog instance;
+
+    private final CallManagerDatabase database;
+    private final List<File> directories;
+    private final Map<String, Long> directoryMtimes = new HashMap<>();
+    private final Map<String, FileObserver> observers = new HashMap<>();
+    private final ExecutorService eventExecutor;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final SharedPreferences prefs;
+    private final List<RecordingNameTemplate> nameTemplates = new ArrayList<>();
+    private final Map<String, List<String>> templateSamples = new HashMap<>(); // by shape
+    private int users = 0;
+
+    private RecordingCatalog(Context context) {
+        this.database = CallManagerDatabase.getInstance(context);
+        this.directories = canonicalDirectories();
+        this.eventExecutor = SharedExecutors.newSerialExecutor("RecordingCatalog");
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        loadDirectoryMtimes();
+        loadNameTemplates();
+    }
+
+    public static synchronized RecordingCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingCatalog(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start watching the recording directories. Every start() needs a matching
+     * stop(); observers run while at least one component uses the catalog.
+     */
+    public synchronized void start() {
+        users++;
+        if (users == 1) {
+            eventExecutor.execute(this::refresh);
+        }
+    }
+
+    public synchronized void stop() {
+        users = Math.max(0, users - 1);
+        if (users == 0) {
+            for (FileObserver observer : observers.values()) {
+                observer.stopWatching();
+            }
+            observers.clear();
+            Log.d(TAG, "👁️ Stopped watching recording directories");
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Bring the index up to date. Only directories whose mtime changed are
+     * listed again; recently modified files are re-checked for growth.
+     */
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        int rescanned = 0;
+
+        for (File dir : directories) {
+            String dirPath = dir.getAbsolutePath();
+            long dirMtime = dir.isDirectory() ? dir.lastModified() : 0;
+            Long known = directoryMtimes.get(dirPath);
+
+            if (dirMtime != 0 && users > 0 && !observers.containsKey(dirPath)) {
+                startObserver(dir);
+            }
+            if (known != null && known == dirMtime) {
+                continue;
+            }
+            rescanDirectory(dir);
+            saveDirectoryMtime(dirPath, dirMtime);
+            rescanned++;
+        }
+
+        int restatted = restatRecentFiles(start - RECENT_FILE_WINDOW_MS);
+        if (rescanned > 0 || restatted > 0) {
+            Log.d(TAG, "🔄 Catalog refresh: " + rescanned + " dir(s) rescanned, " + restatted +
+                " recent file(s) re-checked in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Recordings whose mtime falls in the window, newest first.
+     */
+    public List<RecordingEntry> findInWindow(long fromMs, long toMs) {
+        return query(CallManagerDatabase.RECORDING_MTIME + " BETWEEN ? AND ?",
+            new String[]{String.valueOf(fromMs), String.valueOf(toMs)});
+    }
+
+    /**
+     * Recordings in the window whose file name carries the same trailing phone
+     * digits as the given number, newest first.
+     */
+    public List<RecordingEntry> findByPhone(String phoneNumber, long fromMs, long toMs) {
+        String suffix = PhoneNumbers.suffix(phoneNumber, PHONE_SUFFIX_LENGTH);
+        if (suffix == null) {
+            return new ArrayList<>();
+        }
+        return query(CallManagerDatabase.RECORDING_PHONE_SUFFIX + " = ? AND " +
+                CallManagerDatabase.RECORDING_MTIME + " BETWEEN ? AND ?",
+            new String[]{suffix, String.valueOf(fromMs), String.valueOf(toMs)});
+    }
+
+    public long getCount() {
+        return android.database.DatabaseUtils.queryNumEntries(database.getReadableDatabase(),
+            CallManagerDatabase.TABLE_RECORDINGS);
+    }
+
+    private List<RecordingEntry> query(String selection, String[] args) {
+        List<RecordingEntry> entries = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_RECORDINGS,
+                null, selection, args, null, null, CallManagerDatabase.RECORDING_MTIME + " DESC");
+            while (cursor.moveToNext()) {
+                entries.add(new RecordingEntry(
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_PATH)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_NAME)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_SIZE)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_MTIME)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_PHONE_DIGITS)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_NAME_TIME))));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error querying recording catalog", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return entries;
+    }
+
+    // ---- Index maintenance ----
+
+    private void rescanDirectory(File dir) {
+        String dirPath = dir.getAbsolutePath();
+        SQLiteDatabase db = database.getWritableDatabase();
+
+        // What the catalog currently believes is in this directory
+        Map<String, long[]> known = new HashMap<>();
+        Cursor cursor = null;
+        try {
+            cursor = db.query(CallManagerDatabase.TABLE_RECORDINGS,
+                new String[]{CallManagerDatabase.RECORDING_PATH, CallManagerDatabase.RECORDING_SIZE,
+                    CallManagerDatabase.RECORDING_MTIME},
+                CallManagerDatabase.RECORDING_DIR + " = ?", new String[]{dirPath},
+                null, null, null);
+            while (cursor.moveToNext()) {
+                known.put(cursor.getString(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        File[] files = dir.isDirectory() ? dir.listFiles() : null;
+        int added = 0;
+        db.beginTransaction();
+        try {
+            if (files != null) {
+                for (File file : files) {
+                    if (!isAudioFile(file.getName()) || !file.isFile()) {
+                        continue;
+                    }
+                    long[] previous = known.remove(file.getAbsolutePath());
+                    if (previous == null || previous[0] != file.length() || previous[1] != file.lastModified()) {
+                        upsert(db, file);
+                        added++;
+                    }
+                }
+            }
+            for (String gone : known.keySet()) {
+                db.delete(CallManagerDatabase.TABLE_RECORDINGS,
+                    CallManagerDatabase.RECORDING_PATH + " = ?", new String[]{gone});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (added > 0 || !known.isEmpty()) {
+            Log.d(TAG, "📂 " + dirPath + ": " + added + " new/changed, " + known.size() + " removed");
+        }
+    }
+
+    private int restatRecentFiles(long sinceMs) {
+        List<RecordingEntry> recent = query(CallManagerDatabase.RECORDING_MTIME + " >= ?",
+            new String[]{String.valueOf(sinceMs)});
+        int changed = 0;
+        SQLiteDatabase db = database.getWritableDatabase();
+        for (RecordingEntry entry : recent) {
+            File file = entry.getFile();
+            if (!file.exists()) {
+                db.delete(CallManagerDatabase.TABLE_RECORDINGS,
+                    CallManagerDatabase.RECORDING_PATH + " = ?", new String[]{entry.path});
+                changed++;
+            } else if (file.length() != entry.size || file.lastModified() != entry.lastModified) {
+                upsert(db, file);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void upsert(SQLiteDatabase db, File file) {
+        String name = file.getName();
+        ParsedName parsed = parse(name);
+        RecordingEntry entry = new RecordingEntry(file.getAbsolutePath(), name, file.length(),
+            file.lastModified(), parsed.phoneDigits, parsed.nameTime);
+
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.RECORDING_PATH, entry.path);
+        values.put(CallManagerDatabase.RECORDING_DIR, file.getParentFile() != null
+            ? file.getParentFile().getAbsolutePath() : "");
+        values.put(CallManagerDatabase.RECORDING_NAME, name);
+        values.put(CallManagerDatabase.RECORDING_SIZE, entry.size);
+        values.put(CallManagerDatabase.RECORDING_MTIME, entry.lastModified);
+        values.put(CallManagerDatabase.RECORDING_PHONE_DIGITS, parsed.phoneDigits);
+        values.put(CallManagerDatabase.RECORDING_PHONE_SUFFIX, PhoneNumbers.suffix(parsed.phoneDigits, PHONE_SUFFIX_LENGTH));
+        values.put(CallManagerDatabase.RECORDING_NAME_TIME, parsed.nameTime);
+        db.insertWithOnConflict(CallManagerDatabase.TABLE_RECORDINGS, null, values,
+            SQLiteDatabase.CONFLICT_REPLACE);
+
+        for (Listener listener : listeners) {
+            listener.onRecordingChanged(entry);
+        }
+    }
+
+    // A learned template when one fits the name, otherwise the generic parser, learning from what it found
+    private ParsedName parse(String name) {
+        for (RecordingNameTemplate template : nameTemplates) {
+            ParsedName parsed = template.parse(name);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        ParsedName parsed = parseName(name);
+        learnNameTemplate(name, parsed);
+        return parsed;
+    }
+
+    private void learnNameTemplate(String name, ParsedName parsed) {
+        String shape = RecordingNameTemplate.shapeOf(parsed);
+        if (shape == null) {
+            return;
+        }
+        List<String> samples = templateSamples.get(shape);
+        if (samples == null) {
+            samples = new ArrayList<>();
+            templateSamples.put(shape, samples);
+        }
+        samples.add(name);
+        if (samples.size() < TEMPLATE_SAMPLES) {
+            return;
+        }
+        RecordingNameTemplate template = RecordingNameTemplate.infer(samples);
+        samples.clear();
+        if (template == null) {
+            return;
+        }
+        String encoded = template.encode();
+        for (int i = nameTemplates.size() - 1; i >= 0; i--) {
+            if (nameTemplates.get(i).encode().equals(encoded)) {
+                nameTemplates.remove(i); // the same layout learned again moves to the front
+            }
+        }
+        nameTemplates.add(0, template);
+        while (nameTemplates.size() > MAX_TEMPLATES) {
+            nameTemplates.remove(nameTemplates.size() - 1);
+        }
+        saveNameTemplates();
+        Log.d(TAG, "🧩 Learned recording name template: " + template);
+    }
+
+    private void loadNameTemplates() {
+        String saved = prefs.getString(PREF_NAME_TEMPLATES, "");
+        for (String line : saved.split("\n")) {
+            RecordingNameTemplate template = RecordingNameTemplate.decode(line);
+            if (template != null && nameTemplates.size() < MAX_TEMPLATES) {
+                nameTemplates.add(template);
+            }
+        }
+    }
+
+    private void saveNameTemplates() {
+        StringBuilder saved = new StringBuilder();
+        for (RecordingNameTemplate template : nameTemplates) {
+            if (saved.length() > 0) {
+                saved.append('\n');
+            }
+            saved.append(template.encode());
+        }
+        prefs.edit().putString(PREF_NAME_TEMPLATES, saved.toString()).apply();
+    }
+
+    private void startObserver(File dir) {
+        String dirPath = dir.getAbsolutePath();
+        FileObserver observer = new FileObserver(dirPath, OBSERVER_EVENTS) {
+            @Override
+            public void onEvent(int event, String fileName) {
+                if (fileName == null || !isAudioFile(fileName)) {
+                    return;
+                }
+                File file = new File(dirPath, fileName);
+                int type = event & FileObserver.ALL_EVENTS;
+                eventExecutor.execute(() -> onFileEvent(type, file));
+            }
+        };
+        observer.startWatching();
+        observers.put(dirPath, observer);
+        Log.d(TAG, "👁️ Watching " + dirPath);
+    }
+
+    private synchronized void onFileEvent(int type, File file) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        if (type == FileObserver.DELETE || type == FileObserver.MOVED_FROM) {
+            db.delete(CallManagerDatabase.TABLE_RECORDINGS,
+                CallManagerDatabase.RECORDING_PATH + " = ?", new String[]{file.getAbsolutePath()});
+        } else if (file.isFile()) {
+            upsert(db, file);
+        }
+    }
+
+    private void loadDirectoryMtimes() {
+        Cursor cursor = null;
+        try {
+            cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_RECORDING_DIRS,
+                null, null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                directoryMtimes.put(
+                    cursor.getString(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_DIR_PATH)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(CallManagerDatabase.RECORDING_DIR_MTIME)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error loading directory state", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void saveDirectoryMtime(String dirPath, long mtime) {
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.RECORDING_DIR_PATH, dirPath);
+        values.put(CallManagerDatabase.RECORDING_DIR_MTIME, mtime);
+        database.getWritableDatabase().insertWithOnConflict(CallManagerDatabase.TABLE_RECORDING_DIRS,
+            null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        directoryMtimes.put(dirPath, mtime);
+    }
+
+    // /sdcard and /storage/emulated/0 are the same place - watch each directory once
+    private static List<File> canonicalDirectories() {
+        Set<String> seen = new LinkedHashSet<>();
+        List<File> result = new ArrayList<>();
+        for (String path : RECORDING_PATHS) {
+            File dir = new File(path);
+            String key;
+            try {
+                key = dir.getCanonicalPath();
+            } catch (IOException e) {
+                key = dir.getAbsolutePath();
+            }
+            if (seen.add(key)) {
+                result.add(new File(key));
+            }
+        }
+        return result;
+    }
+
+    // ---- File name parsing ----
+
+    public static boolean isAudioFile(String fileName) {
+        String lower = fileName.toLowerCase();
+        for (String extension : AUDIO_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class ParsedName {
+        public String phoneDigits; // null if the name carries no phone number
+        public long nameTime;      // 0 if it carries no timestamp
+        // Where in the name they were found, -1 if not; what a RecordingNameTemplate is learned from
+        int phoneStart = -1;
+        int phoneEnd = -1;
+        int timeStart = -1;
+        int timeEnd = -1;
+    }
+
+    /**
+     * Pull a phone number and a recording timestamp out of a file name such as
+     * "Call recording John_250617_095218.m4a" or "+91 98765 43210 20250617143005.amr".
+     * Timestamp forms: yyMMdd_HHmmss, yyyyMMdd_HHmmss, yyyyMMddHHmmss, yyMMddHHmmss.
+     */
+    public static ParsedName parseName(String name) {
+        ParsedName parsed = new ParsedName();
+
+        // Digit runs and the character that preceded each one
+        List<int[]> runs = new ArrayList<>(); // {start, end}
+        int i = 0;
+        int length = name.length();
+        while (i < length) {
+            if (PhoneNumbers.isDigit(name.charAt(i))) {
+                int start = i;
+                while (i < length && PhoneNumbers.isDigit(name.charAt(i))) {
+                    i++;
+                }
+                runs.add(new int[]{start, i});
+            } else {
+                i++;
+            }
+        }
+
+        boolean[] consumed = new boolean[runs.size()];
+        for (int r = 0; r < runs.size() && parsed.nameTime == 0; r++) {
+            String run = name.substring(runs.get(r)[0], runs.get(r)[1]);
+            String next = r + 1 < runs.size() ? name.substring(runs.get(r + 1)[0], runs.get(r + 1)[1]) : "";
+            long time = 0;
+            int end = runs.get(r)[1];
+            if (run.length() == 14) {
+                time = toTime(run.substring(0, 8), run.substring(8));
+            } else if (run.length() == 12) {
+                time = toTime("20" + run.substring(0, 6), run.substring(6));
+            } else if (run.length() == 8 && next.length() == 6) {
+                time = toTime(run, next);
+                if (time != 0) consumed[r + 1] = true;
+                end = runs.get(r + 1)[1];
+            } else if (run.length() == 6 && next.length() == 6) {
+                time = toTime("20" + run, next);
+                if (time != 0) consumed[r + 1] = true;
+                end = runs.get(r + 1)[1];
+            }
+            if (time != 0) {
+                parsed.nameTime = time;
+                parsed.timeStart = runs.get(r)[0];
+                parsed.timeEnd = end;
+                consumed[r] = true;
+            }
+        }
+
+        // Longest remaining number, joining groups split by spaces or dashes ("98765 43210")
+        StringBuilder current = new StringBuilder();
+        int currentStart = -1;
+        int previousEnd = -1;
+        for (int r = 0; r < runs.size(); r++) {
+            int[] run = runs.get(r);
+            boolean joinable = previousEnd >= 0 && run[0] - previousEnd == 1 &&
+                (name.charAt(previousEnd) == ' ' || name.charAt(previousEnd) == '-');
+            if (consumed[r] || !joinable) {
+                keepLonger(parsed, current, currentStart, previousEnd);
+                current.setLength(0);
+            }
+            if (!consumed[r]) {
+                if (current.length() == 0) {
+                    currentStart = run[0];
+                }
+                current.append(name, run[0], run[1]);
+                previousEnd = run[1];
+            } else {
+                previousEnd = -1;
+            }
+        }
+        keepLonger(parsed, current, currentStart, previousEnd);
+        if (parsed.phoneDigits != null && parsed.phoneDigits.length() < PhoneNumbers.MIN_DIGITS) {
+            parsed.phoneDigits = null;
+            parsed.phoneStart = -1;
+            parsed.phoneEnd = -1;
+        } else if (parsed.phoneStart > 0 && name.charAt(parsed.phoneStart - 1) == '+') {
+            parsed.phoneStart--; // "+91 98765 43210": the plus belongs to the number
+        }
+        return parsed;
+    }
+
+    private static void keepLonger(ParsedName parsed, StringBuilder candidate, int start, int end) {
+        if (candidate.length() > 0 && (parsed.phoneDigits == null || candidate.length() > parsed.phoneDigits.length())) {
+            parsed.phoneDigits = candidate.toString();
+            parsed.phoneStart = start;
+            parsed.phoneEnd = end;
+        }
+    }
+
+    // yyyyMMdd + HHmmss in local time, or 0 if the digits are not a plausible date
+    static long toTime(String date, String time) {
+        try {
+            return toTime(Integer.parseInt(date.substring(0, 4)), Integer.parseInt(date.substring(4, 6)),
+                Integer.parseInt(date.substring(6, 8)), Integer.parseInt(time.substring(0, 2)),
+                Integer.parseInt(time.substring(2, 4)), Integer.parseInt(time.substring(4, 6)));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    static long toTime(int year, int month, int day, int hour, int minute, int second) {
+        if (year < 2000 || year > 2099 || month < 1 || month > 12 || day < 1 || day > 31 ||
+            hour > 23 || minute > 59 || second > 59) {
+            return 0;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * One cataloged recording file.
+     */
+    public static class RecordingEntry {
+        public final String path;
+        public final String name;
+        public final long size;
+        public final long lastModified;
+        public final String phoneDigits; // Parsed from the file name, may be null
+        public final long nameTime;      // Timestamp parsed from the file name, 0 if none
+
+        RecordingEntry(String path, String name, long size, long lastModified, String phoneDigits, long nameTime) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.phoneDigits = phoneDigits;
+            this.nameTime = nameTime;
+        }
+
+        public File getFile() {
+            return new File(path);
+        }
+    }
+}
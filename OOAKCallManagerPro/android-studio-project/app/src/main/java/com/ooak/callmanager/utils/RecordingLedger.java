@@ -0,0 +1,221 @@
+package com.ooak.callmanager.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Persistent record of every recording the pipeline has finished with -
+ * uploaded, skipped as a copy, or rejected by the server - so a service
+ * restart or reboot never sends one of them again.
+ *
+ * A file is known when its (path, size, mtime) is in the ledger. A file at a
+ * new path is compared by content, but only against ledger rows of exactly
+ * the same size: then both sides get a streaming SHA-256, computed once and
+ * stored. Most recordings differ in size, so most are never hashed.
+ *
+ * The ledger also keeps the scan watermark: every recording modified before
+ * it has been offered to the pipeline, so a startup scan only needs the
+ * files changed since.
+ */
+public class RecordingLedger {
+    private static final String TAG = "RecordingLedger";
+
+    public static final String STATE_UPLOADED = "uploaded";
+    public static final String STATE_DUPLICATE = "duplicate";
+    public static final String STATE_REJECTED = "rejected";
+
+    private static final String PREFS_NAME = "recording_ledger";
+    private static final String PREF_WATERMARK = "scan_watermark";
+
+    private static final long RETENTION_MS = 90L * 24 * 60 * 60 * 1000; // well past any scan window
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private static RecordingLedger instance;
+
+    private final CallManagerDatabase database;
+    private final SharedPreferences prefs;
+
+    // Counters for logs / the status screen
+    private long pathHits = 0;
+    private long contentHits = 0;
+    private long filesHashed = 0;
+
+    private RecordingLedger(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.database = CallManagerDatabase.getInstance(appContext);
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized RecordingLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingLedger(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Whether this exact file was already dealt with. One indexed lookup.
+     */
+    public synchronized boolean contains(String path, long size, long lastModified) {
+        try (Cursor cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_LEDGER,
+                new String[]{CallManagerDatabase.LEDGER_STATE},
+                CallManagerDatabase.LEDGER_PATH + " = ? AND " + CallManagerDatabase.LEDGER_SIZE + " = ? AND " +
+                    CallManagerDatabase.LEDGER_MTIME + " = ?",
+                new String[]{path, String.valueOf(size), String.valueOf(lastModified)},
+                null, null, null)) {
+            if (cursor.moveToFirst()) {
+                pathHits++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a ledgered recording has the same content as this file, e.g. a
+     * copy in a second folder or one renamed by the recorder app. Hashes only
+     * when a ledgered file has exactly the same size.
+     *
+     * @return the path of the earlier recording, or null
+     */
+    public String findSameContent(File file) {
+        long size = file.length();
+        String hash = null;
+        try (Cursor cursor = database.getReadableDatabase().query(CallManagerDatabase.TABLE_LEDGER,
+                new String[]{CallManagerDatabase.LEDGER_PATH, CallManagerDatabase.LEDGER_MTIME,
+                    CallManagerDatabase.LEDGER_HASH},
+                CallManagerDatabase.LEDGER_SIZE + " = ? AND " + CallManagerDatabase.LEDGER_PATH + " != ?",
+                new String[]{String.valueOf(size), file.getAbsolutePath()},
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                String otherPath = cursor.getString(0);
+                String otherHash = cursor.isNull(2) ? hashIfUnchanged(otherPath, size, cursor.getLong(1)) : cursor.getString(2);
+                if (otherHash == null) {
+                    continue;
+                }
+                if (hash == null) {
+                    hash = hash(file);
+                    if (hash == null) {
+                        return null;
+                    }
+                }
+                if (hash.equals(otherHash)) {
+                    synchronized (this) {
+                        contentHits++;
+                    }
+                    return otherPath;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Note that a recording is done with; it will not be uploaded again.
+     */
+    public void record(String path, long size, long lastModified, String state, String recordingId) {
+        ContentValues values = new ContentValues();
+        values.put(CallManagerDatabase.LEDGER_PATH, path);
+        values.put(CallManagerDatabase.LEDGER_SIZE, size);
+        values.put(CallManagerDatabase.LEDGER_MTIME, lastModified);
+        values.put(CallManagerDatabase.LEDGER_STATE, state);
+        values.put(CallManagerDatabase.LEDGER_RECORDING_ID, recordingId);
+        values.put(CallManagerDatabase.LEDGER_RECORDED_AT, System.currentTimeMillis());
+        database.getWritableDatabase().insertWithOnConflict(CallManagerDatabase.TABLE_LEDGER, null, values,
+            SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Every recording modified before this has been offered to the pipeline;
+     * 0 if nothing has been scanned yet.
+     */
+    public long getWatermark() {
+        return prefs.getLong(PREF_WATERMARK, 0);
+    }
+
+    /**
+     * Move the watermark forward (never back).
+     */
+    public synchronized void advanceWatermark(long watermark) {
+        if (watermark > getWatermark()) {
+            prefs.edit().putLong(PREF_WATERMARK, watermark).apply();
+        }
+    }
+
+    /**
+     * Drop rows for recordings far older than any scan could reach again.
+     */
+    public void prune() {
+        long cutoff = Math.min(getWatermark(), System.currentTimeMillis()) - RETENTION_MS;
+        int removed = database.getWritableDatabase().delete(CallManagerDatabase.TABLE_LEDGER,
+            CallManagerDatabase.LEDGER_MTIME + " < ?", new String[]{String.valueOf(cutoff)});
+        if (removed > 0) {
+            Log.d(TAG, "🧹 Pruned " + removed + " old ledger entries");
+        }
+    }
+
+    public synchronized String getStats() {
+        long count = android.database.DatabaseUtils.queryNumEntries(database.getReadableDatabase(),
+            CallManagerDatabase.TABLE_LEDGER);
+        return "Ledger: " + count + " recordings, " + pathHits + " path / " + contentHits +
+               " content repeats skipped, " + filesHashed + " hashed";
+    }
+
+    /**
+     * Hash a ledgered file that is still in place and store the result, so it
+     * is read at most once. Null if the file has gone or changed.
+     */
+    private String hashIfUnchanged(String path, long size, long lastModified) {
+        File file = new File(path);
+        if (!file.isFile() || file.length() != size || file.lastModified() != lastModified) {
+            return null;
+        }
+        String hash = hash(file);
+        if (hash != null) {
+            ContentValues values = new ContentValues();
+            values.put(CallManagerDatabase.LEDGER_HASH, hash);
+            database.getWritableDatabase().update(CallManagerDatabase.TABLE_LEDGER, values,
+                CallManagerDatabase.LEDGER_PATH + " = ?", new String[]{path});
+        }
+        return hash;
+    }
+
+    /**
+     * SHA-256 of the whole file, streamed through a small buffer.
+     */
+    private String hash(File file) {
+        try (InputStream input = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[HASH_BUFFER_BYTES];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            synchronized (this) {
+                filesHashed++;
+            }
+
+            char[] hex = new char[64];
+            byte[] bytes = digest.digest();
+            for (int i = 0; i < bytes.length; i++) {
+                hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+                hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.w(TAG, "⚠️ Could not hash " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
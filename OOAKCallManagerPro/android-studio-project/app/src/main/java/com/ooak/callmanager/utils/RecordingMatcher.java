@@ -0,0 +1,227 @@
+package com.ooak.callmanager.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides which recording belongs to which call.
+ *
+ * Taking the first file in the time window that looks like a recording gave
+ * back-to-back calls each other's files. Instead every pending call is scored
+ * against every unclaimed recording in its window, on all the evidence there
+ * is - the number and contact name in the file name, the timestamp in the
+ * name against the call start, the file's mtime against the call end, and the
+ * recording's length against the call's talk time - and the pairs are handed
+ * out best first, so each call gets at most one recording and each recording
+ * at most one call, and a file goes to the call it fits best rather than to
+ * whichever call asked first.
+ *
+ * Plain Java, so it runs on a desktop JVM too.
+ */
+public final class RecordingMatcher {
+
+    public static final long UNKNOWN_DURATION = -1;
+
+    /** Below this a pair is not a match; the recording waits or goes up unmatched. */
+    public static final int MIN_SCORE = 20;
+
+    private static final int PHONE_MATCH_DIGITS = 6;
+    private static final long WINDOW_MS = 5 * 60 * 1000;  // evidence further off than this counts for nothing
+    private static final long EXACT_MS = 10 * 1000;       // clocks and recorder start-up differ by a few seconds
+    private static final long DURATION_SLACK_MS = 5 * 1000;
+    private static final long LONGER_THAN_CALL_MS = 30 * 1000;
+    private static final int MIN_NAME_TOKEN = 3;
+
+    // Points per kind of evidence
+    private static final int PHONE_MATCH = 50;
+    private static final int PHONE_MISMATCH = -60;   // the name carries someone else's number
+    private static final int CONTACT_NAME = 30;
+    private static final int NAME_TIME = 30;
+    private static final int NAME_TIME_OUTSIDE = -40;
+    private static final int END_TIME = 20;
+    private static final int DURATION = 25;
+    private static final int DURATION_TOO_LONG = -30;
+    private static final int RECORDING_HINT = 5;
+    private static final int IMPOSSIBLE = -1000;
+
+    private static final String[] RECORDING_HINTS = {"call", "record", "rec_", "callrec"};
+
+    /**
+     * A finished call waiting for its recording.
+     */
+    public static class Call {
+        public final String phoneNumber;
+        public final String contactName;
+        public final long callStart;
+        public final long callEnd;
+
+        public Call(String phoneNumber, String contactName, long callStart, long callEnd) {
+            this.phoneNumber = phoneNumber;
+            this.contactName = contactName;
+            this.callStart = callStart;
+            this.callEnd = callEnd;
+        }
+    }
+
+    /**
+     * A settled recording file no call has claimed yet.
+     */
+    public static class Candidate {
+        public final String name;
+        public final long lastModified;
+        public final String phoneDigits; // parsed from the name, may be null
+        public final long nameTime;      // parsed from the name, 0 if none
+        public final long durationMs;    // UNKNOWN_DURATION if the format has none
+
+        public Candidate(String name, long lastModified, String phoneDigits, long nameTime, long durationMs) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.phoneDigits = phoneDigits;
+            this.nameTime = nameTime;
+            this.durationMs = durationMs;
+        }
+    }
+
+    /**
+     * One call paired with one recording.
+     */
+    public static class Match<C extends Call, R extends Candidate> {
+        public final C call;
+        public final R recording;
+        public final int score;
+
+        Match(C call, R recording, int score) {
+            this.call = call;
+            this.recording = recording;
+            this.score = score;
+        }
+    }
+
+    private RecordingMatcher() {}
+
+    /**
+     * Pair calls with recordings, best-scoring pairs first. Pairs scoring under
+     * {@link #MIN_SCORE} are left out; so is a call or recording already used
+     * by a better pair.
+     */
+    public static <C extends Call, R extends Candidate> List<Match<C, R>> assign(List<C> calls, List<R> recordings) {
+        List<Match<C, R>> pairs = new ArrayList<>();
+        for (C call : calls) {
+            for (R recording : recordings) {
+                int score = score(call, recording);
+                if (score >= MIN_SCORE) {
+                    pairs.add(new Match<>(call, recording, score));
+                }
+            }
+        }
+        // Highest score first; on a tie the recording that ended closest to the call
+        Collections.sort(pairs, (a, b) -> a.score != b.score
+            ? Integer.compare(b.score, a.score)
+            : Long.compare(Math.abs(a.recording.lastModified - a.call.callEnd),
+                           Math.abs(b.recording.lastModified - b.call.callEnd)));
+
+        List<Match<C, R>> matches = new ArrayList<>();
+        Set<Call> usedCalls = new HashSet<>();
+        Set<Candidate> usedRecordings = new HashSet<>();
+        for (Match<C, R> pair : pairs) {
+            if (!usedCalls.contains(pair.call) && !usedRecordings.contains(pair.recording)) {
+                usedCalls.add(pair.call);
+                usedRecordings.add(pair.recording);
+                matches.add(pair);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * How well a recording fits a call; {@link #MIN_SCORE} and up is a match.
+     */
+    public static int score(Call call, Candidate recording) {
+        long callEnd = Math.max(call.callEnd, call.callStart);
+        // A recording finishes when its call does; one that was done before the call began is not it
+        if (recording.lastModified < call.callStart - EXACT_MS) {
+            return IMPOSSIBLE;
+        }
+
+        int score = 0;
+        String fileName = recording.name.toLowerCase(Locale.ROOT);
+
+        // Number in the file name, possibly split into groups ("98765 43210")
+        if (PhoneNumbers.suffixMatches(recording.phoneDigits, call.phoneNumber, PHONE_MATCH_DIGITS) ||
+                PhoneNumbers.containsSuffix(fileName, call.phoneNumber, PHONE_MATCH_DIGITS)) {
+            score += PHONE_MATCH;
+        } else if (recording.phoneDigits != null &&
+                   PhoneNumbers.countDigits(call.phoneNumber) >= PHONE_MATCH_DIGITS) {
+            score += PHONE_MISMATCH;
+        }
+
+        // Contact name in the file name, e.g. "Call recording John Doe_250617_095218.m4a"
+        if (call.contactName != null) {
+            int tokens = 0;
+            int found = 0;
+            for (String token : call.contactName.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (token.length() >= MIN_NAME_TOKEN) {
+                    tokens++;
+                    if (fileName.contains(token)) {
+                        found++;
+                    }
+                }
+            }
+            if (found > 0) {
+                score += CONTACT_NAME * found / tokens;
+            }
+        }
+
+        // The recorder stamps the name when the call starts (or connects)
+        if (recording.nameTime != 0) {
+            long offset = Math.abs(recording.nameTime - call.callStart);
+            if (recording.nameTime > callEnd + EXACT_MS || offset > WINDOW_MS) {
+                score += NAME_TIME_OUTSIDE;
+            } else {
+                score += closeness(offset, NAME_TIME);
+            }
+        }
+
+        // The file is last written when the call ends
+        score += closeness(Math.abs(recording.lastModified - callEnd), END_TIME);
+
+        // Talk time: the call log's duration, the recording's length
+        long talkMs = call.callEnd - call.callStart;
+        if (recording.durationMs != UNKNOWN_DURATION && talkMs > 0) {
+            if (recording.durationMs > talkMs + LONGER_THAN_CALL_MS) {
+                score += DURATION_TOO_LONG;
+            } else {
+                long difference = Math.abs(recording.durationMs - talkMs);
+                long slack = Math.max(DURATION_SLACK_MS, talkMs / 10);
+                if (difference <= slack) {
+                    score += DURATION;
+                } else if (difference < talkMs) {
+                    score += (int) (DURATION * (talkMs - difference) / (talkMs - slack));
+                }
+            }
+        }
+
+        for (String hint : RECORDING_HINTS) {
+            if (fileName.contains(hint)) {
+                score += RECORDING_HINT;
+                break;
+            }
+        }
+        return score;
+    }
+
+    // Full points within a few seconds, falling to none at the edge of the window
+    private static int closeness(long offsetMs, int points) {
+        if (offsetMs <= EXACT_MS) {
+            return points;
+        }
+        if (offsetMs >= WINDOW_MS) {
+            return 0;
+        }
+        return (int) (points * (WINDOW_MS - offsetMs) / (WINDOW_MS - EXACT_MS));
+    }
+}
@@ -0,0 +1,431 @@
+package com.ooak.callmanager.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The file name layout of one device's call recorder, e.g.
+ * "Call recording {name}_{dddddd_dddddd}.m4a" or "{name}({phone})_{dddddddddddddd}.mp3".
+ *
+ * A dialer names every recording the same way, so once a few names have been
+ * understood by {@link RecordingCatalog#parseName} the layout is inferred from
+ * them: the parts that are the same in every name are literals, the number
+ * and timestamp the parser found are fields, and text that differs between
+ * names is the contact name. After that a new name is read in one pass
+ * against the template - literals compared in place, the timestamp read by
+ * position - and only a name that does not fit goes back to the generic
+ * parser.
+ *
+ * Plain Java, so it runs on a desktop JVM too.
+ */
+public final class RecordingNameTemplate {
+
+    private static final char LITERAL = 'L';
+    private static final char NAME = 'N';
+    private static final char PHONE = 'P';
+    private static final char TIME = 'T';   // text is the layout, 'd' for each digit
+    private static final char DIGIT = 'd';
+    private static final char SEPARATOR = '/'; // never part of a file name
+
+    private final char[] types;
+    private final String[] texts;
+
+    private RecordingNameTemplate(List<Character> types, List<String> texts) {
+        this.types = new char[types.size()];
+        for (int i = 0; i < this.types.length; i++) {
+            this.types[i] = types.get(i);
+        }
+        this.texts = texts.toArray(new String[0]);
+    }
+
+    /**
+     * The fields a parsed name has, in order ("PT", "T", ...): names with the
+     * same shape can share a template. Null if the parser found neither a
+     * number nor a timestamp, i.e. there is nothing to learn from.
+     */
+    public static String shapeOf(RecordingCatalog.ParsedName parsed) {
+        if (parsed.phoneStart < 0 && parsed.timeStart < 0) {
+            return null;
+        }
+        if (parsed.phoneStart < 0) {
+            return "T";
+        }
+        if (parsed.timeStart < 0) {
+            return "P";
+        }
+        return parsed.phoneStart < parsed.timeStart ? "PT" : "TP";
+    }
+
+    /**
+     * Infer the template the given names (of one shape) were written with.
+     *
+     * @return null if they do not share one, or if the template would read any
+     *         of them differently from the generic parser
+     */
+    public static RecordingNameTemplate infer(List<String> names) {
+        if (names.size() < 2) {
+            return null;
+        }
+        List<RecordingCatalog.ParsedName> parsed = new ArrayList<>(names.size());
+        String shape = null;
+        for (String name : names) {
+            RecordingCatalog.ParsedName p = RecordingCatalog.parseName(name);
+            String s = shapeOf(p);
+            if (s == null || (shape != null && !shape.equals(s))) {
+                return null;
+            }
+            shape = s;
+            parsed.add(p);
+        }
+
+        List<Character> types = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        int[] cursor = new int[names.size()]; // end of the previous field in each name
+        for (int f = 0; f <= shape.length(); f++) {
+            List<String> gaps = new ArrayList<>(names.size());
+            for (int n = 0; n < names.size(); n++) {
+                int end = f < shape.length() ? fieldStart(parsed.get(n), shape.charAt(f)) : names.get(n).length();
+                gaps.add(names.get(n).substring(cursor[n], end));
+            }
+            addGap(gaps, types, texts);
+            if (f == shape.length()) {
+                break;
+            }
+
+            char field = shape.charAt(f);
+            String layout = null;
+            for (int n = 0; n < names.size(); n++) {
+                RecordingCatalog.ParsedName p = parsed.get(n);
+                if (field == TIME) {
+                    String sample = timeLayout(names.get(n), p.timeStart, p.timeEnd);
+                    if (layout != null && !layout.equals(sample)) {
+                        return null;
+                    }
+                    layout = sample;
+                    cursor[n] = p.timeEnd;
+                } else {
+                    cursor[n] = p.phoneEnd;
+                }
+            }
+            types.add(field);
+            texts.add(layout);
+        }
+
+        for (int i = 1; i < types.size(); i++) {
+            if (isVariable(types.get(i - 1)) && isVariable(types.get(i))) {
+                return null; // nothing to tell where one ends and the next begins
+            }
+        }
+
+        RecordingNameTemplate template = new RecordingNameTemplate(types, texts);
+        for (int n = 0; n < names.size(); n++) {
+            RecordingCatalog.ParsedName mine = template.parse(names.get(n));
+            RecordingCatalog.ParsedName generic = parsed.get(n);
+            if (mine == null || mine.nameTime != generic.nameTime ||
+                    !equal(mine.phoneDigits, generic.phoneDigits)) {
+                return null;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Read a name against the template.
+     *
+     * @return the number and timestamp, or null if the name does not fit
+     */
+    public RecordingCatalog.ParsedName parse(String name) {
+        RecordingCatalog.ParsedName parsed = new RecordingCatalog.ParsedName();
+        int first = 0;
+        int last = types.length - 1;
+        int pos = 0;
+        int end = name.length();
+
+        // Fixed-width parts from the front...
+        for (; first <= last && !isVariable(types[first]); first++) {
+            int length = texts[first].length();
+            if (pos + length > end || !matchFixed(first, name, pos, parsed)) {
+                return null;
+            }
+            pos += length;
+        }
+        // ...and from the back
+        for (; last >= first && !isVariable(types[last]); last--) {
+            int length = texts[last].length();
+            if (end - length < pos || !matchFixed(last, name, end - length, parsed)) {
+                return null;
+            }
+            end -= length;
+        }
+        if (first > last) {
+            return pos == end ? parsed : null;
+        }
+
+        // Variable fields with literals between them, split from the back: a
+        // number ends where its digit groups do, a contact name at the last
+        // place the literal appears (the name itself may contain it)
+        while (last > first) {
+            if (!isVariable(types[last]) || types[last - 1] != LITERAL) {
+                return null;
+            }
+            String literal = texts[last - 1];
+            int at = types[last] == PHONE
+                ? numberStart(name, pos, end) - literal.length()
+                : name.lastIndexOf(literal, end - literal.length() - 1);
+            if (at < pos || !name.startsWith(literal, at) ||
+                    !readField(types[last], name, at + literal.length(), end, parsed)) {
+                return null;
+            }
+            end = at;
+            last -= 2;
+        }
+        if (last < first || !readField(types[first], name, pos, end, parsed)) {
+            return null;
+        }
+        return parsed;
+    }
+
+    /**
+     * One line for the preferences; {@link #decode} reads it back.
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                encoded.append(SEPARATOR);
+            }
+            encoded.append(types[i]);
+            if (texts[i] != null) {
+                encoded.append(texts[i]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @return null if the line is not a template
+     */
+    public static RecordingNameTemplate decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        List<Character> types = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        int start = 0;
+        while (start <= encoded.length()) {
+            int next = encoded.indexOf(SEPARATOR, start);
+            if (next < 0) {
+                next = encoded.length();
+            }
+            if (next == start) {
+                return null;
+            }
+            char type = encoded.charAt(start);
+            String text = encoded.substring(start + 1, next);
+            if (type == LITERAL || type == TIME) {
+                if (text.isEmpty()) {
+                    return null;
+                }
+                texts.add(text);
+            } else if (type == NAME || type == PHONE) {
+                texts.add(null);
+            } else {
+                return null;
+            }
+            types.add(type);
+            start = next + 1;
+        }
+        return new RecordingNameTemplate(types, texts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder readable = new StringBuilder();
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LITERAL:
+                    readable.append(texts[i]);
+                    break;
+                case NAME:
+                    readable.append("{name}");
+                    break;
+                case PHONE:
+                    readable.append("{phone}");
+                    break;
+                default:
+                    readable.append('{').append(texts[i]).append('}');
+            }
+        }
+        return readable.toString();
+    }
+
+    // ---- Helpers ----
+
+    private static boolean isVariable(char type) {
+        return type == NAME || type == PHONE;
+    }
+
+    private static int fieldStart(RecordingCatalog.ParsedName parsed, char field) {
+        return field == TIME ? parsed.timeStart : parsed.phoneStart;
+    }
+
+    // The timestamp with each digit replaced by 'd', e.g. "dddddd_dddddd"
+    private static String timeLayout(String name, int start, int end) {
+        char[] layout = new char[end - start];
+        for (int i = start; i < end; i++) {
+            layout[i - start] = PhoneNumbers.isDigit(name.charAt(i)) ? DIGIT : name.charAt(i);
+        }
+        return new String(layout);
+    }
+
+    // Same text at each position: a literal; different: literal prefix, name, literal suffix
+    private static void addGap(List<String> gaps, List<Character> types, List<String> texts) {
+        String first = gaps.get(0);
+        int prefix = first.length();
+        int suffix = first.length();
+        boolean same = true;
+        for (String gap : gaps) {
+            same &= gap.equals(first);
+            prefix = Math.min(prefix, commonPrefix(first, gap));
+            suffix = Math.min(suffix, commonSuffix(first, gap));
+        }
+        if (same) {
+            if (!first.isEmpty()) {
+                types.add(LITERAL);
+                texts.add(first);
+            }
+            return;
+        }
+        int shortest = Integer.MAX_VALUE;
+        for (String gap : gaps) {
+            shortest = Math.min(shortest, gap.length());
+        }
+        suffix = Math.min(suffix, shortest - prefix); // prefix and suffix must not overlap
+        if (prefix > 0) {
+            types.add(LITERAL);
+            texts.add(first.substring(0, prefix));
+        }
+        types.add(NAME);
+        texts.add(null);
+        if (suffix > 0) {
+            types.add(LITERAL);
+            texts.add(first.substring(first.length() - suffix));
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = 0;
+        while (n < a.length() && n < b.length() && a.charAt(n) == b.charAt(n)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static int commonSuffix(String a, String b) {
+        int n = 0;
+        while (n < a.length() && n < b.length() &&
+               a.charAt(a.length() - 1 - n) == b.charAt(b.length() - 1 - n)) {
+            n++;
+        }
+        return n;
+    }
+
+    private boolean matchFixed(int index, String name, int at, RecordingCatalog.ParsedName parsed) {
+        String text = texts[index];
+        if (types[index] == LITERAL) {
+            return name.startsWith(text, at);
+        }
+        // Timestamp: 14 digits are yyyyMMddHHmmss, 12 are yyMMddHHmmss
+        int[] digits = new int[14];
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = name.charAt(at + i);
+            if (text.charAt(i) == DIGIT) {
+                if (!PhoneNumbers.isDigit(c) || count == digits.length) {
+                    return false;
+                }
+                digits[count++] = c - '0';
+            } else if (c != text.charAt(i)) {
+                return false;
+            }
+        }
+        int year;
+        int d; // index of the month
+        if (count == 14) {
+            year = digits[0] * 1000 + digits[1] * 100 + digits[2] * 10 + digits[3];
+            d = 4;
+        } else if (count == 12) {
+            year = 2000 + digits[0] * 10 + digits[1];
+            d = 2;
+        } else {
+            return false;
+        }
+        long time = RecordingCatalog.toTime(year, digits[d] * 10 + digits[d + 1],
+            digits[d + 2] * 10 + digits[d + 3], digits[d + 4] * 10 + digits[d + 5],
+            digits[d + 6] * 10 + digits[d + 7], digits[d + 8] * 10 + digits[d + 9]);
+        if (time == 0) {
+            return false;
+        }
+        parsed.nameTime = time;
+        parsed.timeStart = at;
+        parsed.timeEnd = at + text.length();
+        return true;
+    }
+
+    // Where the number ending at end begins: digit groups joined by single spaces or dashes, maybe a leading '+'
+    private static int numberStart(String name, int pos, int end) {
+        int start = end;
+        while (start > pos) {
+            char c = name.charAt(start - 1);
+            boolean digitAfter = start < end && PhoneNumbers.isDigit(name.charAt(start));
+            if (PhoneNumbers.isDigit(c)) {
+                start--;
+            } else if ((c == ' ' || c == '-') && digitAfter && start - 1 > pos &&
+                       PhoneNumbers.isDigit(name.charAt(start - 2))) {
+                start--;
+            } else {
+                if (c == '+' && digitAfter) {
+                    start--;
+                }
+                break;
+            }
+        }
+        return start;
+    }
+
+    private static boolean readField(char type, String name, int start, int end, RecordingCatalog.ParsedName parsed) {
+        if (start >= end) {
+            return false;
+        }
+        // Digits, in groups split by single spaces or dashes as the parser joins them ("98765 43210")
+        StringBuilder digits = new StringBuilder();
+        boolean phoneLike = true;
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (PhoneNumbers.isDigit(c)) {
+                digits.append(c);
+            } else if (c == '+' ? i != start : (c != ' ' && c != '-') || i == start ||
+                       !PhoneNumbers.isDigit(name.charAt(i - 1))) {
+                phoneLike = false;
+            }
+        }
+        boolean longEnough = digits.length() >= PhoneNumbers.MIN_DIGITS;
+        if (type == PHONE) {
+            if (!phoneLike || !longEnough) {
+                return false;
+            }
+            parsed.phoneDigits = digits.toString();
+        } else if (longEnough) {
+            if (!phoneLike || parsed.phoneDigits != null) {
+                return false; // a number inside other text: the generic parser decides
+            }
+            // Recorders put the number where the name goes when there is no contact
+            parsed.phoneDigits = digits.toString();
+        }
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
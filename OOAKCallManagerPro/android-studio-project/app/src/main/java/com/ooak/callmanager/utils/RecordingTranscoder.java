@@ -0,0 +1,622 @@
+package com.ooak.callmanager.utils;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+
+import com.ooak.callmanager.config.AppConfig;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Shrinks call recordings to low-bitrate mono speech before upload.
+ *
+ * OEM dialers write anything from 8 kbps AMR to 1.4 Mbps stereo WAV. The CRM
+ * only transcribes them, and Whisper resamples to 16 kHz mono anyway, so big
+ * recordings are re-encoded to 16 kHz mono Opus (Android 10+) or AAC before they
+ * go up. What gets converted depends on the format:
+ *
+ *   wav                    → always (16-bit PCM, read in plain Java)
+ *   m4a, aac, mp4, mp3,
+ *   3gp, flac              → when above {@value #TRANSCODE_ABOVE_BIT_RATE} bps
+ *   amr, awb, ogg, opus    → never, already small speech codecs
+ *
+ * Outputs live in the cache until the upload is finished. An output that saves
+ * too little is thrown away and the original is uploaded.
+ */
+public class RecordingTranscoder {
+    private static final String TAG = "RecordingTranscoder";
+
+    private static final int TARGET_SAMPLE_RATE = 16000;
+    private static final int AAC_BIT_RATE = 32000;
+    private static final int OPUS_BIT_RATE = 24000;
+    private static final int TRANSCODE_ABOVE_BIT_RATE = 64000;
+    private static final double MAX_OUTPUT_RATIO = 0.8; // keep outputs at most 80% of the original
+    private static final long CODEC_TIMEOUT_US = 10000;
+    private static final int MAX_IDLE_POLLS = 500;      // ~5 s without codec progress
+    private static final String OUTPUT_DIR = "transcoded";
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private enum Policy { KEEP, PCM, DECODE }
+
+    private enum Target {
+        OPUS(MediaFormat.MIMETYPE_AUDIO_OPUS, MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG, ".ogg", OPUS_BIT_RATE),
+        AAC(MediaFormat.MIMETYPE_AUDIO_AAC, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4, ".m4a", AAC_BIT_RATE),
+        WAV(null, -1, ".wav", TARGET_SAMPLE_RATE * 16);
+
+        final String mime;
+        final int muxerFormat;
+        final String extension;
+        final int bitRate;
+
+        Target(String mime, int muxerFormat, String extension, int bitRate) {
+            this.mime = mime;
+            this.muxerFormat = muxerFormat;
+            this.extension = extension;
+            this.bitRate = bitRate;
+        }
+    }
+
+    private static RecordingTranscoder instance;
+
+    private final AppConfig appConfig;
+    private final File outputRoot;
+    private final Target encoderTarget;
+
+    // Size/time report for logs and the status screen
+    private long filesTranscoded = 0;
+    private long filesKept = 0;
+    private long bytesIn = 0;
+    private long bytesOut = 0;
+    private long transcodeMs = 0;
+
+    private RecordingTranscoder(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.appConfig = AppConfig.getInstance(appContext);
+        this.outputRoot = new File(appContext.getCacheDir(), OUTPUT_DIR);
+        this.encoderTarget = pickEncoder();
+        Log.d(TAG, "🎚️ Transcoding target: " + encoderTarget);
+    }
+
+    public static synchronized RecordingTranscoder getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingTranscoder(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Convert a recording for upload on the calling thread.
+     *
+     * @return the smaller file to upload instead, or null to upload the original
+     */
+    public File transcodeForUpload(File source) {
+        if (!appConfig.isTranscodingEnabled() || isOutput(source) || !source.isFile()) {
+            return null;
+        }
+        File existing = findOutput(source.getAbsolutePath());
+        if (existing != null && existing.lastModified() >= source.lastModified()) {
+            return existing; // Converted on an earlier attempt
+        }
+
+        Policy policy = policyFor(source);
+        if (policy == Policy.KEEP) {
+            recordKept();
+            return null;
+        }
+
+        File dir = outputDir(source.getAbsolutePath());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "⚠️ Could not create " + dir);
+            return null;
+        }
+
+        long started = System.currentTimeMillis();
+        Target target = encoderTarget;
+        File output = null;
+        try {
+            output = convert(source, policy, dir, target);
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ " + target + " encoding of " + source.getName() + " failed: " + e.getMessage());
+            if (policy == Policy.PCM && target != Target.WAV) {
+                // Plain-Java fallback: still a 5-10x saving on a 44.1 kHz stereo WAV
+                try {
+                    target = Target.WAV;
+                    output = convert(source, policy, dir, target);
+                } catch (Exception fallbackError) {
+                    Log.w(TAG, "⚠️ WAV downmix of " + source.getName() + " failed", fallbackError);
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - started;
+
+        if (output == null || output.length() == 0 || output.length() > source.length() * MAX_OUTPUT_RATIO) {
+            if (output != null) {
+                Log.d(TAG, "📦 " + source.getName() + " barely shrinks (" + kb(source.length()) + " → " +
+                    kb(output.length()) + ") - uploading the original");
+            }
+            discard(source.getAbsolutePath());
+            recordKept();
+            return null;
+        }
+
+        synchronized (this) {
+            filesTranscoded++;
+            bytesIn += source.length();
+            bytesOut += output.length();
+            transcodeMs += elapsed;
+        }
+        Log.i(TAG, String.format(Locale.US, "🎚️ %s: %s → %s (%.1fx, %s) in %d ms",
+            source.getName(), kb(source.length()), kb(output.length()),
+            (double) source.length() / output.length(), target, elapsed));
+        return output;
+    }
+
+    /**
+     * The finished output for a source file, if one exists.
+     */
+    public File findOutput(String sourcePath) {
+        String base = baseName(new File(sourcePath).getName());
+        File[] files = outputDir(sourcePath).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(PARTIAL_SUFFIX) && baseName(file.getName()).equals(base)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delete the outputs for a source file once its upload is done or abandoned.
+     * Also accepts the path of an output itself.
+     */
+    public void discard(String sourcePath) {
+        File source = new File(sourcePath);
+        File dir = isOutput(source) ? source.getParentFile() : outputDir(sourcePath);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public boolean isOutput(File file) {
+        return file.getAbsolutePath().startsWith(outputRoot.getAbsolutePath() + File.separator);
+    }
+
+    /**
+     * MIME type for an audio file name, for multipart uploads.
+     */
+    public static String contentTypeFor(String fileName) {
+        switch (extension(fileName)) {
+            case "m4a":
+            case "mp4":
+            case "aac": return "audio/mp4";
+            case "ogg":
+            case "opus": return "audio/ogg";
+            case "wav": return "audio/wav";
+            case "amr": return "audio/amr";
+            case "awb": return "audio/amr-wb";
+            case "3gp":
+            case "3ga": return "audio/3gpp";
+            case "flac": return "audio/flac";
+            case "mp3": return "audio/mpeg";
+            default: return "application/octet-stream";
+        }
+    }
+
+    public synchronized String getStats() {
+        if (filesTranscoded == 0) {
+            return "Transcoding: " + filesKept + " uploaded as recorded";
+        }
+        return String.format(Locale.US, "Transcoding: %d files, %s → %s (%.1fx), avg %d ms, %d kept",
+            filesTranscoded, kb(bytesIn), kb(bytesOut), (double) bytesIn / Math.max(1, bytesOut),
+            transcodeMs / filesTranscoded, filesKept);
+    }
+
+    private synchronized void recordKept() {
+        filesKept++;
+    }
+
+    // ---- Policy ----
+
+    private Policy policyFor(File source) {
+        switch (extension(source.getName())) {
+            case "wav":
+                return Policy.PCM;
+            case "m4a":
+            case "aac":
+            case "mp4":
+            case "mp3":
+            case "3gp":
+            case "flac":
+                long bitRate = estimateBitRate(source);
+                return bitRate > TRANSCODE_ABOVE_BIT_RATE ? Policy.DECODE : Policy.KEEP;
+            default:
+                return Policy.KEEP;
+        }
+    }
+
+    private static long estimateBitRate(File source) {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(source.getAbsolutePath());
+            int track = findAudioTrack(extractor);
+            if (track < 0) {
+                return 0;
+            }
+            MediaFormat format = extractor.getTrackFormat(track);
+            if (format.containsKey(MediaFormat.KEY_BIT_RATE)) {
+                return format.getInteger(MediaFormat.KEY_BIT_RATE);
+            }
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ?
+                format.getLong(MediaFormat.KEY_DURATION) : 0;
+            return durationUs > 0 ? source.length() * 8 * 1000000L / durationUs : 0;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Could not read " + source.getName() + ": " + e.getMessage());
+            return 0;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static Target pickEncoder() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            MediaFormat opus = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_OPUS, TARGET_SAMPLE_RATE, 1);
+            opus.setInteger(MediaFormat.KEY_BIT_RATE, OPUS_BIT_RATE);
+            if (new MediaCodecList(MediaCodecList.REGULAR_CODECS).findEncoderForFormat(opus) != null) {
+                return Target.OPUS;
+            }
+        }
+        return Target.AAC;
+    }
+
+    // ---- Conversion ----
+
+    private File convert(File source, Policy policy, File dir, Target target) throws IOException {
+        File output = new File(dir, baseName(source.getName()) + target.extension);
+        File partial = new File(dir, output.getName() + PARTIAL_SUFFIX);
+        partial.delete();
+
+        if (policy == Policy.PCM) {
+            convertWav(source, partial, target);
+        } else {
+            convertCompressed(source, partial, target);
+        }
+
+        if (!partial.renameTo(output)) {
+            partial.delete();
+            throw new IOException("Could not move " + partial.getName() + " into place");
+        }
+        return output;
+    }
+
+    private void convertWav(File source, File partial, Target target) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(source))) {
+            PcmAudio.WavFormat format = PcmAudio.readWavHeader(in, source.length());
+            if (format == null || !format.isPcm16()) {
+                throw new IOException("Not 16-bit PCM WAV");
+            }
+            int outRate = Math.min(TARGET_SAMPLE_RATE, format.sampleRate);
+            OutputSink sink = openSink(partial, target, outRate);
+            try {
+                PcmAudio.convertWav(in, format, outRate, sink);
+                sink.finish();
+            } finally {
+                sink.close();
+            }
+        }
+    }
+
+    /**
+     * MediaExtractor → decoder → {@link PcmAudio.Resampler} → encoder.
+     */
+    private void convertCompressed(File source, File partial, Target target) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        OutputSink sink = null;
+        try {
+            extractor.setDataSource(source.getAbsolutePath());
+            int track = findAudioTrack(extractor);
+            if (track < 0) {
+                throw new IOException("No audio track");
+            }
+            extractor.selectTrack(track);
+            MediaFormat inputFormat = extractor.getTrackFormat(track);
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, null, null, 0);
+            decoder.start();
+
+            int sampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            PcmAudio.Resampler resampler = null;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            byte[] pcm = new byte[0];
+            boolean inputDone = false;
+            int idle = 0;
+
+            while (true) {
+                if (!inputDone) {
+                    int inIndex = decoder.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (inIndex >= 0) {
+                        ByteBuffer buffer = decoder.getInputBuffer(inIndex);
+                        int size = extractor.readSampleData(buffer, 0);
+                        if (size < 0) {
+                            decoder.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            decoder.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outIndex = decoder.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = decoder.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    continue;
+                }
+                if (outIndex < 0) {
+                    if (inputDone && ++idle > MAX_IDLE_POLLS) {
+                        throw new IOException("Decoder stalled");
+                    }
+                    continue;
+                }
+                idle = 0;
+
+                if (info.size > 0) {
+                    if (resampler == null) {
+                        int outRate = Math.min(TARGET_SAMPLE_RATE, sampleRate);
+                        resampler = new PcmAudio.Resampler(sampleRate, channels, outRate);
+                        sink = openSink(partial, target, outRate);
+                    }
+                    ByteBuffer buffer = decoder.getOutputBuffer(outIndex);
+                    if (pcm.length < info.size) {
+                        pcm = new byte[info.size];
+                    }
+                    buffer.position(info.offset);
+                    buffer.get(pcm, 0, info.size);
+                    resampler.write(pcm, 0, info.size, sink);
+                }
+                decoder.releaseOutputBuffer(outIndex, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    break;
+                }
+            }
+
+            if (sink == null) {
+                throw new IOException("No audio decoded");
+            }
+            resampler.flush(sink);
+            sink.finish();
+        } finally {
+            if (sink != null) {
+                sink.close();
+            }
+            if (decoder != null) {
+                try {
+                    decoder.stop();
+                } catch (IllegalStateException ignored) {
+                    // Never started
+                }
+                decoder.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static OutputSink openSink(File partial, Target target, int sampleRate) throws IOException {
+        if (target == Target.WAV) {
+            PcmAudio.WavWriter writer = new PcmAudio.WavWriter(partial, sampleRate);
+            return new OutputSink() {
+                @Override
+                public void write(short[] samples, int count) throws IOException {
+                    writer.write(samples, count);
+                }
+
+                @Override
+                public void finish() {
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+        return new EncoderSink(partial, target, sampleRate);
+    }
+
+    private interface OutputSink extends PcmAudio.Sink {
+        void finish() throws IOException;
+        void close() throws IOException;
+    }
+
+    /**
+     * Mono PCM → MediaCodec encoder → MediaMuxer.
+     */
+    private static class EncoderSink implements OutputSink {
+        private final MediaCodec codec;
+        private final MediaMuxer muxer;
+        private final int sampleRate;
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        private int track = -1;
+        private long samplesQueued = 0;
+        private boolean released = false;
+
+        EncoderSink(File output, Target target, int sampleRate) throws IOException {
+            this.sampleRate = sampleRate;
+            MediaFormat format = MediaFormat.createAudioFormat(target.mime, sampleRate, 1);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, target.bitRate);
+            if (target == Target.AAC) {
+                format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            }
+            this.codec = MediaCodec.createEncoderByType(target.mime);
+            try {
+                codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                codec.start();
+                this.muxer = new MediaMuxer(output.getAbsolutePath(), target.muxerFormat);
+            } catch (RuntimeException | IOException e) {
+                codec.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(short[] samples, int count) throws IOException {
+            int offset = 0;
+            int idle = 0;
+            while (offset < count) {
+                int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                if (index < 0) {
+                    if (!drain(false) && ++idle > MAX_IDLE_POLLS) {
+                        throw new IOException("Encoder stalled");
+                    }
+                    continue;
+                }
+                idle = 0;
+                ByteBuffer input = codec.getInputBuffer(index);
+                input.clear();
+                int n = Math.min(count - offset, input.remaining() / 2);
+                input.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples, offset, n);
+                codec.queueInputBuffer(index, 0, n * 2, samplesQueued * 1000000L / sampleRate, 0);
+                samplesQueued += n;
+                offset += n;
+                drain(false);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            int idle = 0;
+            while (true) {
+                int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                if (index >= 0) {
+                    codec.queueInputBuffer(index, 0, 0, samplesQueued * 1000000L / sampleRate,
+                        MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    break;
+                }
+                if (!drain(false) && ++idle > MAX_IDLE_POLLS) {
+                    throw new IOException("Encoder stalled");
+                }
+            }
+            drain(true);
+        }
+
+        /**
+         * Move encoded frames to the muxer.
+         *
+         * @param untilEnd block until the end-of-stream frame is out
+         * @return whether any output was taken
+         */
+        private boolean drain(boolean untilEnd) throws IOException {
+            boolean progressed = false;
+            int idle = 0;
+            while (true) {
+                int index = codec.dequeueOutputBuffer(info, untilEnd ? CODEC_TIMEOUT_US : 0);
+                if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                    if (!untilEnd) {
+                        return progressed;
+                    }
+                    if (++idle > MAX_IDLE_POLLS) {
+                        throw new IOException("Encoder never finished");
+                    }
+                    continue;
+                }
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    track = muxer.addTrack(codec.getOutputFormat());
+                    muxer.start();
+                    continue;
+                }
+                if (index < 0) {
+                    continue;
+                }
+                progressed = true;
+                idle = 0;
+
+                ByteBuffer output = codec.getOutputBuffer(index);
+                boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                if (!config && info.size > 0 && track >= 0) {
+                    output.position(info.offset);
+                    output.limit(info.offset + info.size);
+                    muxer.writeSampleData(track, output, info);
+                }
+                codec.releaseOutputBuffer(index, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                codec.stop();
+            } catch (IllegalStateException ignored) {
+                // Failed mid-stream
+            }
+            codec.release();
+            try {
+                if (track >= 0) {
+                    muxer.stop();
+                }
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "⚠️ Muxer did not stop cleanly", e);
+            }
+            muxer.release();
+        }
+    }
+
+    // ---- Names ----
+
+    private File outputDir(String sourcePath) {
+        return new File(outputRoot, Integer.toHexString(sourcePath.hashCode()));
+    }
+
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.US) : "";
+    }
+
+    private static String kb(long bytes) {
+        return (bytes / 1024) + " KB";
+    }
+}
@@ -0,0 +1,270 @@
+package com.ooak.callmanager.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one set of background threads the app's components share.
+ *
+ * Each component used to own a single-thread executor that sat idle almost all
+ * the time, so a running app carried a dozen parked threads. Now there is one
+ * worker pool, whose threads exist only while there is work, and one timer for
+ * delayed tasks. A component that relies on its tasks running one at a time,
+ * in order, gets a {@link #newSerialExecutor serial executor}: a queue that
+ * borrows a pool thread while it has work and gives it back afterwards.
+ */
+public final class SharedExecutors {
+    private static final long IDLE_THREAD_KEEP_ALIVE_SEC = 15;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final AtomicLong tasks = new AtomicLong();
+
+    private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+        0, Integer.MAX_VALUE, IDLE_THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "Background-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "BackgroundTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Cancelled delays (debounces) should not pile up in the timer queue
+        timer.setRemoveOnCancelPolicy(true);
+        timer.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+    }
+
+    private SharedExecutors() {
+    }
+
+    /**
+     * The shared worker pool, for independent jobs such as one HTTP request.
+     * It grows on demand, so a blocking job never waits for a thread.
+     */
+    public static ExecutorService pool() {
+        return pool;
+    }
+
+    /**
+     * An executor that runs its tasks one at a time, in submission order, on
+     * the shared pool: what Executors.newSingleThreadScheduledExecutor gives,
+     * without a thread of its own. Each task sees everything the previous one
+     * did, so state confined to the executor needs no locks.
+     */
+    public static ScheduledExecutorService newSerialExecutor(String name) {
+        return new SerialExecutor(name);
+    }
+
+    public static String getStats() {
+        return "Threads: " + pool.getPoolSize() + " background (" + pool.getActiveCount() + " busy, " +
+               threadCount.get() + " created), " + timer.getQueue().size() + " timers, " +
+               tasks.get() + " tasks";
+    }
+
+    private static final class SerialExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+        private final String name;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private boolean active = false;
+        private boolean shutdown = false;
+
+        SerialExecutor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new RejectedExecutionException(name + " is shut down");
+                }
+                queue.add(command);
+                if (active) {
+                    return;
+                }
+                active = true;
+            }
+            pool.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        active = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                tasks.incrementAndGet();
+                boolean completed = false;
+                try {
+                    next.run();
+                    completed = true;
+                } finally {
+                    if (!completed) {
+                        // The task's exception takes this thread down, as it would
+                        // a lone executor thread; the rest of the queue moves on
+                        handOff();
+                    }
+                }
+            }
+        }
+
+        private void handOff() {
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    active = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            pool.execute(this::drain);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return schedule(Executors.callable(command, null), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            DelayedTask<V> task = new DelayedTask<>(callable, unit.toNanos(delay), 0);
+            task.arm();
+            return task;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            DelayedTask<Object> task = new DelayedTask<>(Executors.callable(command, null),
+                unit.toNanos(initialDelay), unit.toNanos(period));
+            task.arm();
+            return task;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            DelayedTask<Object> task = new DelayedTask<>(Executors.callable(command, null),
+                unit.toNanos(initialDelay), -unit.toNanos(delay));
+            task.arm();
+            return task;
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(queue);
+            queue.clear();
+            return pending;
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && !active;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+
+        /**
+         * Waits on the shared timer, then queues on this executor. A period
+         * above zero is a fixed rate, below zero a fixed delay.
+         */
+        private final class DelayedTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+            private final long period;
+            private volatile long runAt;
+            private volatile ScheduledFuture<?> timerFuture;
+
+            DelayedTask(Callable<V> callable, long delayNanos, long period) {
+                super(callable);
+                this.period = period;
+                this.runAt = System.nanoTime() + delayNanos;
+            }
+
+            void arm() {
+                long delay = runAt - System.nanoTime();
+                timerFuture = timer.schedule(() -> {
+                    if (!isDone()) {
+                        try {
+                            execute(this);
+                        } catch (RejectedExecutionException e) {
+                            cancel(false);
+                        }
+                    }
+                }, Math.max(0, delay), TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void run() {
+                if (period == 0) {
+                    super.run();
+                } else if (runAndReset() && !isShutdown()) {
+                    runAt = period > 0 ? runAt + period : System.nanoTime() - period;
+                    arm();
+                }
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                ScheduledFuture<?> pending = timerFuture;
+                if (cancelled && pending != null) {
+                    pending.cancel(false);
+                }
+                return cancelled;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(runAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed other) {
+                return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ooak.callmanager.api;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Coalescing pending events down to the newest snapshot of each call, and
+ * reading the per-event statuses of a batch the server accepted.
+ */
+public class CallEventBatcherTest {
+    private static final CallEventOutbox.SendResult DELIVERED = CallEventOutbox.SendResult.DELIVERED;
+    private static final CallEventOutbox.SendResult RETRY = CallEventOutbox.SendResult.RETRY;
+    private static final CallEventOutbox.SendResult REJECTED = CallEventOutbox.SendResult.REJECTED;
+
+    // ---- coalesce ----
+
+    @Test
+    public void newestEventOfEachCallInFirstSeenOrder() {
+        // Grouped the way the outbox drains them: by call, oldest first
+        Map<String, List<String>> pending = new LinkedHashMap<>();
+        pending.put("CALL_B", new ArrayList<>(Arrays.asList("B ringing", "B connected", "B answered")));
+        pending.put("CALL_A", new ArrayList<>(Arrays.asList("A ringing")));
+        pending.put("CALL_C", new ArrayList<>(Arrays.asList("C ringing", "C missed")));
+        List<String> superseded = new ArrayList<>();
+
+        List<String> latest = CallEventBatcher.coalesce(pending, superseded);
+
+        assertEquals(Arrays.asList("B answered", "A ringing", "C missed"), latest);
+        assertEquals(Arrays.asList("B ringing", "B connected", "C ringing"), superseded);
+    }
+
+    @Test
+    public void nothingSupersededWhenEveryCallHasOneEvent() {
+        Map<String, List<String>> pending = new LinkedHashMap<>();
+        pending.put("CALL_A", Collections.singletonList("A ended"));
+        pending.put("CALL_B", Collections.singletonList("B ended"));
+        List<String> superseded = new ArrayList<>();
+
+        assertEquals(Arrays.asList("A ended", "B ended"), CallEventBatcher.coalesce(pending, superseded));
+        assertTrue(superseded.isEmpty());
+    }
+
+    // ---- readResults ----
+
+    @Test
+    public void everyEventAccepted() {
+        assertArrayEquals(new CallEventOutbox.SendResult[]{DELIVERED, DELIVERED},
+            read("{\"results\":[{\"status\":200},{\"status\":201}]}", 2));
+    }
+
+    @Test
+    public void partialFailureIsReportedPerEvent() {
+        String body = "{\"success\":true,\"results\":[" +
+            "{\"status\":200}," +
+            "{\"status\":422,\"error\":\"Invalid phone number\"}," +
+            "{\"status\":503}," +
+            "{\"status\":409}," +
+            "{\"status\":429}," +
+            "{\"status\":408}," +
+            "{}]}";
+
+        assertArrayEquals(new CallEventOutbox.SendResult[]{
+            DELIVERED, REJECTED, RETRY, REJECTED, RETRY, RETRY, DELIVERED}, read(body, 7));
+    }
+
+    @Test
+    public void eventsTheServerDoesNotMentionAreDelivered() {
+        assertArrayEquals(new CallEventOutbox.SendResult[]{RETRY, DELIVERED, DELIVERED},
+            read("{\"results\":[{\"status\":500}]}", 3));
+        // Statuses past the end of the batch are ignored
+        assertArrayEquals(new CallEventOutbox.SendResult[]{REJECTED},
+            read("{\"results\":[{\"status\":400},{\"status\":500}]}", 1));
+    }
+
+    @Test
+    public void unreadableBodyCountsAsDelivered() {
+        CallEventOutbox.SendResult[] all = {DELIVERED, DELIVERED};
+        assertArrayEquals(all, read("", 2));
+        assertArrayEquals(all, read("<html>OK</html>", 2));
+        assertArrayEquals(all, read("{\"success\":true}", 2));
+    }
+
+    private static CallEventOutbox.SendResult[] read(String body, int events) {
+        CallEventOutbox.SendResult[] results = new CallEventOutbox.SendResult[events];
+        CallEventBatcher.readResults(body, results);
+        return results;
+    }
+}
@@ -0,0 +1,226 @@
+package com.ooak.callmanager.api;
+
+import android.provider.CallLog;
+
+import com.ooak.callmanager.InMemoryPreferences;
+import com.ooak.callmanager.utils.CallLogReader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The backfill's delivery rules against a scripted batch endpoint: splitting a
+ * refused batch down to the call the server will not take, and where the
+ * cursor resumes after a partial failure.
+ */
+public class CallLogBackfillTest {
+    private static final String EMPLOYEE = "42";
+    private static final long NOW = 1_750_000_000_000L;
+
+    private final InMemoryPreferences prefs = new InMemoryPreferences();
+    private final List<CallLogReader.Entry> rows = new ArrayList<>();
+    private final List<List<String>> sent = new ArrayList<>();
+    private Function<List<String>, CallEventOutbox.SendResult[]> answer;
+    private boolean endpointAvailable;
+    private CallLogBackfill backfill;
+
+    @Before
+    public void setUp() {
+        answer = payloads -> results(payloads.size(), CallEventOutbox.SendResult.DELIVERED);
+        endpointAvailable = true;
+        CallEventBatcher batcher = new CallEventBatcher(prefs, null) {
+            @Override
+            CallEventOutbox.SendResult[] send(String employeeId, List<String> payloads) {
+                sent.add(new ArrayList<>(payloads));
+                return answer.apply(payloads);
+            }
+
+            @Override
+            public boolean isBatchEndpointAvailable() {
+                return endpointAvailable;
+            }
+        };
+        CallLogReader.Source callLog = new CallLogReader.Source() {
+            @Override
+            public List<CallLogReader.Entry> readAfter(long id, int limit) {
+                List<CallLogReader.Entry> page = new ArrayList<>();
+                for (CallLogReader.Entry row : rows) {
+                    if (row.id > id && page.size() < limit) {
+                        page.add(row);
+                    }
+                }
+                return page;
+            }
+
+            @Override
+            public long lastIdBefore(long date) {
+                return 0;
+            }
+
+            @Override
+            public void watch(Runnable onChange) {
+            }
+
+            @Override
+            public void unwatch() {
+            }
+        };
+        backfill = new CallLogBackfill(prefs, null, callLog, batcher, (employeeId, row) -> "call-" + row.id);
+    }
+
+    // ---- deliver() ----
+
+    @Test
+    public void acceptedBatchSettlesEverything() {
+        assertEquals(3, backfill.deliver(EMPLOYEE, payloads(1, 3)));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void refusedBatchIsSplitDownToTheBadCall() {
+        answer = payloads -> payloads.contains("call-6") ? null
+            : results(payloads.size(), CallEventOutbox.SendResult.DELIVERED);
+
+        assertEquals(8, backfill.deliver(EMPLOYEE, payloads(1, 8)));
+
+        // 8 -> 4 + 4, the bad half -> 2 + 2, its bad half -> 1 + 1
+        assertEquals(Arrays.asList(
+            payloads(1, 8), payloads(1, 4), payloads(5, 8), payloads(5, 6),
+            payloads(5, 5), payloads(6, 6), payloads(7, 8)), sent);
+        assertTrue(backfill.getStats(), backfill.getStats().contains("7 calls in 3 batches, 1 rejected"));
+    }
+
+    @Test
+    public void retryInsideASplitStopsThere() {
+        answer = payloads -> {
+            if (payloads.contains("call-2")) {
+                return null;
+            }
+            if (payloads.contains("call-3")) {
+                return results(payloads.size(), CallEventOutbox.SendResult.RETRY);
+            }
+            return results(payloads.size(), CallEventOutbox.SendResult.DELIVERED);
+        };
+
+        // call-1 delivered, call-2 refused for good, call-3 waits
+        assertEquals(2, backfill.deliver(EMPLOYEE, payloads(1, 4)));
+    }
+
+    @Test
+    public void missingEndpointSettlesNothing() {
+        answer = payloads -> null;
+        endpointAvailable = false;
+
+        assertEquals(0, backfill.deliver(EMPLOYEE, payloads(1, 4)));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void perCallResultsStopAtTheFirstRetry() {
+        answer = payloads -> new CallEventOutbox.SendResult[]{
+            CallEventOutbox.SendResult.DELIVERED,
+            CallEventOutbox.SendResult.REJECTED,
+            CallEventOutbox.SendResult.RETRY,
+            CallEventOutbox.SendResult.DELIVERED};
+
+        assertEquals(2, backfill.deliver(EMPLOYEE, payloads(1, 4)));
+    }
+
+    // ---- sendPage() ----
+
+    @Test
+    public void fullyDeliveredPageMovesToItsLastRow() throws Exception {
+        addRows(1, 5, "98450");
+
+        assertEquals(5, backfill.sendPage(EMPLOYEE, 0, NOW));
+        assertEquals(payloads(1, 5), sent.get(0));
+        assertEquals(5, backfill.sendPage(EMPLOYEE, 5, NOW)); // nothing left
+    }
+
+    @Test
+    public void unsettledCallsWaitForTheNextRun() throws Exception {
+        addRows(1, 5, "98450");
+
+        assertEquals(3, backfill.sendPage(EMPLOYEE, 0, rows.get(3).date));
+        assertEquals(payloads(1, 3), sent.get(0));
+    }
+
+    @Test
+    public void privateNumbersAreSkippedButPassed() throws Exception {
+        addRows(1, 2, "98450");
+        addRows(3, 4, null);
+
+        assertEquals(4, backfill.sendPage(EMPLOYEE, 0, NOW));
+        assertEquals(payloads(1, 2), sent.get(0));
+
+        rows.clear();
+        addRows(5, 6, "");
+        assertEquals(6, backfill.sendPage(EMPLOYEE, 4, NOW));
+        assertEquals(1, sent.size()); // a page of only private numbers needs no request
+    }
+
+    @Test
+    public void partialFailureResumesAfterTheLastAnsweredRow() {
+        addRows(1, 1, "98450");
+        addRows(2, 2, null);
+        addRows(3, 5, "98450");
+        answer = payloads -> new CallEventOutbox.SendResult[]{
+            CallEventOutbox.SendResult.DELIVERED,
+            CallEventOutbox.SendResult.RETRY,
+            CallEventOutbox.SendResult.RETRY,
+            CallEventOutbox.SendResult.RETRY};
+
+        try {
+            backfill.sendPage(EMPLOYEE, 0, NOW);
+            fail("expected RetryLater");
+        } catch (CallLogBackfill.RetryLater expected) {
+            // row 3 is the first the server did not answer for; the private row 2 is done
+        }
+        assertEquals(2, prefs.getLong(CallLogBackfill.PREF_CURSOR, -1));
+    }
+
+    @Test
+    public void failureOnTheFirstCallLeavesTheCursor() {
+        addRows(11, 13, "98450");
+        prefs.edit().putLong(CallLogBackfill.PREF_CURSOR, 10).apply();
+        answer = payloads -> results(payloads.size(), CallEventOutbox.SendResult.RETRY);
+
+        try {
+            backfill.sendPage(EMPLOYEE, 10, NOW);
+            fail("expected RetryLater");
+        } catch (CallLogBackfill.RetryLater expected) {
+            // nothing answered
+        }
+        assertEquals(10, prefs.getLong(CallLogBackfill.PREF_CURSOR, -1));
+    }
+
+    private void addRows(long from, long to, String number) {
+        for (long id = from; id <= to; id++) {
+            rows.add(new CallLogReader.Entry(id, number != null && !number.isEmpty() ? number + id : number,
+                NOW - 3_600_000 + id * 60_000, 45, CallLog.Calls.OUTGOING_TYPE, null));
+        }
+    }
+
+    private static List<String> payloads(int from, int to) {
+        List<String> payloads = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            payloads.add("call-" + i);
+        }
+        return payloads;
+    }
+
+    private static CallEventOutbox.SendResult[] results(int count, CallEventOutbox.SendResult value) {
+        CallEventOutbox.SendResult[] results = new CallEventOutbox.SendResult[count];
+        Arrays.fill(results, value);
+        return results;
+    }
+}
@@ -0,0 +1,225 @@
+package com.ooak.callmanager.api;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.Call;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The shared client base and DNS cache, and a benchmark of one shared pool
+ * against a client per component.
+ */
+public class HttpStackTest {
+    // What a new connection costs on top of a request: TCP plus TLS round trips
+    private static final long CONNECT_COST_MS = 30;
+
+    private HttpServer server;
+    private final Set<String> seenConnections = Collections.synchronizedSet(new HashSet<>());
+
+    @Before
+    public void startServer() throws IOException {
+        // Without it the JDK server's small writes wait for delayed ACKs on a reused connection
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if (seenConnections.add(exchange.getRemoteAddress().toString())) {
+                sleep(CONNECT_COST_MS);
+            }
+            byte[] body = "{\"success\":true}".getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException {
+        String json = "{\"events\":[" + String.join(",", Collections.nCopies(50, "{\"status\":\"ringing\"}")) + "]}";
+        byte[] compressed = HttpStack.gzip(json);
+        assertTrue(compressed.length < json.length() / 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            assertEquals(json, out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void dnsAnswersFromCacheUntilTheTtl() throws UnknownHostException {
+        FakeResolver resolver = new FakeResolver();
+        long[] now = {0};
+        HttpStack.CachingDns dns = cachingDns(resolver, now);
+
+        dns.lookup("portal.ooak.photography");
+        now[0] += 4 * 60 * 1000;
+        dns.lookup("portal.ooak.photography");
+        assertEquals(1, resolver.lookups.get());
+
+        now[0] += 2 * 60 * 1000;
+        dns.lookup("portal.ooak.photography");
+        assertEquals(2, resolver.lookups.get());
+        assertEquals(1, dns.hits.get());
+    }
+
+    @Test
+    public void dnsServesStaleAnswersWhileTheResolverFails() throws UnknownHostException {
+        FakeResolver resolver = new FakeResolver();
+        long[] now = {0};
+        HttpStack.CachingDns dns = cachingDns(resolver, now);
+        List<InetAddress> first = dns.lookup("portal.ooak.photography");
+
+        resolver.failing = true;
+        now[0] += 30 * 60 * 1000;
+        assertEquals(first, dns.lookup("portal.ooak.photography"));
+
+        now[0] += 31 * 60 * 1000;
+        try {
+            dns.lookup("portal.ooak.photography");
+            fail("Served an answer over an hour old");
+        } catch (UnknownHostException expected) {
+            // Too old to trust
+        }
+    }
+
+    /**
+     * A simulated call - outbox, directory, trigger status, upload, call
+     * update - repeated 12 times. Before: each component with its own
+     * client and pool. After: clients derived from the shared base, as
+     * HttpStack builds them.
+     */
+    @Test
+    public void sharedPoolBenchmark() throws IOException {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        String[] endpoints = {"/api/call-events", "/api/employees", "/api/call-triggers/status",
+            "/api/call-recordings/upload", "/api/call-records/update"};
+        int calls = 12;
+
+        AtomicInteger beforeConnects = new AtomicInteger();
+        List<OkHttpClient> perComponent = new ArrayList<>();
+        for (int i = 0; i < endpoints.length; i++) {
+            perComponent.add(new OkHttpClient.Builder().eventListener(countConnects(beforeConnects)).build());
+        }
+        seenConnections.clear();
+        long[] before = run(perComponent, base, endpoints, calls);
+
+        AtomicInteger afterConnects = new AtomicInteger();
+        OkHttpClient shared = HttpStack.newBaseBuilder(Dns.SYSTEM).eventListener(countConnects(afterConnects)).build();
+        List<OkHttpClient> derived = new ArrayList<>();
+        for (int i = 0; i < endpoints.length; i++) {
+            derived.add(shared.newBuilder().build());
+        }
+        seenConnections.clear();
+        long[] after = run(derived, base, endpoints, calls);
+
+        System.out.printf("Per-component clients: %d connections / %d requests, p50 %d ms, p95 %d ms%n",
+            beforeConnects.get(), before.length, percentile(before, 50), percentile(before, 95));
+        System.out.printf("Shared HttpStack base: %d connections / %d requests, p50 %d ms, p95 %d ms%n",
+            afterConnects.get(), after.length, percentile(after, 50), percentile(after, 95));
+        assertEquals(endpoints.length, beforeConnects.get());
+        assertEquals(1, afterConnects.get());
+    }
+
+    private long[] run(List<OkHttpClient> clients, String base, String[] endpoints, int calls) throws IOException {
+        long[] latencies = new long[calls * endpoints.length];
+        int n = 0;
+        for (int call = 0; call < calls; call++) {
+            for (int i = 0; i < endpoints.length; i++) {
+                Request request = new Request.Builder().url(base + endpoints[i]).build();
+                long start = System.nanoTime();
+                try (Response response = clients.get(i).newCall(request).execute()) {
+                    assertEquals(200, response.code());
+                    response.body().string();
+                }
+                latencies[n++] = (System.nanoTime() - start) / 1000000;
+            }
+        }
+        return latencies;
+    }
+
+    private static EventListener countConnects(AtomicInteger connects) {
+        return new EventListener() {
+            @Override
+            public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+                connects.incrementAndGet();
+            }
+        };
+    }
+
+    private static long percentile(long[] values, int percent) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static HttpStack.CachingDns cachingDns(Dns resolver, long[] now) {
+        return new HttpStack.CachingDns(resolver) {
+            @Override
+            long now() {
+                return now[0];
+            }
+        };
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakeResolver implements Dns {
+        final AtomicInteger lookups = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            if (failing) {
+                throw new UnknownHostException(hostname);
+            }
+            lookups.incrementAndGet();
+            return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{10, 0, 0, 116}));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the scheduler against a fake clock, including a simulated fleet
+ * to show the server load compared with the old fixed 5 s poll.
+ */
+public class AdaptivePollSchedulerTest {
+    private static final long MIN_MS = 5000;
+    private static final long MAX_MS = 60000;
+    private static final long ACTIVE_MS = 2000;
+
+    private long now;
+    private AdaptivePollScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000L;
+        scheduler = newScheduler(new Random(42));
+    }
+
+    private AdaptivePollScheduler newScheduler(Random random) {
+        return new AdaptivePollScheduler(MIN_MS, MAX_MS, ACTIVE_MS, () -> now, random);
+    }
+
+    @Test
+    public void emptyResponsesWidenUpToTheCeiling() {
+        long previous = scheduler.getCurrentIntervalMs();
+        for (int i = 0; i < 20; i++) {
+            scheduler.onEmptyResponse();
+            long interval = scheduler.getCurrentIntervalMs();
+            assertTrue(interval >= previous);
+            assertTrue(interval <= MAX_MS);
+            previous = interval;
+        }
+        assertEquals(MAX_MS, scheduler.getCurrentIntervalMs());
+        assertEquals(20, scheduler.getEmptyPollCount());
+    }
+
+    @Test
+    public void workSnapsBackToTheFastRate() {
+        for (int i = 0; i < 10; i++) {
+            scheduler.onEmptyResponse();
+        }
+        scheduler.onWorkReceived();
+        assertEquals(MIN_MS, scheduler.getCurrentIntervalMs());
+        assertInJitter(MIN_MS, scheduler.nextDelayMs());
+    }
+
+    @Test
+    public void activeCallPollsAtTheActiveRate() {
+        for (int i = 0; i < 10; i++) {
+            scheduler.onEmptyResponse();
+        }
+        scheduler.setCallActive(true);
+        assertInJitter(ACTIVE_MS, scheduler.nextDelayMs());
+        scheduler.setCallActive(false);
+        assertInJitter(MIN_MS, scheduler.nextDelayMs());
+    }
+
+    @Test
+    public void errorsBackOffExponentiallyAndResetOnSuccess() {
+        scheduler.onError(0);
+        assertInJitter(MIN_MS * 2, scheduler.nextDelayMs());
+        scheduler.onError(0);
+        assertInJitter(MIN_MS * 4, scheduler.nextDelayMs());
+        for (int i = 0; i < 30; i++) {
+            scheduler.onError(0);
+        }
+        assertInJitter(5 * 60 * 1000, scheduler.nextDelayMs());
+
+        scheduler.onWorkReceived();
+        assertInJitter(MIN_MS, scheduler.nextDelayMs());
+    }
+
+    @Test
+    public void jitterSpreadsRetriesAcrossDevices() {
+        long lowest = Long.MAX_VALUE;
+        long highest = 0;
+        Random seeds = new Random(1);
+        for (int device = 0; device < 50; device++) {
+            AdaptivePollScheduler other = newScheduler(new Random(seeds.nextLong()));
+            other.onError(0);
+            long delay = other.nextDelayMs();
+            lowest = Math.min(lowest, delay);
+            highest = Math.max(highest, delay);
+        }
+        assertTrue("Retries in lockstep", highest - lowest > MIN_MS * 2 / 10);
+    }
+
+    @Test
+    public void retryAfterIsAFloor() {
+        scheduler.onError(120_000);
+        assertTrue(scheduler.nextDelayMs() >= 120_000);
+        now += 100_000;
+        assertTrue(scheduler.nextDelayMs() >= 20_000);
+    }
+
+    @Test
+    public void serverHintWinsOverOwnInterval() {
+        scheduler.setServerHint(30_000);
+        scheduler.onWorkReceived();
+        assertInJitter(30_000, scheduler.nextDelayMs());
+        scheduler.setServerHint(0);
+        assertInJitter(MIN_MS, scheduler.nextDelayMs());
+    }
+
+    @Test
+    public void pausedWhileNotAuthenticated() {
+        scheduler.setAuthenticated(false);
+        assertTrue(scheduler.isPaused());
+        assertEquals(30_000, scheduler.nextDelayMs());
+        scheduler.setAuthenticated(true);
+        assertInJitter(MIN_MS, scheduler.nextDelayMs());
+    }
+
+    @Test
+    public void parsesRetryAfterSecondsAndDates() {
+        AdaptivePollScheduler.Clock clock = () -> 1_700_000_000_000L; // Tue, 14 Nov 2023 22:13:20 GMT
+        assertEquals(90_000, AdaptivePollScheduler.parseRetryAfter("90", clock));
+        assertEquals(60_000, AdaptivePollScheduler.parseRetryAfter("Tue, 14 Nov 2023 22:14:20 GMT", clock));
+        assertEquals(0, AdaptivePollScheduler.parseRetryAfter("soon", clock));
+        assertEquals(0, AdaptivePollScheduler.parseRetryAfter(null, clock));
+    }
+
+    /**
+     * A day of a 100-device fleet with a few triggers per device during
+     * working hours: far fewer polls than the fixed 5 s poll, and a trigger
+     * still waits at most one widened interval.
+     */
+    @Test
+    public void fleetPollsFarLessThanAFixedInterval() {
+        int devices = 100;
+        long dayMs = 24 * 60 * 60 * 1000L;
+        Random triggers = new Random(7);
+        Random seeds = new Random(1);
+        long polls = 0;
+        long worstWaitMs = 0;
+        for (int device = 0; device < devices; device++) {
+            now = 0;
+            AdaptivePollScheduler fleetScheduler = newScheduler(new Random(seeds.nextLong()));
+            // Triggers between 10:00 and 18:00
+            long[] triggerTimes = new long[6];
+            for (int i = 0; i < triggerTimes.length; i++) {
+                triggerTimes[i] = 10 * 3_600_000L + (long) (triggers.nextDouble() * 8 * 3_600_000L);
+            }
+            Arrays.sort(triggerTimes);
+            int next = 0;
+            while (now < dayMs) {
+                now += fleetScheduler.nextDelayMs();
+                polls++;
+                if (next < triggerTimes.length && triggerTimes[next] <= now) {
+                    worstWaitMs = Math.max(worstWaitMs, now - triggerTimes[next]);
+                    while (next < triggerTimes.length && triggerTimes[next] <= now) {
+                        next++;
+                    }
+                    fleetScheduler.onWorkReceived();
+                } else {
+                    fleetScheduler.onEmptyResponse();
+                }
+            }
+        }
+        long fixedPolls = devices * dayMs / 5000;
+        System.out.println("Fleet of " + devices + ": " + polls + " polls/day vs " + fixedPolls +
+            " at a fixed 5 s (" + (fixedPolls / Math.max(1, polls)) + "x fewer), worst trigger wait " +
+            worstWaitMs / 1000 + " s");
+        assertTrue(polls * 8 < fixedPolls);
+        assertTrue(worstWaitMs <= MAX_MS + MAX_MS / 5);
+    }
+
+    private static void assertInJitter(long base, long delay) {
+        assertTrue("Delay " + delay + " not within jitter of " + base, delay >= base && delay <= base + base / 5);
+    }
+}
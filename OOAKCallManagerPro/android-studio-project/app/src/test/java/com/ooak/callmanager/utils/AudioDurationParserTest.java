@@ -0,0 +1,304 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Durations read from synthesized container headers, one file per format
+ * the dialers write, plus a timing run over the same corpus.
+ */
+public class AudioDurationParserTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("durations", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void wav() throws IOException {
+        assertEquals(10_000_000, AudioDurationParser.getDurationUs(write("call.wav", wav(8000, 10))));
+    }
+
+    @Test
+    public void wavStillBeingWritten() throws IOException {
+        byte[] wav = wav(8000, 10);
+        wav[40] = wav[41] = wav[42] = wav[43] = 0; // data size not filled in yet
+        assertEquals(10_000_000, AudioDurationParser.getDurationUs(write("call.wav", wav)));
+    }
+
+    @Test
+    public void m4aMovieHeader() throws IOException {
+        assertEquals(12_345_000, AudioDurationParser.getDurationUs(write("call.m4a", mp4(1000, 12345, 0, 0))));
+    }
+
+    @Test
+    public void mp4FallsBackToTheTrackHeader() throws IOException {
+        assertEquals(10_000_000, AudioDurationParser.getDurationUs(write("call.3gp", mp4(1000, 0, 8000, 80000))));
+    }
+
+    @Test
+    public void amrConstantRate() throws IOException {
+        assertEquals(10_000_000, AudioDurationParser.getDurationUs(write("call.amr", amrNb(500, false))));
+    }
+
+    @Test
+    public void amrWithSilenceFrames() throws IOException {
+        assertEquals(10_000_000, AudioDurationParser.getDurationUs(write("call.amr", amrNb(500, true))));
+    }
+
+    @Test
+    public void amrWideband() throws IOException {
+        assertEquals(5_000_000, AudioDurationParser.getDurationUs(write("call.awb", amrWb(250))));
+    }
+
+    @Test
+    public void mp3ConstantBitRate() throws IOException {
+        // 100 frames of 417 bytes at 128 kbps
+        assertEquals(41700L * 8 * 1000000 / 128000, AudioDurationParser.getDurationUs(write("call.mp3", mp3(100, -1))));
+    }
+
+    @Test
+    public void mp3XingFrameCount() throws IOException {
+        assertEquals(1000L * 1152 * 1000000 / 44100, AudioDurationParser.getDurationUs(write("call.mp3", mp3(10, 1000))));
+    }
+
+    @Test
+    public void oggOpus() throws IOException {
+        assertEquals(7_000_000, AudioDurationParser.getDurationUs(write("call.ogg", opus(7))));
+    }
+
+    @Test
+    public void unknownFormats() throws IOException {
+        assertEquals(AudioDurationParser.UNKNOWN, AudioDurationParser.getDurationUs(write("empty.m4a", new byte[0])));
+        assertEquals(AudioDurationParser.UNKNOWN, AudioDurationParser.getDurationUs(write("notes.txt",
+            "not a recording at all, just text".getBytes("US-ASCII"))));
+        assertEquals(AudioDurationParser.UNKNOWN, AudioDurationParser.getDurationUs(new File(dir, "missing.m4a")));
+    }
+
+    /**
+     * Reading the headers takes microseconds per file, not a decode.
+     */
+    @Test
+    public void timing() throws IOException {
+        Map<File, Long> corpus = new LinkedHashMap<>();
+        corpus.put(write("a.wav", wav(16000, 30)), 30_000_000L);
+        corpus.put(write("a.m4a", mp4(44100, 44100 * 30, 0, 0)), 30_000_000L);
+        corpus.put(write("a.amr", amrNb(1500, false)), 30_000_000L);
+        corpus.put(write("b.amr", amrNb(1500, true)), 30_000_000L);
+        corpus.put(write("a.awb", amrWb(1500)), 30_000_000L);
+        corpus.put(write("a.mp3", mp3(1000, -1)), 1000 * 417L * 8 * 1000000 / 128000);
+        corpus.put(write("b.mp3", mp3(10, 1149)), 1149L * 1152 * 1000000 / 44100);
+        corpus.put(write("a.ogg", opus(30)), 30_000_000L);
+
+        for (Map.Entry<File, Long> entry : corpus.entrySet()) {
+            File file = entry.getKey();
+            assertEquals(file.getName(), (long) entry.getValue(), AudioDurationParser.getDurationUs(file));
+            for (int i = 0; i < 500; i++) {
+                AudioDurationParser.getDurationUs(file); // warm up
+            }
+            int runs = 2000;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                AudioDurationParser.getDurationUs(file);
+            }
+            double microsPerFile = (System.nanoTime() - start) / 1000.0 / runs;
+            System.out.printf("%-6s %9d us duration, %7.1f us/file%n", file.getName(), entry.getValue(), microsPerFile);
+            assertTrue(file.getName() + " took " + microsPerFile + " us", microsPerFile < 5000);
+        }
+    }
+
+    // ---- Synthesized files ----
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] wav(int sampleRate, int seconds) {
+        int dataLength = sampleRate * 2 * seconds;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ascii(out, "RIFF");
+        le32(out, 36 + dataLength);
+        ascii(out, "WAVE");
+        ascii(out, "fmt ");
+        le32(out, 16);
+        le16(out, 1);              // PCM
+        le16(out, 1);              // mono
+        le32(out, sampleRate);
+        le32(out, sampleRate * 2); // byte rate
+        le16(out, 2);              // block align
+        le16(out, 16);
+        ascii(out, "data");
+        le32(out, dataLength);
+        out.write(new byte[dataLength], 0, dataLength);
+        return out.toByteArray();
+    }
+
+    /**
+     * ftyp, then moov with an mvhd and - if trackTimescale is set - a
+     * trak/mdia/mdhd, then an mdat.
+     */
+    private static byte[] mp4(int timescale, int duration, int trackTimescale, int trackDuration) {
+        ByteArrayOutputStream moov = new ByteArrayOutputStream();
+        byte[] mvhd = box("mvhd", header(timescale, duration, 100));
+        moov.write(mvhd, 0, mvhd.length);
+        if (trackTimescale > 0) {
+            byte[] trak = box("trak", box("mdia", box("mdhd", header(trackTimescale, trackDuration, 24))));
+            moov.write(trak, 0, trak.length);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] ftyp = box("ftyp", "M4A \0\0\0\0isomM4A ".getBytes());
+        out.write(ftyp, 0, ftyp.length);
+        byte[] moovBox = box("moov", moov.toByteArray());
+        out.write(moovBox, 0, moovBox.length);
+        byte[] mdat = box("mdat", new byte[4096]);
+        out.write(mdat, 0, mdat.length);
+        return out.toByteArray();
+    }
+
+    // Version 0 mvhd/mdhd: version+flags, creation, modification, timescale, duration
+    private static byte[] header(int timescale, int duration, int length) {
+        byte[] payload = new byte[length];
+        be32(payload, 12, timescale);
+        be32(payload, 16, duration);
+        return payload;
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        byte[] box = new byte[8 + payload.length];
+        be32(box, 0, box.length);
+        for (int i = 0; i < 4; i++) {
+            box[4 + i] = (byte) type.charAt(i);
+        }
+        System.arraycopy(payload, 0, box, 8, payload.length);
+        return box;
+    }
+
+    // 12.2 kbps frames (32 bytes), every other one a 6-byte SID frame if withSilence
+    private static byte[] amrNb(int frames, boolean withSilence) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ascii(out, "#!AMR\n");
+        for (int i = 0; i < frames; i++) {
+            boolean silence = withSilence && i % 2 == 1;
+            byte[] frame = new byte[silence ? 6 : 32];
+            frame[0] = (byte) (((silence ? 8 : 7) << 3) | 0x04);
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    // 23.85 kbps frames (61 bytes)
+    private static byte[] amrWb(int frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ascii(out, "#!AMR-WB\n");
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = new byte[61];
+            frame[0] = (byte) ((8 << 3) | 0x04);
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * MPEG-1 layer III frames at 128 kbps / 44.1 kHz stereo (417 bytes); the
+     * first carries a Xing header with this frame count if it is not negative.
+     */
+    private static byte[] mp3(int frames, int xingFrames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = new byte[417];
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xFB;
+            frame[2] = (byte) 0x90;
+            if (i == 0 && xingFrames >= 0) {
+                int at = 4 + 32; // after the stereo side info
+                System.arraycopy("Xing".getBytes(), 0, frame, at, 4);
+                be32(frame, at + 4, 0x01); // frame count present
+                be32(frame, at + 8, xingFrames);
+            }
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    // An OpusHead page and one audio page ending at this many seconds
+    private static byte[] opus(int seconds) {
+        int preSkip = 312;
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        ascii(head, "OpusHead");
+        head.write(1);
+        head.write(1);
+        le16(head, preSkip);
+        le32(head, 48000);
+        le16(head, 0);
+        head.write(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        oggPage(out, 0, 0x02, head.toByteArray());
+        oggPage(out, 48000L * seconds + preSkip, 0x04, new byte[200]);
+        return out.toByteArray();
+    }
+
+    private static void oggPage(ByteArrayOutputStream out, long granule, int type, byte[] packet) {
+        ascii(out, "OggS");
+        out.write(0);
+        out.write(type);
+        le32(out, (int) granule);
+        le32(out, (int) (granule >>> 32));
+        le32(out, 1);  // serial
+        le32(out, 0);  // sequence
+        le32(out, 0);  // checksum, not verified
+        out.write(1);
+        out.write(packet.length);
+        out.write(packet, 0, packet.length);
+    }
+
+    private static void ascii(ByteArrayOutputStream out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private static void le16(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+
+    private static void le32(ByteArrayOutputStream out, int value) {
+        le16(out, value & 0xFFFF);
+        le16(out, (value >>> 16) & 0xFFFF);
+    }
+
+    private static void be32(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,239 @@
+package com.ooak.callmanager.utils;
+
+import android.provider.CallLog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the reader against an in-memory call log: where a fresh install
+ * starts, paging, the watermark only moving after delivery, and picking up
+ * again after a failed read or a restart.
+ */
+public class CallLogReaderTest {
+    private static final long WAIT_MS = 5000;
+
+    private final FakeSource source = new FakeSource();
+    private final FakeWatermark watermark = new FakeWatermark();
+    private final List<Long> delivered = Collections.synchronizedList(new ArrayList<>());
+    private CallLogReader reader;
+
+    @After
+    public void tearDown() {
+        if (reader != null) {
+            reader.stop();
+        }
+    }
+
+    private CallLogReader newReader(CountDownLatch done) {
+        CallLogReader reader = new CallLogReader(source, watermark);
+        reader.addListener(entry -> {
+            delivered.add(entry.id);
+            done.countDown();
+        });
+        return reader;
+    }
+
+    @Test
+    public void freshInstallStartsBeforeTheLastFewMinutes() throws Exception {
+        source.addRows(1, 10);
+        source.idBefore = 7;
+        CountDownLatch done = new CountDownLatch(3);
+
+        reader = newReader(done);
+        reader.start();
+
+        assertTrue(done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(list(8, 9, 10), delivered);
+        long lookback = System.currentTimeMillis() - source.askedBefore;
+        assertTrue("looked back " + lookback + " ms", lookback >= 5 * 60 * 1000 && lookback < 6 * 60 * 1000);
+        awaitWatermark(10);
+    }
+
+    @Test
+    public void readsInPagesFromTheWatermark() throws Exception {
+        source.addRows(1, 300);
+        watermark.id = 50;
+        CountDownLatch done = new CountDownLatch(250);
+
+        reader = newReader(done);
+        reader.start();
+
+        assertTrue(done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(250, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(51 + i, (long) delivered.get(i));
+        }
+        // Three pages, each starting after the last row of the one before
+        assertEquals(list(50, 150, 250), source.readsAfter);
+        assertEquals(0, source.lastIdCalls);
+        awaitWatermark(300);
+    }
+
+    @Test
+    public void watermarkWaitsForTheListeners() throws Exception {
+        source.addRows(1, 400);
+        watermark.id = 0;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(400);
+
+        reader = new CallLogReader(source, watermark);
+        reader.addListener(entry -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(entry.id);
+            done.countDown();
+        });
+        reader.start();
+
+        // The queue fills up and reading waits; nothing is delivered, nothing is marked
+        Thread.sleep(300);
+        assertEquals(0, watermark.id);
+        assertTrue("read " + source.rowsHandedOut + " rows", source.rowsHandedOut < 400);
+
+        release.countDown();
+        assertTrue(done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(400, delivered.size());
+        assertEquals(400, (long) delivered.get(399));
+        awaitWatermark(400);
+    }
+
+    @Test
+    public void failedReadIsRetriedOnTheNextStart() throws Exception {
+        source.addRows(1, 5);
+        source.failure = new IllegalArgumentException("Invalid token LIMIT");
+        CountDownLatch done = new CountDownLatch(5);
+
+        reader = newReader(done);
+        reader.start();
+        Thread.sleep(200);
+        assertEquals(0, delivered.size());
+        assertEquals(-1, watermark.id);
+        reader.stop();
+
+        source.failure = null;
+        reader.start();
+        assertTrue(done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(list(1, 2, 3, 4, 5), delivered);
+    }
+
+    @Test
+    public void changeNotificationReadsOnlyTheNewRows() throws Exception {
+        source.addRows(1, 3);
+        watermark.id = 0;
+        CountDownLatch first = new CountDownLatch(3);
+
+        reader = newReader(first);
+        reader.start();
+        assertTrue(first.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        CountDownLatch second = new CountDownLatch(2);
+        reader.addListener(entry -> second.countDown());
+        source.addRows(4, 5);
+        source.onChange.run();
+        source.onChange.run(); // a burst ends in one read
+
+        assertTrue(second.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        awaitWatermark(5);
+        assertEquals(list(1, 2, 3, 4, 5), delivered);
+        assertEquals(list(0, 3), source.readsAfter);
+    }
+
+    private void awaitWatermark(long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (watermark.id != id && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(id, watermark.id);
+    }
+
+    private static List<Long> list(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static class FakeSource implements CallLogReader.Source {
+        final TreeMap<Long, CallLogReader.Entry> rows = new TreeMap<>();
+        final List<Long> readsAfter = Collections.synchronizedList(new ArrayList<>());
+        volatile long idBefore;
+        volatile long askedBefore;
+        volatile int lastIdCalls;
+        volatile int rowsHandedOut;
+        volatile RuntimeException failure;
+        volatile Runnable onChange;
+
+        synchronized void addRows(long from, long to) {
+            for (long id = from; id <= to; id++) {
+                rows.put(id, new CallLogReader.Entry(id, "98765" + id, id * 1000, 30,
+                    CallLog.Calls.INCOMING_TYPE, null));
+            }
+        }
+
+        @Override
+        public synchronized List<CallLogReader.Entry> readAfter(long id, int limit) {
+            if (failure != null) {
+                throw failure;
+            }
+            readsAfter.add(id);
+            List<CallLogReader.Entry> page = new ArrayList<>();
+            for (CallLogReader.Entry entry : rows.tailMap(id, false).values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(entry);
+            }
+            rowsHandedOut += page.size();
+            return page;
+        }
+
+        @Override
+        public long lastIdBefore(long date) {
+            if (failure != null) {
+                throw failure;
+            }
+            lastIdCalls++;
+            askedBefore = date;
+            return idBefore;
+        }
+
+        @Override
+        public void watch(Runnable onChange) {
+            this.onChange = onChange;
+        }
+
+        @Override
+        public void unwatch() {
+            onChange = null;
+        }
+    }
+
+    private static class FakeWatermark implements CallLogReader.Watermark {
+        volatile long id = -1;
+
+        @Override
+        public long get() {
+            return id;
+        }
+
+        @Override
+        public void set(long id) {
+            this.id = id;
+        }
+    }
+}
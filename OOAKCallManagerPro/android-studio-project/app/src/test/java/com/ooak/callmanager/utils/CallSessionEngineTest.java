@@ -0,0 +1,169 @@
+package com.ooak.callmanager.utils;
+
+import android.provider.CallLog;
+import android.telephony.TelephonyManager;
+
+import com.ooak.callmanager.models.CallRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds the engine telephony events and call log rows the way Android
+ * delivers them, and checks exactly which changes reach the listeners.
+ */
+public class CallSessionEngineTest {
+    private static final String RINGING = TelephonyManager.EXTRA_STATE_RINGING;
+    private static final String OFFHOOK = TelephonyManager.EXTRA_STATE_OFFHOOK;
+    private static final String IDLE = TelephonyManager.EXTRA_STATE_IDLE;
+
+    private static final int SIM_1 = 1;
+    private static final int SIM_2 = 2;
+    private static final String CALLER = "+91 98450 12345";
+    private static final String WAITING = "+91 98860 67890";
+
+    private final List<CallRecord> calls = new ArrayList<>();
+    private final List<String> changes = new ArrayList<>();
+    private CallSessionEngine engine;
+    private long nextRowId = 1;
+
+    @Before
+    public void setUp() {
+        engine = new CallSessionEngine(new CallSessionEngine.Employee() {
+            @Override
+            public boolean isAuthenticated() {
+                return true;
+            }
+
+            @Override
+            public String getId() {
+                return "42";
+            }
+        });
+        engine.addListener(call -> {
+            calls.add(call);
+            changes.add(call.getPhoneNumber() + " " + call.getStatus());
+        });
+    }
+
+    @Test
+    public void duplicatePhoneStatesPostOneChangeEach() {
+        // Android sends each state once without the number and once with it
+        engine.onPhoneState(SIM_1, RINGING, null);
+        engine.onPhoneState(SIM_1, RINGING, CALLER);
+        engine.onPhoneState(SIM_1, OFFHOOK, null);
+        engine.onPhoneState(SIM_1, OFFHOOK, CALLER);
+        engine.onPhoneState(SIM_1, IDLE, null);
+        engine.onPhoneState(SIM_1, IDLE, CALLER);
+
+        assertEquals(3, changes.size());
+        assertEquals(CALLER + " ringing", changes.get(0));
+        assertEquals(CALLER + " connected", changes.get(1));
+        assertNotNull(calls.get(2).getEndTime());
+        assertSame(calls.get(0), calls.get(1));
+        assertSame(calls.get(0), calls.get(2));
+        assertTrue(engine.getStats(), engine.getStats().contains("3 changes from 6 events (3 repeats)"));
+        assertTrue(engine.getActiveCalls().isEmpty());
+    }
+
+    @Test
+    public void answeredWaitingCallTakesItsOutcomeFromTheCallLog() {
+        answerCall(SIM_1, CALLER);
+
+        engine.onPhoneState(SIM_1, RINGING, WAITING);
+        engine.onPhoneState(SIM_1, OFFHOOK, null); // answered or rejected, the state cannot tell
+        assertEquals(Arrays.asList(CALLER + " ringing", CALLER + " connected", WAITING + " ringing"), changes);
+        CallRecord waiting = calls.get(2);
+
+        engine.onCallLogEntry(row(WAITING, CallLog.Calls.INCOMING_TYPE, 20));
+
+        assertEquals(4, changes.size());
+        assertEquals(WAITING + " answered", changes.get(3));
+        assertSame(waiting, calls.get(3));
+        assertTrue(waiting.wasAnswered());
+        assertEquals(20, waiting.getTalkingDuration());
+        // The first call is still up
+        assertEquals(1, engine.getActiveCalls().size());
+        assertEquals(CALLER, engine.getActiveCalls().get(0).getPhoneNumber());
+    }
+
+    @Test
+    public void rejectedWaitingCallIsMissed() {
+        answerCall(SIM_1, CALLER);
+
+        engine.onPhoneState(SIM_1, RINGING, WAITING);
+        engine.onPhoneState(SIM_1, OFFHOOK, WAITING);
+        engine.onCallLogEntry(row(WAITING, CallLog.Calls.REJECTED_TYPE, 0));
+
+        assertEquals(Arrays.asList(CALLER + " ringing", CALLER + " connected",
+            WAITING + " ringing", WAITING + " missed"), changes);
+        assertFalse(calls.get(3).wasAnswered());
+
+        // Hanging up the first call ends only that one
+        engine.onPhoneState(SIM_1, IDLE, null);
+        assertEquals(5, changes.size());
+        assertEquals(CALLER, calls.get(4).getPhoneNumber());
+        assertNotNull(calls.get(4).getEndTime());
+    }
+
+    @Test
+    public void idleOnOneSimLeavesTheOtherCallUp() {
+        answerCall(SIM_1, CALLER);
+        answerCall(SIM_2, WAITING);
+        assertEquals(Arrays.asList(CALLER + " ringing", CALLER + " connected",
+            WAITING + " ringing", WAITING + " connected"), changes);
+
+        engine.onPhoneState(SIM_2, IDLE, null);
+
+        assertEquals(5, changes.size());
+        assertEquals(WAITING, calls.get(4).getPhoneNumber());
+        assertEquals(1, engine.getActiveCalls().size());
+        assertEquals("connected", engine.getActiveCalls().get(0).getStatus());
+
+        engine.onPhoneState(SIM_1, IDLE, null);
+
+        assertEquals(6, changes.size());
+        assertEquals(CALLER, calls.get(5).getPhoneNumber());
+        assertTrue(engine.getActiveCalls().isEmpty());
+    }
+
+    @Test
+    public void unnumberedOutgoingCallIsReportedWhenItsCallLogRowArrives() {
+        engine.onPhoneState(SIM_1, OFFHOOK, null);
+        engine.onPhoneState(SIM_1, IDLE, null);
+        assertTrue(changes.isEmpty());
+
+        // A row for an incoming call is not this one
+        engine.onCallLogEntry(row(WAITING, CallLog.Calls.INCOMING_TYPE, 5));
+        assertTrue(changes.isEmpty());
+
+        engine.onCallLogEntry(row(CALLER, CallLog.Calls.OUTGOING_TYPE, 0));
+
+        assertEquals(Arrays.asList(CALLER + " unanswered"), changes);
+        assertEquals("outgoing", calls.get(0).getDirection());
+        assertTrue(engine.getStats(), engine.getStats().contains("1 numbers from the call log"));
+
+        // The row is only used once
+        engine.onCallLogEntry(row(CALLER, CallLog.Calls.OUTGOING_TYPE, 0));
+        assertEquals(1, changes.size());
+    }
+
+    private void answerCall(int line, String number) {
+        engine.onPhoneState(line, RINGING, number);
+        engine.onPhoneState(line, OFFHOOK, null);
+    }
+
+    private CallLogReader.Entry row(String number, int type, long durationSec) {
+        return new CallLogReader.Entry(nextRowId++, number, System.currentTimeMillis(), durationSec, type, null);
+    }
+}
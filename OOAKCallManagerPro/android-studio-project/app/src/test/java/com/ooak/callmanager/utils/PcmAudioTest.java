@@ -0,0 +1,314 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The WAV path of the transcoder on synthesized input: header parsing,
+ * including recordings whose data size was never filled in, the mono
+ * downmix and downsampling, and files written by the WAV writer.
+ */
+public class PcmAudioTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pcm", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    // ---- readWavHeader ----
+
+    @Test
+    public void headerSkipsOtherChunksAndStopsAtTheSamples() throws IOException {
+        short[] samples = {100, -100, 200, -200};
+        byte[] wav = wav(1, 44100, 2, 16, samples, samples.length * 2, "LIST", 5);
+        InputStream in = new ByteArrayInputStream(wav);
+
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(in, wav.length);
+
+        assertEquals(1, format.audioFormat);
+        assertEquals(2, format.channels);
+        assertEquals(44100, format.sampleRate);
+        assertEquals(44100 * 4, format.byteRate);
+        assertEquals(16, format.bitsPerSample);
+        assertTrue(format.isPcm16());
+        assertEquals(36 + 8 + 6 + 8, format.dataOffset); // 5-byte chunk padded to 6
+        assertEquals(samples.length * 2, format.dataLength);
+        assertEquals(100, in.read()); // first sample, low byte
+    }
+
+    @Test
+    public void notAWavFile() throws IOException {
+        byte[] mp3 = "ID3\u0004\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000".getBytes("ISO-8859-1");
+        assertNull(PcmAudio.readWavHeader(new ByteArrayInputStream(mp3), mp3.length));
+    }
+
+    @Test
+    public void compressedWavIsNotConvertedButHasADuration() throws IOException {
+        // A-law at 8 kHz: 8000 bytes per second
+        byte[] wav = wav(6, 8000, 1, 8, new short[16000], 16000, null, 0);
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(new ByteArrayInputStream(wav), wav.length);
+
+        assertFalse(format.isPcm16());
+        assertEquals(2_000_000, format.getDurationUs());
+    }
+
+    @Test
+    public void streamingRecorderWithZeroDataSize() throws IOException {
+        short[] samples = new short[800];
+        byte[] wav = wav(1, 8000, 1, 16, samples, 0, null, 0);
+
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(new ByteArrayInputStream(wav), wav.length);
+
+        assertEquals(44, format.dataOffset);
+        assertEquals(1600, format.dataLength);
+        assertEquals(100_000, format.getDurationUs());
+    }
+
+    @Test
+    public void dataSizePastTheEndOfTheFileIsCut() throws IOException {
+        byte[] wav = wav(1, 8000, 1, 16, new short[800], 0xFFFFFFFF, null, 0);
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(new ByteArrayInputStream(wav), wav.length);
+        assertEquals(1600, format.dataLength);
+    }
+
+    // ---- Resampler ----
+
+    @Test
+    public void stereoIsAveragedToMono() throws IOException {
+        short[] out = resample(44100, 2, 44100, pcm(1000, 3000, -500, -1500, 32767, 32767), 1);
+        assertArrayEquals(new short[]{2000, -1000, 32767}, out);
+    }
+
+    @Test
+    public void downsamplingAveragesTheFramesOfEachOutputSample() throws IOException {
+        short[] out = resample(16000, 1, 8000, pcm(100, 300, 1000, 2000, -50, -150), 2);
+        assertArrayEquals(new short[]{200, 1500, -100}, out);
+
+        // 44.1 kHz to 16 kHz: 2.75625 input frames per output sample
+        short[] ramp = new short[44100];
+        short[] converted = resample(44100, 1, 16000, pcm(ramp), 2);
+        assertEquals(16000, converted.length);
+    }
+
+    @Test
+    public void inputMaySplitAnywhere() throws IOException {
+        short[] samples = new short[10007];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 37);
+        }
+        byte[] data = pcm(samples);
+
+        short[] whole = resample(48000, 2, 8000, data, data.length);
+        // Odd piece sizes split samples and frames between writes
+        assertArrayEquals(whole, resample(48000, 2, 8000, data, 1));
+        assertArrayEquals(whole, resample(48000, 2, 8000, data, 3));
+        assertArrayEquals(whole, resample(48000, 2, 8000, data, 4097));
+    }
+
+    @Test
+    public void flushEmitsThePartialLastSample() throws IOException {
+        // Three frames at 4:1 leave one short output sample
+        assertArrayEquals(new short[]{20}, resample(32000, 1, 8000, pcm(10, 20, 30), 6));
+    }
+
+    @Test
+    public void upsamplingIsRefused() {
+        try {
+            new PcmAudio.Resampler(8000, 1, 16000);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // only downsampling is supported
+        }
+    }
+
+    // ---- WavWriter ----
+
+    @Test
+    public void writerOutputReadsBack() throws IOException {
+        short[] samples = new short[10000]; // more than one output block
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (Math.sin(i / 10.0) * 12000);
+        }
+        File file = new File(dir, "out.wav");
+        PcmAudio.WavWriter writer = new PcmAudio.WavWriter(file, 16000);
+        writer.write(samples, 6000);
+        writer.write(copyFrom(samples, 6000), samples.length - 6000);
+        writer.close();
+
+        assertEquals(44 + samples.length * 2, file.length());
+        try (InputStream in = new FileInputStream(file)) {
+            PcmAudio.WavFormat format = PcmAudio.readWavHeader(in, file.length());
+            assertTrue(format.isPcm16());
+            assertEquals(1, format.channels);
+            assertEquals(16000, format.sampleRate);
+            assertEquals(32000, format.byteRate);
+            assertEquals(samples.length * 2, format.dataLength);
+            assertEquals(625_000, format.getDurationUs());
+            assertArrayEquals(samples, readSamples(in, samples.length));
+        }
+    }
+
+    @Test
+    public void streamingRecordingConvertsEndToEnd() throws IOException {
+        // One second of 16 kHz stereo from a recorder that never wrote the data size
+        short[] samples = new short[32000];
+        for (int i = 0; i < samples.length; i += 2) {
+            samples[i] = 400;
+            samples[i + 1] = 600;
+        }
+        byte[] wav = wav(1, 16000, 2, 16, samples, 0, null, 0);
+        File file = new File(dir, "mono.wav");
+
+        InputStream in = new ByteArrayInputStream(wav);
+        PcmAudio.WavFormat format = PcmAudio.readWavHeader(in, wav.length);
+        PcmAudio.WavWriter writer = new PcmAudio.WavWriter(file, 8000);
+        PcmAudio.convertWav(in, format, 8000, writer);
+        writer.close();
+
+        try (InputStream out = new FileInputStream(file)) {
+            PcmAudio.WavFormat converted = PcmAudio.readWavHeader(out, file.length());
+            assertEquals(1_000_000, converted.getDurationUs());
+            short[] mono = readSamples(out, 8000);
+            for (short sample : mono) {
+                assertEquals(500, sample);
+            }
+        }
+    }
+
+    // ---- Synthesized input ----
+
+    /**
+     * @param dataSize written into the data chunk header as is, to imitate
+     *                 recorders that leave it at 0 or 0xFFFFFFFF
+     * @param extraChunk an unrelated chunk placed before the data, or null
+     */
+    private static byte[] wav(int audioFormat, int sampleRate, int channels, int bits, short[] samples,
+                              int dataSize, String extraChunk, int extraSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = bits == 16 ? pcm(samples) : new byte[samples.length];
+        ascii(out, "RIFF");
+        int32(out, 36 + data.length);
+        ascii(out, "WAVE");
+        ascii(out, "fmt ");
+        int32(out, 16);
+        int16(out, audioFormat);
+        int16(out, channels);
+        int32(out, sampleRate);
+        int32(out, sampleRate * channels * bits / 8);
+        int16(out, channels * bits / 8);
+        int16(out, bits);
+        if (extraChunk != null) {
+            ascii(out, extraChunk);
+            int32(out, extraSize);
+            out.write(new byte[extraSize + (extraSize & 1)], 0, extraSize + (extraSize & 1));
+        }
+        ascii(out, "data");
+        int32(out, dataSize);
+        out.write(data, 0, data.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] pcm(int... samples) {
+        short[] values = new short[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            values[i] = (short) samples[i];
+        }
+        return pcm(values);
+    }
+
+    private static byte[] pcm(short[] samples) {
+        byte[] bytes = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            bytes[i * 2] = (byte) samples[i];
+            bytes[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+
+    private static short[] resample(int inRate, int channels, int outRate, byte[] data, int pieceSize)
+            throws IOException {
+        List<Short> out = new ArrayList<>();
+        PcmAudio.Sink sink = (samples, count) -> {
+            for (int i = 0; i < count; i++) {
+                out.add(samples[i]);
+            }
+        };
+        PcmAudio.Resampler resampler = new PcmAudio.Resampler(inRate, channels, outRate);
+        for (int offset = 0; offset < data.length; offset += pieceSize) {
+            resampler.write(data, offset, Math.min(pieceSize, data.length - offset), sink);
+        }
+        resampler.flush(sink);
+
+        short[] result = new short[out.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = out.get(i);
+        }
+        return result;
+    }
+
+    private static short[] readSamples(InputStream in, int count) throws IOException {
+        short[] samples = new short[count];
+        for (int i = 0; i < count; i++) {
+            int low = in.read();
+            int high = in.read();
+            assertTrue("file ended at sample " + i, high >= 0);
+            samples[i] = (short) (low | (high << 8));
+        }
+        assertEquals(-1, in.read());
+        return samples;
+    }
+
+    private static short[] copyFrom(short[] samples, int from) {
+        short[] copy = new short[samples.length - from];
+        System.arraycopy(samples, from, copy, 0, copy.length);
+        return copy;
+    }
+
+    private static void ascii(ByteArrayOutputStream out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private static void int16(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+    }
+
+    private static void int32(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+}
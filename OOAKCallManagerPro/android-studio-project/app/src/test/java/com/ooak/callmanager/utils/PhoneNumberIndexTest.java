@@ -0,0 +1,168 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookups across formats and prefixes, and a timing run against the linear
+ * scan ContactHelper used before the index.
+ */
+public class PhoneNumberIndexTest {
+
+    @Test
+    public void findsTheSameNumberInAnyFormat() {
+        PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+        index.put("+91 98765 43210", "Priya");
+        assertEquals("Priya", index.find("9876543210"));
+        assertEquals("Priya", index.find("09876543210"));
+        assertEquals("Priya", index.find("0091-98765-43210"));
+        assertEquals("Priya", index.find("(98765) 43210"));
+        assertNull(index.find("9876543211"));
+        assertNull(index.find(null));
+    }
+
+    @Test
+    public void matchesWhenOneNumberEndsTheOther() {
+        PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+        index.put("44 20 7946 0958", "London office");
+        index.put("2345678", "Local line");
+        // Stored number is a suffix of the query
+        assertEquals("Local line", index.find("080 2345678"));
+        // Query is a suffix of the stored number
+        assertEquals("London office", index.find("7946 0958"));
+        assertNull(index.find("7946 0959"));
+    }
+
+    @Test
+    public void prefersExactThenLongestSuffix() {
+        PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+        index.put("5550123", "Short");
+        index.put("212 555 0123", "Full");
+        assertEquals("Full", index.find("+1 212 555 0123"));
+        assertEquals("Short", index.find("5550123"));
+        assertEquals("Short", index.find("646 555 0123"));
+    }
+
+    @Test
+    public void laterValueReplacesEarlier() {
+        PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+        index.put("9876543210", "Old name");
+        index.put("+91 98765 43210", "New name");
+        assertEquals("New name", index.find("9876543210"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void ignoresShortNumbers() {
+        PhoneNumberIndex<String> index = new PhoneNumberIndex<>();
+        assertTrue(!index.put("12345", "Extension"));
+        assertTrue(!index.put("9876543210", null));
+        assertNull(index.find("12345"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        PhoneNumberIndex<Integer> index = new PhoneNumberIndex<>(4);
+        for (int i = 0; i < 5000; i++) {
+            index.put(String.valueOf(9000000000L + i * 7919L), i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(Integer.valueOf(i), index.find("+91 " + (9000000000L + i * 7919L)));
+        }
+    }
+
+    /**
+     * Same answers as the old exact-then-scan lookup at 1k, 10k and 50k
+     * contacts, with a lookup cost that does not grow with the book.
+     */
+    @Test
+    public void timingAgainstLinearScan() {
+        for (int contacts : new int[]{1000, 10000, 50000}) {
+            Random random = new Random(contacts);
+            PhoneNumberIndex<String> index = new PhoneNumberIndex<>(contacts);
+            Map<String, String> cache = new HashMap<>();
+            String[] stored = new String[contacts];
+            for (int i = 0; i < contacts; i++) {
+                stored[i] = formatted(random, 6000000000L + (long) (random.nextDouble() * 3999999999L));
+                index.put(stored[i], "Contact " + i);
+                cache.put(PhoneNumbers.national(stored[i]), "Contact " + i);
+            }
+            // Half known numbers dialled with another prefix, half unknown
+            String[] queries = new String[1000];
+            for (int i = 0; i < queries.length; i++) {
+                String national = i % 2 == 0 ? PhoneNumbers.national(stored[random.nextInt(contacts)])
+                    : String.valueOf(6000000000L + (long) (random.nextDouble() * 3999999999L));
+                queries[i] = (i % 4 == 0 ? "+91 " : "0") + national;
+            }
+
+            for (String query : queries) {
+                assertEquals(query, linearScan(cache, query), index.find(query));
+            }
+
+            long scanNs = time(() -> {
+                for (String query : queries) {
+                    linearScan(cache, query);
+                }
+            }, 3);
+            long indexNs = time(() -> {
+                for (String query : queries) {
+                    index.find(query);
+                }
+            }, 200);
+            System.out.printf("%6d contacts: linear scan %8.2f us/lookup, index %6.3f us/lookup%n",
+                contacts, scanNs / 1000.0 / queries.length, indexNs / 1000.0 / queries.length);
+            if (contacts >= 10000) {
+                assertTrue("Index not faster than a scan of " + contacts, indexNs * 10 < scanNs);
+            }
+        }
+    }
+
+    // What ContactHelper.getContactName did: exact normalized key, then scan for a suffix match
+    private static String linearScan(Map<String, String> cache, String phoneNumber) {
+        String clean = PhoneNumbers.national(phoneNumber);
+        String name = cache.get(clean);
+        if (name != null) {
+            return name;
+        }
+        for (Map.Entry<String, String> entry : cache.entrySet()) {
+            String cached = entry.getKey();
+            int minLength = Math.min(clean.length(), cached.length());
+            if (clean.substring(clean.length() - minLength).equals(cached.substring(cached.length() - minLength))) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String formatted(Random random, long national) {
+        String digits = String.valueOf(national);
+        switch (random.nextInt(4)) {
+            case 0: return digits;
+            case 1: return "+91 " + digits.substring(0, 5) + " " + digits.substring(5);
+            case 2: return "0" + digits;
+            default: return "+91-" + digits;
+        }
+    }
+
+    // Best of a few warmed-up runs, in ns
+    private static long time(Runnable run, int repeat) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                run.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / repeat);
+        }
+        return best;
+    }
+}
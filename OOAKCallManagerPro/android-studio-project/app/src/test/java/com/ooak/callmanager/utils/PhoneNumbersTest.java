@@ -0,0 +1,147 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Normalization of the Indian and US formats the dialers, contacts and
+ * recording names use, and a per-call timing against the regex path it
+ * replaced.
+ */
+public class PhoneNumbersTest {
+    private static final String[] INDIAN_MOBILE = {
+        "+91 98765 43210", "+919876543210", "09876543210", "98765-43210", "0091 98765 43210",
+        "919876543210", "+91-98765-43210", "(+91) 98765 43210"
+    };
+    private static final String[] INDIAN_LANDLINE = {"044 2345 6789", "+91 44 2345 6789", "04423456789"};
+    private static final String[] US = {
+        "+1 (415) 555-0134", "(415) 555-0134", "415-555-0134", "14155550134", "+1-415-555-0134",
+        "001 415 555 0134", "4155550134"
+    };
+
+    @Test
+    public void everyFormatOfANumberHasOneKey() {
+        assertSameKey(INDIAN_MOBILE, "9876543210");
+        assertSameKey(INDIAN_LANDLINE, "4423456789");
+        assertSameKey(US, "4155550134");
+        assertNotEquals(PhoneNumbers.key(INDIAN_MOBILE[0]), PhoneNumbers.key(US[0]));
+    }
+
+    @Test
+    public void shortNumbersHaveNoKey() {
+        assertEquals(PhoneNumbers.NO_KEY, PhoneNumbers.key("12345"));
+        assertEquals(PhoneNumbers.NO_KEY, PhoneNumbers.key(""));
+        assertEquals(PhoneNumbers.NO_KEY, PhoneNumbers.key(null));
+        assertNull(PhoneNumbers.national("*121#"));
+    }
+
+    @Test
+    public void keepsAtMostFifteenDigits() {
+        assertEquals(PhoneNumbers.MAX_DIGITS, PhoneNumbers.nationalLength("1234567890123456789"));
+        assertEquals("567890123456789", PhoneNumbers.national("1234567890123456789"));
+    }
+
+    @Test
+    public void suffixKeyMatchesKeyOfThatLength() {
+        assertEquals(PhoneNumbers.key("2345678"), PhoneNumbers.suffixKey(2345678L, 7));
+    }
+
+    @Test
+    public void suffixMatchesIgnoresFormatting() {
+        assertTrue(PhoneNumbers.suffixMatches("+91 98765 43210", "543210", 6));
+        assertTrue(PhoneNumbers.suffixMatches("98765-43210", "(0) 98765 43210", 10));
+        assertFalse(PhoneNumbers.suffixMatches("98765 43210", "98765 43211", 6));
+        assertFalse(PhoneNumbers.suffixMatches("43210", "543210", 6));
+        assertFalse(PhoneNumbers.suffixMatches(null, "543210", 6));
+    }
+
+    @Test
+    public void containsSuffixFindsTheNumberInAFileName() {
+        String fileName = "Call recording Priya_+919876543210_250617_095218.m4a";
+        assertTrue(PhoneNumbers.containsSuffix(fileName, "+91 98765 43210", 10));
+        assertTrue(PhoneNumbers.containsSuffix(fileName, "98765-43210", 6));
+        assertFalse(PhoneNumbers.containsSuffix(fileName, "98765 43211", 6));
+        assertFalse(PhoneNumbers.containsSuffix(fileName, "3210", 6));
+    }
+
+    @Test
+    public void suffixAndCountDigits() {
+        assertEquals("43210", PhoneNumbers.suffix("+91 98765-43210", 5));
+        assertNull(PhoneNumbers.suffix("12-34", 5));
+        assertEquals(12, PhoneNumbers.countDigits("+91 98765 43210"));
+        assertEquals(0, PhoneNumbers.countDigits(null));
+    }
+
+    /**
+     * Per-call cost over the whole corpus, against replaceAll("[^0-9]", "")
+     * plus substring, which the recording matcher ran per file.
+     */
+    @Test
+    public void timingAgainstRegex() {
+        String[] corpus = new String[INDIAN_MOBILE.length + INDIAN_LANDLINE.length + US.length];
+        System.arraycopy(INDIAN_MOBILE, 0, corpus, 0, INDIAN_MOBILE.length);
+        System.arraycopy(INDIAN_LANDLINE, 0, corpus, INDIAN_MOBILE.length, INDIAN_LANDLINE.length);
+        System.arraycopy(US, 0, corpus, INDIAN_MOBILE.length + INDIAN_LANDLINE.length, US.length);
+        String recorded = "9876543210";
+        String fileName = "call recording +91 98765 43210_250617_095218.m4a";
+        int rounds = 20000;
+        long[] sink = new long[1];
+
+        long regexNs = best(() -> {
+            for (int r = 0; r < rounds; r++) {
+                for (String number : corpus) {
+                    String clean = number.replaceAll("[^0-9]", "");
+                    String last6 = clean.substring(clean.length() - 6);
+                    if (recorded.endsWith(last6) || fileName.contains(last6)) {
+                        sink[0]++;
+                    }
+                }
+            }
+        });
+        long matchNs = best(() -> {
+            for (int r = 0; r < rounds; r++) {
+                for (String number : corpus) {
+                    if (PhoneNumbers.suffixMatches(recorded, number, 6) ||
+                            PhoneNumbers.containsSuffix(fileName, number, 6)) {
+                        sink[0]++;
+                    }
+                }
+            }
+        });
+        long keyNs = best(() -> {
+            for (int r = 0; r < rounds; r++) {
+                for (String number : corpus) {
+                    sink[0] += PhoneNumbers.key(number);
+                }
+            }
+        });
+        double calls = (double) rounds * corpus.length;
+        System.out.printf("Per number: regex match %.0f ns, suffix match %.0f ns, key %.0f ns (%d)%n",
+            regexNs / calls, matchNs / calls, keyNs / calls, sink[0] & 1);
+        assertTrue("Suffix match not faster than the regex path", matchNs < regexNs);
+    }
+
+    private static void assertSameKey(String[] formats, String national) {
+        long key = PhoneNumbers.key(national);
+        for (String number : formats) {
+            assertEquals(number, national, PhoneNumbers.national(number));
+            assertEquals(number, key, PhoneNumbers.key(number));
+        }
+    }
+
+    private static long best(Runnable run) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,341 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scoring rules, and a replayable corpus: call and recording timelines for
+ * the file name templates of the dialers we deploy on, replayed in the order
+ * a phone sees them (recordings settle, call log rows arrive late or in
+ * batches) with matching after every event, as the pipeline does.
+ */
+public class RecordingMatcherTest {
+    private static final long T0 = 1750000000000L;
+    private static final long WINDOW_MS = 5 * 60 * 1000;
+
+    // {N} contact name, {P} number, {T:pattern} timestamp, {SEQ} a counter
+    private static final String[][] TEMPLATES = {
+        {"Samsung One UI", "Call recording {N}_{T:yyMMdd_HHmmss}.m4a"},
+        {"Samsung (no contact)", "Call recording {P}_{T:yyMMdd_HHmmss}.m4a"},
+        {"MIUI", "{N}({P})_{T:yyyyMMddHHmmss}.mp3"},
+        {"MIUI (no contact)", "{P}_{T:yyyyMMddHHmmss}.mp3"},
+        {"ColorOS/Realme", "{N} {P}_{T:yyyyMMddHHmmss}.m4a"},
+        {"OnePlus", "{P}_{T:yyMMddHHmmss}.amr"},
+        {"Vivo FuntouchOS", "{N} {T:yyyyMMddHHmmss}.m4a"},
+        {"Google Dialer", "Call with {N}.m4a"},
+        {"ACR app", "{P}_{T:yyyyMMdd-HHmmss}_in.amr"},
+        {"Generic recorder", "Recording_{SEQ}.m4a"},
+        {"Generic REC", "REC_{SEQ}.amr"},
+    };
+
+    private static final String[][] PEOPLE = {
+        {"Anita Sharma", "+919876543210"}, {"Ravi Kumar", "+919845012345"},
+        {"Priya Nair", "+919900112233"}, {"Arjun Mehta", "+919812398765"}
+    };
+
+    // ---- Scoring ----
+
+    @Test
+    public void numberInTheNameIsAMatch() {
+        RecordingMatcher.Call call = new RecordingMatcher.Call("+91 98765 43210", null, T0, T0 + 60000);
+        int own = RecordingMatcher.score(call, candidate("9876543210_0001.amr", T0 + 61000, RecordingMatcher.UNKNOWN_DURATION));
+        int other = RecordingMatcher.score(call, candidate("9845012345_0002.amr", T0 + 61000, RecordingMatcher.UNKNOWN_DURATION));
+        assertTrue(own >= RecordingMatcher.MIN_SCORE);
+        assertTrue("Someone else's number should count against", other < RecordingMatcher.MIN_SCORE);
+    }
+
+    @Test
+    public void recordingFinishedBeforeTheCallIsNeverIt() {
+        RecordingMatcher.Call call = new RecordingMatcher.Call("+919876543210", "Anita Sharma", T0, T0 + 60000);
+        assertTrue(RecordingMatcher.score(call, candidate("Call recording Anita Sharma.m4a", T0 - 60000, 60000)) < 0);
+    }
+
+    @Test
+    public void durationMustFitTheTalkTime() {
+        RecordingMatcher.Call call = new RecordingMatcher.Call(null, null, T0, T0 + 60000);
+        int fits = RecordingMatcher.score(call, candidate("REC_0001.amr", T0 + 60000, 59000));
+        int tooLong = RecordingMatcher.score(call, candidate("REC_0002.amr", T0 + 60000, 240000));
+        assertTrue(fits >= RecordingMatcher.MIN_SCORE);
+        assertTrue(tooLong < RecordingMatcher.MIN_SCORE);
+    }
+
+    @Test
+    public void eachRecordingGoesToTheCallItFitsBest() {
+        // Back to back, both recordings already there when the first call is matched
+        RecordingMatcher.Call first = new RecordingMatcher.Call("+919876543210", "Anita Sharma", T0, T0 + 120000);
+        RecordingMatcher.Call second = new RecordingMatcher.Call("+919845012345", "Ravi Kumar", T0 + 150000, T0 + 200000);
+        RecordingMatcher.Candidate firstFile = candidate("Call recording Anita Sharma_250615_201340.m4a", T0 + 121000, 119000);
+        RecordingMatcher.Candidate secondFile = candidate("Call recording Ravi Kumar_250615_201610.m4a", T0 + 201000, 49000);
+
+        List<RecordingMatcher.Match<RecordingMatcher.Call, RecordingMatcher.Candidate>> matches =
+            RecordingMatcher.assign(Arrays.asList(first, second), Arrays.asList(secondFile, firstFile));
+        assertEquals(2, matches.size());
+        for (RecordingMatcher.Match<RecordingMatcher.Call, RecordingMatcher.Candidate> match : matches) {
+            assertSame(match.call == first ? firstFile : secondFile, match.recording);
+        }
+    }
+
+    // ---- Corpus ----
+
+    @Test
+    public void corpusMatchesEveryCallToItsOwnRecording() {
+        List<Scenario> corpus = buildCorpus();
+        int calls = 0;
+        int right = 0;
+        for (Scenario scenario : corpus) {
+            replay(scenario);
+            for (TestCall call : scenario.calls) {
+                calls++;
+                boolean recorded = scenario.recordingFor(call.id) != null;
+                if (call.match == null) {
+                    assertTrue(scenario.name + ": call " + call.id + " missed its recording", !recorded);
+                } else {
+                    assertEquals(scenario.name + ": call " + call.id + " got " + call.match.name,
+                        call.id, call.match.forCall);
+                    right++;
+                }
+            }
+        }
+        System.out.println(corpus.size() + " scenarios, " + calls + " calls, " + right + " matched right, 0 wrong");
+    }
+
+    @Test
+    public void timing() {
+        List<TestCall> calls = new ArrayList<>();
+        List<TestRecording> recordings = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String[] who = PEOPLE[i % PEOPLE.length];
+            calls.add(new TestCall(i, who, T0 + i * 60000L, T0 + i * 60000L + 50000, 0));
+        }
+        for (int i = 0; i < 20; i++) {
+            String[] who = PEOPLE[i % PEOPLE.length];
+            String name = render(TEMPLATES[i % TEMPLATES.length][1], who, T0 + i * 15000L, i);
+            recordings.add(new TestRecording(name, T0 + i * 15000L + 50000, 50000, i, 0));
+        }
+        for (int i = 0; i < 5000; i++) {
+            RecordingMatcher.assign(calls, recordings);
+        }
+        int runs = 5000;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            RecordingMatcher.assign(calls, recordings);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / runs;
+        System.out.printf("assign 5 calls x 20 recordings: %.1f us%n", micros);
+        assertTrue(micros < 10000);
+    }
+
+    private static List<Scenario> buildCorpus() {
+        Random random = new Random(7);
+        List<Scenario> corpus = new ArrayList<>();
+        for (String[] template : TEMPLATES) {
+            for (boolean durationKnown : new boolean[]{true, false}) {
+                String kind = template[0] + (durationKnown ? "" : ", no duration");
+                long base = T0 + corpus.size() * 3600000L;
+                Scenario s = new Scenario(kind + " / single");
+                s.call(template[1], random, 1, PEOPLE[0], base, 8000, 95000, true, durationKnown, 2000);
+                corpus.add(s);
+
+                s = new Scenario(kind + " / back-to-back, call log late");
+                s.call(template[1], random, 1, PEOPLE[0], base, 6000, 120000, true, durationKnown, 200000);
+                s.call(template[1], random, 2, PEOPLE[1], base + 150000, 9000, 45000, true, durationKnown, 2000);
+                corpus.add(s);
+
+                s = new Scenario(kind + " / back-to-back, first not recorded");
+                s.call(template[1], random, 1, PEOPLE[2], base, 5000, 30000, false, durationKnown, 90000);
+                s.call(template[1], random, 2, PEOPLE[3], base + 50000, 7000, 200000, true, durationKnown, 2000);
+                corpus.add(s);
+
+                s = new Scenario(kind + " / same contact twice");
+                s.call(template[1], random, 1, PEOPLE[1], base, 5000, 40000, true, durationKnown, 60000);
+                s.call(template[1], random, 2, PEOPLE[1], base + 60000, 4000, 180000, true, durationKnown, 2000);
+                corpus.add(s);
+
+                s = new Scenario(kind + " / call waiting");
+                s.call(template[1], random, 1, PEOPLE[0], base, 5000, 240000, true, durationKnown, 2000);
+                s.call(template[1], random, 2, PEOPLE[2], base + 60000, 12000, 60000, true, durationKnown, 2000);
+                corpus.add(s);
+
+                s = new Scenario(kind + " / stale voice memo in the folder");
+                s.call(template[1], random, 1, PEOPLE[3], base, 6000, 70000, true, durationKnown, 2000);
+                s.recordings.add(new TestRecording("Recording_memo.m4a", base - 200000, 15000, -1, base + 8000));
+                corpus.add(s);
+
+                s = new Scenario(kind + " / burst of 4, call log in one batch");
+                for (int i = 0; i < 4; i++) {
+                    s.call(template[1], random, i + 1, PEOPLE[i], base + i * 100000L, 5000 + i * 2000,
+                        60000 + i * 7000, true, durationKnown, 400000 - i * 100000L);
+                }
+                corpus.add(s);
+            }
+        }
+        return corpus;
+    }
+
+    // Events in time order; after each one, unmatched calls are matched against unclaimed recordings in their window
+    private static void replay(Scenario scenario) {
+        TreeMap<Long, List<Object>> events = new TreeMap<>();
+        for (TestCall call : scenario.calls) {
+            addEvent(events, call.loggedAt, call);
+        }
+        for (TestRecording recording : scenario.recordings) {
+            addEvent(events, recording.detectedAt, recording);
+        }
+        List<TestCall> pending = new ArrayList<>();
+        List<TestRecording> present = new ArrayList<>();
+        for (List<Object> batch : events.values()) {
+            for (Object event : batch) {
+                if (event instanceof TestCall) {
+                    pending.add((TestCall) event);
+                } else {
+                    present.add((TestRecording) event);
+                }
+            }
+            List<TestCall> unmatched = new ArrayList<>();
+            for (TestCall call : pending) {
+                if (call.match == null) {
+                    unmatched.add(call);
+                }
+            }
+            List<TestRecording> free = new ArrayList<>();
+            for (TestRecording recording : present) {
+                if (!recording.claimed && inWindowOfAny(recording, unmatched)) {
+                    free.add(recording);
+                }
+            }
+            for (RecordingMatcher.Match<TestCall, TestRecording> match : RecordingMatcher.assign(unmatched, free)) {
+                match.call.match = match.recording;
+                match.recording.claimed = true;
+            }
+        }
+    }
+
+    private static boolean inWindowOfAny(TestRecording recording, List<TestCall> calls) {
+        for (TestCall call : calls) {
+            if (recording.lastModified >= call.callStart - WINDOW_MS &&
+                    recording.lastModified <= Math.max(call.callEnd, call.callStart) + WINDOW_MS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addEvent(TreeMap<Long, List<Object>> events, long at, Object event) {
+        List<Object> batch = events.get(at);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            events.put(at, batch);
+        }
+        batch.add(event);
+    }
+
+    private static String render(String template, String[] who, long time, int sequence) {
+        StringBuilder out = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c != '{') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int close = template.indexOf('}', i);
+            String field = template.substring(i + 1, close);
+            if (field.equals("N")) {
+                out.append(who[0]);
+            } else if (field.equals("P")) {
+                out.append(who[1]);
+            } else if (field.equals("SEQ")) {
+                out.append(String.format(Locale.US, "%04d", sequence));
+            } else {
+                out.append(new SimpleDateFormat(field.substring(2), Locale.US).format(new Date(time)));
+            }
+            i = close + 1;
+        }
+        return out.toString();
+    }
+
+    private static RecordingMatcher.Candidate candidate(String name, long lastModified, long durationMs) {
+        RecordingCatalog.ParsedName parsed = RecordingCatalog.parseName(name);
+        return new RecordingMatcher.Candidate(name, lastModified, parsed.phoneDigits, parsed.nameTime, durationMs);
+    }
+
+    private static class Scenario {
+        final String name;
+        final List<TestCall> calls = new ArrayList<>();
+        final List<TestRecording> recordings = new ArrayList<>();
+        int sequence = 40;
+
+        Scenario(String name) {
+            this.name = name;
+        }
+
+        /**
+         * A call that rings, is talked through, and shows up in the call log
+         * logDelayMs after it ends; its recording, if recorded, settles a few
+         * seconds after the end.
+         */
+        void call(String template, Random random, int id, String[] who, long start, long ringMs, long talkMs,
+                  boolean recorded, boolean durationKnown, long logDelayMs) {
+            long realEnd = start + ringMs + talkMs;
+            // The call log knows DATE and DURATION, not the ringing time
+            calls.add(new TestCall(id, who, start, start + talkMs, realEnd + logDelayMs));
+            if (recorded) {
+                String fileName = render(template, who, start + ringMs, sequence++);
+                long durationMs = durationKnown ? talkMs + random.nextInt(1500) - 500 : RecordingMatcher.UNKNOWN_DURATION;
+                recordings.add(new TestRecording(fileName, realEnd + random.nextInt(1500), durationMs, id,
+                    realEnd + 3000 + random.nextInt(2000)));
+            }
+        }
+
+        TestRecording recordingFor(int callId) {
+            for (TestRecording recording : recordings) {
+                if (recording.forCall == callId) {
+                    return recording;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class TestCall extends RecordingMatcher.Call {
+        final int id;
+        final long loggedAt;
+        TestRecording match;
+
+        TestCall(int id, String[] who, long start, long end, long loggedAt) {
+            super(who[1], who[0], start, end);
+            this.id = id;
+            this.loggedAt = loggedAt;
+        }
+    }
+
+    private static class TestRecording extends RecordingMatcher.Candidate {
+        final int forCall;
+        final long detectedAt;
+        boolean claimed;
+
+        TestRecording(String name, long lastModified, long durationMs, int forCall, long detectedAt) {
+            this(RecordingCatalog.parseName(name), name, lastModified, durationMs, forCall, detectedAt);
+        }
+
+        private TestRecording(RecordingCatalog.ParsedName parsed, String name, long lastModified, long durationMs,
+                              int forCall, long detectedAt) {
+            super(name, lastModified, parsed.phoneDigits, parsed.nameTime, durationMs);
+            this.forCall = forCall;
+            this.detectedAt = detectedAt;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ooak.callmanager.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The serial executors the engine's components run on, and a thread count
+ * against the single-thread executor per component they replaced.
+ */
+public class SharedExecutorsTest {
+
+    @Test
+    public void serialExecutorRunsTasksOneAtATimeInOrder() throws Exception {
+        ExecutorService serial = SharedExecutors.newSerialExecutor("ordered");
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            serial.execute(() -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                order.add(n);
+                running.decrementAndGet();
+            });
+        }
+        serial.shutdown();
+        assertTrue(serial.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void aFailingTaskDoesNotStopTheQueue() throws Exception {
+        ExecutorService serial = SharedExecutors.newSerialExecutor("failing");
+        serial.execute(() -> {
+            throw new IllegalStateException("expected in test");
+        });
+        Future<String> after = serial.submit(() -> "still running");
+        assertEquals("still running", after.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectsTasksAfterShutdown() {
+        ExecutorService serial = SharedExecutors.newSerialExecutor("closed");
+        serial.shutdown();
+        try {
+            serial.execute(() -> { });
+            fail("Accepted a task after shutdown");
+        } catch (RejectedExecutionException expected) {
+            // As a shut-down single-thread executor would
+        }
+    }
+
+    @Test
+    public void scheduledTasksRunOnTheSerialQueue() throws Exception {
+        ScheduledExecutorService serial = SharedExecutors.newSerialExecutor("scheduled");
+        long start = System.nanoTime();
+        ScheduledFuture<Long> delayed = serial.schedule(() -> System.nanoTime() - start, 50, TimeUnit.MILLISECONDS);
+        assertTrue(delayed.get(10, TimeUnit.SECONDS) >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        CountDownLatch ticks = new CountDownLatch(3);
+        ScheduledFuture<?> periodic = serial.scheduleWithFixedDelay(ticks::countDown, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(10, TimeUnit.SECONDS));
+        assertTrue(periodic.cancel(false));
+
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        ScheduledFuture<?> cancelled = serial.schedule(cancelledRuns::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        cancelled.cancel(false);
+        Thread.sleep(150);
+        assertEquals(0, cancelledRuns.get());
+    }
+
+    /**
+     * Nine components that each wake up now and then, as the engine's
+     * modules and clients do: one thread each before, a few shared now.
+     */
+    @Test
+    public void threadCountAgainstAnExecutorPerComponent() throws Exception {
+        int components = 9;
+        int baseline = Thread.activeCount();
+
+        List<ScheduledExecutorService> own = new ArrayList<>();
+        for (int i = 0; i < components; i++) {
+            own.add(Executors.newSingleThreadScheduledExecutor());
+        }
+        int ownThreads = exercise(own) - baseline;
+        for (ScheduledExecutorService executor : own) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        baseline = Thread.activeCount();
+        List<ScheduledExecutorService> shared = new ArrayList<>();
+        for (int i = 0; i < components; i++) {
+            shared.add(SharedExecutors.newSerialExecutor("component-" + i));
+        }
+        int sharedThreads = exercise(shared) - baseline;
+
+        System.out.println("Threads for " + components + " components: " + ownThreads +
+            " with an executor each, " + Math.max(0, sharedThreads) + " shared (" + SharedExecutors.getStats() + ")");
+        assertEquals(components, ownThreads);
+        assertTrue(sharedThreads < components);
+    }
+
+    // Every component runs a short job, staggered; returns the threads alive after
+    private static int exercise(List<ScheduledExecutorService> executors) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(executors.size());
+        for (int i = 0; i < executors.size(); i++) {
+            executors.get(i).schedule(done::countDown, i * 20L, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        return Thread.activeCount();
+    }
+}
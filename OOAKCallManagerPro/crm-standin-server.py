@@ -0,0 +1,470 @@
+#!/usr/bin/env python3
+"""
+CRM Stand-in Server for OOAK Call Manager Pro
+Mimics the portal endpoints the Android app talks to, so the app can be
+exercised against a laptop on the same network without touching production.
+
+Point the app's BASE_URL at http://<laptop-ip>:8084 and watch the console.
+
+Resumable recording uploads can be exercised against a flaky link:
+    python3 crm-standin-server.py --drop-rate 0.3
+cuts 30% of upload chunks off part-way, and /stats reports the resumes and
+the effective throughput of every finished upload.
+
+The caller directory (GET /api/call-directory) serves whatever was posted to
+/test/directory, e.g.
+    curl -X POST localhost:8084/test/directory -d '{"employeeId": "1",
+         "kind": "lead", "id": "42", "name": "Priya", "phone": "+91 98765 43210"}'
+and /stats counts full and delta syncs and the rows each one sent.
+"""
+
+import argparse
+import gzip
+import json
+import os
+import random
+import tempfile
+import threading
+import time
+import uuid
+from datetime import datetime
+from urllib.parse import urlparse, parse_qs
+from http.server import HTTPServer, BaseHTTPRequestHandler
+from socketserver import ThreadingMixIn
+
+# Configuration
+PORT = 8084
+HEARTBEAT_INTERVAL = 25  # seconds, the app gives up after 75 s of silence
+UPLOAD_DIR = os.path.join(tempfile.gettempdir(), 'ooak-standin-uploads')
+drop_rate = 0.0  # share of upload chunks to cut off mid-body (--drop-rate)
+
+# Everything received, for the /stats page
+stats = {
+    "requests": 0,
+    "single_events": 0,
+    "batches": 0,
+    "batched_events": 0,
+    "backfilled_events": 0,
+    "bytes_received": 0,
+    "upload_sessions": 0,
+    "upload_chunks": 0,
+    "upload_offset_queries": 0,
+    "upload_offset_conflicts": 0,
+    "injected_drops": 0,
+    "one_shot_uploads": 0,
+    "recording_links": 0,
+    "directory_full_syncs": 0,
+    "directory_delta_syncs": 0,
+    "directory_rows_sent": 0,
+}
+calls = {}
+
+# Resumable uploads: uploadId -> session, bytes in UPLOAD_DIR/<uploadId>.part
+uploads = {}
+uploads_lock = threading.Lock()
+completed_uploads = []
+
+# Call triggers, created with POST /test/trigger {"employeeId": ..., "phone_number": ..., "client_name": ...}
+triggers = []
+triggers_changed = threading.Condition()
+
+# Caller directory rows, (employee_id, kind, id) -> row with a strictly increasing "version"
+directory = {}
+directory_lock = threading.Lock()
+directory_version = 0
+DIRECTORY_PAGE = 500
+
+
+class StandinHandler(BaseHTTPRequestHandler):
+    def do_POST(self):
+        stats["requests"] += 1
+        path = urlparse(self.path).path
+        if path == '/api/call-monitoring':
+            self.handle_call_event()
+        elif path == '/api/call-monitoring/batch':
+            self.handle_call_event_batch()
+        elif path == '/api/poll-call-triggers':
+            self.handle_trigger_status()
+        elif path == '/test/trigger':
+            self.handle_create_trigger()
+        elif path == '/test/directory':
+            self.handle_put_directory_row()
+        elif path == '/api/call-recordings/uploads':
+            self.handle_create_upload()
+        elif path == '/api/call-recordings':
+            self.handle_one_shot_upload()
+        elif path == '/api/call-recordings/update-call':
+            self.handle_link_recording()
+        else:
+            self.send_json(404, {"error": "Not Found"})
+
+    def do_HEAD(self):
+        stats["requests"] += 1
+        upload_id = self.upload_id_from_path()
+        session = uploads.get(upload_id)
+        if not session:
+            self.send_response(404)
+            self.send_header('Content-Length', '0')
+            self.end_headers()
+            return
+        stats["upload_offset_queries"] += 1
+        session["offset_queries"] += 1
+        self.send_response(200)
+        self.send_upload_headers(session)
+        self.send_header('Content-Length', '0')
+        self.end_headers()
+
+    def do_PATCH(self):
+        stats["requests"] += 1
+        upload_id = self.upload_id_from_path()
+        session = uploads.get(upload_id)
+        if not session:
+            self.send_json(404, {"error": "Unknown or expired upload"})
+            return
+        self.handle_upload_chunk(session)
+
+    def do_GET(self):
+        url = urlparse(self.path)
+        query = parse_qs(url.query)
+        if url.path == '/' or url.path == '/stats':
+            self.send_json(200, {"stats": stats, "calls": calls, "triggers": triggers,
+                                 "uploads": completed_uploads, "directory_rows": len(directory)})
+        elif url.path == '/api/call-trigger-stream':
+            self.handle_trigger_stream(query.get('employeeId', [''])[0])
+        elif url.path == '/api/poll-call-triggers':
+            stats["requests"] += 1
+            employee_id = query.get('employeeId', [''])[0]
+            self.send_json(200, {"success": True, "triggers": pending_triggers(employee_id)})
+        elif url.path == '/api/call-directory':
+            stats["requests"] += 1
+            self.handle_directory_sync(query)
+        else:
+            self.send_json(404, {"error": "Not Found"})
+
+    def read_body(self):
+        length = int(self.headers.get('Content-Length', 0))
+        raw = self.rfile.read(length)
+        stats["bytes_received"] += len(raw)
+        if self.headers.get('Content-Encoding', '').lower() == 'gzip':
+            raw = gzip.decompress(raw)
+        return json.loads(raw.decode('utf-8'))
+
+    def send_json(self, code, payload):
+        body = json.dumps(payload).encode('utf-8')
+        self.send_response(code)
+        self.send_header('Content-Type', 'application/json')
+        self.send_header('Content-Length', str(len(body)))
+        self.end_headers()
+        self.wfile.write(body)
+
+    def apply_call_event(self, event):
+        call_id = event.get('callId') or event.get('phoneNumber') or 'unknown'
+        if event.get('source') == 'call_log':
+            stats["backfilled_events"] += 1
+            if call_id in calls:
+                return {"status": 200, "callId": call_id, "duplicate": True}
+        calls[call_id] = {
+            "phoneNumber": event.get('phoneNumber'),
+            "status": event.get('status'),
+            "direction": event.get('direction'),
+            "updatedAt": datetime.now().isoformat(),
+        }
+        print(f"📞 {call_id}: {event.get('status')} ({event.get('phoneNumber')})")
+        return {"status": 200, "callId": call_id}
+
+    def handle_call_event(self):
+        try:
+            event = self.read_body()
+            stats["single_events"] += 1
+            result = self.apply_call_event(event)
+            self.send_json(200, {"success": True, "callId": result["callId"]})
+        except Exception as e:
+            print(f"❌ Bad call event: {e}")
+            self.send_json(400, {"error": str(e)})
+
+    def handle_call_event_batch(self):
+        try:
+            events = self.read_body()
+            if not isinstance(events, list):
+                self.send_json(400, {"error": "Expected a JSON array of call events"})
+                return
+            stats["batches"] += 1
+            stats["batched_events"] += len(events)
+            print(f"📦 Batch of {len(events)} event(s) from {self.headers.get('X-Employee-ID', 'unknown')}")
+            results = [self.apply_call_event(event) for event in events]
+            self.send_json(200, {"success": True, "processed": len(results), "results": results})
+        except Exception as e:
+            print(f"❌ Bad call event batch: {e}")
+            self.send_json(400, {"error": str(e)})
+
+    def handle_create_trigger(self):
+        body = self.read_body()
+        with triggers_changed:
+            trigger = {
+                "id": len(triggers) + 1,
+                "employee_id": body.get('employeeId'),
+                "phone_number": body.get('phone_number'),
+                "client_name": body.get('client_name', 'Test Client'),
+                "task_id": body.get('task_id'),
+                "status": "pending",
+                "triggered_at": datetime.now().isoformat(),
+            }
+            triggers.append(trigger)
+            triggers_changed.notify_all()
+        print(f"🔔 Trigger #{trigger['id']} for {trigger['employee_id']}: {trigger['phone_number']}")
+        self.send_json(200, {"success": True, "trigger": trigger})
+
+    def handle_trigger_status(self):
+        body = self.read_body()
+        with triggers_changed:
+            for trigger in triggers:
+                if trigger["id"] == body.get('triggerId'):
+                    trigger["status"] = body.get('status')
+        print(f"✅ Trigger #{body.get('triggerId')} -> {body.get('status')}")
+        self.send_json(200, {"success": True})
+
+    # ---- Resumable recording uploads ----
+
+    def handle_put_directory_row(self):
+        global directory_version
+        body = self.read_body()
+        rows = body if isinstance(body, list) else [body]
+        with directory_lock:
+            for row in rows:
+                kind = row.get('kind', 'lead')
+                key = (str(row.get('employeeId')), kind, str(row.get('id')))
+                directory_version += 1
+                directory[key] = {
+                    "kind": kind,
+                    "id": key[2],
+                    "leadId": row.get('leadId', key[2] if kind == 'lead' else None),
+                    "taskId": row.get('taskId', key[2] if kind == 'task' else None),
+                    "name": row.get('name'),
+                    "phone": row.get('phone'),
+                    "active": row.get('active', True),
+                    "version": directory_version,
+                }
+                state = "upserted" if directory[key]["active"] else "closed"
+                print(f"📇 Directory {kind} {key[2]} for {key[0]} {state}: {row.get('name')} ({row.get('phone')})")
+        self.send_json(200, {"success": True, "version": directory_version})
+
+    def handle_directory_sync(self, query):
+        employee_id = self.headers.get('X-Employee-ID') or query.get('employeeId', [''])[0]
+        cursor = query.get('cursor', [None])[0]
+        limit = min(int(query.get('limit', [DIRECTORY_PAGE])[0]), 2000)
+        if not employee_id:
+            self.send_json(400, {"error": "Employee ID required"})
+            return
+        if cursor is not None and not cursor.isdigit():
+            self.send_json(400, {"error": "Invalid cursor"})
+            return
+
+        after = int(cursor) if cursor else 0
+        with directory_lock:
+            rows = sorted((r for (e, _, _), r in directory.items() if e == employee_id
+                           and r["version"] > after and (cursor or r["active"])),
+                          key=lambda r: r["version"])
+        page, has_more = rows[:limit], len(rows) > limit
+        stats["directory_delta_syncs" if cursor else "directory_full_syncs"] += 1
+        stats["directory_rows_sent"] += len(page)
+        print(f"📇 Directory {'delta' if cursor else 'full'} sync for {employee_id}: {len(page)} row(s)")
+        self.send_json(200, {
+            "success": True,
+            "reset": cursor is None,
+            "entries": [{k: v for k, v in r.items() if k != "version"} for r in page],
+            "cursor": str(page[-1]["version"]) if page else cursor,
+            "hasMore": has_more,
+        })
+
+    def upload_id_from_path(self):
+        path = urlparse(self.path).path
+        prefix = '/api/call-recordings/uploads/'
+        return path[len(prefix):] if path.startswith(prefix) else None
+
+    def send_upload_headers(self, session):
+        offset = session["length"] if session.get("recordingId") else os.path.getsize(session["file"])
+        self.send_header('Upload-Offset', str(offset))
+        self.send_header('Upload-Length', str(session["length"]))
+        self.send_header('Cache-Control', 'no-store')
+        if session.get("recordingId"):
+            self.send_header('Upload-Recording-Id', session["recordingId"])
+
+    def handle_create_upload(self):
+        body = self.read_body()
+        length = int(body.get('length', 0))
+        if length <= 0 or not body.get('fileName'):
+            self.send_json(400, {"error": "fileName and a positive length are required"})
+            return
+        os.makedirs(UPLOAD_DIR, exist_ok=True)
+        upload_id = str(uuid.uuid4())
+        session = {
+            "uploadId": upload_id,
+            "fileName": body['fileName'],
+            "length": length,
+            "metadata": body.get('metadata', {}),
+            "file": os.path.join(UPLOAD_DIR, upload_id + '.part'),
+            "created": time.time(),
+            "chunks": 0,
+            "drops": 0,
+            "offset_queries": 0,
+        }
+        open(session["file"], 'wb').close()
+        with uploads_lock:
+            uploads[upload_id] = session
+        stats["upload_sessions"] += 1
+        print(f"📤 Upload {upload_id[:8]} started: {session['fileName']} ({length} bytes)")
+        self.send_json(201, {"success": True, "uploadId": upload_id, "offset": 0, "chunkSize": 512 * 1024})
+
+    def handle_upload_chunk(self, session):
+        if session.get("recordingId"):
+            self.send_upload_json(200, session, {"success": True, "recordingId": session["recordingId"]})
+            return
+
+        offset = int(self.headers.get('Upload-Offset', -1))
+        current = os.path.getsize(session["file"])
+        length = int(self.headers.get('Content-Length', 0))
+        if offset != current:
+            stats["upload_offset_conflicts"] += 1
+            self.rfile.read(length)
+            self.send_upload_json(409, session, {"error": "Offset mismatch", "offset": current})
+            return
+        if current + length > session["length"]:
+            self.rfile.read(length)
+            self.send_upload_json(400, session, {"error": "Chunk runs past the declared upload length"})
+            return
+
+        # Simulated flaky link: keep part of the body, then hang up without answering
+        cut_at = int(length * random.random()) if length and random.random() < drop_rate else None
+        remaining = length if cut_at is None else cut_at
+        with open(session["file"], 'ab') as out:
+            while remaining > 0:
+                piece = self.rfile.read(min(16 * 1024, remaining))
+                if not piece:
+                    break
+                out.write(piece)
+                remaining -= len(piece)
+                stats["bytes_received"] += len(piece)
+        if cut_at is not None:
+            stats["injected_drops"] += 1
+            session["drops"] += 1
+            print(f"✂️  Upload {session['uploadId'][:8]}: dropped connection after {cut_at}/{length} bytes")
+            self.close_connection = True
+            self.connection.shutdown(2)
+            return
+
+        stats["upload_chunks"] += 1
+        session["chunks"] += 1
+        if os.path.getsize(session["file"]) < session["length"]:
+            self.send_response(204)
+            self.send_upload_headers(session)
+            self.end_headers()
+            return
+
+        elapsed = max(time.time() - session["created"], 0.001)
+        session["recordingId"] = str(uuid.uuid4())
+        completed_uploads.append({
+            "uploadId": session["uploadId"],
+            "fileName": session["fileName"],
+            "bytes": session["length"],
+            "seconds": round(elapsed, 2),
+            "kbps": round(session["length"] * 8 / 1000 / elapsed, 1),
+            "chunks": session["chunks"],
+            "drops": session["drops"],
+            "resumes": session["offset_queries"],
+        })
+        print(f"✅ Upload {session['uploadId'][:8]} complete: {session['fileName']} in {elapsed:.1f}s "
+              f"({session['chunks']} chunks, {session['drops']} drops)")
+        self.send_upload_json(200, session, {
+            "success": True,
+            "recordingId": session["recordingId"],
+            "message": "Call recording uploaded successfully from Android device",
+        })
+
+    def send_upload_json(self, code, session, payload):
+        body = json.dumps(payload).encode('utf-8')
+        self.send_response(code)
+        self.send_upload_headers(session)
+        self.send_header('Content-Type', 'application/json')
+        self.send_header('Content-Length', str(len(body)))
+        self.end_headers()
+        self.wfile.write(body)
+
+    def handle_one_shot_upload(self):
+        length = int(self.headers.get('Content-Length', 0))
+        self.rfile.read(length)
+        stats["bytes_received"] += length
+        stats["one_shot_uploads"] += 1
+        print(f"📦 One-shot recording upload ({length} bytes)")
+        self.send_json(200, {"success": True, "recordingId": str(uuid.uuid4())})
+
+    def handle_link_recording(self):
+        body = self.read_body()
+        stats["recording_links"] += 1
+        print(f"🔗 Recording linked to call with {body.get('phone_number')}: {body.get('recording_url')}")
+        self.send_json(200, {"success": True})
+
+    def handle_trigger_stream(self, employee_id):
+        stats["requests"] += 1
+        self.send_response(200)
+        self.send_header('Content-Type', 'text/event-stream')
+        self.send_header('Cache-Control', 'no-cache')
+        self.end_headers()
+        print(f"📡 Trigger stream opened for {employee_id}")
+
+        sent = set()
+        last_heartbeat = time.time()
+        try:
+            self.send_event('connected', {"employeeId": employee_id})
+            while True:
+                for trigger in pending_triggers(employee_id):
+                    if trigger["id"] not in sent:
+                        sent.add(trigger["id"])
+                        self.send_event('call_trigger', trigger)
+                if time.time() - last_heartbeat >= HEARTBEAT_INTERVAL:
+                    self.send_event('heartbeat', {"timestamp": datetime.now().isoformat()})
+                    last_heartbeat = time.time()
+                with triggers_changed:
+                    triggers_changed.wait(timeout=1)
+        except (BrokenPipeError, ConnectionResetError):
+            print(f"📡 Trigger stream closed for {employee_id}")
+
+    def send_event(self, event, data):
+        self.wfile.write(f"event: {event}\ndata: {json.dumps(data)}\n\n".encode('utf-8'))
+        self.wfile.flush()
+
+    def log_message(self, format, *args):
+        print(f"[{datetime.now().strftime('%H:%M:%S')}] {format % args}")
+
+
+def pending_triggers(employee_id):
+    with triggers_changed:
+        return [dict(t) for t in triggers if t["employee_id"] == employee_id and t["status"] == "pending"]
+
+
+class ThreadingHTTPServer(ThreadingMixIn, HTTPServer):
+    daemon_threads = True
+
+
+def main():
+    global drop_rate
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument('--port', type=int, default=PORT)
+    parser.add_argument('--drop-rate', type=float, default=0.0,
+                        help='share of upload chunks to cut off mid-body (0-1)')
+    args = parser.parse_args()
+    drop_rate = args.drop_rate
+
+    server = ThreadingHTTPServer(('0.0.0.0', args.port), StandinHandler)
+    print(f"🚀 OOAK CRM stand-in server running on port {args.port}")
+    if drop_rate:
+        print(f"✂️  Dropping {drop_rate:.0%} of upload chunks")
+    print(f"📊 Stats: http://localhost:{args.port}/stats")
+    try:
+        server.serve_forever()
+    except KeyboardInterrupt:
+        print("\n🛑 Server stopped")
+        server.shutdown()
+
+
+if __name__ == '__main__':
+    main()
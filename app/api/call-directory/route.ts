@@ -0,0 +1,87 @@
+import { NextRequest, NextResponse } from 'next/server'
+import { query } from '@/lib/postgresql-client'
+
+// Caller directory for the Android call manager: the employee's leads and open
+// tasks keyed by phone number, so an incoming call is identified on the device
+// without a network round-trip.
+//
+// GET /api/call-directory?employeeId=..&cursor=..&limit=..
+// Rows come in (updated_at, kind, id) order and `cursor` is the position after
+// the last row returned; pass it back to get only what changed since. Rows that
+// left the directory (closed lead, finished task) come back with active=false.
+// Without a cursor the full directory is returned and the client replaces its copy.
+
+const DEFAULT_LIMIT = 500
+const MAX_LIMIT = 2000
+
+function parseCursor(cursor: string | null): [number, string, number] | null {
+  if (!cursor) return null
+  const [time, kind, id] = cursor.split(':')
+  if (!/^\d+$/.test(time) || (kind !== 'lead' && kind !== 'task') || !/^\d+$/.test(id)) return null
+  return [Number(time), kind, Number(id)]
+}
+
+export async function GET(request: NextRequest) {
+  try {
+    const { searchParams } = new URL(request.url)
+    const employeeId = request.headers.get('X-Employee-ID') || searchParams.get('employeeId')
+    const limit = Math.min(Math.max(Number(searchParams.get('limit')) || DEFAULT_LIMIT, 1), MAX_LIMIT)
+    const cursorParam = searchParams.get('cursor')
+    const cursor = parseCursor(cursorParam)
+
+    if (!employeeId) {
+      return NextResponse.json({ error: 'Employee ID required' }, { status: 400 })
+    }
+    if (cursorParam && !cursor) {
+      return NextResponse.json({ error: 'Invalid cursor' }, { status: 400 })
+    }
+
+    const [afterTime, afterKind, afterId] = cursor || [0, '', 0]
+    const result = await query(`
+      SELECT * FROM (
+        SELECT 'lead' AS kind, l.id, l.id AS lead_id, NULL::int AS task_id,
+               l.client_name AS name, l.phone,
+               l.status NOT IN ('REJECTED', 'LOST') AS active,
+               (EXTRACT(EPOCH FROM COALESCE(l.updated_at, l.created_at)) * 1000)::bigint AS updated_ms
+        FROM leads l
+        WHERE l.assigned_to = $1
+        UNION ALL
+        SELECT 'task' AS kind, t.id, t.lead_id, t.id AS task_id,
+               COALESCE(NULLIF(t.client_name, ''), l.client_name) AS name, l.phone,
+               t.status NOT IN ('completed', 'cancelled') AS active,
+               (EXTRACT(EPOCH FROM GREATEST(COALESCE(t.updated_at, t.created_at), COALESCE(l.updated_at, l.created_at))) * 1000)::bigint AS updated_ms
+        FROM ai_tasks t
+        JOIN leads l ON t.lead_id = l.id
+        WHERE t.assigned_to_employee_id = $1
+      ) d
+      WHERE ($2::boolean OR (d.updated_ms, d.kind, d.id) > ($3::bigint, $4::text, $5::int))
+        AND ($2::boolean IS FALSE OR d.active)
+      ORDER BY d.updated_ms, d.kind, d.id
+      LIMIT $6
+    `, [employeeId, cursor === null, afterTime, afterKind, afterId, limit + 1])
+
+    const hasMore = result.rows.length > limit
+    const rows = hasMore ? result.rows.slice(0, limit) : result.rows
+    const last = rows[rows.length - 1]
+
+    return NextResponse.json({
+      success: true,
+      reset: cursor === null,
+      entries: rows.map(row => ({
+        kind: row.kind,
+        id: String(row.id),
+        leadId: row.lead_id != null ? String(row.lead_id) : null,
+        taskId: row.task_id != null ? String(row.task_id) : null,
+        name: row.name,
+        phone: row.phone,
+        active: row.active
+      })),
+      cursor: last ? `${last.updated_ms}:${last.kind}:${last.id}` : cursorParam,
+      hasMore
+    })
+
+  } catch (error) {
+    console.error('❌ Call directory API error:', error)
+    return NextResponse.json({ error: 'Internal server error' }, { status: 500 })
+  }
+}
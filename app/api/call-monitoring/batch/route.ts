@@ -0,0 +1,55 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { gunzipSync } from 'zlib';
+import { POST as postCallUpdate } from '../route';
+
+export const runtime = 'nodejs';
+
+const MAX_BATCH_SIZE = 100;
+
+// Batched call status updates from the mobile app.
+// Body is a JSON array (optionally gzip-compressed) of the same objects the
+// single POST /api/call-monitoring accepts. Events are applied in order so that
+// later states of a call land after earlier ones.
+export async function POST(request: NextRequest) {
+  try {
+    let raw = Buffer.from(await request.arrayBuffer());
+    if ((request.headers.get('content-encoding') || '').toLowerCase() === 'gzip') {
+      raw = gunzipSync(raw);
+    }
+
+    const events = JSON.parse(raw.toString('utf-8'));
+    if (!Array.isArray(events)) {
+      return NextResponse.json({ error: 'Expected a JSON array of call events' }, { status: 400 });
+    }
+    if (events.length > MAX_BATCH_SIZE) {
+      return NextResponse.json({ error: `At most ${MAX_BATCH_SIZE} events per batch` }, { status: 413 });
+    }
+
+    console.log(`📦 Mobile call update batch: ${events.length} event(s) from ${request.headers.get('x-employee-id') || 'unknown'}`);
+
+    const singleUrl = new URL('/api/call-monitoring', request.url);
+    const results = [];
+    for (const event of events) {
+      const response = await postCallUpdate(new NextRequest(singleUrl, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(event)
+      }));
+      const data = await response.json().catch(() => ({}));
+      results.push({ status: response.status, callId: data.callId || null });
+    }
+
+    return NextResponse.json({
+      success: results.every(result => result.status < 400),
+      processed: results.length,
+      results
+    });
+
+  } catch (error) {
+    console.error('❌ Mobile call update batch error:', error);
+    return NextResponse.json({
+      error: 'Failed to process call batch',
+      details: error instanceof Error ? error.message : 'Unknown error'
+    }, { status: 400 });
+  }
+}
@@ -356,7 +356,9 @@ export async function POST(request: NextRequest) {
       endTime,
       duration,
       employeeId,
-      mobileContactName // Explicit field for mobile contact name
+      mobileContactName, // Explicit field for mobile contact name
+      source, // 'call_log' for calls backfilled from the phone's call log
+      callId: clientCallId
     } = body;
 
     console.log('📱 Mobile call update request:', { phoneNumber, status, direction, employeeId });
@@ -386,6 +388,33 @@ export async function POST(request: NextRequest) {
       resolvedContactName = leadData.client_name;
     }
 
+    // Backfilled calls may already be here: sent live while the app was
+    // running, or in an earlier backfill batch that was retried
+    if (source === 'call_log' && startTime) {
+      const started = new Date(startTime).getTime();
+      const duplicateResult = await client.query(`
+        SELECT call_id
+        FROM call_transcriptions
+        WHERE call_id = $1
+           OR (phone_number = $2 AND sales_agent = $3 AND created_at BETWEEN $4 AND $5)
+        LIMIT 1
+      `, [
+        clientCallId || '',
+        phoneNumber,
+        agent,
+        new Date(started - 2 * 60 * 1000).toISOString(),
+        new Date(started + 2 * 60 * 1000).toISOString()
+      ]);
+      if (duplicateResult.rows[0]) {
+        return NextResponse.json({
+          success: true,
+          callId: duplicateResult.rows[0].call_id,
+          message: 'Call already recorded',
+          duplicate: true
+        });
+      }
+    }
+
     // For dynamic status updates, check if there's an active call record
     const recentThreshold = new Date(Date.now() - 5 * 60 * 1000).toISOString();
     const existingCallQuery = `
@@ -403,7 +432,7 @@ export async function POST(request: NextRequest) {
 
     let callRecord;
 
-    if (existingCall && (status !== 'ringing')) {
+    if (existingCall && status !== 'ringing' && source !== 'call_log') {
       // Update existing call record
       const updateData: any = {
         updated_at: new Date().toISOString(),
@@ -463,7 +492,9 @@ export async function POST(request: NextRequest) {
     } else {
       // Create new call record
       const timestamp = new Date().getTime();
-      const callId = `mobile_${agent}_${cleanPhoneNumber}_${timestamp}`;
+      const callId = source === 'call_log' && clientCallId
+        ? clientCallId
+        : `mobile_${agent}_${cleanPhoneNumber}_${timestamp}`;
       
       const transcript = status === 'missed' ? 'Missed call - client called but agent did not answer' :
                         status === 'unanswered' ? 'Unanswered call - agent called but client did not answer' :
@@ -544,7 +575,7 @@ export async function POST(request: NextRequest) {
     return NextResponse.json({
       success: true,
       callId: callRecord.call_id,
-      message: existingCall && status !== 'ringing' ? 'Call updated successfully' : 'Call created successfully',
+      message: existingCall && status !== 'ringing' && source !== 'call_log' ? 'Call updated successfully' : 'Call created successfully',
       data: {
         phone_number: phoneNumber,
         resolved_contact_name: resolvedContactName,
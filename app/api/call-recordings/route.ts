@@ -1,9 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { pool } from '@/lib/postgresql-client';
-import { writeFile, mkdir } from 'fs/promises';
-import { join } from 'path';
-import { randomUUID } from 'crypto';
-import { existsSync } from 'fs';
+import { writeFile } from 'fs/promises';
+import { storeAndroidCallRecording, RecordingMetadataError } from '@/lib/call-recording-store';
 
 // Direct PostgreSQL connection
 // Using centralized PostgreSQL client;
@@ -51,117 +49,29 @@ export async function POST(request: NextRequest) {
       );
     }
     
-    // Create unique filename
-    const fileExtension = audioFile.name.split('.').pop() || 'mp3';
-    const uniqueId = randomUUID();
-    const fileName = `android_${employeeId}_${Date.now()}.${fileExtension}`;
-    
-    // Create upload directory path
-    const uploadDir = join(process.cwd(), 'uploads', 'call-recordings');
-    
-    // Ensure directory exists
-    if (!existsSync(uploadDir)) {
-      await mkdir(uploadDir, { recursive: true });
-    }
-    
-    const filePath = join(uploadDir, fileName);
-    
-    // Write file
-    const bytes = await audioFile.arrayBuffer();
-    const buffer = Buffer.from(bytes);
-    await writeFile(filePath, buffer);
-    
-    console.log('💾 File saved to:', filePath);
-    
-    // Create accessible URL for the recording
-    // Temporarily hardcoded to fix the localhost issue
-    const baseUrl = 'https://portal.ooak.photography';
-    const accessibleRecordingUrl = `${baseUrl}/api/call-recordings/file/${fileName}`;
-    
-    // Store in existing call_transcriptions table (matching existing structure)
-    const client = await pool.connect();
-    
+    let stored;
     try {
-      const callRecordingData = {
-        id: uniqueId,
-        call_id: uniqueId, // Use the same ID
-        client_name: metadata.contactName || 'Unknown Contact',
-        sales_agent: `Employee ${employeeId}`,
-        phone_number: metadata.phoneNumber || 'unknown',
-        duration: metadata.callEndTime && metadata.callStartTime ? 
-          Math.round((metadata.callEndTime - metadata.callStartTime) / 1000) : 0,
-        recording_url: accessibleRecordingUrl, // ✅ Accessible URL for transcription
-        transcript: 'Processing...',
-        confidence_score: 0.0,
-        language: 'en',
-        detected_language: 'unknown',
-        status: 'processing',
-        notes: `Android upload from device ${metadata.deviceId}. Direction: ${metadata.direction}`,
-        call_direction: metadata.direction || 'unknown',
-        call_status: 'processing',
-        created_at: metadata.callStartTime ? new Date(metadata.callStartTime).toISOString() : new Date().toISOString(),
-        updated_at: new Date().toISOString()
-      };
-      
-      const insertQuery = `
-        INSERT INTO call_transcriptions 
-        (id, call_id, client_name, sales_agent, phone_number, duration, recording_url, 
-         transcript, confidence_score, language, detected_language, status, notes, 
-         call_direction, call_status, created_at, updated_at)
-        VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16, $17)
-        RETURNING *
-      `;
-      
-      const result = await client.query(insertQuery, [
-        callRecordingData.id,
-        callRecordingData.call_id,
-        callRecordingData.client_name,
-        callRecordingData.sales_agent,
-        callRecordingData.phone_number,
-        callRecordingData.duration,
-        callRecordingData.recording_url,
-        callRecordingData.transcript,
-        callRecordingData.confidence_score,
-        callRecordingData.language,
-        callRecordingData.detected_language,
-        callRecordingData.status,
-        callRecordingData.notes,
-        callRecordingData.call_direction,
-        callRecordingData.call_status,
-        callRecordingData.created_at,
-        callRecordingData.updated_at
-      ]);
-      
-      const data = result.rows[0];
-    
-      console.log('✅ Call recording saved successfully in PostgreSQL:', data.id);
-      
-      // Trigger background processing for Android uploads too
-      processAndroidCallInBackground(uniqueId, filePath, accessibleRecordingUrl, metadata).catch(error => {
-        console.error('Android background processing error:', error);
-      });
-      
-      return NextResponse.json({
-        success: true,
-        recordingId: data.id,
-        fileName: fileName,
-        message: 'Call recording uploaded successfully from Android device',
-        metadata: {
-          source: "Direct PostgreSQL",
-          timestamp: new Date().toISOString()
-        }
+      stored = await storeAndroidCallRecording(employeeId, audioFile.name, metadata, async filePath => {
+        await writeFile(filePath, Buffer.from(await audioFile.arrayBuffer()));
       });
-      
-    } catch (dbError: any) {
-      console.error('❌ Database error:', dbError);
-      return NextResponse.json(
-        { error: 'Failed to save recording metadata: ' + dbError.message },
-        { status: 500 }
-      );
-    } finally {
-      client.release();
+    } catch (storeError) {
+      if (storeError instanceof RecordingMetadataError) {
+        return NextResponse.json({ error: storeError.message }, { status: 500 });
+      }
+      throw storeError;
     }
     
+    return NextResponse.json({
+      success: true,
+      recordingId: stored.recordingId,
+      fileName: stored.fileName,
+      message: 'Call recording uploaded successfully from Android device',
+      metadata: {
+        source: "Direct PostgreSQL",
+        timestamp: new Date().toISOString()
+      }
+    });
+    
   } catch (error) {
     console.error('❌ Call recording upload error:', error);
     return NextResponse.json(
@@ -376,84 +286,3 @@ export async function GET(request: NextRequest) {
     }
   }
 }
-
-// Background processing for Android uploads - PostgreSQL Migration
-async function processAndroidCallInBackground(callId: string, audioFilePath: string, recordingUrl: string, metadata: any) {
-  let client
-  try {
-    console.log(`🔄 Starting Android call processing for ${callId}`)
-    
-    client = await pool.connect()
-    
-    // Update status to transcribing
-    await client.query(
-      'UPDATE call_transcriptions SET status = $1, updated_at = NOW() WHERE id = $2',
-      ['transcribing', callId]
-    )
-
-    // Import the services dynamically
-    const { LocalCallAnalyticsTranslationService } = await import('@/services/local-call-analytics-service-translation');
-    const analyticsService = new LocalCallAnalyticsTranslationService();
-
-    console.log(`🤖 Processing Android call recording with Whisper...`);
-
-    // Process the call with Whisper
-    const result = await analyticsService.processCallRecording(
-      audioFilePath,
-      metadata.contactName || 'Unknown Contact',
-      0,
-      'large-v3'
-    );
-
-    const translationResult = result.translationResult;
-    const rawTranscript = translationResult.english_translation || '';
-
-    console.log(`📝 Android transcript generated: ${rawTranscript.substring(0, 100)}...`);
-
-    // Update call record with results
-    await client.query(`
-      UPDATE call_transcriptions 
-      SET transcript = $1,
-          duration = $2,
-          confidence_score = $3,
-          detected_language = $4,
-          status = $5,
-          updated_at = NOW()
-      WHERE id = $6
-    `, [
-      rawTranscript,
-      translationResult.duration || 0,
-      translationResult.language_confidence || 0.0,
-      translationResult.detected_language || 'unknown',
-      'completed',
-      callId
-    ])
-
-    console.log(`✅ Android call transcription completed for ${callId}`);
-
-  } catch (error) {
-    console.error(`❌ Android processing failed for call ${callId}:`, error);
-    
-    if (client) {
-      try {
-        await client.query(`
-          UPDATE call_transcriptions 
-          SET status = $1, 
-              transcript = $2,
-              updated_at = NOW()
-          WHERE id = $3
-        `, [
-          'error',
-          `Processing failed: ${error instanceof Error ? error.message : 'Unknown error'}`,
-          callId
-        ])
-      } catch (updateError) {
-        console.error('Failed to update error status:', updateError)
-      }
-    }
-  } finally {
-    if (client) {
-      client.release()
-    }
-  }
-} 
\ No newline at end of file
@@ -0,0 +1,121 @@
+import { NextRequest, NextResponse } from 'next/server';
+import {
+  appendChunk,
+  discardUploadData,
+  getUploadOffset,
+  getUploadSession,
+  placeAssembledUpload,
+  saveUploadSession,
+  UploadSession,
+  UploadTooLargeError
+} from '@/lib/call-recording-uploads';
+import { storeAndroidCallRecording } from '@/lib/call-recording-store';
+
+export const runtime = 'nodejs';
+
+function offsetHeaders(offset: number, session: UploadSession) {
+  const headers: Record<string, string> = {
+    'Upload-Offset': String(offset),
+    'Upload-Length': String(session.length),
+    'Cache-Control': 'no-store'
+  };
+  if (session.recordingId) {
+    headers['Upload-Recording-Id'] = session.recordingId;
+  }
+  return headers;
+}
+
+// Where to continue: Upload-Offset is the number of bytes the server has.
+// A finished upload also reports its Upload-Recording-Id, so a client that
+// lost the final PATCH response does not upload the recording again.
+export async function HEAD(
+  request: NextRequest,
+  { params }: { params: Promise<any> }
+) {
+  const { uploadId } = await params;
+  const session = await getUploadSession(uploadId);
+  if (!session) {
+    return new NextResponse(null, { status: 404 });
+  }
+  const offset = session.recordingId ? session.length : await getUploadOffset(uploadId);
+  return new NextResponse(null, { status: 200, headers: offsetHeaders(offset, session) });
+}
+
+// Append bytes at Upload-Offset. 409 with the real offset if the client is
+// out of step, 413 if the chunk runs past Upload-Length; the last chunk hands
+// the assembled file to the recording store.
+export async function PATCH(
+  request: NextRequest,
+  { params }: { params: Promise<any> }
+) {
+  try {
+    const { uploadId } = await params;
+    const session = await getUploadSession(uploadId);
+    if (!session) {
+      return NextResponse.json({ error: 'Unknown or expired upload' }, { status: 404 });
+    }
+    if (session.recordingId) {
+      return NextResponse.json({ success: true, ...session.result },
+        { headers: offsetHeaders(session.length, session) });
+    }
+
+    const offset = Number(request.headers.get('upload-offset'));
+    if (!Number.isInteger(offset) || offset < 0) {
+      return NextResponse.json({ error: 'Upload-Offset header required' }, { status: 400 });
+    }
+
+    let newOffset: number | null;
+    try {
+      const declaredLength = Number(request.headers.get('content-length')) || undefined;
+      newOffset = await appendChunk(session, offset, request.body, declaredLength);
+    } catch (error) {
+      if (error instanceof UploadTooLargeError) {
+        return NextResponse.json({ error: error.message, offset: error.offset },
+          { status: 413, headers: offsetHeaders(error.offset, session) });
+      }
+      throw error;
+    }
+    if (newOffset === null) {
+      const current = await getUploadOffset(uploadId);
+      return NextResponse.json({ error: 'Offset mismatch', offset: current },
+        { status: 409, headers: offsetHeaders(current, session) });
+    }
+
+    if (newOffset < session.length) {
+      return new NextResponse(null, { status: 204, headers: offsetHeaders(newOffset, session) });
+    }
+
+    // Complete - store it like a one-shot upload, but from the file on disk
+    console.log(`✅ Upload ${uploadId} complete (${session.length} bytes), processing recording`);
+    let stored;
+    try {
+      stored = await storeAndroidCallRecording(session.employeeId, session.fileName, session.metadata,
+        filePath => placeAssembledUpload(uploadId, filePath));
+    } catch (error) {
+      // Keep the bytes; the client retries the final PATCH with an empty body
+      console.error(`❌ Upload ${uploadId} could not be stored:`, error);
+      return NextResponse.json({ error: error instanceof Error ? error.message : 'Failed to store recording' },
+        { status: 500, headers: offsetHeaders(newOffset, session) });
+    }
+
+    const result = {
+      success: true,
+      recordingId: stored.recordingId,
+      fileName: stored.fileName,
+      message: 'Call recording uploaded successfully from Android device'
+    };
+    session.recordingId = stored.recordingId;
+    session.result = result;
+    await saveUploadSession(session);
+    await discardUploadData(uploadId);
+
+    return NextResponse.json(result, { headers: offsetHeaders(session.length, session) });
+
+  } catch (error) {
+    console.error('❌ Upload chunk error:', error);
+    return NextResponse.json({
+      error: 'Failed to store upload chunk',
+      details: error instanceof Error ? error.message : 'Unknown error'
+    }, { status: 500 });
+  }
+}
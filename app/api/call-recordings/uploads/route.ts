@@ -0,0 +1,47 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { createUploadSession, DEFAULT_CHUNK_SIZE, MAX_UPLOAD_LENGTH } from '@/lib/call-recording-uploads';
+
+export const runtime = 'nodejs';
+
+// Start a resumable call recording upload.
+// Body: { fileName, length, metadata } where metadata is what the one-shot
+// POST /api/call-recordings expects. The client then PATCHes the bytes to
+// /api/call-recordings/uploads/{uploadId}.
+export async function POST(request: NextRequest) {
+  try {
+    const body = await request.json();
+    const metadata = body.metadata || {};
+    const employeeId = request.headers.get('X-Employee-ID') || metadata.employeeId;
+    const length = Number(body.length);
+
+    if (!employeeId) {
+      return NextResponse.json({ error: 'Employee ID required' }, { status: 401 });
+    }
+    if (!body.fileName || !Number.isInteger(length) || length <= 0) {
+      return NextResponse.json({ error: 'fileName and a positive length are required' }, { status: 400 });
+    }
+    if (length > MAX_UPLOAD_LENGTH) {
+      return NextResponse.json({ error: `Recordings are limited to ${MAX_UPLOAD_LENGTH} bytes` }, { status: 413 });
+    }
+
+    const session = await createUploadSession(employeeId, String(body.fileName), length, metadata);
+    console.log(`📤 Upload session ${session.uploadId} for ${session.fileName} (${length} bytes) from employee ${employeeId}`);
+
+    return NextResponse.json({
+      success: true,
+      uploadId: session.uploadId,
+      offset: 0,
+      chunkSize: DEFAULT_CHUNK_SIZE
+    }, {
+      status: 201,
+      headers: { 'Location': `/api/call-recordings/uploads/${session.uploadId}` }
+    });
+
+  } catch (error) {
+    console.error('❌ Upload session error:', error);
+    return NextResponse.json({
+      error: 'Failed to start upload',
+      details: error instanceof Error ? error.message : 'Unknown error'
+    }, { status: 500 });
+  }
+}
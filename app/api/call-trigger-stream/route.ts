@@ -0,0 +1,115 @@
+import { NextRequest } from 'next/server'
+import { query } from '@/lib/postgresql-client'
+import { subscribeToCallTriggers } from '@/lib/call-trigger-channel'
+
+export const runtime = 'nodejs'
+export const dynamic = 'force-dynamic'
+
+// The app treats 75 s without any bytes as a dead connection
+const HEARTBEAT_INTERVAL_MS = 25000
+// last_seen only feeds "device online" views; minutes are precise enough
+const LAST_SEEN_INTERVAL_MS = 5 * 60 * 1000
+
+// Server-Sent Events stream of call triggers for one mobile device.
+// Replaces the device polling /api/check-call-triggers and /api/poll-call-triggers.
+export async function GET(request: NextRequest) {
+  const { searchParams } = new URL(request.url)
+  const employeeId = searchParams.get('employeeId')
+  const deviceId = searchParams.get('deviceId')
+
+  if (!employeeId || !deviceId) {
+    return new Response(JSON.stringify({ error: 'Employee ID and Device ID are required' }), {
+      status: 400,
+      headers: { 'Content-Type': 'application/json' }
+    })
+  }
+
+  const encoder = new TextEncoder()
+  let closed = false
+  let heartbeat: NodeJS.Timeout | null = null
+  let unsubscribe: (() => void) | null = null
+
+  const cleanup = () => {
+    if (closed) return
+    closed = true
+    if (heartbeat) clearInterval(heartbeat)
+    if (unsubscribe) unsubscribe()
+    console.log(`📡 [CALL TRIGGER STREAM] Closed for ${employeeId} (${deviceId})`)
+  }
+
+  const stream = new ReadableStream({
+    start: (controller) => {
+      const send = (event: string, data: any) => {
+        if (closed) return
+        try {
+          controller.enqueue(encoder.encode(`event: ${event}\ndata: ${JSON.stringify(data)}\n\n`))
+        } catch (error) {
+          cleanup()
+        }
+      }
+
+      let lastSeenAt = 0
+      const touchDevice = async () => {
+        lastSeenAt = Date.now()
+        try {
+          await query(`
+            UPDATE employee_devices
+            SET last_seen = NOW()
+            WHERE employee_id = $1 AND device_id = $2
+          `, [employeeId, deviceId])
+        } catch (error) {
+          console.error('❌ [CALL TRIGGER STREAM] last_seen update failed:', error)
+        }
+      }
+
+      // Triggers created before the connection; once it is open, new ones
+      // arrive through the subscription, from whichever worker created them.
+      // Looked up again if this worker's LISTEN connection had to reconnect.
+      // The device ignores ids it has already seen.
+      const sendPendingTriggers = async () => {
+        try {
+          const result = await query(`
+            SELECT *
+            FROM call_triggers
+            WHERE employee_id = $1
+              AND status = 'pending'
+              AND triggered_at >= NOW() - INTERVAL '5 minutes'
+            ORDER BY triggered_at ASC
+            LIMIT 5
+          `, [employeeId])
+
+          result.rows.forEach((trigger: any) => send('call_trigger', trigger))
+        } catch (error) {
+          console.error('❌ [CALL TRIGGER STREAM] Pending trigger lookup failed:', error)
+        }
+      }
+
+      console.log(`📡 [CALL TRIGGER STREAM] Opened for ${employeeId} (${deviceId})`)
+      send('connected', { employeeId, timestamp: new Date().toISOString() })
+      unsubscribe = subscribeToCallTriggers(employeeId,
+        trigger => send('call_trigger', trigger),
+        () => sendPendingTriggers())
+      touchDevice()
+      sendPendingTriggers()
+
+      heartbeat = setInterval(() => {
+        send('heartbeat', { timestamp: new Date().toISOString() })
+        if (Date.now() - lastSeenAt >= LAST_SEEN_INTERVAL_MS) {
+          touchDevice()
+        }
+      }, HEARTBEAT_INTERVAL_MS)
+
+      request.signal.addEventListener('abort', cleanup)
+    },
+    cancel: cleanup
+  })
+
+  return new Response(stream, {
+    headers: {
+      'Content-Type': 'text/event-stream',
+      'Cache-Control': 'no-cache, no-transform',
+      'Connection': 'keep-alive',
+      'X-Accel-Buffering': 'no'
+    }
+  })
+}
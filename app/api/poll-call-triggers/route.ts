@@ -17,7 +17,7 @@ export async function GET(request: NextRequest) {
     }
 
     // Update device last seen and get pending triggers
-    await transaction(async (client) => {
+    return await transaction(async (client) => {
       // Update device last seen
       await client.query(`
         UPDATE employee_devices
@@ -2,6 +2,7 @@ import { NextRequest, NextResponse } from 'next/server'
 import { pool } from '@/lib/postgresql-client'
 import { exec } from 'child_process'
 import { promisify } from 'util'
+import { publishCallTrigger } from '@/lib/call-trigger-channel'
 
 const execAsync = promisify(exec)
 
@@ -190,9 +191,20 @@ export async function POST(request: NextRequest) {
           UPDATE call_triggers 
           SET status = $1 
           WHERE employee_id = $2 AND phone_number = $3 AND status = $4
+          RETURNING *
         `
         
-        await client.query(fallbackUpdateQuery, ['pending', employee.employee_id, phoneNumber, 'initiated'])
+        const pendingResult = await client.query(fallbackUpdateQuery, ['pending', employee.employee_id, phoneNumber, 'initiated'])
+
+        // Push straight to the device if it holds an open trigger stream on any worker
+        for (const trigger of pendingResult.rows) {
+          try {
+            await publishCallTrigger(employee.employee_id, trigger)
+            console.log(`📡 Call trigger ${trigger.id} published to the device streams`)
+          } catch (publishError) {
+            console.error(`❌ Could not publish call trigger ${trigger.id}:`, publishError)
+          }
+        }
 
         const employeeName = employee.name || `${employee.first_name} ${employee.last_name}`.trim()
         return NextResponse.json({
@@ -202,7 +214,7 @@ export async function POST(request: NextRequest) {
           clientName: clientName,
           employeeId: employee.employee_id,
           method: 'app_polling',
-          note: 'Call will be initiated when app polls for triggers',
+          note: 'Call will be initiated when the app receives the trigger',
           metadata: {
             source: "Direct PostgreSQL",
             timestamp: new Date().toISOString()
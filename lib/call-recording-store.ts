@@ -0,0 +1,206 @@
+import { pool } from '@/lib/postgresql-client';
+import { mkdir } from 'fs/promises';
+import { join } from 'path';
+import { randomUUID } from 'crypto';
+import { existsSync } from 'fs';
+
+// Storing an Android call recording: the file goes to uploads/call-recordings,
+// a row to call_transcriptions, and transcription starts in the background.
+// Shared by the one-shot POST /api/call-recordings and the resumable upload,
+// which hands over its assembled file without reading it into memory.
+
+export interface StoredRecording {
+  recordingId: string;
+  fileName: string;
+}
+
+// The file is in place but its call_transcriptions row could not be written
+export class RecordingMetadataError extends Error {}
+
+/**
+ * @param place writes the recording to the path it is given
+ */
+export async function storeAndroidCallRecording(
+  employeeId: string,
+  originalName: string,
+  metadata: any,
+  place: (filePath: string) => Promise<void>
+): Promise<StoredRecording> {
+  // Create unique filename
+  const fileExtension = originalName.split('.').pop() || 'mp3';
+  const uniqueId = randomUUID();
+  const fileName = `android_${employeeId}_${Date.now()}.${fileExtension}`;
+  
+  // Create upload directory path
+  const uploadDir = join(process.cwd(), 'uploads', 'call-recordings');
+  
+  // Ensure directory exists
+  if (!existsSync(uploadDir)) {
+    await mkdir(uploadDir, { recursive: true });
+  }
+  
+  const filePath = join(uploadDir, fileName);
+  
+  // Write file
+  await place(filePath);
+  
+  console.log('💾 File saved to:', filePath);
+  
+  // Create accessible URL for the recording
+  // Temporarily hardcoded to fix the localhost issue
+  const baseUrl = 'https://portal.ooak.photography';
+  const accessibleRecordingUrl = `${baseUrl}/api/call-recordings/file/${fileName}`;
+  
+  // Store in existing call_transcriptions table (matching existing structure)
+  const client = await pool.connect();
+  
+  try {
+    const callRecordingData = {
+      id: uniqueId,
+      call_id: uniqueId, // Use the same ID
+      client_name: metadata.contactName || 'Unknown Contact',
+      sales_agent: `Employee ${employeeId}`,
+      phone_number: metadata.phoneNumber || 'unknown',
+      duration: metadata.callEndTime && metadata.callStartTime ? 
+        Math.round((metadata.callEndTime - metadata.callStartTime) / 1000) : 0,
+      recording_url: accessibleRecordingUrl, // ✅ Accessible URL for transcription
+      transcript: 'Processing...',
+      confidence_score: 0.0,
+      language: 'en',
+      detected_language: 'unknown',
+      status: 'processing',
+      notes: `Android upload from device ${metadata.deviceId}. Direction: ${metadata.direction}`,
+      call_direction: metadata.direction || 'unknown',
+      call_status: 'processing',
+      created_at: metadata.callStartTime ? new Date(metadata.callStartTime).toISOString() : new Date().toISOString(),
+      updated_at: new Date().toISOString()
+    };
+    
+    const insertQuery = `
+      INSERT INTO call_transcriptions 
+      (id, call_id, client_name, sales_agent, phone_number, duration, recording_url, 
+       transcript, confidence_score, language, detected_language, status, notes, 
+       call_direction, call_status, created_at, updated_at)
+      VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16, $17)
+      RETURNING *
+    `;
+    
+    const result = await client.query(insertQuery, [
+      callRecordingData.id,
+      callRecordingData.call_id,
+      callRecordingData.client_name,
+      callRecordingData.sales_agent,
+      callRecordingData.phone_number,
+      callRecordingData.duration,
+      callRecordingData.recording_url,
+      callRecordingData.transcript,
+      callRecordingData.confidence_score,
+      callRecordingData.language,
+      callRecordingData.detected_language,
+      callRecordingData.status,
+      callRecordingData.notes,
+      callRecordingData.call_direction,
+      callRecordingData.call_status,
+      callRecordingData.created_at,
+      callRecordingData.updated_at
+    ]);
+    
+    const data = result.rows[0];
+  
+    console.log('✅ Call recording saved successfully in PostgreSQL:', data.id);
+    
+    // Trigger background processing for Android uploads too
+    processAndroidCallInBackground(uniqueId, filePath, accessibleRecordingUrl, metadata).catch(error => {
+      console.error('Android background processing error:', error);
+    });
+    
+    return { recordingId: data.id, fileName };
+    
+  } catch (dbError: any) {
+    console.error('❌ Database error:', dbError);
+    throw new RecordingMetadataError('Failed to save recording metadata: ' + dbError.message);
+  } finally {
+    client.release();
+  }
+}
+
+// Background processing for Android uploads - PostgreSQL Migration
+async function processAndroidCallInBackground(callId: string, audioFilePath: string, recordingUrl: string, metadata: any) {
+  let client
+  try {
+    console.log(`🔄 Starting Android call processing for ${callId}`)
+    
+    client = await pool.connect()
+    
+    // Update status to transcribing
+    await client.query(
+      'UPDATE call_transcriptions SET status = $1, updated_at = NOW() WHERE id = $2',
+      ['transcribing', callId]
+    )
+
+    // Import the services dynamically
+    const { LocalCallAnalyticsTranslationService } = await import('@/services/local-call-analytics-service-translation');
+    const analyticsService = new LocalCallAnalyticsTranslationService();
+
+    console.log(`🤖 Processing Android call recording with Whisper...`);
+
+    // Process the call with Whisper
+    const result = await analyticsService.processCallRecording(
+      audioFilePath,
+      metadata.contactName || 'Unknown Contact',
+      0,
+      'large-v3'
+    );
+
+    const translationResult = result.translationResult;
+    const rawTranscript = translationResult.english_translation || '';
+
+    console.log(`📝 Android transcript generated: ${rawTranscript.substring(0, 100)}...`);
+
+    // Update call record with results
+    await client.query(`
+      UPDATE call_transcriptions 
+      SET transcript = $1,
+          duration = $2,
+          confidence_score = $3,
+          detected_language = $4,
+          status = $5,
+          updated_at = NOW()
+      WHERE id = $6
+    `, [
+      rawTranscript,
+      translationResult.duration || 0,
+      translationResult.language_confidence || 0.0,
+      translationResult.detected_language || 'unknown',
+      'completed',
+      callId
+    ])
+
+    console.log(`✅ Android call transcription completed for ${callId}`);
+
+  } catch (error) {
+    console.error(`❌ Android processing failed for call ${callId}:`, error);
+    
+    if (client) {
+      try {
+        await client.query(`
+          UPDATE call_transcriptions 
+          SET status = $1, 
+              transcript = $2,
+              updated_at = NOW()
+          WHERE id = $3
+        `, [
+          'error',
+          `Processing failed: ${error instanceof Error ? error.message : 'Unknown error'}`,
+          callId
+        ])
+      } catch (updateError) {
+        console.error('Failed to update error status:', updateError)
+      }
+    }
+  } finally {
+    if (client) {
+      client.release()
+    }
+  }
+} 
\ No newline at end of file
@@ -0,0 +1,229 @@
+import { randomUUID } from 'crypto';
+import { existsSync } from 'fs';
+import { copyFile, link, mkdir, open, readFile, readdir, rm, stat, utimes, writeFile } from 'fs/promises';
+import { join } from 'path';
+
+// Resumable (tus-style) upload sessions for Android call recordings.
+//
+// A session is created with the final length and the call metadata, the client
+// appends bytes with PATCH at the offset the server reports, and a HEAD tells
+// it where to continue after a dropped connection. Sessions live on disk next
+// to the finished recordings so a server restart does not lose progress.
+
+export const DEFAULT_CHUNK_SIZE = 512 * 1024;
+export const MAX_UPLOAD_LENGTH = 200 * 1024 * 1024;
+const SESSION_TTL_MS = 24 * 60 * 60 * 1000;
+
+export interface UploadSession {
+  uploadId: string;
+  employeeId: string;
+  fileName: string;
+  length: number;
+  metadata: Record<string, unknown>;
+  createdAt: string;
+  // Set once the assembled file has been handed to the recording pipeline
+  recordingId?: string;
+  result?: Record<string, unknown>;
+}
+
+const sessionDir = () => join(process.cwd(), 'uploads', 'call-recordings', 'partial');
+const dataPath = (uploadId: string) => join(sessionDir(), `${uploadId}.part`);
+const infoPath = (uploadId: string) => join(sessionDir(), `${uploadId}.json`);
+const lockPath = (uploadId: string) => join(sessionDir(), `${uploadId}.lock`);
+
+// A PATCH holds the upload's lock file while it writes, so two connections for
+// one upload cannot interleave even when they land on different cluster
+// workers. A lock left by a crashed worker is taken over once it goes stale;
+// a live PATCH keeps touching its lock well inside that window.
+const LOCK_STALE_MS = 2 * 60 * 1000;
+const LOCK_TOUCH_MS = 30 * 1000;
+
+// A chunk would take the upload past the length it was created with
+export class UploadTooLargeError extends Error {
+  constructor(readonly offset: number) {
+    super('Chunk runs past the declared upload length');
+  }
+}
+
+const isValidId = (uploadId: string) => /^[0-9a-f-]{36}$/.test(uploadId);
+
+export async function createUploadSession(
+  employeeId: string,
+  fileName: string,
+  length: number,
+  metadata: Record<string, unknown>
+): Promise<UploadSession> {
+  if (!existsSync(sessionDir())) {
+    await mkdir(sessionDir(), { recursive: true });
+  }
+  await removeExpiredSessions();
+
+  const session: UploadSession = {
+    uploadId: randomUUID(),
+    employeeId,
+    fileName,
+    length,
+    metadata,
+    createdAt: new Date().toISOString()
+  };
+  await writeFile(dataPath(session.uploadId), Buffer.alloc(0));
+  await writeFile(infoPath(session.uploadId), JSON.stringify(session));
+  return session;
+}
+
+export async function getUploadSession(uploadId: string): Promise<UploadSession | null> {
+  if (!isValidId(uploadId) || !existsSync(infoPath(uploadId))) {
+    return null;
+  }
+  return JSON.parse(await readFile(infoPath(uploadId), 'utf-8'));
+}
+
+export async function getUploadOffset(uploadId: string): Promise<number> {
+  const info = await stat(dataPath(uploadId));
+  return info.size;
+}
+
+export async function saveUploadSession(session: UploadSession) {
+  await writeFile(infoPath(session.uploadId), JSON.stringify(session));
+}
+
+/**
+ * Append a request body at `offset`. Bytes are written as they arrive, so a
+ * connection that drops half-way still moves the offset forward.
+ *
+ * @param declaredLength the request's Content-Length, if it sent one
+ * @returns the new offset, or null if `offset` does not match the stored size
+ * @throws UploadTooLargeError if the body runs past the session length; the
+ *         bytes up to that point are kept
+ */
+export async function appendChunk(
+  session: UploadSession,
+  offset: number,
+  body: ReadableStream<Uint8Array> | null,
+  declaredLength?: number
+): Promise<number | null> {
+  if (!(await acquireLock(session.uploadId))) {
+    return null;
+  }
+
+  let file;
+  try {
+    file = await open(dataPath(session.uploadId), 'a');
+  } catch (error) {
+    await releaseLock(session.uploadId);
+    throw error;
+  }
+  try {
+    let current = (await file.stat()).size;
+    if (current !== offset) {
+      return null;
+    }
+    if (!body) {
+      return current;
+    }
+    if (declaredLength && current + declaredLength > session.length) {
+      throw new UploadTooLargeError(current);
+    }
+
+    const reader = body.getReader();
+    let touchedAt = Date.now();
+    try {
+      while (true) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        if (current + value.length > session.length) {
+          throw new UploadTooLargeError(current);
+        }
+        await file.write(value);
+        current += value.length;
+        if (Date.now() - touchedAt > LOCK_TOUCH_MS) {
+          touchedAt = Date.now();
+          await touchLock(session.uploadId);
+        }
+      }
+    } catch (error) {
+      if (error instanceof UploadTooLargeError) {
+        await reader.cancel().catch(() => {});
+        throw error;
+      }
+      console.warn(`⚠️ Upload ${session.uploadId} interrupted at ${current}/${session.length}:`,
+        error instanceof Error ? error.message : error);
+    }
+    return current;
+  } finally {
+    await file.close();
+    await releaseLock(session.uploadId);
+  }
+}
+
+// Create the lock file exclusively; false if another PATCH holds it
+async function acquireLock(uploadId: string): Promise<boolean> {
+  for (let attempt = 0; attempt < 2; attempt++) {
+    try {
+      const handle = await open(lockPath(uploadId), 'wx');
+      await handle.writeFile(String(process.pid));
+      await handle.close();
+      return true;
+    } catch (error) {
+      if ((error as NodeJS.ErrnoException).code !== 'EEXIST') {
+        throw error;
+      }
+    }
+    try {
+      const info = await stat(lockPath(uploadId));
+      if (Date.now() - info.mtimeMs < LOCK_STALE_MS) {
+        return false;
+      }
+      console.warn(`⚠️ Taking over stale lock on upload ${uploadId}`);
+      await rm(lockPath(uploadId), { force: true });
+    } catch {
+      // Released between the open and the stat - try again
+    }
+  }
+  return false;
+}
+
+async function touchLock(uploadId: string) {
+  const now = new Date();
+  await utimes(lockPath(uploadId), now, now).catch(() => {});
+}
+
+async function releaseLock(uploadId: string) {
+  await rm(lockPath(uploadId), { force: true });
+}
+
+/**
+ * Put the assembled file at `destination` without reading it into memory: a
+ * hard link where the filesystem allows one, a copy otherwise. The partial
+ * file stays until {@link discardUploadData}, so a failed hand-off can retry.
+ */
+export async function placeAssembledUpload(uploadId: string, destination: string) {
+  try {
+    await link(dataPath(uploadId), destination);
+  } catch {
+    await copyFile(dataPath(uploadId), destination);
+  }
+}
+
+export async function discardUploadData(uploadId: string) {
+  await rm(dataPath(uploadId), { force: true });
+}
+
+async function removeExpiredSessions() {
+  const now = Date.now();
+  for (const name of await readdir(sessionDir())) {
+    if (!name.endsWith('.json')) continue;
+    const uploadId = name.slice(0, -'.json'.length);
+    try {
+      const session: UploadSession = JSON.parse(await readFile(infoPath(uploadId), 'utf-8'));
+      if (now - new Date(session.createdAt).getTime() > SESSION_TTL_MS) {
+        await rm(dataPath(uploadId), { force: true });
+        await rm(infoPath(uploadId), { force: true });
+        await rm(lockPath(uploadId), { force: true });
+        console.log(`🧹 Removed expired upload session ${uploadId}`);
+      }
+    } catch {
+      // Half-written session file - leave it for the next sweep
+    }
+  }
+}
@@ -0,0 +1,155 @@
+import type { PoolClient } from 'pg'
+import { pool, query } from '@/lib/postgresql-client'
+
+// Fan-out of call triggers to the mobile devices holding an open
+// /api/call-trigger-stream connection. Triggers are still stored in
+// call_triggers first; this only removes the wait for the next device poll.
+//
+// The app runs as several cluster workers, and the request that creates a
+// trigger rarely lands on the worker holding the device's stream. Triggers
+// therefore go out through Postgres NOTIFY, and every worker with open
+// streams LISTENs on one dedicated connection and hands them to its own.
+
+export type CallTriggerListener = (trigger: any) => void
+
+interface Subscriber {
+  onTrigger: CallTriggerListener
+  // Notifications may have been missed while the LISTEN connection was down
+  onResync?: () => void
+}
+
+const CHANNEL = 'call_triggers'
+const RECONNECT_DELAY_MS = 5000
+// NOTIFY payloads are limited to 8000 bytes; larger triggers go by id
+const MAX_PAYLOAD_BYTES = 7500
+
+const subscribers = new Map<string, Set<Subscriber>>()
+
+let listenClient: PoolClient | null = null
+let connecting = false
+let reconnectTimer: NodeJS.Timeout | null = null
+
+export function subscribeToCallTriggers(
+  employeeId: string,
+  onTrigger: CallTriggerListener,
+  onResync?: () => void
+): () => void {
+  let employeeSubscribers = subscribers.get(employeeId)
+  if (!employeeSubscribers) {
+    employeeSubscribers = new Set()
+    subscribers.set(employeeId, employeeSubscribers)
+  }
+  const subscriber: Subscriber = { onTrigger, onResync }
+  employeeSubscribers.add(subscriber)
+  listen()
+
+  return () => {
+    const current = subscribers.get(employeeId)
+    if (!current) return
+    current.delete(subscriber)
+    if (current.size === 0) {
+      subscribers.delete(employeeId)
+    }
+  }
+}
+
+// Tell every worker about a new pending trigger; the ones holding a stream
+// for this employee push it to the device
+export async function publishCallTrigger(employeeId: string, trigger: any): Promise<void> {
+  let payload = JSON.stringify({ employeeId, trigger })
+  if (Buffer.byteLength(payload) > MAX_PAYLOAD_BYTES) {
+    payload = JSON.stringify({ employeeId, triggerId: trigger.id })
+  }
+  await query('SELECT pg_notify($1, $2)', [CHANNEL, payload])
+}
+
+export function getCallTriggerStreamStats() {
+  return {
+    employees: subscribers.size,
+    connections: Array.from(subscribers.values()).reduce((sum, set) => sum + set.size, 0),
+    listening: listenClient !== null
+  }
+}
+
+// One LISTEN connection per worker, opened with its first stream and kept
+// for the life of the worker
+async function listen() {
+  if (listenClient || connecting) return
+  connecting = true
+  let client: PoolClient | null = null
+  try {
+    client = await pool.connect()
+    client.on('notification', message => {
+      if (message.channel === CHANNEL && message.payload) {
+        deliver(message.payload)
+      }
+    })
+    client.on('error', error => {
+      console.error('❌ [CALL TRIGGER CHANNEL] LISTEN connection lost:', error.message)
+      dropConnection(client!, error)
+    })
+    await client.query(`LISTEN ${CHANNEL}`)
+    listenClient = client
+    console.log(`📡 [CALL TRIGGER CHANNEL] Listening on ${CHANNEL} (worker ${process.pid})`)
+
+    // Anything published while this worker was not listening
+    subscribers.forEach(set => set.forEach(subscriber => subscriber.onResync?.()))
+  } catch (error) {
+    console.error('❌ [CALL TRIGGER CHANNEL] Could not LISTEN:', error)
+    if (client) dropConnection(client, error as Error)
+    else scheduleReconnect()
+  } finally {
+    connecting = false
+  }
+}
+
+function dropConnection(client: PoolClient, error: Error) {
+  if (listenClient === client) listenClient = null
+  client.removeAllListeners('notification')
+  try {
+    client.release(error)
+  } catch {
+    // Already released
+  }
+  scheduleReconnect()
+}
+
+function scheduleReconnect() {
+  if (reconnectTimer || subscribers.size === 0) return
+  reconnectTimer = setTimeout(() => {
+    reconnectTimer = null
+    listen()
+  }, RECONNECT_DELAY_MS)
+}
+
+async function deliver(payload: string) {
+  let message: { employeeId: string; trigger?: any; triggerId?: number }
+  try {
+    message = JSON.parse(payload)
+  } catch {
+    console.warn('⚠️ [CALL TRIGGER CHANNEL] Ignoring unreadable notification')
+    return
+  }
+
+  const employeeSubscribers = subscribers.get(message.employeeId)
+  if (!employeeSubscribers) return
+
+  let trigger = message.trigger
+  if (!trigger && message.triggerId !== undefined) {
+    try {
+      const result = await query('SELECT * FROM call_triggers WHERE id = $1', [message.triggerId])
+      trigger = result.rows[0]
+    } catch (error) {
+      console.error('❌ [CALL TRIGGER CHANNEL] Trigger lookup failed:', error)
+    }
+  }
+  if (!trigger) return
+
+  employeeSubscribers.forEach(subscriber => {
+    try {
+      subscriber.onTrigger(trigger)
+    } catch (error) {
+      console.error('❌ Error pushing call trigger:', error)
+    }
+  })
+}